@@ -0,0 +1,103 @@
+package application;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javafx.application.Platform;
+import application.parser.PdbFollower;
+import application.structure.LinkGraph;
+import application.structure.Model;
+
+/**
+ * Shows the models appended to a file while it is being written.
+ *
+ * A daemon thread polls the file every INTERVAL milliseconds and decodes
+ * whatever was appended since the last poll (see PdbFollower). The models it
+ * finishes are added to the loaded model as frames on the FX thread, and the
+ * newest one is shown, so a model appears well within a second of being
+ * written. Nothing is rebuilt, the atoms and bonds are only moved, and the
+ * bonds of CONECT and LINK records appended after the models are added.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class FileFollower {
+
+	/** Time between two polls of the file, in milliseconds. */
+	private static final long INTERVAL = 250;
+
+	private final Model model;
+	private final PdbFollower follower;
+	private final ScheduledExecutorService timer;
+
+	/**
+	 * Instantiates a new file follower.
+	 *
+	 * @param model the model parsed from the file
+	 * @param follower the follower of the file, closed when this is stopped
+	 */
+	public FileFollower(Model model, PdbFollower follower) {
+		this.model = model;
+		this.follower = follower;
+
+		timer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "file-follower");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Starts polling the file.
+	 */
+	public void start() {
+		timer.scheduleWithFixedDelay(this::poll, 0, INTERVAL,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Body of the polling thread.
+	 */
+	private void poll() {
+		List<float[]> frames;
+		LinkGraph links;
+		try {
+			frames = follower.poll();
+			links = follower.pollLinks();
+		} catch (IOException e) {
+			// closing the file while it is read is expected when stopping
+			if (!timer.isShutdown()) {
+				e.printStackTrace();
+				stop();
+			}
+			return;
+		}
+
+		if (frames.isEmpty() && links == null)
+			return;
+
+		Platform.runLater(() -> {
+			for (float[] frame : frames)
+				model.addFrame(frame);
+			if (!frames.isEmpty())
+				model.setActiveFrame(model.getFrameCount() - 1);
+			if (links != null)
+				model.addLinks(links);
+		});
+	}
+
+	/**
+	 * Stops polling and closes the file.
+	 */
+	public void stop() {
+		timer.shutdownNow();
+		try {
+			follower.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -8,6 +8,7 @@ import javafx.stage.Stage;
 import application.downloader.PDBDownloader;
 import application.structure.Model;
 import application.view.Controller;
+import application.view.ModelView;
 
 /**
  * 
@@ -24,6 +25,8 @@ public class Main extends Application {
 
 	private static Model model;
 
+	private static ModelView view;
+
 	private Pane rootLayout;
 	private Stage primaryStage;
 	private Controller s1c;
@@ -61,6 +64,14 @@ public class Main extends Application {
 	public static void setModel(Model mod) {
 		model = mod;
 	}
+
+	public ModelView getView() {
+		return view;
+	}
+
+	public static void setView(ModelView v) {
+		view = v;
+	}
 	
 	public Stage getPrimaryStage() {
 		return primaryStage;
@@ -0,0 +1,8 @@
+package application;
+
+public enum ParseMode {
+	LINE,
+	MAPPED,
+	PARALLEL,
+	FOLLOW;
+}
@@ -0,0 +1,187 @@
+package application;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import application.parser.SequenceStore;
+import application.structure.Chain;
+import application.structure.ConformerTable;
+import application.structure.Model;
+import application.structure.primary.Aminoacid;
+import application.structure.primary.Atom;
+import application.structure.primary.Bond;
+import application.structure.secondary.Helix;
+import application.structure.secondary.Sheet;
+
+/**
+ * Checks that the byte level readers build the same model as the line by line
+ * parser.
+ *
+ * Parses each given file, or the small fixture next to this class
+ * (modes.pdb: two chains, alternate locations, an insertion code, a
+ * selenomethionine, a water and an ion, LINK and CONECT records and two
+ * models), in LINE, MAPPED and PARALLEL mode. Each model is written out as
+ * text, one line per atom, residue, bond, conformer and frame coordinate,
+ * and the text of the MAPPED and PARALLEL models is compared with that of
+ * the LINE model. The first line that differs is printed and the check exits
+ * with status 1. The cache is neither read nor written.
+ *
+ * Usage: ParseModeCheck [file.pdb ...]
+ *
+ * @author Slav Danchev
+ *
+ */
+public class ParseModeCheck {
+
+	private static final String FIXTURE = "modes.pdb";
+
+	/** The modes compared with LINE. */
+	private static final ParseMode[] MODES = { ParseMode.MAPPED,
+			ParseMode.PARALLEL };
+
+	public static void main(String... args) throws IOException {
+		List<File> files = new ArrayList<File>();
+		for (String arg : args)
+			files.add(new File(arg));
+		if (files.isEmpty())
+			files.add(fixture());
+
+		boolean same = true;
+		for (File file : files) {
+			List<String> expected = describe(new Parser(file, ParseMode.LINE,
+					false).getModel());
+
+			for (ParseMode mode : MODES) {
+				List<String> actual = describe(new Parser(file, mode, false)
+						.getModel());
+				int line = firstDifference(expected, actual);
+
+				if (line < 0) {
+					System.out.printf("%s: %s same as LINE, %d lines%n",
+							file.getName(), mode, actual.size());
+					continue;
+				}
+
+				same = false;
+				System.out.printf("%s: %s differs from LINE at line %d%n"
+						+ "  LINE: %s%n  %s: %s%n", file.getName(), mode,
+						line + 1, line < expected.size() ? expected.get(line)
+								: "(end)", mode, line < actual.size()
+								? actual.get(line) : "(end)");
+			}
+		}
+
+		if (!same)
+			System.exit(1);
+	}
+
+	/**
+	 * Copies the fixture out of the class path into a temporary file, the
+	 * parser reads files only.
+	 */
+	private static File fixture() throws IOException {
+		File file = File.createTempFile("modes", ".pdb");
+		file.deleteOnExit();
+
+		try (InputStream in = ParseModeCheck.class
+				.getResourceAsStream(FIXTURE)) {
+			if (in == null)
+				throw new FileNotFoundException(FIXTURE);
+			Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		return file;
+	}
+
+	/**
+	 * The index of the first line that differs, or -1 if there is none.
+	 */
+	private static int firstDifference(List<String> a, List<String> b) {
+		int n = Math.min(a.size(), b.size());
+		for (int i = 0; i < n; i++) {
+			if (!a.get(i).equals(b.get(i)))
+				return i;
+		}
+		return a.size() == b.size() ? -1 : n;
+	}
+
+	/**
+	 * Writes out everything a model was parsed into, the atoms by their
+	 * index in file order.
+	 */
+	private static List<String> describe(Model model) {
+		List<String> lines = new ArrayList<String>();
+		List<Atom> atoms = model.getFrameAtoms();
+		Set<Atom> hetero = Collections.newSetFromMap(
+				new IdentityHashMap<Atom, Boolean>());
+		hetero.addAll(model.getHetAtoms());
+
+		for (Atom a : atoms)
+			lines.add("atom " + a.getIndex()
+					+ (hetero.contains(a) ? " H " : " A ") + a.getSerial()
+					+ " " + a.getName() + " " + a.getResidue() + " "
+					+ a.getChainID() + " " + a.getResID() + " "
+					+ a.getICode() + " " + a.getX() + " " + a.getY() + " "
+					+ a.getZ() + " " + a.getOccupancy() + " "
+					+ a.getTempFactor() + " " + a.getElement());
+
+		for (Chain c : model.getChains()) {
+			lines.add("chain " + c.getChainID());
+			for (Aminoacid acid : c.getAminoacids())
+				lines.add("residue " + acid.getChainID() + " "
+						+ acid.getResID() + " " + acid.getICode() + " "
+						+ acid.getName() + " " + acid.getAtoms().size());
+			for (Bond b : c.getBonds())
+				lines.add(bond("bond", b));
+			for (Bond b : c.getMainChainBonds())
+				lines.add(bond("main chain", b));
+		}
+		for (Bond b : model.getHetBonds())
+			lines.add(bond("het bond", b));
+		for (Bond b : model.getExplicitLinks())
+			lines.add(bond("link", b));
+
+		ConformerTable conformers = model.getConformers();
+		for (int i = 0; conformers != null && i < conformers.size(); i++)
+			lines.add("conformer " + conformers.getAtom(i).getIndex() + " "
+					+ conformers.getAltLoc(i) + " " + conformers.getX(i) + " "
+					+ conformers.getY(i) + " " + conformers.getZ(i) + " "
+					+ conformers.getOccupancy(i));
+
+		SequenceStore sequences = model.getSequences();
+		for (String chainID : sequences.getChainIDs())
+			lines.add("sequence " + chainID + " "
+					+ sequences.getSequence(chainID));
+
+		for (Helix h : model.getHelices())
+			lines.add("helix " + h.getStartChainID() + " "
+					+ h.getInitSeqNum() + " " + h.getEndSeqNum());
+		for (Sheet s : model.getSheets())
+			lines.add("sheet " + s.getInitChainID() + " " + s.getInitSeqNum()
+					+ " " + s.getEndSeqNum());
+
+		for (String line : model.getMetaInfo().split("\n"))
+			lines.add("meta " + line);
+
+		for (int f = 1; f < model.getFrameCount(); f++) {
+			model.setActiveFrame(f);
+			for (Atom a : atoms)
+				lines.add("frame " + f + " " + a.getIndex() + " " + a.getX()
+						+ " " + a.getY() + " " + a.getZ());
+		}
+		return lines;
+	}
+
+	private static String bond(String kind, Bond b) {
+		return kind + " " + b.getAtomA().getIndex() + " "
+				+ b.getAtomB().getIndex();
+	}
+}
@@ -4,16 +4,37 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-
-import javafx.geometry.Point3D;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+
+import application.parser.AltLocFilter;
+import application.parser.CifReader;
+import application.parser.GzipPipe;
+import application.parser.LoadOptions;
+import application.parser.MetaStore;
+import application.parser.MmtfReader;
+import application.parser.ParallelPdbReader;
+import application.parser.PdbColumns;
+import application.parser.PdbFollower;
+import application.parser.PdbIndex;
+import application.parser.PdbReader;
+import application.parser.PdbRecordHandler;
+import application.parser.PvcCache;
+import application.parser.RecordBuffer;
+import application.parser.SequenceStore;
+import application.structure.AtomTable;
 import application.structure.Chain;
+import application.structure.ConformerTable;
+import application.structure.LinkGraph;
 import application.structure.Model;
 import application.structure.primary.Aminoacid;
 import application.structure.primary.Atom;
-import application.structure.primary.Bond;
 import application.structure.secondary.Helix;
 import application.structure.secondary.Sheet;
 
@@ -31,6 +52,28 @@ import application.structure.secondary.Sheet;
  * However, there are stubs created for some of the more important PDB record
  * types.
  * 
+ * In MAPPED mode the file is memory-mapped and decoded by a PdbReader, which
+ * pushes the records into the Collector below. The record type is switched on
+ * as a packed int and no String is created per line, only per distinct name.
+ * PARALLEL mode does the same on all cores (see readParallel()).
+ * 
+ * Gzip compressed files (.pdb.gz, .ent.gz) are recognised by their first bytes
+ * in every mode and inflated on a separate thread while they are parsed (see
+ * GzipPipe).
+ * 
+ * Files in the mmCIF / PDBx format (.cif, .cif.gz) are read by a CifReader
+ * into the same Collector, so they end up as the same Model. So are binary
+ * MMTF files (.mmtf, .mmtf.gz), which skip text parsing altogether.
+ * 
+ * In every mode, only the first location of an atom with alternate locations
+ * (altLoc) becomes an Atom. All its locations are kept in the ConformerTable
+ * of the model, which can switch between them (see Model.setConformer()).
+ * 
+ * Once a file has been parsed, its content can be kept in a columnar cache
+ * next to it (see PvcCache), which is memory-mapped the next time instead.
+ * A single model or a few chains of a large file can be read through the
+ * record index of the file (see PdbIndex), skipping the rest of it.
+ * 
  * Official documentation for the file format was used, available at :
  * http://www.wwpdb.org/documentation/format33/v3.3.html
  * 
@@ -39,16 +82,27 @@ import application.structure.secondary.Sheet;
  *
  */
 public class Parser {
-	private String filename = null, meta = "";
+	private String filename = null;
+	private MetaStore meta = new MetaStore();
+	private SequenceStore sequences = new SequenceStore();
+	private AltLocs altLocs = new AltLocs();
+	private AtomTable table = new AtomTable();
 	private boolean inModel, multiModel;
 	private int modelCount, lineCount = 0;
 	private List<Atom> atomList, hetatmList;
-	private List<Bond> links;
+
+	/** The atoms of both lists in file order, see fileAtoms(). */
+	private List<Atom> fileAtoms = new ArrayList<Atom>();
+	private LinkGraph links;
 	private List<Chain> chains;
 	private List<Sheet> sheets;
 	private Model model;
 	private List<Helix> helices;
 	private File file;
+	private ParseMode mode = ParseMode.LINE;
+	private LoadOptions options = new LoadOptions();
+	private PdbFollower follower;
+	private FrameList frames = new FrameList();
 
 	public Parser(String filename) {
 		this.filename = filename;
@@ -56,7 +110,7 @@ public class Parser {
 		modelCount = 0;
 		atomList = new ArrayList<Atom>();
 		hetatmList = new ArrayList<Atom>();
-		links = new ArrayList<Bond>();
+		links = new LinkGraph();
 		chains = new ArrayList<Chain>();
 		sheets = new ArrayList<Sheet>();
 		helices = new ArrayList<Helix>();
@@ -67,63 +121,192 @@ public class Parser {
 			e.printStackTrace();
 		}
 
+		links.resolve(fileAtoms());
 		buildModel();
 		model.setHelices(helices);
 		model.setSheets(sheets);
+		model.setLinks(links);
 	}
 
 	public Parser(File file) {
+		this(file, ParseMode.LINE);
+	}
+
+	/**
+	 * Parses the given file, either line by line through a BufferedReader or
+	 * by decoding the bytes of the memory-mapped file on one or all cores.
+	 *
+	 * @param file
+	 *            the PDB file
+	 * @param mode
+	 *            how the file should be read
+	 */
+	public Parser(File file, ParseMode mode) {
+		this(file, mode, false);
+	}
+
+	/**
+	 * Parses the given file like Parser(File, ParseMode). If useCache is set,
+	 * a fresh columnar cache of the file (see PvcCache) is read instead of the
+	 * file itself, and a new cache is written after the file has been parsed
+	 * successfully.
+	 *
+	 * @param file
+	 *            the PDB file
+	 * @param mode
+	 *            how the file should be read
+	 * @param useCache
+	 *            whether the .pvc cache next to the file should be used
+	 */
+	public Parser(File file, ParseMode mode, boolean useCache) {
+		this(file, mode, useCache, new LoadOptions());
+	}
+
+	/**
+	 * Parses the given file like Parser(File, ParseMode, boolean), keeping
+	 * only the records the load options select. Dropped atom records are
+	 * skipped before an Atom is made for them, in MAPPED and PARALLEL mode
+	 * even before their coordinates are decoded. A filtered parse never
+	 * reads or writes the cache.
+	 *
+	 * @param file
+	 *            the PDB file
+	 * @param mode
+	 *            how the file should be read
+	 * @param useCache
+	 *            whether the .pvc cache next to the file should be used
+	 * @param options
+	 *            which records to keep
+	 */
+	public Parser(File file, ParseMode mode, boolean useCache,
+			LoadOptions options) {
 		this.file = file;
+		this.mode = mode;
+		this.options = options;
 		inModel = true;
 		modelCount = 0;
 		atomList = new ArrayList<Atom>();
+		hetatmList = new ArrayList<Atom>();
+		links = new LinkGraph();
 		chains = new ArrayList<Chain>();
 		sheets = new ArrayList<Sheet>();
 		helices = new ArrayList<Helix>();
 
+		boolean cached = useCache && options.keepsAll()
+				&& PvcCache.isFresh(file);
+		boolean parsed = false;
+
 		try {
-			readFile();
+			if (cached)
+				readCache();
+			else if (MmtfReader.isMmtf(file))
+				readMmtf();
+			else if (CifReader.isCif(file))
+				readCif();
+			else if (mode == ParseMode.MAPPED)
+				readMappedFile();
+			else if (mode == ParseMode.PARALLEL)
+				readParallel();
+			else if (mode == ParseMode.FOLLOW)
+				readFollowed();
+			else
+				readFile();
+			parsed = true;
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 
+		if (!options.keepsAll())
+			dropSecondaryStructure();
+
+		links.resolve(fileAtoms());
+
+		if (useCache && parsed && !cached && options.keepsAll())
+			writeCache();
+
 		buildModel();
 		model.setHelices(helices);
 		model.setSheets(sheets);
-		model.setExplicitLinks(links);
+		model.setLinks(links);
+	}
+
+	/**
+	 * Parses a single model of a PDB file, or only some chains of it, through
+	 * the record index of the file (see PdbIndex), which is built and stored
+	 * next to the file the first time. Only the parts of the file holding the
+	 * selected records and the header are read. Files that can not be indexed
+	 * (compressed, mmCIF or MMTF files) are parsed in full.
+	 *
+	 * @param file
+	 *            the PDB file
+	 * @param modelIndex
+	 *            the index of the model, starting at 0
+	 * @param chainIDs
+	 *            the IDs of the chains to read, or null for all of them
+	 */
+	public Parser(File file, int modelIndex, String chainIDs) {
+		this.file = file;
+		this.mode = ParseMode.MAPPED;
+		inModel = true;
+		modelCount = 0;
+		atomList = new ArrayList<Atom>();
+		hetatmList = new ArrayList<Atom>();
+		links = new LinkGraph();
+		chains = new ArrayList<Chain>();
+		sheets = new ArrayList<Sheet>();
+		helices = new ArrayList<Helix>();
+
+		try {
+			if (MmtfReader.isMmtf(file))
+				readMmtf();
+			else if (CifReader.isCif(file))
+				readCif();
+			else if (GzipPipe.isGzip(file))
+				readMappedFile();
+			else
+				readIndexed(modelIndex, chainIDs);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		links.resolve(fileAtoms());
+		buildModel();
+		model.setHelices(helices);
+		model.setSheets(sheets);
+		model.setLinks(links);
 	}
 
 	private void readFile() throws IOException {
 		BufferedReader br;
 
-		if (filename != null)
-			br = new BufferedReader(new FileReader(filename));
+		File input = filename != null ? new File(filename) : file;
+
+		if (GzipPipe.isGzip(input))
+			br = new BufferedReader(new InputStreamReader(new GzipPipe(input),
+					StandardCharsets.ISO_8859_1));
 		else
-			br = new BufferedReader(new FileReader(file));
+			br = new BufferedReader(new FileReader(input));
 
 		String line;
 		while ((line = br.readLine()) != null) {
 			lineCount++;
 
 			// separate first word from line
-			String rectype = line.substring(0, 6);
+			String rectype = line.substring(0, Math.min(6, line.length()));
 			rectype = rectype.replaceAll("\\s+", "");
 
+			if (!options.keepsRecord(rectype))
+				continue;
+
 			// depending on the record type read in the beginning of the line,
 			// pass the line string to
 			// an appropriate parser method
 			switch (rectype) {
 			
 			case "HEADER":
-				parseHEADER(line);
-				break;
-			
 			case "TITLE":
-				parseTITLE(line);
-				break;
-				
 			case "REMARK":
-				parseREMARK(line);
+				meta.addLine(line);
 				break;
 
 			case "LINK":
@@ -149,13 +332,26 @@ public class Parser {
 				break;
 
 			case "HETATM":
-				parseHETATM(line);
+				if (!keepsAtom(true, line) || isAlternate(line))
+					break;
+				if (isFrameRecord(true, modelCount, inModel))
+					parseFrameHETATM(line);
+				else
+					parseHETATM(line);
 				break;
 
 			case "ATOM":
-				// always pick the first model that appears in the list
+				if (!keepsAtom(false, line))
+					break;
+
+				// the first model defines the atoms, the others only add
+				// their coordinates, of the first location of each atom
+				if (isAlternate(line))
+					break;
 				if (modelCount == 0)
 					parseATOM(line);
+				else
+					parseFrameATOM(line);
 				break;
 
 			case "CONECT":
@@ -171,6 +367,12 @@ public class Parser {
 			case "TER":
 				// inModel = false;
 				break;
+
+			default:
+				// COMPND, SOURCE, ... are kept for the API only
+				if (MetaStore.isMeta(rectype))
+					meta.addLine(line);
+				break;
 			}
 
 		}
@@ -179,114 +381,550 @@ public class Parser {
 		System.out.println("Models: " + modelCount);
 	}
 	
-	private void parseHEADER(String s) {
-		String header = s.substring(10, 50);
-		
-		meta += header;
-		meta += "\n";
+	/**
+	 * Reads the memory-mapped file through a PdbReader. Compressed files can
+	 * not be mapped, they are streamed from a GzipPipe instead.
+	 */
+	private void readMappedFile() throws IOException {
+		Collector collector = new Collector();
+
+		PdbReader reader = new PdbReader(collector, options);
+		reader.setMetaStore(meta);
+
+		if (GzipPipe.isGzip(file)) {
+			try (GzipPipe in = new GzipPipe(file)) {
+				reader.read(in);
+			}
+		} else {
+			reader.read(file);
+		}
+
+		collect(collector);
 	}
-	
-	private void parseTITLE(String s) {
-		String title = s.substring(10, 80);
-		
-		meta += title;
-		meta += "\n";
+
+	/**
+	 * Reads the header and one model (or some of its chains) of the file
+	 * through its record index.
+	 */
+	private void readIndexed(int modelIndex, String chainIDs)
+			throws IOException {
+		Collector collector = new Collector();
+		PdbIndex.open(file).readModel(file, collector, modelIndex, chainIDs);
+		collect(collector);
+
+		if (chainIDs != null) {
+			options.setChains(chainIDs.split(""));
+			dropSecondaryStructure();
+		}
 	}
-	
-	private void parseREMARK(String s) {
-		String remark = s.substring(11, 79);
-		
-		meta += remark;
-		meta += "\n";
+
+	/**
+	 * Drops the helices and sheets that start or end in a residue that was
+	 * not loaded, or all of them if the CA atoms they are drawn between were
+	 * not.
+	 */
+	private void dropSecondaryStructure() {
+		if (!options.keepsAtom("CA", "C")) {
+			helices.clear();
+			sheets.clear();
+			return;
+		}
+
+		helices.removeIf(h -> !options.keepsResidue(h.getStartChainID(),
+				h.getInitSeqNum())
+				|| !options.keepsResidue(h.getEndChainID(), h.getEndSeqNum()));
+		sheets.removeIf(s -> !options.keepsResidue(s.getInitChainID(),
+				s.getInitSeqNum())
+				|| !options.keepsResidue(s.getEndChainID(), s.getEndSeqNum()));
 	}
 
-	private void parseLINK(String s) {
-		String atom1 = s.substring(12, 16).replaceAll("\\s+", "");
-		String altLoc1 = s.substring(16, 17).replaceAll("\\s+", "");
-		String resName1 = s.substring(17, 20).replaceAll("\\s+", "");
-		String chainID1 = s.substring(21, 22).replaceAll("\\s+", "");
-		int resSeq1 = Integer.parseInt(s.substring(22, 26).replaceAll("\\s+",
-				""));
+	/**
+	 * Reads the complete models of a file that is still being written, and
+	 * keeps a PdbFollower that continues from there (see getFollower()).
+	 * Compressed files can not be followed and are read like in MAPPED mode.
+	 */
+	private void readFollowed() throws IOException {
+		if (GzipPipe.isGzip(file)) {
+			readMappedFile();
+			return;
+		}
 
-		String atom2 = s.substring(42, 46).replaceAll("\\s+", "");
-		String altLoc2 = s.substring(46, 47).replaceAll("\\s+", "");
-		String resName2 = s.substring(47, 50).replaceAll("\\s+", "");
-		String chainID2 = s.substring(51, 52).replaceAll("\\s+", "");
-		int resSeq2 = Integer.parseInt(s.substring(52, 56).replaceAll("\\s+",
-				""));
+		follower = new PdbFollower(file, options);
 
-		// double length = Double.parseDouble(s.substring(73, 78).replaceAll(
-		// "\\s+", ""));
+		Collector collector = new Collector();
+		PdbReader reader = new PdbReader(collector, options);
+		reader.setMetaStore(meta);
+		reader.read(file, follower.getOffset());
+		collect(collector);
+	}
 
+	/**
+	 * Reads an mmCIF file through a CifReader, in any mode.
+	 */
+	private void readCif() throws IOException {
+		Collector collector = new Collector();
+		new CifReader(options.filter(collector)).read(file);
+		collect(collector);
 	}
 
-	private void parseCONECT(String s) {
-		int serial = Integer
-				.parseInt(s.substring(6, 11).replaceAll("\\s+", ""));
+	/**
+	 * Reads the records of a previous parse back from the memory-mapped
+	 * cache. No text is parsed.
+	 */
+	private void readCache() throws IOException {
+		Collector collector = new Collector();
+		PvcCache.read(file, collector, meta, links);
+		collect(collector);
+	}
 
-		if (!s.substring(11, 16).replaceAll("\\s+", "").equals("")) {
-			int bondedSerial1 = Integer.parseInt(s.substring(11, 16)
-					.replaceAll("\\s+", ""));
+	/**
+	 * Writes everything that made it into the lists to the cache next to the
+	 * file. A cache that can not be written is only reported.
+	 */
+	private void writeCache() {
+		PvcCache cache = new PvcCache();
+		cache.addMeta(meta);
+		sequences.replay(cache);
+
+		// the atoms keep the altLoc of their first location only in the
+		// conformers, and both lists are in file order, so the next hetero
+		// atom is found by walking them side by side
+		List<Atom> atoms = fileAtoms();
+		ConformerTable conformers = altLocs.conformers;
+		char[] firstAltLocs = new char[atoms.size()];
+		Arrays.fill(firstAltLocs, ' ');
+		for (int i = conformers.size() - 1; i >= 0; i--)
+			firstAltLocs[conformers.getAtom(i).getIndex()] = conformers
+					.getAltLoc(i);
+
+		int next = 0;
+		for (int i = 0; i < atoms.size(); i++) {
+			Atom a = atoms.get(i);
+			boolean hetero = next < hetatmList.size()
+					&& hetatmList.get(next) == a;
+			if (hetero)
+				next++;
+			cache.onAtom(hetero, a.getSerial(), a.getName(), firstAltLocs[i],
+					a.getResidue(), a.getChainID(), a.getResID(),
+					a.getICode(), a.getX(), a.getY(), a.getZ(),
+					a.getOccupancy(), a.getTempFactor(), a.getElement());
+		}
 
-			links.add(new Bond(serial, bondedSerial1));
+		for (int i = 0; i < conformers.size(); i++)
+			cache.addConformer(conformers.getAtom(i).getIndex(),
+					conformers.getAltLoc(i), conformers.getX(i),
+					conformers.getY(i), conformers.getZ(i),
+					conformers.getOccupancy(i));
+
+		for (Helix h : helices)
+			cache.onHelix(h.getSerial(), "", "", h.getStartChainID(),
+					h.getInitSeqNum(), "", h.getEndChainID(), h.getEndSeqNum());
+		for (Sheet s : sheets)
+			cache.onSheet(0, s.getId(), "", s.getInitChainID(),
+					s.getInitSeqNum(), "", s.getEndChainID(), s.getEndSeqNum());
+		// LINK records are kept as the bonds they resolved to
+		int[] bonds = links.getBonds();
+		for (int i = 0; i < bonds.length; i += 2)
+			cache.addBond(bonds[i], bonds[i + 1]);
+		for (float[] frame : frames.toList())
+			cache.addFrame(frame);
+
+		try {
+			cache.write(file);
+		} catch (IOException e) {
+			// the file is parsed again the next time it is loaded
 		}
+	}
 
-		if (!s.substring(16, 21).replaceAll("\\s+", "").equals("")) {
-			int bondedSerial2 = Integer.parseInt(s.substring(16, 21)
-					.replaceAll("\\s+", ""));
+	/**
+	 * Decodes a binary MMTF file through an MmtfReader, in any mode.
+	 */
+	private void readMmtf() throws IOException {
+		Collector collector = new Collector();
+		new MmtfReader(options.filter(collector)).read(file);
+		collect(collector);
+	}
 
-			links.add(new Bond(serial, bondedSerial2));
+	/**
+	 * Decodes line aligned parts of the memory-mapped file in parallel (see
+	 * ParallelPdbReader), then turns each part into Atom objects in parallel
+	 * and finally appends the parts to the lists in file order. The lists end
+	 * up exactly as readMappedFile() would leave them, so buildModel() groups
+	 * residues and chains the same way.
+	 */
+	private void readParallel() throws IOException {
+		// inflating can not be split, the whole stream is parsed as it arrives
+		if (GzipPipe.isGzip(file)) {
+			readMappedFile();
+			return;
 		}
 
-		if (!s.substring(21, 26).replaceAll("\\s+", "").equals("")) {
-			int bondedSerial3 = Integer.parseInt(s.substring(21, 26)
-					.replaceAll("\\s+", ""));
+		ParallelPdbReader reader = new ParallelPdbReader();
+		reader.setOptions(options);
+		reader.setMetaStore(meta);
+		List<RecordBuffer> buffers = reader.read(file);
+
+		// which atom records are kept depends on the model they are in, so the
+		// number of models closed before each part, and whether one is open,
+		// has to be known up front
+		List<ForkJoinTask<Collector>> tasks;
+		tasks = new ArrayList<ForkJoinTask<Collector>>(buffers.size());
+		int models = 0;
+		boolean open = true;
+
+		for (RecordBuffer records : buffers) {
+			Collector collector = new Collector(models, open);
+			tasks.add(reader.getPool().submit(() -> {
+				records.replay(collector);
+				return collector;
+			}));
+
+			models += records.getEndModelCount();
+			if (records.getInModel() != null)
+				open = records.getInModel();
+		}
 
-			links.add(new Bond(serial, bondedSerial3));
+		List<Collector> parts = new ArrayList<Collector>(tasks.size());
+		int atoms = 0;
+		for (ForkJoinTask<Collector> task : tasks) {
+			Collector part = task.join();
+			parts.add(part);
+			atoms += part.table.size();
 		}
 
-		if (!s.substring(26, 31).replaceAll("\\s+", "").equals("")) {
-			int bondedSerial4 = Integer.parseInt(s.substring(26, 31)
-					.replaceAll("\\s+", ""));
+		tasks.clear();
+		buffers.clear();
+
+		// the first part with atoms keeps its table, made large enough for
+		// the others at once, and each part is dropped once it is copied
+		for (Collector part : parts) {
+			if (part.table.size() > 0) {
+				part.table.ensureCapacity(atoms);
+				break;
+			}
+		}
+		for (int i = 0; i < parts.size(); i++) {
+			collect(parts.get(i));
+			parts.set(i, null);
+		}
+	}
 
-			links.add(new Bond(serial, bondedSerial4));
+	/**
+	 * Appends everything a Collector has gathered to the lists of the parser.
+	 * The table of the first Collector with atoms becomes the table of the
+	 * model, the atoms of later ones (the parts of a file parsed in parallel)
+	 * are copied to its end, so the rows stay in file order.
+	 */
+	private void collect(Collector c) {
+		List<Atom> atoms = inFileOrder(c.atoms, c.hetatms);
+		if (fileAtoms.isEmpty()) {
+			table = c.table;
+		} else {
+			for (Atom a : atoms)
+				a.moveTo(table);
 		}
 
+		atomList.addAll(c.atoms);
+		hetatmList.addAll(c.hetatms);
+		fileAtoms.addAll(atoms);
+		links.addAll(c.links);
+		helices.addAll(c.helices);
+		sheets.addAll(c.sheets);
+		frames.addAll(c.frames);
+		meta.addAll(c.meta);
+		sequences.addAll(c.sequences);
+		altLocs.conformers.addAll(c.altLocs.conformers);
+
+		modelCount = c.modelCount;
+		multiModel |= c.multiModel;
+		inModel = c.inModel;
 	}
 
-	private void parseSEQRES(String s) {
-		int serial = Integer
-				.parseInt(s.substring(7, 10).replaceAll("\\s+", ""));
-		String ID = s.substring(11, 12).replaceAll("\\s+", "");
-		// Number of residues in the chain.
-		int numRes = Integer
-				.parseInt(s.substring(7, 10).replaceAll("\\s+", ""));
-
-		String[] aminoAcidsOnLine = s.substring(19, 70).split("\\s+");
-
-		// make an arraylist of the aminoacid strings
-		ArrayList<String> aminoacids = new ArrayList<String>(
-				Arrays.asList(aminoAcidsOnLine));
-
-		// check if the list of chains is empty and create new chain object of
-		// it is
-		// or if the parser indicates the start of a new chain by the change of
-		// the ID String
-		// This is done by comparint the chainID of the current line with the
-		// chainID of the previous chain
-		// if (chains.isEmpty()
-		// || !ID.equals(chains.get(chains.size() - 1).getChainID())) {
-		// chains.add(new Chain(serial, ID));
-		// chains.get(chains.size() - 1).setAminoacids(aminoacids);
-		// } else {
-		// // if we're still in the same chain sequence, simply append the
-		// // aminoacids
-		// // to the already existing list
-		//
-		// // get last element in chain list
-		// chains.get(chains.size() - 1).appendAminoacids(aminoacids);
-		// }
+	/**
+	 * Collects the records pushed by a PdbReader into lists of its own, the
+	 * same way the line based parse methods fill the lists of the parser.
+	 */
+	private static class Collector implements PdbRecordHandler {
+		private final List<Atom> atoms = new ArrayList<Atom>();
+		private final List<Atom> hetatms = new ArrayList<Atom>();
+		private final LinkGraph links = new LinkGraph();
+		private final List<Helix> helices = new ArrayList<Helix>();
+		private final List<Sheet> sheets = new ArrayList<Sheet>();
+		private final MetaStore meta = new MetaStore();
+		private final SequenceStore sequences = new SequenceStore();
+		private final AltLocs altLocs = new AltLocs();
+		private final AtomTable table = new AtomTable();
+		private final FrameList frames = new FrameList();
+		private int modelCount;
+		private boolean multiModel, inModel;
+
+		/**
+		 * Collects the records from the start of a file.
+		 */
+		Collector() {
+			this(0, true);
+		}
+
+		/**
+		 * @param modelCount
+		 *            number of models closed before the first record
+		 * @param inModel
+		 *            whether the first record is in a model, false after an
+		 *            ENDMDL record until the next MODEL record
+		 */
+		Collector(int modelCount, boolean inModel) {
+			this.modelCount = modelCount;
+			this.inModel = inModel;
+		}
+
+		@Override
+		public void onHeader(String text) {
+			meta.add("HEADER", -1, text);
+		}
+
+		@Override
+		public void onTitle(String text) {
+			meta.add("TITLE", -1, text);
+		}
+
+		@Override
+		public void onRemark(String text) {
+			meta.add("REMARK", -1, text);
+		}
+
+		@Override
+		public void onSeqres(String chainID, int numRes, String resName) {
+			sequences.onSeqres(chainID, numRes, resName);
+		}
 
+		@Override
+		public void onModel(int serial) {
+			inModel = true;
+			multiModel = true;
+		}
+
+		@Override
+		public void onEndModel() {
+			modelCount++;
+			inModel = false;
+		}
+
+		@Override
+		public void onHelix(int serial, String helixID, String initResName,
+				String initChainID, int initSeqNum, String endResName,
+				String endChainID, int endSeqNum) {
+			helices.add(new Helix(initSeqNum, endSeqNum, initChainID,
+					endChainID));
+		}
+
+		@Override
+		public void onSheet(int strand, String sheetID, String initResName,
+				String initChainID, int initSeqNum, String endResName,
+				String endChainID, int endSeqNum) {
+			sheets.add(new Sheet(sheetID, initSeqNum, endSeqNum, initChainID,
+					endChainID));
+		}
+
+		@Override
+		public void onAtom(boolean hetero, int serial, String name,
+				char altLoc, String resName, String chainID, int resSeq,
+				char iCode, double x, double y, double z, double occupancy,
+				double tempFactor, String element) {
+			boolean alternate = altLocs.isAlternate(chainID, resSeq, iCode,
+					name, altLoc);
+
+			// the first model defines the atoms, the others only add their
+			// coordinates, of the first location of each atom
+			if (isFrameRecord(hetero, modelCount, inModel)) {
+				if (!alternate)
+					frames.add(modelCount, x, y, z);
+				return;
+			}
+
+			if (alternate) {
+				altLocs.add(name, altLoc, x, y, z, occupancy);
+				return;
+			}
+
+			Atom atom = new Atom(table, table.add(x, y, z, name, element,
+					serial, resName, resSeq, iCode, chainID, occupancy,
+					tempFactor));
+			altLocs.addFirst(name, atom, altLoc, occupancy);
+
+			if (hetero)
+				hetatms.add(atom);
+			else
+				atoms.add(atom);
+		}
+
+		@Override
+		public void onLink(String name1, String resName1, String chainID1,
+				int resSeq1, String name2, String resName2, String chainID2,
+				int resSeq2) {
+			links.addLink(name1, chainID1, resSeq1, name2, chainID2, resSeq2);
+		}
+
+		@Override
+		public void onConect(int serial, int bondedSerial) {
+			links.addConect(serial, bondedSerial);
+		}
+	}
+
+	/**
+	 * Keeps the alternate locations of the atoms in a ConformerTable, with
+	 * the first location of each atom of the current residue that has an
+	 * altLoc.
+	 */
+	private static class AltLocs extends AltLocFilter {
+		private final ConformerTable conformers = new ConformerTable();
+
+		/* the first location of each atom of the current residue */
+		private final Map<String, Atom> firsts = new HashMap<String, Atom>();
+
+		@Override
+		protected void startResidue() {
+			firsts.clear();
+		}
+
+		/**
+		 * Adds the first location of the atom with the given name in the
+		 * current residue, if it has an altLoc.
+		 */
+		void addFirst(String name, Atom atom, char altLoc, double occupancy) {
+			if (altLoc == ' ')
+				return;
+
+			firsts.put(name, atom);
+			conformers.add(atom, altLoc, atom.getX(), atom.getY(),
+					atom.getZ(), occupancy);
+		}
+
+		/**
+		 * Adds a further location of the atom with the given name in the
+		 * current residue.
+		 */
+		void add(String name, char altLoc, double x, double y, double z,
+				double occupancy) {
+			Atom atom = firsts.get(name);
+			if (atom != null)
+				conformers.add(atom, altLoc, x, y, z, occupancy);
+		}
+	}
+
+	/**
+	 * The coordinates of the atom records of the models after the first one,
+	 * in file order, as one float array per model.
+	 * 
+	 * The records of one model may reach a parser in several parts (see
+	 * readParallel()), so every coordinate is added with the number of its
+	 * model and parts of the same model are joined.
+	 */
+	private static class FrameList {
+		private final List<float[]> frames = new ArrayList<float[]>();
+		private final List<Integer> models = new ArrayList<Integer>();
+		private float[] current;
+		private int length, currentModel;
+
+		void add(int model, double x, double y, double z) {
+			if (current == null || model != currentModel)
+				start(model);
+
+			if (length + 3 > current.length)
+				current = Arrays.copyOf(current, current.length * 2);
+
+			current[length++] = (float) x;
+			current[length++] = (float) y;
+			current[length++] = (float) z;
+		}
+
+		/**
+		 * Appends the frames of another list, which follow the ones of this
+		 * list in the file.
+		 */
+		void addAll(FrameList other) {
+			other.finish();
+
+			for (int i = 0; i < other.frames.size(); i++) {
+				float[] part = other.frames.get(i);
+				int model = other.models.get(i);
+
+				if (current == null || model != currentModel)
+					start(model);
+
+				if (length + part.length > current.length)
+					current = Arrays.copyOf(current, Math.max(
+							current.length * 2, length + part.length));
+
+				System.arraycopy(part, 0, current, length, part.length);
+				length += part.length;
+			}
+		}
+
+		List<float[]> toList() {
+			finish();
+			return frames;
+		}
+
+		private void start(int model) {
+			finish();
+			current = new float[3 * 256];
+			currentModel = model;
+		}
+
+		private void finish() {
+			if (current == null)
+				return;
+
+			frames.add(Arrays.copyOf(current, length));
+			models.add(currentModel);
+			current = null;
+			length = 0;
+		}
+	}
+
+	private void parseLINK(String s) {
+		if (s.length() < 56)
+			return;
+
+		String atom1 = s.substring(12, 16).trim();
+		String chainID1 = s.substring(21, 22).trim();
+		int resSeq1 = PdbColumns.parseHybrid36(s.substring(22, 26), 4);
+
+		String atom2 = s.substring(42, 46).trim();
+		String chainID2 = s.substring(51, 52).trim();
+		int resSeq2 = PdbColumns.parseHybrid36(s.substring(52, 56), 4);
+
+		links.addLink(atom1, chainID1, resSeq1, atom2, chainID2, resSeq2);
+	}
+
+	private void parseCONECT(String s) {
+		int serial = PdbColumns.parseHybrid36(s.substring(6, 11), 5);
+
+		// up to four bonded atoms, each in a 5 column wide field
+		for (int from = 11; from + 5 <= Math.min(s.length(), 31); from += 5) {
+			String bonded = s.substring(from, from + 5).trim();
+			if (!bonded.isEmpty())
+				links.addConect(serial, PdbColumns.parseHybrid36(bonded, 5));
+		}
+	}
+
+	/**
+	 * Appends the residues of a SEQRES line to the sequence of its chain.
+	 */
+	private void parseSEQRES(String s) {
+		if (s.length() < 12)
+			return;
+
+		String chainID = s.substring(11, 12).trim();
+		String count = s.substring(13, Math.min(17, s.length())).trim();
+		int numRes = count.isEmpty() ? 0 : Integer.parseInt(count);
+
+		// up to 13 residue names, each in a 4 column wide field
+		for (int i = 19; i < 70 && i < s.length(); i += 4) {
+			String resName = s.substring(i, Math.min(i + 3, s.length())).trim();
+			if (!resName.isEmpty())
+				sequences.onSeqres(chainID, numRes, resName);
+		}
 	}
 
 	private void parseHELIX(String line) {
@@ -297,17 +935,14 @@ public class Parser {
 
 		String initResName = line.substring(15, 18).replaceAll("\\s+", "");
 		String initChainID = line.substring(19, 20).replaceAll("\\s+", "");
-		int initSeqNum = Integer.parseInt(line.substring(21, 25).replaceAll(
-				"\\s+", ""));
+		int initSeqNum = PdbColumns.parseHybrid36(line.substring(21, 25), 4);
 		String initICode = line.substring(25, 26);
 
 		String endResName = line.substring(27, 30).replaceAll("\\s+", "");
 		String endChainID = line.substring(31, 32).replaceAll("\\s+", "");
-		int endSeqNum = Integer.parseInt(line.substring(33, 37).replaceAll(
-				"\\s+", ""));
+		int endSeqNum = PdbColumns.parseHybrid36(line.substring(33, 37), 4);
 		String endICode = line.substring(37, 38);
-		int helixClass = Integer.parseInt(line.substring(21, 25).replaceAll(
-				"\\s+", ""));
+		int helixClass = PdbColumns.parseHybrid36(line.substring(21, 25), 4);
 
 		int length = Integer.parseInt(line.substring(71, 76).replaceAll("\\s+",
 				""));
@@ -324,13 +959,11 @@ public class Parser {
 
 		String initResName = line.substring(17, 20).replaceAll("\\s+", "");
 		String initChainID = line.substring(21, 22).replaceAll("\\s+", "");
-		int initSeqNum = Integer.parseInt(line.substring(22, 26).replaceAll(
-				"\\s+", ""));
+		int initSeqNum = PdbColumns.parseHybrid36(line.substring(22, 26), 4);
 
 		String endResName = line.substring(28, 31).replaceAll("\\s+", "");
 		String endChainID = line.substring(32, 33).replaceAll("\\s+", "");
-		int endSeqNum = Integer.parseInt(line.substring(33, 37).replaceAll(
-				"\\s+", ""));
+		int endSeqNum = PdbColumns.parseHybrid36(line.substring(33, 37), 4);
 
 		int sense = Integer.parseInt(line.substring(38, 40).replaceAll("\\s+",
 				""));
@@ -340,14 +973,12 @@ public class Parser {
 	}
 
 	private void parseHETATM(String s) {
-		int serial = Integer
-				.parseInt(s.substring(6, 11).replaceAll("\\s+", ""));
+		int serial = PdbColumns.parseHybrid36(s.substring(6, 11), 5);
 		String name = s.substring(12, 16).replaceAll("\\s+", "");
 		String altLoc = s.substring(16, 17);
 		String resName = s.substring(17, 20).replaceAll("\\s+", "");
-		String chainID = s.substring(21, 22);
-		int resSeq = Integer.parseInt(s.substring(22, 26)
-				.replaceAll("\\s+", ""));
+		String chainID = s.substring(21, 22).replaceAll("\\s+", "");
+		int resSeq = PdbColumns.parseHybrid36(s.substring(22, 26), 4);
 		String iCode = s.substring(26, 27);
 		double x = Double.parseDouble(s.substring(30, 38)
 				.replaceAll("\\s+", ""));
@@ -359,22 +990,25 @@ public class Parser {
 				"\\s+", ""));
 		double tempFactor = Double.parseDouble(s.substring(60, 66).replaceAll(
 				"\\s+", ""));
-		String element_right = s.substring(76, 78);
-		String charge = s.substring(77, 80);
+		String element = s.substring(76, 78).replaceAll("\\s+", "");
 
-		hetatmList.add(new Atom(new Point3D(x, y, z), name, element_right,
-				serial, resName, resSeq, chainID));
+		Atom atom = new Atom(table, table.add(x, y, z, name, element,
+				serial, resName, resSeq, iCode.charAt(0), chainID, occupancy,
+				tempFactor));
+		altLocs.addFirst(name, atom, altLoc.charAt(0), occupancy);
+		hetatmList.add(atom);
+		fileAtoms.add(atom);
 	}
 
 	private void parseATOM(String s) {
 		// data gathering stage
-		int serial = Integer
-				.parseInt(s.substring(6, 11).replaceAll("\\s+", ""));
+		int serial = PdbColumns.parseHybrid36(s.substring(6, 11), 5);
 		String name = s.substring(12, 16).replaceAll("\\s+", "");
+		char altLoc = s.charAt(16);
 		String residue = s.substring(17, 20).replaceAll("\\s+", "");
 		String chainID = s.substring(21, 22).replaceAll("\\s+", "");
-		int resID = Integer
-				.parseInt(s.substring(22, 26).replaceAll("\\s+", ""));
+		int resID = PdbColumns.parseHybrid36(s.substring(22, 26), 4);
+		char iCode = s.charAt(26);
 		double x = Double.parseDouble(s.substring(30, 38)
 				.replaceAll("\\s+", ""));
 		double y = Double.parseDouble(s.substring(38, 46)
@@ -384,11 +1018,99 @@ public class Parser {
 
 		String element = s.substring(76, 78).replaceAll("\\s+", "");
 
+		String tempFactor = s.substring(60, Math.min(66, s.length())).trim();
+
 		// data exploitation stage
-		Point3D position = new Point3D(x, y, z);
+		double occupancy = occupancy(s);
+		Atom atom = new Atom(table, table.add(x, y, z, name, element, serial,
+				residue, resID, iCode, chainID, occupancy,
+				tempFactor.isEmpty() ? 0 : Double.parseDouble(tempFactor)));
+		altLocs.addFirst(name, atom, altLoc, occupancy);
+		atomList.add(atom);
+		fileAtoms.add(atom);
+	}
+
+	/**
+	 * Checks whether an ATOM or HETATM line is a further location of an atom
+	 * of its residue, in which case its coordinates and occupancy are added
+	 * to the conformers of the atom instead.
+	 */
+	private boolean isAlternate(String s) {
+		String name = s.substring(12, 16).replaceAll("\\s+", "");
+		char altLoc = s.charAt(16);
+		String chainID = s.substring(21, 22).trim();
+		int resSeq = PdbColumns.parseHybrid36(s.substring(22, 26), 4);
+		char iCode = s.length() > 26 ? s.charAt(26) : ' ';
+
+		if (!altLocs.isAlternate(chainID, resSeq, iCode, name, altLoc))
+			return false;
+
+		// in the models after the first, the frames only hold first locations
+		if (!isFrameRecord(s.startsWith("HETATM"), modelCount, inModel))
+			altLocs.add(name, altLoc, Double.parseDouble(s.substring(30, 38)
+					.trim()), Double.parseDouble(s.substring(38, 46).trim()),
+					Double.parseDouble(s.substring(46, 54).trim()),
+					occupancy(s));
+		return true;
+	}
+
+	/**
+	 * Whether an atom record only adds coordinates to a frame: it is in a
+	 * model after the first one. Hetero atoms listed once after the last
+	 * ENDMDL record, outside of any model, are atoms of the structure.
+	 */
+	private static boolean isFrameRecord(boolean hetero, int modelCount,
+			boolean inModel) {
+		return modelCount != 0 && (inModel || !hetero);
+	}
+
+	/**
+	 * The occupancy of an ATOM or HETATM line, 1 if the field is blank.
+	 */
+	private static double occupancy(String s) {
+		String field = s.substring(54, Math.min(60, s.length())).trim();
+		return field.isEmpty() ? 1 : Double.parseDouble(field);
+	}
+
+	/**
+	 * Checks an ATOM or HETATM line against the load options, looking only at
+	 * the columns they need.
+	 */
+	private boolean keepsAtom(boolean hetero, String s) {
+		if (options.keepsAll())
+			return true;
+
+		String name = s.substring(12, 16).trim();
+		String resName = s.substring(17, 20).trim();
+		String chainID = s.substring(21, 22).trim();
+		int resSeq = PdbColumns.parseHybrid36(s.substring(22, 26), 4);
+		String element = s.length() < 78 ? "" : s.substring(76, 78).trim();
+
+		return options.keepsAtom(hetero, name, resName, chainID, resSeq,
+				element);
+	}
+
+	/**
+	 * Keeps only the coordinates of an ATOM record of a model after the first.
+	 */
+	private void parseFrameATOM(String s) {
+		double x = Double.parseDouble(s.substring(30, 38).trim());
+		double y = Double.parseDouble(s.substring(38, 46).trim());
+		double z = Double.parseDouble(s.substring(46, 54).trim());
+
+		frames.add(modelCount, x, y, z);
+	}
+
+	/**
+	 * Keeps only the coordinates of a HETATM record of a model after the
+	 * first.
+	 */
+	private void parseFrameHETATM(String s) {
+		double x = Double.parseDouble(s.substring(30, 38).trim());
+		double y = Double.parseDouble(s.substring(38, 46).trim());
+		double z = Double.parseDouble(s.substring(46, 54).trim());
 
-		atomList.add(new Atom(position, name, element, serial, residue, resID,
-				chainID));
+		frames.add(modelCount, x, y, z);
 	}
 
 	private void buildModel() {
@@ -404,8 +1126,7 @@ public class Parser {
 			} else if (i == atomList.size() - 1) {
 				acids.add(new Aminoacid(resName, curAA));
 				curAA.clear();
-			} else if (atomList.get(i).getResID() == atomList.get(i - 1)
-					.getResID()) {
+			} else if (sameResidue(atomList.get(i), atomList.get(i - 1))) {
 				curAA.add(atomList.get(i));
 				resName = atomList.get(i).getResidue();
 			} else {
@@ -428,8 +1149,8 @@ public class Parser {
 			} else if (i == acids.size() - 1) {
 				chains.add(new Chain(curChain));
 				curChain.clear();
-			} else if (acids.get(i).getChainID()
-					.equals(acids.get(i - 1).getChainID())) {
+			} else if (acids.get(i).getChainCode() == acids.get(i - 1)
+					.getChainCode()) {
 				curChain.add(acids.get(i));
 				chainID = acids.get(i).getChainID();
 			} else {
@@ -439,11 +1160,52 @@ public class Parser {
 			}
 		}
 
-		model = new Model((ArrayList<Chain>) chains);
+		model = new Model((ArrayList<Chain>) chains, table);
 		model.setHetAtoms(hetatmList);
 		
-		model.setMetaInfo(meta);
+		model.setMetaData(meta);
+		model.setSequences(sequences);
+		model.setConformers(altLocs.conformers);
+
+		// the frames of an ensemble and of a trajectory are in file order
+		model.setFrames(fileAtoms(), frames.toList());
+		}
+
+	/**
+	 * Whether two atoms belong to the same residue: the same chain, residue
+	 * number and insertion code.
+	 */
+	private static boolean sameResidue(Atom a, Atom b) {
+		return a.getResID() == b.getResID() && a.getICode() == b.getICode()
+				&& a.getChainCode() == b.getChainCode();
+	}
+
+	/**
+	 * The atoms of the first model in file order, ATOM and HETATM records
+	 * alike. The frames and the links are given over this order, which is
+	 * also the order of the atoms of a trajectory file.
+	 */
+	private List<Atom> fileAtoms() {
+		return fileAtoms;
+	}
+
+	/**
+	 * Merges the ATOM and HETATM atoms of one table into file order, the
+	 * order of their rows.
+	 */
+	private static List<Atom> inFileOrder(List<Atom> atoms,
+			List<Atom> hetatms) {
+		List<Atom> merged = new ArrayList<Atom>(atoms.size() + hetatms.size());
+		int i = 0, j = 0;
+		while (i < atoms.size() || j < hetatms.size()) {
+			if (j == hetatms.size() || i < atoms.size()
+					&& atoms.get(i).getIndex() < hetatms.get(j).getIndex())
+				merged.add(atoms.get(i++));
+			else
+				merged.add(hetatms.get(j++));
 		}
+		return merged;
+	}
 
 	/*
 	 * getters
@@ -464,4 +1226,13 @@ public class Parser {
 		return helices;
 	}
 
+	/**
+	 * Gets the follower of a file parsed in FOLLOW mode.
+	 *
+	 * @return the follower, or null if the file can not be followed
+	 */
+	public PdbFollower getFollower() {
+		return follower;
+	}
+
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import java.io.IOException;
 import application.downloader.PDBDownloader;
 import application.structure.Model;
 import application.view.Controller;
+import application.view.ModelView;
 
 
 /**
@@ -37,6 +38,12 @@ public class ProteinMaker implements Runnable {
 	/** The random. */
 	private boolean random = false; 
 
+	/** Whether models appended to the file later should be shown. */
+	private boolean follow = false;
+
+	/** Files larger than this are parsed on all cores. */
+	private static final long PARALLEL_THRESHOLD = 8 << 20;
+
 	/**
 	 * Instantiates a new protein maker.
 	 *
@@ -63,6 +70,20 @@ public class ProteinMaker implements Runnable {
 		this.main = main;
 	}
 	
+	/**
+	 * Instantiates a new protein maker for a file that is still being
+	 * written, e.g. by a running simulation.
+	 *
+	 * @param file local PDB file
+	 * @param follow whether models appended to the file should be shown
+	 * @param cont the cont
+	 * @param main the main
+	 */
+	public ProteinMaker(File file, boolean follow, Controller cont, Main main) {
+		this(file, cont, main);
+		this.follow = follow;
+	}
+
 	/**
 	 * Instantiates a new protein maker.
 	 *
@@ -85,16 +106,23 @@ public class ProteinMaker implements Runnable {
 
 		controller.setProgressStatus("Parsing file...");
 
-		Parser myParse = new Parser(file);
+		Parser myParse = new Parser(file, follow ? ParseMode.FOLLOW
+				: parseMode(file));
 
 		controller.setProgressStatus("Rendering...");
 		Model model = myParse.getModel();
 
-		world.getChildren().add(model.getNode());
+		if (myParse.getFollower() != null)
+			controller.setFollower(new FileFollower(model,
+					myParse.getFollower()));
+
+		ModelView view = new ModelView(model);
+		world.getChildren().add(view.getNode());
 
 		main.setModel(model);
+		main.setView(view);
 
-		ProteinScene protScene = new ProteinScene(model);
+		ProteinScene protScene = new ProteinScene(view);
 
 		controller.setSubScene(protScene);
 		controller.setProgressStatus("");
@@ -110,16 +138,19 @@ public class ProteinMaker implements Runnable {
 			String id = downloader.downloadRandom();
 			
 			controller.setProgressStatus("Parsing file...");
-			Parser myParse = new Parser(id + ".pdb");
+			File pdb = new File(id + ".pdb");
+			Parser myParse = new Parser(pdb, parseMode(pdb), true);
 
 			controller.setProgressStatus("Rendering...");
 			Model model = myParse.getModel();
 
-			world.getChildren().add(model.getNode());
+			ModelView view = new ModelView(model);
+			world.getChildren().add(view.getNode());
 
 			Main.setModel(model);
+			Main.setView(view);
 
-			ProteinScene protScene = new ProteinScene(model);
+			ProteinScene protScene = new ProteinScene(view);
 
 			controller.setSubScene(protScene);
 			controller.setProgressStatus("");
@@ -143,7 +174,7 @@ public class ProteinMaker implements Runnable {
 		downloader = new PDBDownloader(id);
 
 		try {
-			if (!(new File(id + ".pdb").exists())) {
+			if (findLocalFile(id) == null) {
 				// Controller.setProgressStatus("Downloading...");
 				downloader.download(id);
 			}
@@ -152,18 +183,21 @@ public class ProteinMaker implements Runnable {
 			e.printStackTrace();
 		}
 
-		if (new File(id + ".pdb").exists()) {
+		File pdb = findLocalFile(id);
+		if (pdb != null) {
 			controller.setProgressStatus("Parsing file...");
-			Parser myParse = new Parser(id + ".pdb");
+			Parser myParse = new Parser(pdb, parseMode(pdb), true);
 
 			controller.setProgressStatus("Rendering...");
 			Model model = myParse.getModel();
 
-			world.getChildren().add(model.getNode());
+			ModelView view = new ModelView(model);
+			world.getChildren().add(view.getNode());
 
 			Main.setModel(model);
+			Main.setView(view);
 
-			ProteinScene protScene = new ProteinScene(model);
+			ProteinScene protScene = new ProteinScene(view);
 
 			controller.setSubScene(protScene);
 			controller.setProgressStatus("");
@@ -172,7 +206,38 @@ public class ProteinMaker implements Runnable {
 		}
 	}
 
-	
+	/**
+	 * Looks for a local copy of an entry, either plain or compressed the way
+	 * the wwPDB archive stores it.
+	 *
+	 * @param id PDB id
+	 * @return the file or null if there is none
+	 */
+	private static File findLocalFile(String id) {
+		String[] names = { id + ".mmtf", id + ".mmtf.gz", id + ".pdb",
+				id + ".pdb.gz", "pdb" + id.toLowerCase() + ".ent.gz",
+				id + ".cif", id + ".cif.gz", id.toLowerCase() + ".cif.gz" };
+
+		for (String name : names) {
+			File file = new File(name);
+			if (file.exists())
+				return file;
+		}
+		return null;
+	}
+
+	/**
+	 * Picks the parse mode for a file, small files are not worth splitting.
+	 *
+	 * @param file the file to parse
+	 * @return the parse mode
+	 */
+	private static ParseMode parseMode(File file) {
+		if (file.length() > PARALLEL_THRESHOLD)
+			return ParseMode.PARALLEL;
+		return ParseMode.MAPPED;
+	}
+
 	@Override
 	public void run() {
 		if (random) {
@@ -21,6 +21,7 @@ import javax.imageio.ImageIO;
 
 import application.structure.Chain;
 import application.structure.Model;
+import application.view.ModelView;
 /**
  * Creates a JavaFX SubScene, adds the rendered protein Model to itself and 
  * then configures the camera and mouse/keyboard input detection. 
@@ -63,13 +64,13 @@ public class ProteinScene extends SubScene {
 	final Xform cameraXform2 = new Xform();
 	final Xform cameraXform3 = new Xform();
 	private List<Chain> chains;
-	private Model model;
+	private ModelView view;
 
-	public ProteinScene(Model model) {
-		super(world = new Xform(model), 100, 100, true,
+	public ProteinScene(ModelView view) {
+		super(world = new Xform(view), 100, 100, true,
 				SceneAntialiasing.BALANCED);
 
-		this.model = model;
+		this.view = view;
 
 		buildCamera();
 
@@ -201,6 +202,6 @@ public class ProteinScene extends SubScene {
 	}
 
 	public Model getModel() {
-		return model;
+		return view.getModel();
 	}
 }
@@ -0,0 +1,166 @@
+package application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import application.parser.PdbRecordHandler;
+import application.parser.StructureWriter;
+import application.structure.Chain;
+import application.structure.LinkGraph;
+import application.structure.Model;
+import application.structure.primary.Aminoacid;
+import application.structure.primary.Atom;
+import application.structure.secondary.Helix;
+import application.structure.secondary.Sheet;
+
+/**
+ * Exports a loaded model as the records of a structure file, the reverse of
+ * the parse: the records are passed to a PdbRecordHandler in file order, so a
+ * StructureWriter writes them as a PDB or mmCIF file. The SEQRES sequences
+ * are written as they were read, unobserved residues included. The bonds of
+ * the link graph are written as CONECT records, and those between residues as
+ * LINK records as well.
+ *
+ * The atoms are written where they are shown: a chain that was dragged with
+ * the mouse keeps the offset it was moved by, and the coordinates are those
+ * of the model or trajectory frame that is shown. Exactly the atoms the model
+ * holds are written, in file order, so a model loaded with LoadOptions is
+ * saved as that subset.
+ * Alternate locations are not kept by the atoms and are written as blank.
+ *
+ * @author Slav Danchev
+ *
+ */
+public final class StructureExporter {
+
+	private StructureExporter() {
+	}
+
+	/**
+	 * Writes the model to a file, as mmCIF if its name ends with .cif and as
+	 * PDB otherwise.
+	 */
+	public static void save(Model model, File file) throws IOException {
+		try (StructureWriter writer = StructureWriter.open(file)) {
+			export(model, writer);
+		}
+	}
+
+	/**
+	 * Passes the records of the model to a handler.
+	 */
+	public static void export(Model model, PdbRecordHandler handler) {
+		if (model.getSequences() != null)
+			model.getSequences().replay(handler);
+
+		// the helices are numbered as they are written, the parse does not
+		// keep their serials
+		if (model.getHelices() != null) {
+			int serial = 0;
+			for (Helix h : model.getHelices())
+				handler.onHelix(++serial, Integer.toString(serial),
+						resName(model, h.getStartChainID(), h.getInitSeqNum()),
+						h.getStartChainID(), h.getInitSeqNum(),
+						resName(model, h.getEndChainID(), h.getEndSeqNum()),
+						h.getEndChainID(), h.getEndSeqNum());
+		}
+
+		if (model.getSheets() != null) {
+			int strand = 0;
+			String sheetID = null;
+			for (Sheet s : model.getSheets()) {
+				strand = s.getId().equals(sheetID) ? strand + 1 : 1;
+				sheetID = s.getId();
+				handler.onSheet(strand, sheetID,
+						resName(model, s.getInitChainID(), s.getInitSeqNum()),
+						s.getInitChainID(), s.getInitSeqNum(),
+						resName(model, s.getEndChainID(), s.getEndSeqNum()),
+						s.getEndChainID(), s.getEndSeqNum());
+			}
+		}
+
+		// a bond between residues is a LINK record as well, but a LINK names
+		// its residues without the insertion code, so not those of residues
+		// that have one
+		LinkGraph links = model.getLinks();
+		List<Atom> atoms = model.getFrameAtoms();
+		if (links != null) {
+			int[] bonds = links.getBonds();
+			for (int i = 0; i < bonds.length; i += 2) {
+				Atom a = atoms.get(bonds[i]), b = atoms.get(bonds[i + 1]);
+				if (a.getChainCode() == b.getChainCode()
+						&& a.getResID() == b.getResID()
+						|| a.getICode() != ' ' || b.getICode() != ' ')
+					continue;
+				handler.onLink(a.getName(), a.getResidue(), a.getChainID(),
+						a.getResID(), b.getName(), b.getResidue(),
+						b.getChainID(), b.getResID());
+			}
+		}
+
+		// the atoms are written from the atom table, in file order, so atoms
+		// that are in no chain are kept too, with a TER record after the last
+		// ATOM record of each chain
+		Map<String, Chain> chains = new HashMap<String, Chain>();
+		for (Chain c : model.getChains())
+			chains.putIfAbsent(c.getChainID(), c);
+
+		List<Atom> hetatms = model.getHetAtoms() != null ? model.getHetAtoms()
+				: Collections.<Atom> emptyList();
+		int next = 0;
+		for (int i = 0; i < atoms.size(); i++) {
+			Atom a = atoms.get(i);
+			boolean hetero = next < hetatms.size() && hetatms.get(next) == a;
+			if (hetero) {
+				next++;
+				atom(handler, true, a, 0, 0, 0);
+				continue;
+			}
+
+			Chain c = chains.get(a.getChainID());
+			if (c != null)
+				atom(handler, false, a, c.getOffsetX(), c.getOffsetY(),
+						c.getOffsetZ());
+			else
+				atom(handler, false, a, 0, 0, 0);
+
+			Atom following = i + 1 < atoms.size() ? atoms.get(i + 1) : null;
+			if (following == null || next < hetatms.size()
+					&& hetatms.get(next) == following
+					|| following.getChainCode() != a.getChainCode())
+				handler.onTer();
+		}
+
+		// a CONECT record lists the bonds of an atom, in both directions
+		if (links != null) {
+			for (int i = 0; i < links.getAtomCount(); i++) {
+				for (int k = 0; k < links.getDegree(i); k++)
+					handler.onConect(atoms.get(i).getSerial(),
+							atoms.get(links.getNeighbor(i, k)).getSerial());
+			}
+		}
+
+		handler.onEnd();
+	}
+
+	private static void atom(PdbRecordHandler handler, boolean hetero,
+			Atom a, float dx, float dy, float dz) {
+		handler.onAtom(hetero, a.getSerial(), a.getName(), ' ',
+				a.getResidue(), a.getChainID(), a.getResID(), a.getICode(),
+				a.getX() + dx, a.getY() + dy, a.getZ() + dz, a.getOccupancy(),
+				a.getTempFactor(), a.getElement());
+	}
+
+	/**
+	 * The name of a residue that ends a helix or a sheet, or an empty string
+	 * if the residue was not loaded.
+	 */
+	private static String resName(Model model, String chainID, int resSeq) {
+		Aminoacid acid = model.getAcid(chainID, resSeq);
+		return acid == null ? "" : acid.getName();
+	}
+}
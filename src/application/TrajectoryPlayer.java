@@ -0,0 +1,151 @@
+package application;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javafx.animation.AnimationTimer;
+import application.parser.TrajectoryReader;
+import application.structure.Model;
+
+/**
+ * Plays a molecular dynamics trajectory on a loaded model.
+ *
+ * The frames are decoded ahead of time on a thread of its own into a small
+ * ring of coordinate buffers, the way GzipPipe inflates its input. On each
+ * pulse of the animation timer the next decoded frame (if it is time for it
+ * and one is ready) is applied to the atoms and bonds of the model, which are
+ * moved rather than rebuilt. Only RING frames are held in memory at any time,
+ * so trajectories far larger than the memory can be played.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class TrajectoryPlayer extends AnimationTimer {
+
+	/** Number of coordinate buffers in the ring. */
+	private static final int RING = 3;
+
+	/** Queued after the last frame. */
+	private static final float[] END = new float[0];
+
+	private final Model model;
+	private final TrajectoryReader reader;
+	private final long interval;
+
+	private final BlockingQueue<float[]> free, filled;
+	private final Thread decoder;
+
+	/** The frame that is shown, given back once the next one is. */
+	private float[] shown;
+	private long last;
+	private int frame;
+
+	/**
+	 * Instantiates a new trajectory player.
+	 *
+	 * @param model the model with the atoms of the trajectory, in the same
+	 *            order (see Model.getFrameAtoms())
+	 * @param reader the trajectory, closed when the player is stopped
+	 * @param fps the number of frames shown per second
+	 * @throws IllegalArgumentException if the trajectory has another number
+	 *             of atoms than the model
+	 */
+	public TrajectoryPlayer(Model model, TrajectoryReader reader, int fps) {
+		int atoms = model.getFrameAtoms().size();
+		if (reader.getAtomCount() != atoms)
+			throw new IllegalArgumentException("Trajectory of "
+					+ reader.getAtomCount() + " atoms, model has " + atoms);
+
+		this.model = model;
+		this.reader = reader;
+		interval = 1_000_000_000L / fps;
+
+		free = new ArrayBlockingQueue<float[]>(RING);
+		// room for every buffer plus the end marker, so put() never blocks
+		filled = new ArrayBlockingQueue<float[]>(RING + 1);
+		for (int i = 0; i < RING; i++)
+			free.add(new float[3 * reader.getAtomCount()]);
+
+		decoder = new Thread(this::decode, "trajectory-reader");
+		decoder.setDaemon(true);
+	}
+
+	public TrajectoryPlayer(Model model, TrajectoryReader reader) {
+		this(model, reader, 30);
+	}
+
+	/**
+	 * Body of the decoding thread.
+	 */
+	private void decode() {
+		try {
+			for (;;) {
+				float[] coords = free.take();
+				if (!reader.next(coords))
+					break;
+				filled.put(coords);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			// the player was stopped
+		} finally {
+			filled.offer(END);
+		}
+	}
+
+	@Override
+	public void start() {
+		if (decoder.getState() == Thread.State.NEW)
+			decoder.start();
+		super.start();
+	}
+
+	@Override
+	public void handle(long now) {
+		if (now - last < interval)
+			return;
+
+		// never wait for the decoder on the FX thread, try again next pulse
+		float[] coords = filled.poll();
+		if (coords == null)
+			return;
+		if (coords == END) {
+			stop();
+			return;
+		}
+
+		model.setCoordinates(coords);
+		if (shown != null)
+			free.offer(shown);
+		shown = coords;
+
+		last = now;
+		frame++;
+	}
+
+	/**
+	 * Gets the number of frames shown so far.
+	 *
+	 * @return the frame count
+	 */
+	public int getFrame() {
+		return frame;
+	}
+
+	/**
+	 * Stops the playback and closes the trajectory. The atoms stay at the
+	 * last frame that was shown.
+	 */
+	@Override
+	public void stop() {
+		super.stop();
+		decoder.interrupt();
+		try {
+			reader.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -32,7 +32,7 @@
 
 package application;
 
-import application.structure.Model;
+import application.view.ModelView;
 import javafx.scene.Group;
 import javafx.scene.transform.Rotate;
 import javafx.scene.transform.Scale;
@@ -60,8 +60,8 @@ public class Xform extends Group {
         getTransforms().addAll(t, rz, ry, rx, s); 
     }
 
-    public Xform(Model model) { 
-    	getChildren().add(model.getNode()); 
+    public Xform(ModelView view) { 
+    	getChildren().add(view.getNode()); 
     }
     
     public Xform(RotateOrder rotateOrder) { 
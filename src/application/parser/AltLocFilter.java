@@ -0,0 +1,52 @@
+package application.parser;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tells the alternate locations of an atom (altLoc) apart from the first
+ * location of the atom, which is the one that becomes the atom of a model or
+ * gives it its coordinates in a frame.
+ *
+ * The locations of an atom are the records of its residue with its name and a
+ * non blank altLoc, mostly next to each other, though some files list all
+ * atoms of conformer A before those of B. Only the names seen in the current
+ * residue are kept, so the check costs one lookup per record.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class AltLocFilter {
+
+	private final Set<String> seen = new HashSet<String>();
+	private String chainID;
+	private int resSeq;
+	private char iCode;
+
+	/**
+	 * Notes an atom record. Records of atoms without a name seen before in
+	 * their residue are first locations, as are those with a blank altLoc.
+	 *
+	 * @return whether the record is a further location of an atom
+	 */
+	public boolean isAlternate(String chainID, int resSeq, char iCode,
+			String name, char altLoc) {
+		if (resSeq != this.resSeq || iCode != this.iCode
+				|| !chainID.equals(this.chainID)) {
+			seen.clear();
+			this.chainID = chainID;
+			this.resSeq = resSeq;
+			this.iCode = iCode;
+			startResidue();
+		}
+
+		return !seen.add(name) && altLoc != ' ';
+	}
+
+	/**
+	 * Called when a record of another residue than the one before it is
+	 * noted, before the record itself is.
+	 */
+	protected void startResidue() {
+	}
+}
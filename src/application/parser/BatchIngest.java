@@ -0,0 +1,350 @@
+package application.parser;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Parses every structure file in a directory tree without a user interface,
+ * and writes a summary of each one: its models, chains, residues, atoms,
+ * helices and sheets, or the reason it could not be parsed.
+ *
+ * The files are decoded on a ForkJoinPool of a fixed number of threads. The
+ * list of files is split in halves until single files are left, so idle
+ * threads steal the other halves from busy ones, and a thread that hits a
+ * large file does not hold up the rest. Each file is decoded into a Summary
+ * that only counts records, so no JavaFX classes are loaded and the memory
+ * used does not grow with the number of files. The summaries are written as
+ * tab separated lines in the order the files are finished, while the others
+ * are still parsed, and the throughput is reported every second.
+ *
+ * PDB (.pdb, .ent), mmCIF (.cif, .mmcif) and MMTF (.mmtf) files are read,
+ * compressed or not (.gz). Compressed files are inflated on the parsing
+ * thread rather than through a GzipPipe, so that the pool stays the only
+ * source of threads.
+ *
+ * Usage: BatchIngest directory [summary.tsv] [threads]
+ *
+ * @author Slav Danchev
+ *
+ */
+public class BatchIngest {
+
+	/** Columns of a summary line. */
+	private static final String HEADER = "file\tbytes\tmodels\tchains"
+			+ "\tresidues\tatoms\thetatms\thelices\tsheets\tms\terror";
+
+	private final ForkJoinPool pool;
+	private final AtomicLong files = new AtomicLong(),
+			bytes = new AtomicLong(), failures = new AtomicLong();
+
+	private Writer out;
+
+	/**
+	 * Counts what a structure holds. Atoms, residues and chains are only
+	 * counted in the first model.
+	 */
+	static class Summary implements PdbRecordHandler {
+		int models, residues, atoms, hetatms, helices, sheets;
+		final Set<String> chains = new LinkedHashSet<String>();
+
+		private boolean firstModelDone;
+		private String chainID;
+		private int resSeq;
+		private char iCode;
+
+		@Override
+		public void onHelix(int serial, String helixID, String initResName,
+				String initChainID, int initSeqNum, String endResName,
+				String endChainID, int endSeqNum) {
+			helices++;
+		}
+
+		@Override
+		public void onSheet(int strand, String sheetID, String initResName,
+				String initChainID, int initSeqNum, String endResName,
+				String endChainID, int endSeqNum) {
+			sheets++;
+		}
+
+		@Override
+		public void onModel(int serial) {
+			models++;
+		}
+
+		@Override
+		public void onAtom(boolean hetero, int serial, String name,
+				char altLoc, String resName, String chainID, int resSeq,
+				char iCode, double x, double y, double z, double occupancy,
+				double tempFactor, String element) {
+			if (firstModelDone)
+				return;
+
+			if (hetero) {
+				hetatms++;
+				return;
+			}
+
+			atoms++;
+			chains.add(chainID);
+			if (resSeq != this.resSeq || iCode != this.iCode
+					|| !chainID.equals(this.chainID)) {
+				residues++;
+				this.chainID = chainID;
+				this.resSeq = resSeq;
+				this.iCode = iCode;
+			}
+		}
+
+		@Override
+		public void onEndModel() {
+			firstModelDone = true;
+		}
+	}
+
+	/**
+	 * Parses a range of the files, splitting it between threads.
+	 */
+	private class Ingest extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<File> list;
+		private final int from, to;
+
+		Ingest(List<File> list, int from, int to) {
+			this.list = list;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				ingest(list.get(from));
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(new Ingest(list, from, middle),
+					new Ingest(list, middle, to));
+		}
+	}
+
+	/**
+	 * Instantiates a new batch on a pool of the given number of threads.
+	 */
+	public BatchIngest(int threads) {
+		pool = new ForkJoinPool(threads);
+	}
+
+	/**
+	 * Whether a file is read by a batch, by its name.
+	 */
+	public static boolean isStructure(File file) {
+		String name = baseName(file);
+		return name.endsWith(".pdb") || name.endsWith(".ent")
+				|| name.endsWith(".cif") || name.endsWith(".mmcif")
+				|| name.endsWith(".mmtf");
+	}
+
+	/**
+	 * The lower case name of the file without the .gz suffix.
+	 */
+	private static String baseName(File file) {
+		String name = file.getName().toLowerCase();
+		if (name.endsWith(".gz"))
+			name = name.substring(0, name.length() - 3);
+		return name;
+	}
+
+	/**
+	 * Parses all structure files in a directory and its subdirectories, and
+	 * writes a summary line for each to out, which is not closed. Returns
+	 * once all files are parsed; the pool is shut down afterwards.
+	 *
+	 * @param progress
+	 *            receives the throughput every second, may be null
+	 */
+	public void run(File directory, Writer out, Appendable progress)
+			throws IOException, InterruptedException {
+		List<File> list;
+		try (Stream<Path> paths = Files.walk(directory.toPath())) {
+			list = paths.map(Path::toFile)
+					.filter(f -> f.isFile() && isStructure(f))
+					.collect(Collectors.toCollection(ArrayList::new));
+		}
+
+		this.out = out;
+		out.write(HEADER);
+		out.write('\n');
+
+		long start = System.nanoTime();
+		try {
+			if (!list.isEmpty()) {
+				ForkJoinTask<Void> task = pool.submit(new Ingest(list, 0,
+						list.size()));
+				for (;;) {
+					try {
+						task.get(1, TimeUnit.SECONDS);
+						break;
+					} catch (TimeoutException e) {
+						if (progress != null)
+							report(progress, list.size(), start);
+					} catch (ExecutionException e) {
+						throw new IOException(e.getCause());
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		synchronized (this) {
+			out.flush();
+		}
+		if (progress != null)
+			report(progress, list.size(), start);
+	}
+
+	private void report(Appendable progress, int total, long start)
+			throws IOException {
+		double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+		progress.append(String.format(
+				"%d/%d files, %d failed, %.1f files/s, %.1f MB/s%n",
+				files.get(), total, failures.get(), files.get() / seconds,
+				bytes.get() / 1e6 / seconds));
+	}
+
+	/**
+	 * Parses one file and writes its summary line.
+	 */
+	private void ingest(File file) {
+		long start = System.nanoTime();
+		Summary summary = new Summary();
+		String error = "";
+
+		try {
+			read(file, summary);
+			if (summary.atoms + summary.hetatms == 0)
+				throw new IOException("No atom records");
+		} catch (IOException | RuntimeException e) {
+			// a broken file must not stop the batch
+			error = e.toString().replace('\t', ' ').replace('\n', ' ');
+			failures.incrementAndGet();
+		}
+
+		long length = file.length();
+		files.incrementAndGet();
+		bytes.addAndGet(length);
+
+		StringBuilder line = new StringBuilder(128);
+		line.append(file.getPath()).append('\t').append(length).append('\t')
+				.append(Math.max(summary.models, 1)).append('\t')
+				.append(String.join(",", summary.chains)).append('\t')
+				.append(summary.residues).append('\t').append(summary.atoms)
+				.append('\t').append(summary.hetatms).append('\t')
+				.append(summary.helices).append('\t').append(summary.sheets)
+				.append('\t').append((System.nanoTime() - start) / 1000000)
+				.append('\t').append(error).append('\n');
+
+		synchronized (this) {
+			try {
+				out.write(line.toString());
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Decodes a file into a handler with the reader its name calls for.
+	 */
+	static void read(File file, PdbRecordHandler handler) throws IOException {
+		String name = baseName(file);
+		boolean mmtf = name.endsWith(".mmtf");
+		boolean cif = name.endsWith(".cif") || name.endsWith(".mmcif");
+
+		if (!file.getName().toLowerCase().endsWith(".gz")) {
+			if (mmtf)
+				new MmtfReader(handler).read(file);
+			else if (cif)
+				new CifReader(handler).read(file);
+			else
+				new PdbReader(handler).read(file);
+			return;
+		}
+
+		try (InputStream in = new GZIPInputStream(new FileInputStream(file),
+				1 << 16)) {
+			if (mmtf)
+				new MmtfReader(handler).read(CifReader.readFully(in));
+			else if (cif)
+				new CifReader(handler).read(in);
+			else
+				new PdbReader(handler).read(in);
+		}
+	}
+
+	/**
+	 * Gets the number of files parsed so far.
+	 */
+	public long getFileCount() {
+		return files.get();
+	}
+
+	/**
+	 * Gets the number of files that could not be parsed.
+	 */
+	public long getFailureCount() {
+		return failures.get();
+	}
+
+	/**
+	 * Gets the number of bytes read so far, as stored on disk.
+	 */
+	public long getByteCount() {
+		return bytes.get();
+	}
+
+	public static void main(String... args) throws IOException,
+			InterruptedException {
+		if (args.length == 0) {
+			System.out.println(
+					"Usage: BatchIngest directory [summary.tsv] [threads]");
+			return;
+		}
+
+		File directory = new File(args[0]);
+		int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+
+		BatchIngest batch = new BatchIngest(threads);
+		try (Writer out = new BufferedWriter(new OutputStreamWriter(
+				args.length > 1 ? new FileOutputStream(args[1])
+						: System.out, StandardCharsets.UTF_8), 1 << 16)) {
+			batch.run(directory, out, System.err);
+		}
+	}
+}
@@ -0,0 +1,625 @@
+package application.parser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A reader for the mmCIF / PDBx format that pushes its content into the same
+ * PdbRecordHandler as the PdbReader, so that Parser builds the same Model,
+ * Chain and Aminoacid hierarchy from either format.
+ *
+ * The _atom_site loop is read in blocks of rows. The tokenizer only records
+ * the offsets of the cells that are needed, column by column, and every column
+ * of a block is then decoded in one go into a primitive array (or, for names,
+ * into an array of shared Strings from a NameCache). No String is created per
+ * cell. Serial numbers, residue numbers and chain IDs are not limited in width
+ * like in the PDB format, so files with more than 99,999 atoms and chains with
+ * multi-character IDs are read as they are.
+ *
+ * Besides the atoms the reader passes on the title and keywords, helices
+ * (_struct_conf), sheet strands (_struct_sheet_range), covalent and metal
+ * links (_struct_conn) and the full sequence of each chain as SEQRES records
+ * (_pdbx_poly_seq_scheme). Models are reported through onModel() and
+ * onEndModel() whenever pdbx_PDB_model_num changes. Author numbering and names
+ * are used where they are given, like in PDB files.
+ *
+ * Reference: https://mmcif.wwpdb.org/
+ *
+ * @author Slav Danchev
+ *
+ */
+public class CifReader {
+
+	/** Number of _atom_site rows decoded at a time. */
+	private static final int BLOCK = 1 << 14;
+
+	/*
+	 * _atom_site fields that are read
+	 */
+	private static final int GROUP = 0;
+	private static final int ID = 1;
+	private static final int TYPE_SYMBOL = 2;
+	private static final int LABEL_ATOM_ID = 3;
+	private static final int AUTH_ATOM_ID = 4;
+	private static final int ALT_ID = 5;
+	private static final int LABEL_COMP_ID = 6;
+	private static final int AUTH_COMP_ID = 7;
+	private static final int LABEL_ASYM_ID = 8;
+	private static final int AUTH_ASYM_ID = 9;
+	private static final int LABEL_SEQ_ID = 10;
+	private static final int AUTH_SEQ_ID = 11;
+	private static final int INS_CODE = 12;
+	private static final int X = 13;
+	private static final int Y = 14;
+	private static final int Z = 15;
+	private static final int OCCUPANCY = 16;
+	private static final int B_FACTOR = 17;
+	private static final int MODEL = 18;
+	private static final int FIELDS = 19;
+
+	private final PdbRecordHandler handler;
+	private final NameCache names;
+
+	/*
+	 * offsets of the cells of the current block, FIELDS columns of BLOCK rows
+	 * each, -1 for missing cells
+	 */
+	private int[] starts, ends;
+
+	/*
+	 * decoded columns of the current block
+	 */
+	private int[] serials, resSeqs, models;
+	private double[] xs, ys, zs, occupancies, tempFactors;
+	private String[] atomNames, resNames, chainIDs, elements;
+	private char[] altLocs, iCodes;
+	private boolean[] hetero;
+
+	/** Model number of the last atom passed on, 0 before the first one. */
+	private int model;
+
+	/*
+	 * single items of the category currently being read outside of a loop
+	 */
+	private String itemCategory;
+	private Map<String, String> items = new HashMap<String, String>();
+
+	public CifReader(PdbRecordHandler handler) {
+		this.handler = handler;
+		names = new NameCache();
+	}
+
+	/**
+	 * Checks whether a file holds mmCIF data, either by its name (.cif,
+	 * .mmcif, optionally followed by .gz) or, for uncompressed files, by a
+	 * leading data_ block header.
+	 */
+	public static boolean isCif(File file) {
+		String name = file.getName().toLowerCase();
+		if (name.endsWith(".gz"))
+			name = name.substring(0, name.length() - 3);
+		if (name.endsWith(".cif") || name.endsWith(".mmcif"))
+			return true;
+
+		if (GzipPipe.isGzip(file))
+			return false;
+
+		try (InputStream in = new FileInputStream(file)) {
+			byte[] head = new byte[4096];
+			int n = in.read(head);
+			if (n <= 0)
+				return false;
+
+			CifTokenizer tokens = new CifTokenizer(ByteBuffer.wrap(head, 0, n));
+			return tokens.next() == CifTokenizer.DATA;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Reads a file. Plain files are memory-mapped, compressed ones are
+	 * inflated into memory first.
+	 */
+	public void read(File file) throws IOException {
+		if (GzipPipe.isGzip(file)) {
+			try (GzipPipe in = new GzipPipe(file)) {
+				read(in);
+			}
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("mmCIF files over 2 GB are not supported");
+
+			read(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Reads the stream to its end into memory and then parses it. The stream
+	 * is not closed.
+	 */
+	public void read(InputStream in) throws IOException {
+		read(readFully(in));
+	}
+
+	/**
+	 * Reads a stream to its end into a heap buffer.
+	 */
+	static ByteBuffer readFully(InputStream in) throws IOException {
+		byte[] bytes = new byte[1 << 16];
+		int n = 0, read;
+
+		while ((read = in.read(bytes, n, bytes.length - n)) >= 0) {
+			n += read;
+			if (n == bytes.length) {
+				if (bytes.length == Integer.MAX_VALUE - 8)
+					throw new IOException("Files over 2 GB are not supported");
+				bytes = Arrays.copyOf(bytes, (int) Math.min(
+						2L * bytes.length, Integer.MAX_VALUE - 8));
+			}
+		}
+
+		return ByteBuffer.wrap(bytes, 0, n);
+	}
+
+	/**
+	 * Parses the whole content of the buffer, from offset 0 to its limit.
+	 */
+	public void read(ByteBuffer buf) {
+		CifTokenizer tokens = new CifTokenizer(buf);
+		int type;
+
+		while ((type = tokens.next()) != CifTokenizer.END) {
+			switch (type) {
+			case CifTokenizer.TAG:
+				String tag = tokens.string();
+				if (tokens.next() != CifTokenizer.VALUE) {
+					tokens.pushBack();
+					break;
+				}
+				item(tag, tokens.isNull() ? null : tokens.string());
+				break;
+
+			case CifTokenizer.LOOP:
+				flushItems();
+				loop(tokens);
+				break;
+
+			default:
+				flushItems();
+				break;
+			}
+		}
+
+		flushItems();
+		if (model != 0)
+			handler.onEndModel();
+
+		handler.onEnd();
+	}
+
+	/**
+	 * Collects a single item outside of a loop. Items of one category are
+	 * treated like a loop with a single row once the category ends.
+	 */
+	private void item(String tag, String value) {
+		int dot = tag.indexOf('.');
+		String category = (dot < 0 ? tag : tag.substring(0, dot)).toLowerCase();
+		String field = dot < 0 ? "" : tag.substring(dot + 1).toLowerCase();
+
+		if (!category.equals(itemCategory))
+			flushItems();
+
+		itemCategory = category;
+		items.put(field, value);
+	}
+
+	private void flushItems() {
+		if (itemCategory == null)
+			return;
+
+		List<String> fields = new ArrayList<String>(items.keySet());
+		String[] row = new String[fields.size()];
+		for (int i = 0; i < row.length; i++)
+			row[i] = items.get(fields.get(i));
+
+		List<String[]> rows = new ArrayList<String[]>();
+		rows.add(row);
+		table(itemCategory, fields, rows);
+
+		itemCategory = null;
+		items.clear();
+	}
+
+	/**
+	 * Reads a loop_ header and dispatches its rows.
+	 */
+	private void loop(CifTokenizer tokens) {
+		String category = null;
+		List<String> fields = new ArrayList<String>();
+
+		while (tokens.next() == CifTokenizer.TAG) {
+			String tag = tokens.string();
+			int dot = tag.indexOf('.');
+			if (category == null)
+				category = (dot < 0 ? tag : tag.substring(0, dot)).toLowerCase();
+			fields.add(dot < 0 ? "" : tag.substring(dot + 1).toLowerCase());
+		}
+		tokens.pushBack();
+
+		if (category == null)
+			return;
+
+		switch (category) {
+		case "_atom_site":
+			atomSite(tokens, fields);
+			break;
+
+		case "_struct_conf":
+		case "_struct_sheet_range":
+		case "_struct_conn":
+		case "_pdbx_poly_seq_scheme":
+			table(category, fields, readRows(tokens, fields.size()));
+			break;
+
+		default:
+			while (tokens.next() == CifTokenizer.VALUE)
+				;
+			tokens.pushBack();
+			break;
+		}
+	}
+
+	/**
+	 * Reads the rows of a small loop as Strings.
+	 */
+	private static List<String[]> readRows(CifTokenizer tokens, int columns) {
+		List<String[]> rows = new ArrayList<String[]>();
+		String[] row = new String[columns];
+		int column = 0;
+
+		while (tokens.next() == CifTokenizer.VALUE) {
+			row[column++] = tokens.isNull() ? null : tokens.string();
+			if (column == columns) {
+				rows.add(row);
+				row = new String[columns];
+				column = 0;
+			}
+		}
+		tokens.pushBack();
+
+		return rows;
+	}
+
+	/**
+	 * Passes on the rows of the categories other than _atom_site that are of
+	 * interest.
+	 */
+	private void table(String category, List<String> fields, List<String[]> rows) {
+		switch (category) {
+		case "_struct":
+			for (String[] row : rows) {
+				String title = value(fields, row, "title", null);
+				if (title != null)
+					handler.onTitle(title);
+			}
+			break;
+
+		case "_struct_keywords":
+			for (String[] row : rows) {
+				String keywords = value(fields, row, "pdbx_keywords", null);
+				if (keywords != null)
+					handler.onHeader(keywords);
+			}
+			break;
+
+		case "_struct_conf":
+			int serial = 0;
+			for (String[] row : rows) {
+				String type = value(fields, row, "conf_type_id", "");
+				if (!type.toUpperCase().startsWith("HELX"))
+					continue;
+
+				handler.onHelix(++serial, value(fields, row, "id", ""),
+						residue(fields, row, "beg", "comp_id"),
+						residue(fields, row, "beg", "asym_id"),
+						number(residue(fields, row, "beg", "seq_id")),
+						residue(fields, row, "end", "comp_id"),
+						residue(fields, row, "end", "asym_id"),
+						number(residue(fields, row, "end", "seq_id")));
+			}
+			break;
+
+		case "_struct_sheet_range":
+			for (String[] row : rows) {
+				handler.onSheet(number(value(fields, row, "id", "0")),
+						value(fields, row, "sheet_id", ""),
+						residue(fields, row, "beg", "comp_id"),
+						residue(fields, row, "beg", "asym_id"),
+						number(residue(fields, row, "beg", "seq_id")),
+						residue(fields, row, "end", "comp_id"),
+						residue(fields, row, "end", "asym_id"),
+						number(residue(fields, row, "end", "seq_id")));
+			}
+			break;
+
+		case "_pdbx_poly_seq_scheme":
+			// the length of each chain's sequence comes first in a SEQRES
+			Map<String, Integer> lengths = new HashMap<String, Integer>();
+			for (String[] row : rows)
+				lengths.merge(value(fields, row, "pdb_strand_id", ""), 1,
+						Integer::sum);
+
+			for (String[] row : rows) {
+				String chainID = value(fields, row, "pdb_strand_id", "");
+				handler.onSeqres(chainID, lengths.get(chainID),
+						value(fields, row, "mon_id", "UNK"));
+			}
+			break;
+
+		case "_struct_conn":
+			for (String[] row : rows) {
+				String type = value(fields, row, "conn_type_id", "");
+				if (!type.equalsIgnoreCase("covale")
+						&& !type.toLowerCase().startsWith("metalc"))
+					continue;
+
+				handler.onLink(value(fields, row, "ptnr1_label_atom_id", ""),
+						residue(fields, row, "ptnr1", "comp_id"),
+						residue(fields, row, "ptnr1", "asym_id"),
+						number(residue(fields, row, "ptnr1", "seq_id")),
+						value(fields, row, "ptnr2_label_atom_id", ""),
+						residue(fields, row, "ptnr2", "comp_id"),
+						residue(fields, row, "ptnr2", "asym_id"),
+						number(residue(fields, row, "ptnr2", "seq_id")));
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Returns the author version of a residue field (e.g. beg_auth_asym_id)
+	 * and falls back to the label version if that is missing.
+	 */
+	private static String residue(List<String> fields, String[] row,
+			String prefix, String field) {
+		String value = value(fields, row, prefix + "_auth_" + field, null);
+		if (value == null)
+			value = value(fields, row, prefix + "_label_" + field, "");
+		return value;
+	}
+
+	private static String value(List<String> fields, String[] row,
+			String field, String missing) {
+		int i = fields.indexOf(field);
+		if (i < 0 || i >= row.length || row[i] == null)
+			return missing;
+		return row[i];
+	}
+
+	private static int number(String value) {
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Reads the _atom_site loop block by block.
+	 */
+	private void atomSite(CifTokenizer tokens, List<String> fieldNames) {
+		int columns = fieldNames.size();
+
+		// slot of each column of the loop, -1 for columns that are not read
+		int[] slots = new int[columns];
+		boolean[] present = new boolean[FIELDS];
+		for (int c = 0; c < columns; c++) {
+			slots[c] = field(fieldNames.get(c));
+			if (slots[c] >= 0)
+				present[slots[c]] = true;
+		}
+
+		// prefer the author assigned names and numbers, as in PDB files
+		int nameField = present[AUTH_ATOM_ID] ? AUTH_ATOM_ID : LABEL_ATOM_ID;
+		int resNameField = present[AUTH_COMP_ID] ? AUTH_COMP_ID : LABEL_COMP_ID;
+		int chainField = present[AUTH_ASYM_ID] ? AUTH_ASYM_ID : LABEL_ASYM_ID;
+		int seqField = present[AUTH_SEQ_ID] ? AUTH_SEQ_ID : LABEL_SEQ_ID;
+
+		allocate();
+		ByteBuffer buf = tokens.getBuffer();
+		int row = 0, column = 0;
+
+		while (tokens.next() == CifTokenizer.VALUE) {
+			int slot = slots[column];
+			if (slot >= 0) {
+				int cell = slot * BLOCK + row;
+				if (tokens.isNull()) {
+					starts[cell] = -1;
+				} else {
+					starts[cell] = tokens.start;
+					ends[cell] = tokens.end;
+				}
+			}
+
+			if (++column == columns) {
+				column = 0;
+				if (++row == BLOCK) {
+					decodeBlock(buf, row, nameField, resNameField, chainField,
+							seqField);
+					row = 0;
+				}
+			}
+		}
+		tokens.pushBack();
+
+		decodeBlock(buf, row, nameField, resNameField, chainField, seqField);
+	}
+
+	private static int field(String name) {
+		switch (name) {
+		case "group_pdb":
+			return GROUP;
+		case "id":
+			return ID;
+		case "type_symbol":
+			return TYPE_SYMBOL;
+		case "label_atom_id":
+			return LABEL_ATOM_ID;
+		case "auth_atom_id":
+			return AUTH_ATOM_ID;
+		case "label_alt_id":
+			return ALT_ID;
+		case "label_comp_id":
+			return LABEL_COMP_ID;
+		case "auth_comp_id":
+			return AUTH_COMP_ID;
+		case "label_asym_id":
+			return LABEL_ASYM_ID;
+		case "auth_asym_id":
+			return AUTH_ASYM_ID;
+		case "label_seq_id":
+			return LABEL_SEQ_ID;
+		case "auth_seq_id":
+			return AUTH_SEQ_ID;
+		case "pdbx_pdb_ins_code":
+			return INS_CODE;
+		case "cartn_x":
+			return X;
+		case "cartn_y":
+			return Y;
+		case "cartn_z":
+			return Z;
+		case "occupancy":
+			return OCCUPANCY;
+		case "b_iso_or_equiv":
+			return B_FACTOR;
+		case "pdbx_pdb_model_num":
+			return MODEL;
+		default:
+			return -1;
+		}
+	}
+
+	private void allocate() {
+		if (starts != null)
+			return;
+
+		starts = new int[FIELDS * BLOCK];
+		ends = new int[FIELDS * BLOCK];
+		serials = new int[BLOCK];
+		resSeqs = new int[BLOCK];
+		models = new int[BLOCK];
+		xs = new double[BLOCK];
+		ys = new double[BLOCK];
+		zs = new double[BLOCK];
+		occupancies = new double[BLOCK];
+		tempFactors = new double[BLOCK];
+		atomNames = new String[BLOCK];
+		resNames = new String[BLOCK];
+		chainIDs = new String[BLOCK];
+		elements = new String[BLOCK];
+		altLocs = new char[BLOCK];
+		iCodes = new char[BLOCK];
+		hetero = new boolean[BLOCK];
+
+		// columns missing from the loop stay empty
+		Arrays.fill(starts, -1);
+	}
+
+	/**
+	 * Decodes the recorded cells of a block column by column and passes the
+	 * rows on to the handler.
+	 */
+	private void decodeBlock(ByteBuffer buf, int rows, int nameField,
+			int resNameField, int chainField, int seqField) {
+		decodeInts(buf, ID, rows, serials, 0);
+		decodeInts(buf, seqField, rows, resSeqs, 0);
+		decodeInts(buf, MODEL, rows, models, 1);
+		decodeDoubles(buf, X, rows, xs, 0);
+		decodeDoubles(buf, Y, rows, ys, 0);
+		decodeDoubles(buf, Z, rows, zs, 0);
+		decodeDoubles(buf, OCCUPANCY, rows, occupancies, 1);
+		decodeDoubles(buf, B_FACTOR, rows, tempFactors, 0);
+		decodeNames(buf, nameField, rows, atomNames);
+		decodeNames(buf, resNameField, rows, resNames);
+		decodeNames(buf, chainField, rows, chainIDs);
+		decodeNames(buf, TYPE_SYMBOL, rows, elements);
+		decodeChars(buf, ALT_ID, rows, altLocs);
+		decodeChars(buf, INS_CODE, rows, iCodes);
+
+		int base = GROUP * BLOCK;
+		for (int r = 0; r < rows; r++)
+			hetero[r] = starts[base + r] >= 0 && buf.get(starts[base + r]) == 'H';
+
+		for (int r = 0; r < rows; r++) {
+			if (models[r] != model) {
+				if (model != 0)
+					handler.onEndModel();
+				model = models[r];
+				handler.onModel(model);
+			}
+
+			handler.onAtom(hetero[r], serials[r], atomNames[r], altLocs[r],
+					resNames[r], chainIDs[r], resSeqs[r], iCodes[r], xs[r],
+					ys[r], zs[r], occupancies[r], tempFactors[r], elements[r]);
+		}
+
+		// cells of rows that are not overwritten by the next block must not
+		// be mistaken for values
+		Arrays.fill(starts, -1);
+	}
+
+	private void decodeInts(ByteBuffer buf, int field, int rows, int[] to,
+			int missing) {
+		int base = field * BLOCK;
+		for (int r = 0; r < rows; r++) {
+			int start = starts[base + r];
+			to[r] = start < 0 ? missing : PdbColumns.parseInt(buf, 0,
+					Integer.MAX_VALUE, start, ends[base + r]);
+		}
+	}
+
+	private void decodeDoubles(ByteBuffer buf, int field, int rows,
+			double[] to, double missing) {
+		int base = field * BLOCK;
+		for (int r = 0; r < rows; r++) {
+			int start = starts[base + r];
+			to[r] = start < 0 ? missing : PdbColumns.parseDouble(buf, 0,
+					Integer.MAX_VALUE, start, ends[base + r]);
+		}
+	}
+
+	private void decodeNames(ByteBuffer buf, int field, int rows, String[] to) {
+		int base = field * BLOCK;
+		for (int r = 0; r < rows; r++) {
+			int start = starts[base + r];
+			to[r] = start < 0 ? "" : names.get(buf, 0, Integer.MAX_VALUE,
+					start, ends[base + r]);
+		}
+	}
+
+	private void decodeChars(ByteBuffer buf, int field, int rows, char[] to) {
+		int base = field * BLOCK;
+		for (int r = 0; r < rows; r++) {
+			int start = starts[base + r];
+			to[r] = start < 0 || ends[base + r] == start ? ' ' : (char) buf
+					.get(start);
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package application.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits the bytes of a CIF file into tokens.
+ *
+ * A token is only described by its type and the offsets of its first and last
+ * byte in the buffer, no String is created unless asked for. Comments are
+ * skipped, quoted values and semicolon text fields are returned without their
+ * delimiters.
+ *
+ * @author Slav Danchev
+ *
+ */
+final class CifTokenizer {
+
+	/*
+	 * token types
+	 */
+	static final int END = 0;
+	static final int DATA = 1;
+	static final int LOOP = 2;
+	static final int TAG = 3;
+	static final int VALUE = 4;
+	static final int SAVE = 5;
+
+	private final ByteBuffer buf;
+	private final int limit;
+	private int pos;
+
+	private int type;
+	private boolean pushedBack;
+
+	/** Offsets of the current token, end exclusive. */
+	int start, end;
+
+	/** True if the current value was quoted or a text field. */
+	boolean quoted;
+
+	CifTokenizer(ByteBuffer buf) {
+		this.buf = buf;
+		limit = buf.limit();
+	}
+
+	/**
+	 * Moves on to the next token and returns its type.
+	 */
+	int next() {
+		if (pushedBack) {
+			pushedBack = false;
+			return type;
+		}
+
+		quoted = false;
+		for (;;) {
+			if (pos >= limit)
+				return type = END;
+
+			byte c = buf.get(pos);
+			if (c == '#') {
+				while (pos < limit && buf.get(pos) != '\n')
+					pos++;
+			} else if (PdbColumns.isSpace(c)) {
+				pos++;
+			} else {
+				break;
+			}
+		}
+
+		byte c = buf.get(pos);
+
+		if (c == ';' && (pos == 0 || buf.get(pos - 1) == '\n'))
+			return textField();
+
+		if (c == '\'' || c == '"')
+			return quotedValue(c);
+
+		start = pos;
+		while (pos < limit && !PdbColumns.isSpace(buf.get(pos)))
+			pos++;
+		end = pos;
+
+		if (c == '_')
+			return type = TAG;
+		if (startsWith("loop_") && end - start == 5)
+			return type = LOOP;
+		if (startsWith("data_"))
+			return type = DATA;
+		if (startsWith("save_"))
+			return type = SAVE;
+
+		return type = VALUE;
+	}
+
+	/**
+	 * Makes the next call to next() return the current token again.
+	 */
+	void pushBack() {
+		pushedBack = true;
+	}
+
+	/**
+	 * True if the current value is one of the unquoted placeholders '.'
+	 * (inapplicable) or '?' (unknown).
+	 */
+	boolean isNull() {
+		if (quoted || end - start != 1)
+			return false;
+
+		byte c = buf.get(start);
+		return c == '.' || c == '?';
+	}
+
+	/**
+	 * The current token as a String.
+	 */
+	String string() {
+		byte[] chars = new byte[end - start];
+		for (int i = start; i < end; i++)
+			chars[i - start] = buf.get(i);
+		return new String(chars, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * A quoted value ends at the first matching quote that is followed by
+	 * whitespace, so quotes may appear inside of it (e.g. "O5'").
+	 */
+	private int quotedValue(byte quote) {
+		start = ++pos;
+		while (pos < limit) {
+			if (buf.get(pos) == quote
+					&& (pos + 1 == limit || PdbColumns.isSpace(buf.get(pos + 1))))
+				break;
+			pos++;
+		}
+
+		end = pos;
+		pos = Math.min(pos + 1, limit);
+		quoted = true;
+		return type = VALUE;
+	}
+
+	/**
+	 * A text field runs from a semicolon at the start of a line up to the next
+	 * line that starts with a semicolon.
+	 */
+	private int textField() {
+		start = ++pos;
+		while (pos < limit) {
+			if (buf.get(pos) == '\n' && pos + 1 < limit
+					&& buf.get(pos + 1) == ';')
+				break;
+			pos++;
+		}
+
+		end = pos;
+		if (end > start && buf.get(end - 1) == '\r')
+			end--;
+
+		pos = Math.min(pos + 2, limit);
+		quoted = true;
+		return type = VALUE;
+	}
+
+	private boolean startsWith(String word) {
+		if (end - start < word.length())
+			return false;
+
+		for (int i = 0; i < word.length(); i++) {
+			int c = buf.get(start + i);
+			if (Character.toLowerCase(c) != word.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	ByteBuffer getBuffer() {
+		return buf;
+	}
+}
@@ -0,0 +1,506 @@
+package application.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes the records it receives as an mmCIF file that a CifReader reads back.
+ *
+ * Every kind of record goes into the loop of its category (_atom_site,
+ * _struct_conf, _struct_sheet_range), which is started when the first record
+ * of the kind arrives. The records of a kind are expected to arrive together,
+ * as they do when a PDB file is read or a model is exported. The label
+ * columns that need the entities of the structure (label_asym_id,
+ * label_seq_id) are written as not applicable ('.'), readers use the author
+ * values then.
+ *
+ * SEQRES records become _entity_poly_seq and _pdbx_poly_seq_scheme, with an
+ * entity of its own for each chain, whose chain ID is also its asym ID. LINK
+ * and CONECT records become the rows of one _struct_conn loop, written at the
+ * end, once the atoms named by the serials of the CONECT records are known.
+ * A bond listed by both kinds of record is written once. REMARK records have
+ * no place in the categories that are written and are dropped.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class CifWriter extends StructureWriter {
+
+	private static final String[] ATOM_SITE = { "group_PDB", "id",
+			"type_symbol", "label_atom_id", "label_alt_id", "label_comp_id",
+			"label_asym_id", "label_seq_id", "pdbx_PDB_ins_code", "Cartn_x",
+			"Cartn_y", "Cartn_z", "occupancy", "B_iso_or_equiv", "auth_seq_id",
+			"auth_comp_id", "auth_asym_id", "auth_atom_id",
+			"pdbx_PDB_model_num" };
+
+	private static final String[] STRUCT_CONF = { "conf_type_id", "id",
+			"beg_auth_comp_id", "beg_auth_asym_id", "beg_auth_seq_id",
+			"end_auth_comp_id", "end_auth_asym_id", "end_auth_seq_id" };
+
+	private static final String[] STRUCT_SHEET_RANGE = { "sheet_id", "id",
+			"beg_auth_comp_id", "beg_auth_asym_id", "beg_auth_seq_id",
+			"end_auth_comp_id", "end_auth_asym_id", "end_auth_seq_id" };
+
+	private static final String[] STRUCT_CONN = { "id", "conn_type_id",
+			"ptnr1_label_atom_id", "ptnr1_auth_comp_id", "ptnr1_auth_asym_id",
+			"ptnr1_auth_seq_id", "pdbx_ptnr1_PDB_ins_code",
+			"ptnr2_label_atom_id", "ptnr2_auth_comp_id", "ptnr2_auth_asym_id",
+			"ptnr2_auth_seq_id", "pdbx_ptnr2_PDB_ins_code" };
+
+	private static final String[] ENTITY_POLY_SEQ = { "entity_id", "num",
+			"mon_id", "hetero" };
+
+	private static final String[] POLY_SEQ_SCHEME = { "asym_id", "entity_id",
+			"seq_id", "mon_id", "pdb_strand_id" };
+
+	/** Category of the loop that is open, or null. */
+	private String loop;
+
+	/** The lines of the title, written once the next record starts. */
+	private final StringBuilder title = new StringBuilder();
+
+	private int model = 1;
+
+	/* the SEQRES residues, written once the next record starts */
+	private final List<String> seqChains = new ArrayList<String>();
+	private final List<String> seqNames = new ArrayList<String>();
+
+	/*
+	 * the atoms of the first model, which CONECT records refer to by serial,
+	 * one entry per atom
+	 */
+	private int[] serials = new int[256], resSeqs = new int[256];
+	private String[] names = new String[256], resNames = new String[256],
+			chainIDs = new String[256];
+	private char[] iCodes = new char[256];
+	private int atomCount;
+	private boolean firstModel = true;
+
+	/* the partners of the LINK records, five values each */
+	private final List<String[]> links = new ArrayList<String[]>();
+
+	/* the bonds of the CONECT records, see pair() */
+	private long[] conects = new long[64];
+	private int conectCount;
+
+	/**
+	 * Opens the file and starts a data block named after it.
+	 */
+	public CifWriter(File file) throws IOException {
+		super(file);
+
+		String name = file.getName();
+		int dot = name.indexOf('.');
+		if (dot > 0)
+			name = name.substring(0, dot);
+
+		reserve();
+		put("data_");
+		put(name.isEmpty() || name.contains(" ") ? "structure" : name);
+		newLine();
+	}
+
+	/**
+	 * Starts a row of the given category, and the loop of the category with
+	 * its header if another one is open.
+	 *
+	 * @return false if writing has failed
+	 */
+	private boolean begin(String category, String[] fields) {
+		endTitle();
+		endSequences();
+		if (!reserve())
+			return false;
+
+		if (!category.equals(loop)) {
+			put("#\nloop_\n");
+			for (String field : fields) {
+				put(category);
+				buf.put((byte) '.');
+				put(field);
+				newLine();
+			}
+			loop = category;
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the title that was collected, as a single item.
+	 */
+	private void endTitle() {
+		if (title.length() == 0 || !reserve())
+			return;
+
+		loop = null;
+		put("#\n_struct.title ");
+		putValue(title.toString().trim());
+		newLine();
+		title.setLength(0);
+	}
+
+	/**
+	 * Writes the sequences that were collected, as one entity per chain.
+	 */
+	private void endSequences() {
+		if (seqChains.isEmpty())
+			return;
+
+		// taken out first, begin() ends the sequences itself
+		String[] chains = seqChains.toArray(new String[0]);
+		String[] residues = seqNames.toArray(new String[0]);
+		seqChains.clear();
+		seqNames.clear();
+
+		int[] entities = new int[chains.length];
+		int[] nums = new int[chains.length];
+		for (int i = 0, entity = 0; i < chains.length; i++) {
+			boolean first = i == 0 || !chains[i].equals(chains[i - 1]);
+			entities[i] = first ? ++entity : entities[i - 1];
+			nums[i] = first ? 1 : nums[i - 1] + 1;
+		}
+
+		for (int i = 0; i < chains.length; i++) {
+			if (!begin("_entity_poly_seq", ENTITY_POLY_SEQ))
+				return;
+			putInt(entities[i]);
+			next(nums[i]);
+			next(residues[i]);
+			next("n");
+			newLine();
+		}
+		for (int i = 0; i < chains.length; i++) {
+			if (!begin("_pdbx_poly_seq_scheme", POLY_SEQ_SCHEME))
+				return;
+			putValue(chains[i]);
+			next(entities[i]);
+			next(nums[i]);
+			next(residues[i]);
+			next(chains[i]);
+			newLine();
+		}
+	}
+
+	/**
+	 * Writes the bonds of the LINK and CONECT records. A CONECT bond is
+	 * dropped if its serials name no atom of the first model, or if a LINK
+	 * record stated it already.
+	 */
+	private void endBonds() {
+		if (links.isEmpty() && conectCount == 0)
+			return;
+
+		Set<String> linked = new HashSet<String>();
+		int id = 0;
+		for (String[] link : links) {
+			linked.add(key(link, 0, 5));
+			linked.add(key(link, 5, 0));
+			conn(++id, link);
+		}
+		links.clear();
+
+		// serials with the index of their atom in the low half, sorted
+		long[] atoms = new long[atomCount];
+		for (int i = 0; i < atomCount; i++)
+			atoms[i] = (long) serials[i] << 32 | i;
+		Arrays.sort(atoms);
+
+		Arrays.sort(conects, 0, conectCount);
+		for (int i = 0; i < conectCount; i++) {
+			if (i > 0 && conects[i] == conects[i - 1])
+				continue;
+
+			int a = find(atoms, (int) (conects[i] >> 32));
+			int b = find(atoms, (int) conects[i]);
+			if (a < 0 || b < 0)
+				continue;
+
+			String[] bond = { names[a], resNames[a], chainIDs[a],
+					Integer.toString(resSeqs[a]), String.valueOf(iCodes[a]),
+					names[b], resNames[b], chainIDs[b],
+					Integer.toString(resSeqs[b]), String.valueOf(iCodes[b]) };
+			if (!linked.contains(key(bond, 0, 5)))
+				conn(++id, bond);
+		}
+		conectCount = 0;
+	}
+
+	/**
+	 * Writes a row of _struct_conn, the name, residue name, chain ID,
+	 * residue number and insertion code of each partner.
+	 */
+	private void conn(int id, String[] bond) {
+		if (!begin("_struct_conn", STRUCT_CONN))
+			return;
+		put("covale");
+		putInt(id);
+		next("covale");
+		for (int i = 0; i < 10; i++) {
+			if (i == 4 || i == 9)
+				putChar(bond[i].isEmpty() ? ' ' : bond[i].charAt(0));
+			else
+				next(bond[i]);
+		}
+		newLine();
+	}
+
+	/**
+	 * The partners of a bond as one String, the first one given by from and
+	 * the second one by to, without the insertion codes, which LINK records
+	 * do not have.
+	 */
+	private static String key(String[] bond, int from, int to) {
+		return bond[from] + ' ' + bond[from + 2] + ' ' + bond[from + 3] + '|'
+				+ bond[to] + ' ' + bond[to + 2] + ' ' + bond[to + 3];
+	}
+
+	/**
+	 * The index of the atom with the given serial, or -1.
+	 */
+	private static int find(long[] atoms, int serial) {
+		int low = 0, high = atoms.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int s = (int) (atoms[middle] >> 32);
+			if (s < serial)
+				low = middle + 1;
+			else if (s > serial)
+				high = middle - 1;
+			else
+				return (int) atoms[middle];
+		}
+		return -1;
+	}
+
+	/**
+	 * Puts a value, quoted if it needs to be. Empty values are written as
+	 * unknown.
+	 */
+	private void putValue(String value) {
+		if (value.isEmpty()) {
+			buf.put((byte) '?');
+			return;
+		}
+
+		boolean quote = false;
+		char first = value.charAt(0);
+		if (first == '_' || first == '#' || first == '$' || first == '\''
+				|| first == '"' || first == '[' || first == ']'
+				|| first == ';')
+			quote = true;
+		for (int i = 0; i < value.length() && !quote; i++)
+			quote = Character.isWhitespace(value.charAt(i));
+		if (!quote) {
+			String lower = value.toLowerCase();
+			quote = lower.startsWith("data_") || lower.startsWith("save_")
+					|| lower.equals("loop_") || lower.equals("stop_")
+					|| lower.equals("global_") || lower.equals(".")
+					|| lower.equals("?");
+		}
+
+		if (!quote) {
+			put(value);
+			return;
+		}
+
+		char mark = value.indexOf('\'') < 0 ? '\'' : '"';
+		buf.put((byte) mark);
+		put(value);
+		buf.put((byte) mark);
+	}
+
+	/**
+	 * Puts a space and a value that may be missing, like an alternate
+	 * location.
+	 */
+	private void putChar(char c) {
+		buf.put((byte) ' ');
+		buf.put(c > ' ' ? (byte) c : (byte) '.');
+	}
+
+	private void next(String value) {
+		buf.put((byte) ' ');
+		putValue(value);
+	}
+
+	private void next(long value) {
+		buf.put((byte) ' ');
+		putInt(value);
+	}
+
+	@Override
+	public void onHeader(String text) {
+		endTitle();
+		endSequences();
+		if (!reserve())
+			return;
+
+		loop = null;
+		put("#\n_struct_keywords.pdbx_keywords ");
+		putValue(text.trim());
+		newLine();
+	}
+
+	@Override
+	public void onTitle(String text) {
+		title.append(text.trim()).append(' ');
+	}
+
+	@Override
+	public void onSeqres(String chainID, int numRes, String resName) {
+		seqChains.add(chainID);
+		seqNames.add(resName);
+	}
+
+	@Override
+	public void onHelix(int serial, String helixID, String initResName,
+			String initChainID, int initSeqNum, String endResName,
+			String endChainID, int endSeqNum) {
+		if (!begin("_struct_conf", STRUCT_CONF))
+			return;
+		put("HELX_P");
+		next(helixID.isEmpty() ? "HELX_P" + serial : helixID);
+		next(initResName);
+		next(initChainID);
+		next(initSeqNum);
+		next(endResName);
+		next(endChainID);
+		next(endSeqNum);
+		newLine();
+	}
+
+	@Override
+	public void onSheet(int strand, String sheetID, String initResName,
+			String initChainID, int initSeqNum, String endResName,
+			String endChainID, int endSeqNum) {
+		if (!begin("_struct_sheet_range", STRUCT_SHEET_RANGE))
+			return;
+		putValue(sheetID);
+		next(strand);
+		next(initResName);
+		next(initChainID);
+		next(initSeqNum);
+		next(endResName);
+		next(endChainID);
+		next(endSeqNum);
+		newLine();
+	}
+
+	@Override
+	public void onLink(String name1, String resName1, String chainID1,
+			int resSeq1, String name2, String resName2, String chainID2,
+			int resSeq2) {
+		links.add(new String[] { name1, resName1, chainID1,
+				Integer.toString(resSeq1), "", name2, resName2, chainID2,
+				Integer.toString(resSeq2), "" });
+	}
+
+	@Override
+	public void onConect(int serial, int bondedSerial) {
+		if (conectCount == conects.length)
+			conects = Arrays.copyOf(conects, 2 * conectCount);
+		// both directions of a bond are one pair
+		conects[conectCount++] = (long) Math.min(serial, bondedSerial) << 32
+				| Math.max(serial, bondedSerial) & 0xFFFFFFFFL;
+	}
+
+	@Override
+	public void onModel(int serial) {
+		model = serial;
+	}
+
+	@Override
+	public void onEndModel() {
+		firstModel = false;
+	}
+
+	@Override
+	public void onAtom(boolean hetero, int serial, String name, char altLoc,
+			String resName, String chainID, int resSeq, char iCode, double x,
+			double y, double z, double occupancy, double tempFactor,
+			String element) {
+		if (firstModel)
+			addAtom(serial, name, resName, chainID, resSeq, iCode);
+
+		if (!begin("_atom_site", ATOM_SITE))
+			return;
+		put(hetero ? "HETATM" : "ATOM");
+		next(serial);
+		next(element);
+		next(name);
+		putChar(altLoc);
+		next(resName);
+		putChar(' ');
+		putChar(' ');
+		putChar(iCode);
+		buf.put((byte) ' ');
+		putFixed(x, 0, 3);
+		buf.put((byte) ' ');
+		putFixed(y, 0, 3);
+		buf.put((byte) ' ');
+		putFixed(z, 0, 3);
+		buf.put((byte) ' ');
+		putFixed(occupancy, 0, 2);
+		buf.put((byte) ' ');
+		putFixed(tempFactor, 0, 2);
+		next(resSeq);
+		next(resName);
+		next(chainID);
+		next(name);
+		next(model);
+		newLine();
+	}
+
+	/**
+	 * Keeps an atom of the first model for the CONECT records.
+	 */
+	private void addAtom(int serial, String name, String resName,
+			String chainID, int resSeq, char iCode) {
+		if (atomCount == serials.length) {
+			int n = 2 * atomCount;
+			serials = Arrays.copyOf(serials, n);
+			resSeqs = Arrays.copyOf(resSeqs, n);
+			names = Arrays.copyOf(names, n);
+			resNames = Arrays.copyOf(resNames, n);
+			chainIDs = Arrays.copyOf(chainIDs, n);
+			iCodes = Arrays.copyOf(iCodes, n);
+		}
+
+		int i = atomCount++;
+		serials[i] = serial;
+		names[i] = name;
+		resNames[i] = resName;
+		chainIDs[i] = chainID;
+		resSeqs[i] = resSeq;
+		iCodes[i] = iCode;
+	}
+
+	@Override
+	public void onEnd() {
+		endTitle();
+		endSequences();
+		endBonds();
+		if (!reserve())
+			return;
+
+		loop = null;
+		put("#\n");
+	}
+
+	/**
+	 * Writes the title, sequences and bonds if nothing came after them,
+	 * writes out the buffered records and closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		endTitle();
+		endSequences();
+		endBonds();
+		super.close();
+	}
+}
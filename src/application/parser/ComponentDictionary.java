@@ -0,0 +1,192 @@
+package application.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import application.structure.SymbolTable;
+import application.structure.primary.BondTemplate;
+
+/**
+ * The bonds of the residues and ligands described by the bundled copy of the
+ * Chemical Component Dictionary (components.cif next to this class), one
+ * BondTemplate per component, shared by every residue of that type.
+ *
+ * The dictionary is read the first time a template is asked for, and the
+ * templates are kept by the SymbolTable code of their component ID, so
+ * finding the template of a residue is an array lookup.
+ *
+ * The dictionary describes free components, so two things are changed for
+ * those that link as amino acids: the hydrogens H1 and H3 of a charged N
+ * terminus are bonded to N, like H2, and the bonds of N, CA and C with each
+ * other are put first, so that the residues of a Chain, which makes them
+ * along the whole main chain, can leave them out. Hetero residues, e.g. a
+ * selenomethionine in HETATM records, keep them.
+ *
+ * Reference: https://www.wwpdb.org/data/ccd
+ *
+ * @author Slav Danchev
+ *
+ */
+public final class ComponentDictionary {
+
+	private static final String RESOURCE = "components.cif";
+
+	private ComponentDictionary() {
+	}
+
+	/**
+	 * Reads the dictionary when the first template is asked for.
+	 */
+	private static class Templates {
+		static final BondTemplate[] BY_CODE = load();
+	}
+
+	/**
+	 * Gets the bonds of a type of residue.
+	 *
+	 * @param residueCode
+	 *            the SymbolTable code of the residue name
+	 * @return the template, or null if the dictionary has no such component
+	 */
+	public static BondTemplate getTemplate(int residueCode) {
+		BondTemplate[] templates = Templates.BY_CODE;
+		return residueCode < templates.length ? templates[residueCode] : null;
+	}
+
+	private static BondTemplate[] load() {
+		try (InputStream in = ComponentDictionary.class
+				.getResourceAsStream(RESOURCE)) {
+			if (in == null)
+				throw new IllegalStateException(RESOURCE + " not found");
+
+			return read(CifReader.readFully(in));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Reads the _chem_comp.id, _chem_comp.type and _chem_comp_bond loop of
+	 * each data block.
+	 */
+	static BondTemplate[] read(ByteBuffer buf) {
+		CifTokenizer tokens = new CifTokenizer(buf);
+		BondTemplate[] templates = new BondTemplate[0];
+		String id = null, type = null;
+		List<String> pairs = new ArrayList<String>();
+		int token;
+
+		do {
+			token = tokens.next();
+			switch (token) {
+			case CifTokenizer.DATA:
+			case CifTokenizer.END:
+				if (id != null) {
+					int code = SymbolTable.code(id);
+					if (code >= templates.length)
+						templates = Arrays.copyOf(templates, code + 1);
+					templates[code] = template(type, pairs);
+				}
+				id = null;
+				type = null;
+				pairs.clear();
+				break;
+
+			case CifTokenizer.TAG:
+				String tag = tokens.string().toLowerCase();
+				if (tokens.next() != CifTokenizer.VALUE) {
+					tokens.pushBack();
+				} else if (tag.equals("_chem_comp.id")) {
+					id = tokens.string();
+				} else if (tag.equals("_chem_comp.type")) {
+					type = tokens.string().toUpperCase();
+				}
+				break;
+
+			case CifTokenizer.LOOP:
+				bonds(tokens, pairs);
+				break;
+			}
+		} while (token != CifTokenizer.END);
+
+		return templates;
+	}
+
+	/**
+	 * Reads the atom names of a _chem_comp_bond loop into pairs, and skips
+	 * the values of any other loop.
+	 */
+	private static void bonds(CifTokenizer tokens, List<String> pairs) {
+		int columns = 0, atom1 = -1, atom2 = -1;
+		while (tokens.next() == CifTokenizer.TAG) {
+			String tag = tokens.string().toLowerCase();
+			if (tag.equals("_chem_comp_bond.atom_id_1"))
+				atom1 = columns;
+			else if (tag.equals("_chem_comp_bond.atom_id_2"))
+				atom2 = columns;
+			columns++;
+		}
+		tokens.pushBack();
+
+		String[] row = new String[columns];
+		int column = 0;
+		while (tokens.next() == CifTokenizer.VALUE) {
+			row[column++] = tokens.string();
+			if (column == columns) {
+				if (atom1 >= 0 && atom2 >= 0) {
+					pairs.add(row[atom1]);
+					pairs.add(row[atom2]);
+				}
+				column = 0;
+			}
+		}
+		tokens.pushBack();
+	}
+
+	private static BondTemplate template(String type, List<String> pairs) {
+		boolean peptide = type != null && type.contains("PEPTIDE LINKING");
+		int[] codes = new int[pairs.size() + (peptide ? 4 : 0)];
+		int n = 0, mainChain = 0;
+
+		if (peptide) {
+			for (int i = 0; i < pairs.size(); i += 2) {
+				int a = SymbolTable.code(pairs.get(i));
+				int b = SymbolTable.code(pairs.get(i + 1));
+				if (isMainChain(a) && isMainChain(b)) {
+					codes[n++] = a;
+					codes[n++] = b;
+					mainChain++;
+				}
+			}
+		}
+
+		for (int i = 0; i < pairs.size(); i += 2) {
+			int a = SymbolTable.code(pairs.get(i));
+			int b = SymbolTable.code(pairs.get(i + 1));
+			if (peptide && isMainChain(a) && isMainChain(b))
+				continue;
+
+			codes[n++] = a;
+			codes[n++] = b;
+		}
+
+		if (peptide) {
+			codes[n++] = SymbolTable.N;
+			codes[n++] = SymbolTable.H1;
+			codes[n++] = SymbolTable.N;
+			codes[n++] = SymbolTable.H3;
+		}
+
+		return new BondTemplate(Arrays.copyOf(codes, n), mainChain);
+	}
+
+	private static boolean isMainChain(int name) {
+		return name == SymbolTable.N || name == SymbolTable.CA
+				|| name == SymbolTable.C;
+	}
+}
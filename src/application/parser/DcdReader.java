@@ -0,0 +1,177 @@
+package application.parser;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads CHARMM / NAMD / OpenMM DCD trajectories.
+ *
+ * A DCD file is a sequence of Fortran unformatted records, each framed by its
+ * length in bytes. The header tells the byte order, the number of atoms and
+ * whether each frame starts with a unit cell record. Each frame then holds the
+ * x, y and z coordinates as three records of 32 bit floats, already in
+ * Angstrom.
+ *
+ * Files with fixed atoms store the coordinates of all atoms only in the first
+ * frame and those of the free atoms in all the others, the fixed ones are
+ * taken from the first frame.
+ *
+ * Reference: http://www.ks.uiuc.edu/Research/vmd/plugins/molfile/dcdplugin.html
+ *
+ * @author Slav Danchev
+ *
+ */
+public class DcdReader implements TrajectoryReader {
+
+	private final FileChannel channel;
+	private final ByteBuffer marker = ByteBuffer.allocate(4);
+	private ByteBuffer record;
+	private long offset;
+
+	private final int atoms;
+	private final boolean unitCell, fourDims;
+
+	/** Zero-based indices of the free atoms, or null if all are free. */
+	private int[] free;
+	private float[] fixed;
+	private boolean first = true;
+
+	public DcdReader(File file) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		try {
+			// the first record is 84 bytes long, which gives the byte order
+			readFully(marker, 4);
+			if (marker.order(ByteOrder.LITTLE_ENDIAN).getInt(0) != 84) {
+				marker.order(ByteOrder.BIG_ENDIAN);
+				if (marker.getInt(0) != 84)
+					throw new IOException("Not a DCD file");
+			}
+			offset = 0;
+			record = ByteBuffer.allocate(4096).order(marker.order());
+
+			ByteBuffer header = readRecord();
+			if (header.get(0) != 'C' || header.get(1) != 'O'
+					|| header.get(2) != 'R' || header.get(3) != 'D')
+				throw new IOException("Not a DCD coordinate file");
+
+			int fixedCount = header.getInt(4 + 8 * 4);
+			boolean charmm = header.getInt(4 + 19 * 4) != 0;
+			unitCell = charmm && header.getInt(4 + 10 * 4) != 0;
+			fourDims = charmm && header.getInt(4 + 11 * 4) != 0;
+
+			// title
+			readRecord();
+
+			ByteBuffer count = readRecord();
+			atoms = count.getInt(0);
+
+			if (fixedCount > 0) {
+				ByteBuffer indices = readRecord();
+				free = new int[atoms - fixedCount];
+				for (int i = 0; i < free.length; i++)
+					free[i] = indices.getInt(4 * i) - 1;
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public int getAtomCount() {
+		return atoms;
+	}
+
+	@Override
+	public boolean next(float[] coords) throws IOException {
+		long start = offset;
+		try {
+			if (unitCell)
+				readRecord();
+
+			if (free == null || first) {
+				for (int axis = 0; axis < 3; axis++)
+					readAxis(coords, axis, null);
+
+				if (free != null)
+					fixed = Arrays.copyOf(coords, 3 * atoms);
+			} else {
+				System.arraycopy(fixed, 0, coords, 0, 3 * atoms);
+				for (int axis = 0; axis < 3; axis++)
+					readAxis(coords, axis, free);
+			}
+
+			if (fourDims)
+				readRecord();
+		} catch (EOFException e) {
+			// the end of the file, or a frame that is still being written and
+			// may be read by a later call
+			offset = start;
+			return false;
+		}
+
+		first = false;
+		return true;
+	}
+
+	/**
+	 * Reads the record with one coordinate of all (or all free) atoms.
+	 */
+	private void readAxis(float[] coords, int axis, int[] indices)
+			throws IOException {
+		ByteBuffer values = readRecord();
+		int n = indices == null ? atoms : indices.length;
+		if (values.limit() < 4 * n)
+			throw new IOException("DCD frame is too short");
+
+		for (int i = 0; i < n; i++) {
+			int atom = indices == null ? i : indices[i];
+			coords[3 * atom + axis] = values.getFloat(4 * i);
+		}
+	}
+
+	/**
+	 * Reads the next Fortran record and returns its body. The buffer is reused
+	 * by the next call.
+	 */
+	private ByteBuffer readRecord() throws IOException {
+		readFully(marker, 4);
+		int length = marker.getInt(0);
+		if (length < 0)
+			throw new IOException("Invalid DCD record length " + length);
+
+		if (record.capacity() < length)
+			record = ByteBuffer.allocate(length).order(marker.order());
+		readFully(record, length);
+
+		readFully(marker, 4);
+		if (marker.getInt(0) != length)
+			throw new IOException("DCD record length mismatch");
+
+		return record;
+	}
+
+	/**
+	 * Reads the next bytes of the file into the start of the buffer.
+	 */
+	private void readFully(ByteBuffer buf, int length) throws IOException {
+		buf.clear().limit(length);
+		while (buf.hasRemaining()) {
+			if (channel.read(buf, offset + buf.position()) < 0)
+				throw new EOFException();
+		}
+		offset += length;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,179 @@
+package application.parser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decompresses a gzip stream on a thread of its own.
+ *
+ * The inflating thread fills the buffers of a small ring and hands them over
+ * through a bounded queue, the reading side parses one buffer while the next
+ * ones are being inflated and gives each buffer back once it is done with it.
+ * At most RING buffers exist, so memory use does not depend on the size of the
+ * file. Concatenated gzip members (as written by some archive tools) are read
+ * one after the other.
+ *
+ * Reading it is not thread safe, it is meant to be drained by one parser.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class GzipPipe extends InputStream {
+
+	/** Size of each buffer of the ring. */
+	private static final int CHUNK = 1 << 16;
+
+	/** Number of buffers in the ring. */
+	private static final int RING = 8;
+
+	/**
+	 * A buffer of the ring and the number of bytes it holds.
+	 */
+	private static class Chunk {
+		final byte[] data;
+		int length;
+
+		Chunk(int size) {
+			data = new byte[size];
+		}
+	}
+
+	/** Queued after the last filled buffer. */
+	private static final Chunk END = new Chunk(0);
+
+	private final InputStream compressed;
+	private final BlockingQueue<Chunk> free, filled;
+	private final Thread inflater;
+	private volatile IOException failure;
+
+	private Chunk current;
+	private int position;
+
+	/**
+	 * Starts inflating the given stream. The stream is closed once its end is
+	 * reached or the pipe is closed.
+	 */
+	public GzipPipe(InputStream compressed) {
+		this.compressed = compressed;
+
+		free = new ArrayBlockingQueue<Chunk>(RING);
+		// room for every buffer plus the end marker, so put() never blocks
+		filled = new ArrayBlockingQueue<Chunk>(RING + 1);
+		for (int i = 0; i < RING; i++)
+			free.add(new Chunk(CHUNK));
+
+		inflater = new Thread(this::inflate, "gzip-inflater");
+		inflater.setDaemon(true);
+		inflater.start();
+	}
+
+	public GzipPipe(File file) throws IOException {
+		this(new FileInputStream(file));
+	}
+
+	/**
+	 * Checks the first two bytes of the file for the gzip magic number, so
+	 * that compressed files are recognised whatever their name is.
+	 */
+	public static boolean isGzip(File file) {
+		try (InputStream in = new FileInputStream(file)) {
+			return in.read() == 0x1f && in.read() == 0x8b;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Body of the inflating thread.
+	 */
+	private void inflate() {
+		try (InputStream in = new GZIPInputStream(compressed, CHUNK)) {
+			for (;;) {
+				Chunk chunk = free.take();
+
+				int n = 0, read = 0;
+				while (n < chunk.data.length) {
+					read = in.read(chunk.data, n, chunk.data.length - n);
+					if (read < 0)
+						break;
+					n += read;
+				}
+
+				if (n > 0) {
+					chunk.length = n;
+					filled.put(chunk);
+				}
+
+				if (read < 0)
+					break;
+			}
+		} catch (IOException e) {
+			failure = e;
+		} catch (InterruptedException e) {
+			// the pipe was closed
+		} finally {
+			filled.offer(END);
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!next())
+			return -1;
+		return current.data[position++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		if (!next())
+			return -1;
+
+		int n = Math.min(len, current.length - position);
+		System.arraycopy(current.data, position, b, off, n);
+		position += n;
+		return n;
+	}
+
+	/**
+	 * Makes sure the current buffer has bytes left, giving the used up buffer
+	 * back to the inflating thread. Returns false at the end of the stream.
+	 */
+	private boolean next() throws IOException {
+		if (current == END)
+			return false;
+		if (current != null && position < current.length)
+			return true;
+
+		if (current != null)
+			free.offer(current);
+
+		try {
+			current = filled.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for data", e);
+		}
+		position = 0;
+
+		if (current == END) {
+			if (failure != null)
+				throw failure;
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		inflater.interrupt();
+		compressed.close();
+		current = END;
+	}
+}
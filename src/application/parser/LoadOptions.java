@@ -0,0 +1,322 @@
+package application.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Declares which parts of a structure should be loaded: record types, chains,
+ * residue ranges, atom names, hydrogens, waters and ions. By default
+ * everything is kept.
+ *
+ * A PdbReader checks the options while it decodes an atom record, cheapest
+ * column first (chain, residue number, residue name, atom name and element),
+ * and drops the line before its coordinates are decoded or an Atom is made
+ * for it. Other readers pass their records through filter(), which applies
+ * the same checks to the decoded values.
+ *
+ * Every model of an ensemble keeps the same atoms, so the coordinates of the
+ * further models still line up with the atoms of the first one.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class LoadOptions {
+
+	/** Residue names of water molecules, including common MD names. */
+	private static final Set<String> WATERS = new HashSet<String>(
+			Arrays.asList("HOH", "WAT", "H2O", "DOD", "D2O", "TIP", "TIP3",
+					"SOL", "SPC"));
+
+	/** Residue names of common monatomic ions. */
+	private static final Set<String> IONS = new HashSet<String>(
+			Arrays.asList("NA", "K", "CL", "CA", "MG", "ZN", "MN", "FE", "FE2",
+					"CU", "CU1", "CO", "NI", "CD", "HG", "SR", "BA", "CS", "RB",
+					"LI", "BR", "IOD", "F", "AL", "PB", "PT", "AU", "AG"));
+
+	/** Packed types of the records to keep, null for all of them. */
+	private int[] records;
+	private Set<String> chains, atomNames;
+	private final List<Range> ranges = new ArrayList<Range>();
+	private boolean hydrogens = true, waters = true, ions = true;
+
+	/**
+	 * A range of residue numbers, in one chain or in all of them.
+	 */
+	private static class Range {
+		final String chainID;
+		final int from, to;
+
+		Range(String chainID, int from, int to) {
+			this.chainID = chainID;
+			this.from = from;
+			this.to = to;
+		}
+	}
+
+	/**
+	 * Keeps only the records of the given types, e.g. "ATOM", "HELIX" and
+	 * "SHEET". MODEL, ENDMDL and TER records are always kept.
+	 */
+	public void setRecords(String... names) {
+		records = new int[names.length];
+		for (int i = 0; i < names.length; i++)
+			records[i] = recordType(names[i]);
+	}
+
+	/**
+	 * Packs the name of a record type like PdbColumns.recordType() packs the
+	 * start of a line.
+	 */
+	private static int recordType(String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+		return PdbColumns.recordType(ByteBuffer.wrap(bytes), 0, bytes.length);
+	}
+
+	/**
+	 * Keeps only the chains with the given IDs.
+	 */
+	public void setChains(String... chainIDs) {
+		chains = new HashSet<String>(Arrays.asList(chainIDs));
+	}
+
+	/**
+	 * Keeps only the atoms with the given names, e.g. "CA" for a trace of the
+	 * main chain.
+	 */
+	public void setAtomNames(String... names) {
+		atomNames = new HashSet<String>(Arrays.asList(names));
+	}
+
+	/**
+	 * Keeps the residues from one number to another, both included. Once a
+	 * range is added, residues outside all ranges are dropped.
+	 *
+	 * @param chainID
+	 *            the chain of the range, or null for all chains
+	 */
+	public void addResidueRange(String chainID, int from, int to) {
+		ranges.add(new Range(chainID, from, to));
+	}
+
+	public void setHydrogens(boolean hydrogens) {
+		this.hydrogens = hydrogens;
+	}
+
+	public void setWaters(boolean waters) {
+		this.waters = waters;
+	}
+
+	public void setIons(boolean ions) {
+		this.ions = ions;
+	}
+
+	/**
+	 * Whether nothing is dropped, in which case readers skip all checks.
+	 */
+	public boolean keepsAll() {
+		return records == null && chains == null && atomNames == null
+				&& ranges.isEmpty() && hydrogens && waters && ions;
+	}
+
+	/**
+	 * Whether records of the given type, as packed by
+	 * PdbColumns.recordType(), are kept.
+	 */
+	boolean keepsRecord(int type) {
+		// the records that structure the file are never dropped
+		if (records == null || type == PdbColumns.MODEL
+				|| type == PdbColumns.ENDMDL || type == PdbColumns.TER)
+			return true;
+
+		for (int kept : records) {
+			if (kept == type)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Whether records of the given type, e.g. "HETATM", are kept. The checks
+	 * of the readers use the packed types of PdbColumns instead.
+	 */
+	public boolean keepsRecord(String name) {
+		return records == null || keepsRecord(recordType(name));
+	}
+
+	public boolean keepsChain(String chainID) {
+		return chains == null || chains.contains(chainID);
+	}
+
+	/**
+	 * Whether the residue with the given number is in a kept chain and in
+	 * one of the ranges, if there are any.
+	 */
+	public boolean keepsResidue(String chainID, int resSeq) {
+		if (!keepsChain(chainID))
+			return false;
+		if (ranges.isEmpty())
+			return true;
+
+		for (Range r : ranges) {
+			if ((r.chainID == null || r.chainID.equals(chainID))
+					&& resSeq >= r.from && resSeq <= r.to)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Whether waters and ions with the given residue name are kept.
+	 */
+	public boolean keepsResidueName(String resName) {
+		return (waters || !WATERS.contains(resName))
+				&& (ions || !IONS.contains(resName));
+	}
+
+	/**
+	 * Whether an atom with the given name and element is kept. Atoms without
+	 * an element are recognised as hydrogens by their name.
+	 */
+	public boolean keepsAtom(String name, String element) {
+		if (atomNames != null && !atomNames.contains(name))
+			return false;
+		if (!hydrogens && isHydrogen(name, element))
+			return false;
+		return true;
+	}
+
+	private static boolean isHydrogen(String name, String element) {
+		if (!element.isEmpty())
+			return element.equals("H") || element.equals("D");
+
+		// names like 1HB2 start with a digit
+		int i = 0;
+		while (i < name.length() && Character.isDigit(name.charAt(i)))
+			i++;
+		return i < name.length()
+				&& (name.charAt(i) == 'H' || name.charAt(i) == 'D');
+	}
+
+	/**
+	 * Whether an atom record with the given values is kept.
+	 */
+	public boolean keepsAtom(boolean hetero, String name, String resName,
+			String chainID, int resSeq, String element) {
+		return keepsRecord(hetero ? PdbColumns.HETATM : PdbColumns.ATOM)
+				&& keepsResidue(chainID, resSeq) && keepsResidueName(resName)
+				&& keepsAtom(name, element);
+	}
+
+	/**
+	 * Wraps a handler so that only the records kept by these options reach
+	 * it, for readers that decode everything anyway (mmCIF, MMTF).
+	 */
+	public PdbRecordHandler filter(PdbRecordHandler handler) {
+		if (keepsAll())
+			return handler;
+		return new Filter(handler);
+	}
+
+	/**
+	 * Passes on the records that are kept.
+	 */
+	private class Filter implements PdbRecordHandler {
+		private final PdbRecordHandler handler;
+
+		Filter(PdbRecordHandler handler) {
+			this.handler = handler;
+		}
+
+		@Override
+		public void onHeader(String text) {
+			if (keepsRecord(PdbColumns.HEADER))
+				handler.onHeader(text);
+		}
+
+		@Override
+		public void onTitle(String text) {
+			if (keepsRecord(PdbColumns.TITLE))
+				handler.onTitle(text);
+		}
+
+		@Override
+		public void onRemark(String text) {
+			if (keepsRecord(PdbColumns.REMARK))
+				handler.onRemark(text);
+		}
+
+		@Override
+		public void onSeqres(String chainID, int numRes, String resName) {
+			if (keepsRecord(PdbColumns.SEQRES) && keepsChain(chainID))
+				handler.onSeqres(chainID, numRes, resName);
+		}
+
+		@Override
+		public void onHelix(int serial, String helixID, String initResName,
+				String initChainID, int initSeqNum, String endResName,
+				String endChainID, int endSeqNum) {
+			if (keepsRecord(PdbColumns.HELIX))
+				handler.onHelix(serial, helixID, initResName, initChainID,
+						initSeqNum, endResName, endChainID, endSeqNum);
+		}
+
+		@Override
+		public void onSheet(int strand, String sheetID, String initResName,
+				String initChainID, int initSeqNum, String endResName,
+				String endChainID, int endSeqNum) {
+			if (keepsRecord(PdbColumns.SHEET))
+				handler.onSheet(strand, sheetID, initResName, initChainID,
+						initSeqNum, endResName, endChainID, endSeqNum);
+		}
+
+		@Override
+		public void onLink(String name1, String resName1, String chainID1,
+				int resSeq1, String name2, String resName2, String chainID2,
+				int resSeq2) {
+			if (keepsRecord(PdbColumns.LINK))
+				handler.onLink(name1, resName1, chainID1, resSeq1, name2,
+						resName2, chainID2, resSeq2);
+		}
+
+		@Override
+		public void onModel(int serial) {
+			handler.onModel(serial);
+		}
+
+		@Override
+		public void onAtom(boolean hetero, int serial, String name,
+				char altLoc, String resName, String chainID, int resSeq,
+				char iCode, double x, double y, double z, double occupancy,
+				double tempFactor, String element) {
+			if (keepsAtom(hetero, name, resName, chainID, resSeq, element))
+				handler.onAtom(hetero, serial, name, altLoc, resName, chainID,
+						resSeq, iCode, x, y, z, occupancy, tempFactor, element);
+		}
+
+		@Override
+		public void onTer() {
+			handler.onTer();
+		}
+
+		@Override
+		public void onEndModel() {
+			handler.onEndModel();
+		}
+
+		@Override
+		public void onConect(int serial, int bondedSerial) {
+			if (keepsRecord(PdbColumns.CONECT))
+				handler.onConect(serial, bondedSerial);
+		}
+
+		@Override
+		public void onEnd() {
+			handler.onEnd();
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package application.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal MessagePack decoder.
+ *
+ * Maps are decoded into a Map, arrays into a List, strings into a String,
+ * integers into an Integer (or a Long if they do not fit), floats into a
+ * Double and booleans and nil into Boolean and null. Binary values are not
+ * copied, they are returned as a read-only ByteBuffer slice of the input, so
+ * the large encoded arrays of an MMTF file are decoded straight from the
+ * mapped file. Extension types are skipped and returned as null.
+ *
+ * Reference: https://github.com/msgpack/msgpack/blob/master/spec.md
+ *
+ * @author Slav Danchev
+ *
+ */
+final class MessagePack {
+
+	private final ByteBuffer buf;
+	private int pos;
+
+	MessagePack(ByteBuffer buf) {
+		this.buf = buf;
+		pos = buf.position();
+	}
+
+	/**
+	 * Decodes the next value.
+	 */
+	Object read() {
+		int b = u8();
+
+		if (b <= 0x7f)
+			return b;
+		if (b >= 0xe0)
+			return (int) (byte) b;
+		if (b >= 0x80 && b <= 0x8f)
+			return map(b & 0x0f);
+		if (b >= 0x90 && b <= 0x9f)
+			return array(b & 0x0f);
+		if (b >= 0xa0 && b <= 0xbf)
+			return string(b & 0x1f);
+
+		switch (b) {
+		case 0xc0:
+			return null;
+		case 0xc2:
+			return Boolean.FALSE;
+		case 0xc3:
+			return Boolean.TRUE;
+		case 0xc4:
+			return binary(u8());
+		case 0xc5:
+			return binary(u16());
+		case 0xc6:
+			return binary(length());
+		case 0xc7:
+			return extension(u8());
+		case 0xc8:
+			return extension(u16());
+		case 0xc9:
+			return extension(length());
+		case 0xca:
+			return (double) buf.getFloat(skip(4));
+		case 0xcb:
+			return buf.getDouble(skip(8));
+		case 0xcc:
+			return u8();
+		case 0xcd:
+			return u16();
+		case 0xce:
+			return number(buf.getInt(skip(4)) & 0xffffffffL);
+		case 0xcf:
+			return number(buf.getLong(skip(8)));
+		case 0xd0:
+			return (int) buf.get(skip(1));
+		case 0xd1:
+			return (int) buf.getShort(skip(2));
+		case 0xd2:
+			return buf.getInt(skip(4));
+		case 0xd3:
+			return number(buf.getLong(skip(8)));
+		case 0xd4:
+			return extension(1);
+		case 0xd5:
+			return extension(2);
+		case 0xd6:
+			return extension(4);
+		case 0xd7:
+			return extension(8);
+		case 0xd8:
+			return extension(16);
+		case 0xd9:
+			return string(u8());
+		case 0xda:
+			return string(u16());
+		case 0xdb:
+			return string(length());
+		case 0xdc:
+			return array(u16());
+		case 0xdd:
+			return array(length());
+		case 0xde:
+			return map(u16());
+		case 0xdf:
+			return map(length());
+		default:
+			throw new IllegalArgumentException("Invalid MessagePack type 0x"
+					+ Integer.toHexString(b) + " at byte " + (pos - 1));
+		}
+	}
+
+	private Map<String, Object> map(int size) {
+		Map<String, Object> map = new HashMap<String, Object>(size * 2);
+		for (int i = 0; i < size; i++)
+			map.put(String.valueOf(read()), read());
+		return map;
+	}
+
+	private List<Object> array(int size) {
+		List<Object> list = new ArrayList<Object>(size);
+		for (int i = 0; i < size; i++)
+			list.add(read());
+		return list;
+	}
+
+	private String string(int length) {
+		byte[] bytes = new byte[length];
+		int from = skip(length);
+		for (int i = 0; i < length; i++)
+			bytes[i] = buf.get(from + i);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private ByteBuffer binary(int length) {
+		ByteBuffer slice = buf.duplicate();
+		slice.position(skip(length)).limit(pos);
+		return slice.slice().asReadOnlyBuffer();
+	}
+
+	private Object extension(int length) {
+		skip(1 + length);
+		return null;
+	}
+
+	private static Object number(long value) {
+		if (value == (int) value)
+			return (int) value;
+		return value;
+	}
+
+	private int u8() {
+		return buf.get(skip(1)) & 0xff;
+	}
+
+	private int u16() {
+		return buf.getShort(skip(2)) & 0xffff;
+	}
+
+	/**
+	 * A 32 bit length, which has to fit into a Java array.
+	 */
+	private int length() {
+		int length = buf.getInt(skip(4));
+		if (length < 0)
+			throw new IllegalArgumentException("MessagePack value at byte "
+					+ (pos - 4) + " is too large");
+		return length;
+	}
+
+	/**
+	 * Moves past the given number of bytes and returns the offset of the first
+	 * of them.
+	 */
+	private int skip(int n) {
+		int from = pos;
+		pos += n;
+		return from;
+	}
+}
@@ -0,0 +1,303 @@
+package application.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the records of the title section of a structure (HEADER, TITLE,
+ * COMPND, SOURCE, REMARK, ...) and decodes them only when they are asked for.
+ *
+ * While a file is scanned, the text columns of every such record are copied
+ * as bytes to the end of one growing array, and only the record type, the
+ * REMARK number and the byte range of the text are noted. No String is made
+ * for a record until a caller asks for the records of a type, for one REMARK
+ * number or for the whole text, so a large file with thousands of remarks
+ * costs little more than copying their bytes, and nothing is concatenated.
+ *
+ * Readers that hand out decoded text (mmCIF, MMTF, the cache) add it with
+ * add(), and it is kept the same way.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class MetaStore {
+
+	/**
+	 * The record types of the title section besides HEADER, TITLE and REMARK,
+	 * as packed by PdbColumns.recordType().
+	 */
+	private static final int[] OTHERS = {
+			'O' << 24 | 'B' << 16 | 'S' << 8 | 'L',
+			'S' << 24 | 'P' << 16 | 'L' << 8 | 'I',
+			'C' << 24 | 'A' << 16 | 'V' << 8 | 'E',
+			'C' << 24 | 'O' << 16 | 'M' << 8 | 'P',
+			'S' << 24 | 'O' << 16 | 'U' << 8 | 'R',
+			'K' << 24 | 'E' << 16 | 'Y' << 8 | 'W',
+			'E' << 24 | 'X' << 16 | 'P' << 8 | 'D',
+			'N' << 24 | 'U' << 16 | 'M' << 8 | 'M',
+			'M' << 24 | 'D' << 16 | 'L' << 8 | 'T',
+			'A' << 24 | 'U' << 16 | 'T' << 8 | 'H',
+			'R' << 24 | 'E' << 16 | 'V' << 8 | 'D',
+			'S' << 24 | 'P' << 16 | 'R' << 8 | 'S',
+			'J' << 24 | 'R' << 16 | 'N' << 8 | 'L' };
+
+	/** The text of all records, one after the other. */
+	private byte[] data = new byte[1 << 12];
+	private int length;
+
+	/* one entry per record */
+	private int[] types = new int[64], numbers = new int[64],
+			starts = new int[64], ends = new int[64];
+	private int size;
+
+	/**
+	 * Whether records of the given type, as packed by
+	 * PdbColumns.recordType(), belong to the title section.
+	 */
+	static boolean isMeta(int type) {
+		if (type == PdbColumns.HEADER || type == PdbColumns.TITLE
+				|| type == PdbColumns.REMARK)
+			return true;
+		for (int other : OTHERS) {
+			if (other == type)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Whether a record with the given name, e.g. "COMPND", belongs to the
+	 * title section.
+	 */
+	public static boolean isMeta(String name) {
+		return isMeta(type(name));
+	}
+
+	private static int type(String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.ISO_8859_1);
+		return PdbColumns.recordType(ByteBuffer.wrap(bytes), 0, bytes.length);
+	}
+
+	/**
+	 * Keeps a record of the title section, given as a line without its
+	 * terminator. Lines too short to hold any text are kept as empty records.
+	 */
+	void addLine(ByteBuffer buf, int line, int len) {
+		int type = PdbColumns.recordType(buf, line, len);
+
+		int from = 10, to = 80, number = -1;
+		if (type == PdbColumns.HEADER) {
+			to = 50;
+		} else if (type == PdbColumns.REMARK) {
+			from = 11;
+			to = 79;
+			number = remarkNumber(buf, line, len);
+		}
+
+		int start = length;
+		for (int i = from; i < Math.min(to, len); i++) {
+			if (length == data.length)
+				data = Arrays.copyOf(data, 2 * length);
+			data[length++] = buf.get(line + i);
+		}
+		add(type, number, start);
+	}
+
+	/**
+	 * Keeps a record of the title section, given as a line of text.
+	 */
+	public void addLine(String line) {
+		byte[] bytes = line.getBytes(StandardCharsets.ISO_8859_1);
+		addLine(ByteBuffer.wrap(bytes), 0, bytes.length);
+	}
+
+	/**
+	 * Keeps the text of a record that was decoded by a reader, e.g. the title
+	 * of an mmCIF file.
+	 *
+	 * @param name
+	 *            the type of the record, e.g. "TITLE"
+	 * @param number
+	 *            the REMARK number, or -1
+	 */
+	public void add(String name, int number, String text) {
+		add(type(name), number, text);
+	}
+
+	/**
+	 * Keeps the text of a record of a type as packed by
+	 * PdbColumns.recordType(), e.g. one read back from the cache.
+	 */
+	void add(int type, int number, String text) {
+		byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+		if (length + bytes.length > data.length)
+			data = Arrays.copyOf(data,
+					Math.max(2 * data.length, length + bytes.length));
+
+		int start = length;
+		System.arraycopy(bytes, 0, data, length, bytes.length);
+		length += bytes.length;
+		add(type, number, start);
+	}
+
+	private void add(int type, int number, int start) {
+		if (size == types.length) {
+			types = Arrays.copyOf(types, 2 * size);
+			numbers = Arrays.copyOf(numbers, 2 * size);
+			starts = Arrays.copyOf(starts, 2 * size);
+			ends = Arrays.copyOf(ends, 2 * size);
+		}
+		types[size] = type;
+		numbers[size] = number;
+		starts[size] = start;
+		ends[size] = length;
+		size++;
+	}
+
+	/**
+	 * The number in columns 8 to 10 of a REMARK record, or -1 if there is
+	 * none.
+	 */
+	private static int remarkNumber(ByteBuffer buf, int line, int len) {
+		int number = -1;
+		for (int i = 7; i < Math.min(10, len); i++) {
+			byte c = buf.get(line + i);
+			if (c >= '0' && c <= '9')
+				number = Math.max(number, 0) * 10 + c - '0';
+			else if (!PdbColumns.isSpace(c))
+				return -1;
+		}
+		return number;
+	}
+
+	/**
+	 * Appends the records of another store, e.g. of the next part of a file.
+	 */
+	public void addAll(MetaStore other) {
+		for (int i = 0; i < other.size; i++) {
+			int n = other.ends[i] - other.starts[i];
+			if (length + n > data.length)
+				data = Arrays.copyOf(data, Math.max(2 * data.length, length
+						+ n));
+
+			int start = length;
+			System.arraycopy(other.data, other.starts[i], data, length, n);
+			length += n;
+			add(other.types[i], other.numbers[i], start);
+		}
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Gets the number of records kept.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Decodes the text of the records of a type, e.g. "COMPND", in file
+	 * order.
+	 */
+	public List<String> getRecords(String name) {
+		int type = type(name);
+		List<String> records = new ArrayList<String>();
+		for (int i = 0; i < size; i++) {
+			if (types[i] == type)
+				records.add(text(i));
+		}
+		return records;
+	}
+
+	/**
+	 * Decodes the text of the REMARK records with the given number, e.g. 2
+	 * for the resolution, in file order.
+	 */
+	public List<String> getRemark(int number) {
+		List<String> records = new ArrayList<String>();
+		for (int i = 0; i < size; i++) {
+			if (types[i] == PdbColumns.REMARK && numbers[i] == number)
+				records.add(text(i));
+		}
+		return records;
+	}
+
+	/**
+	 * Gets the numbers of the REMARK records, each once, in the order they
+	 * first appear.
+	 */
+	public int[] getRemarkNumbers() {
+		int[] found = new int[16];
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			if (types[i] != PdbColumns.REMARK || numbers[i] < 0
+					|| contains(found, n, numbers[i]))
+				continue;
+			if (n == found.length)
+				found = Arrays.copyOf(found, 2 * n);
+			found[n++] = numbers[i];
+		}
+		return Arrays.copyOf(found, n);
+	}
+
+	private static boolean contains(int[] values, int n, int value) {
+		for (int i = 0; i < n; i++) {
+			if (values[i] == value)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Decodes the HEADER, TITLE and REMARK records into one text, a line per
+	 * record, as it is shown under the structure.
+	 */
+	public String getText() {
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			if (types[i] == PdbColumns.HEADER || types[i] == PdbColumns.TITLE
+					|| types[i] == PdbColumns.REMARK)
+				n += ends[i] - starts[i] + 1;
+		}
+
+		StringBuilder text = new StringBuilder(n);
+		for (int i = 0; i < size; i++) {
+			if (types[i] == PdbColumns.HEADER || types[i] == PdbColumns.TITLE
+					|| types[i] == PdbColumns.REMARK)
+				text.append(text(i)).append('\n');
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Gets the type of a record, as packed by PdbColumns.recordType().
+	 */
+	int getType(int record) {
+		return types[record];
+	}
+
+	/**
+	 * Gets the REMARK number of a record, or -1.
+	 */
+	int getNumber(int record) {
+		return numbers[record];
+	}
+
+	/**
+	 * Decodes the text of a record.
+	 */
+	String getText(int record) {
+		return text(record);
+	}
+
+	private String text(int i) {
+		return new String(data, starts[i], ends[i] - starts[i],
+				StandardCharsets.ISO_8859_1);
+	}
+}
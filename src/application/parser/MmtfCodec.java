@@ -0,0 +1,244 @@
+package application.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Decodes the binary encoded arrays of an MMTF file.
+ *
+ * Every array starts with a 12 byte header of three big-endian int32: the
+ * codec, the length of the decoded array and a codec specific parameter (the
+ * divisor for float arrays, the length of each string for string arrays). The
+ * codecs combine run-length encoding, delta encoding and recursive index
+ * encoding, where values that do not fit a small integer type are split into
+ * a sum of several ones.
+ *
+ * Float arrays are returned as doubles, computed as the decoded integer
+ * divided by the divisor. This gives exactly the values Double.parseDouble()
+ * returns for the coordinates of the same structure in a PDB file.
+ *
+ * Reference: https://github.com/rcsb/mmtf/blob/master/spec.md#codecs
+ *
+ * @author Slav Danchev
+ *
+ */
+final class MmtfCodec {
+
+	private static final int HEADER = 12;
+
+	private MmtfCodec() {
+	}
+
+	/**
+	 * Decodes an integer array. Plain MessagePack arrays of numbers, which
+	 * some fields use instead of a binary encoding, are accepted too.
+	 */
+	static int[] ints(Object value) {
+		if (value == null)
+			return null;
+		if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			int[] ints = new int[list.size()];
+			for (int i = 0; i < ints.length; i++)
+				ints[i] = ((Number) list.get(i)).intValue();
+			return ints;
+		}
+
+		ByteBuffer buf = (ByteBuffer) value;
+		int codec = buf.getInt(0), length = buf.getInt(4);
+
+		switch (codec) {
+		case 2:
+			return int8(buf, length);
+		case 3:
+			return int16(buf, length);
+		case 4:
+			return int32(buf, length);
+		case 7:
+			return runLength(buf, length);
+		case 8:
+			return delta(runLength(buf, length));
+		case 14:
+			return recursiveIndex(buf, length, 2);
+		case 15:
+			return recursiveIndex(buf, length, 1);
+		default:
+			throw unsupported(codec, "an integer");
+		}
+	}
+
+	/**
+	 * Decodes a float array.
+	 */
+	static double[] doubles(Object value) {
+		if (value == null)
+			return null;
+		if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			double[] doubles = new double[list.size()];
+			for (int i = 0; i < doubles.length; i++)
+				doubles[i] = ((Number) list.get(i)).doubleValue();
+			return doubles;
+		}
+
+		ByteBuffer buf = (ByteBuffer) value;
+		int codec = buf.getInt(0), length = buf.getInt(4);
+		double divisor = buf.getInt(8);
+
+		int[] ints;
+		switch (codec) {
+		case 1:
+			double[] floats = new double[length];
+			for (int i = 0; i < length; i++)
+				floats[i] = buf.getFloat(HEADER + i * 4);
+			return floats;
+		case 9:
+			ints = runLength(buf, length);
+			break;
+		case 10:
+			ints = delta(recursiveIndex(buf, length, 2));
+			break;
+		case 11:
+			ints = int16(buf, length);
+			break;
+		case 12:
+			ints = recursiveIndex(buf, length, 2);
+			break;
+		case 13:
+			ints = recursiveIndex(buf, length, 1);
+			break;
+		default:
+			throw unsupported(codec, "a float");
+		}
+
+		double[] doubles = new double[length];
+		for (int i = 0; i < length; i++)
+			doubles[i] = ints[i] / divisor;
+		return doubles;
+	}
+
+	/**
+	 * Decodes an array of single characters, where '\0' stands for none.
+	 */
+	static char[] chars(Object value) {
+		if (value == null)
+			return null;
+
+		ByteBuffer buf = (ByteBuffer) value;
+		int codec = buf.getInt(0), length = buf.getInt(4);
+		if (codec != 6)
+			throw unsupported(codec, "a char");
+
+		int[] ints = runLength(buf, length);
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++)
+			chars[i] = (char) ints[i];
+		return chars;
+	}
+
+	/**
+	 * Decodes an array of fixed length, zero padded strings.
+	 */
+	static String[] strings(Object value) {
+		if (value == null)
+			return null;
+		if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			return list.toArray(new String[list.size()]);
+		}
+
+		ByteBuffer buf = (ByteBuffer) value;
+		int codec = buf.getInt(0), length = buf.getInt(4);
+		int size = buf.getInt(8);
+		if (codec != 5)
+			throw unsupported(codec, "a string");
+
+		String[] strings = new String[length];
+		byte[] bytes = new byte[size];
+		for (int i = 0; i < length; i++) {
+			int n = 0;
+			int from = HEADER + i * size;
+			while (n < size && buf.get(from + n) != 0) {
+				bytes[n] = buf.get(from + n);
+				n++;
+			}
+			strings[i] = new String(bytes, 0, n, StandardCharsets.US_ASCII);
+		}
+		return strings;
+	}
+
+	private static int[] int8(ByteBuffer buf, int length) {
+		int[] ints = new int[length];
+		for (int i = 0; i < length; i++)
+			ints[i] = buf.get(HEADER + i);
+		return ints;
+	}
+
+	private static int[] int16(ByteBuffer buf, int length) {
+		int[] ints = new int[length];
+		for (int i = 0; i < length; i++)
+			ints[i] = buf.getShort(HEADER + i * 2);
+		return ints;
+	}
+
+	private static int[] int32(ByteBuffer buf, int length) {
+		int[] ints = new int[length];
+		for (int i = 0; i < length; i++)
+			ints[i] = buf.getInt(HEADER + i * 4);
+		return ints;
+	}
+
+	/**
+	 * Expands the int32 pairs of value and repeat count that follow the
+	 * header.
+	 */
+	private static int[] runLength(ByteBuffer buf, int length) {
+		int[] ints = new int[length];
+		int n = 0;
+
+		for (int i = HEADER; i + 8 <= buf.limit() && n < length; i += 8) {
+			int value = buf.getInt(i);
+			int count = Math.min(buf.getInt(i + 4), length - n);
+			for (int j = 0; j < count; j++)
+				ints[n++] = value;
+		}
+		return ints;
+	}
+
+	/**
+	 * Turns differences into absolute values, in place.
+	 */
+	private static int[] delta(int[] ints) {
+		for (int i = 1; i < ints.length; i++)
+			ints[i] += ints[i - 1];
+		return ints;
+	}
+
+	/**
+	 * Sums up runs of int8 or int16 values that are at the limit of their
+	 * type, each run and the first value after it make up one int32.
+	 */
+	private static int[] recursiveIndex(ByteBuffer buf, int length, int width) {
+		int max = width == 1 ? Byte.MAX_VALUE : Short.MAX_VALUE;
+		int min = width == 1 ? Byte.MIN_VALUE : Short.MIN_VALUE;
+
+		int[] ints = new int[length];
+		int n = 0, sum = 0;
+
+		for (int i = HEADER; i + width <= buf.limit() && n < length; i += width) {
+			int value = width == 1 ? buf.get(i) : buf.getShort(i);
+			sum += value;
+			if (value != max && value != min) {
+				ints[n++] = sum;
+				sum = 0;
+			}
+		}
+		return ints;
+	}
+
+	private static IllegalArgumentException unsupported(int codec, String type) {
+		return new IllegalArgumentException("Codec " + codec
+				+ " does not encode " + type + " array");
+	}
+}
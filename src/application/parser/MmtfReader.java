@@ -0,0 +1,351 @@
+package application.parser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A reader for the binary MMTF format that pushes its content into the same
+ * PdbRecordHandler as the PdbReader.
+ *
+ * An MMTF file is a single MessagePack map. The per atom and per residue
+ * columns are binary arrays compressed with the codecs of MmtfCodec, they are
+ * decoded straight from the mapped file into primitive arrays. Residues are
+ * described once per residue type (groupList), so atom names and elements
+ * come from a small table and no text has to be parsed per atom at all.
+ *
+ * Atoms of polymer entities are passed on as ATOM records, the others as
+ * HETATM records. Helices and strands are taken from the per residue secondary
+ * structure. The bonds of hetero residues and all bonds between residues that
+ * involve a hetero atom are passed on like CONECT records.
+ *
+ * Reference: https://github.com/rcsb/mmtf/blob/master/spec.md
+ *
+ * @author Slav Danchev
+ *
+ */
+public class MmtfReader {
+
+	/*
+	 * DSSP codes of the secStructList
+	 */
+	private static final int PI_HELIX = 0;
+	private static final int ALPHA_HELIX = 2;
+	private static final int EXTENDED = 3;
+	private static final int HELIX_3_10 = 4;
+
+	private final PdbRecordHandler handler;
+
+	public MmtfReader(PdbRecordHandler handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * Checks whether a file holds MMTF data, by its name (.mmtf, optionally
+	 * followed by .gz) or, for uncompressed files, by the mmtfVersion key
+	 * near the start of the top level map.
+	 */
+	public static boolean isMmtf(File file) {
+		String name = file.getName().toLowerCase();
+		if (name.endsWith(".gz"))
+			name = name.substring(0, name.length() - 3);
+		if (name.endsWith(".mmtf"))
+			return true;
+
+		try (InputStream in = new FileInputStream(file)) {
+			byte[] head = new byte[256];
+			int n = in.read(head);
+			if (n <= 0)
+				return false;
+
+			int b = head[0] & 0xff;
+			if ((b & 0xf0) != 0x80 && b != 0xde && b != 0xdf)
+				return false;
+
+			String text = new String(head, 0, n,
+					StandardCharsets.ISO_8859_1);
+			return text.contains("mmtfVersion");
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Reads a file. Plain files are memory-mapped, compressed ones (as served
+	 * by the RCSB) are inflated into memory first.
+	 */
+	public void read(File file) throws IOException {
+		if (GzipPipe.isGzip(file)) {
+			try (GzipPipe in = new GzipPipe(file)) {
+				read(CifReader.readFully(in));
+			}
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("MMTF files over 2 GB are not supported");
+
+			read(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Decodes the structure in the buffer, from its position to its limit.
+	 */
+	@SuppressWarnings("unchecked")
+	public void read(ByteBuffer buf) throws IOException {
+		Object root = new MessagePack(buf.duplicate().order(
+				ByteOrder.BIG_ENDIAN)).read();
+		if (!(root instanceof Map))
+			throw new IOException("Not an MMTF file");
+
+		Map<String, Object> mmtf = (Map<String, Object>) root;
+		if (!mmtf.containsKey("mmtfVersion"))
+			throw new IOException("Not an MMTF file");
+
+		read(mmtf);
+		handler.onEnd();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void read(Map<String, Object> mmtf) {
+		Object title = mmtf.get("title");
+		if (title != null)
+			handler.onTitle(title.toString());
+
+		int[] chainsPerModel = MmtfCodec.ints(mmtf.get("chainsPerModel"));
+		int[] groupsPerChain = MmtfCodec.ints(mmtf.get("groupsPerChain"));
+		String[] chainNames = MmtfCodec.strings(mmtf.get("chainNameList"));
+		String[] chainIds = MmtfCodec.strings(mmtf.get("chainIdList"));
+		if (chainNames == null)
+			chainNames = chainIds;
+
+		int[] groupTypes = MmtfCodec.ints(mmtf.get("groupTypeList"));
+		int[] groupIds = MmtfCodec.ints(mmtf.get("groupIdList"));
+		char[] insCodes = MmtfCodec.chars(mmtf.get("insCodeList"));
+		int[] secStruct = MmtfCodec.ints(mmtf.get("secStructList"));
+
+		int[] atomIds = MmtfCodec.ints(mmtf.get("atomIdList"));
+		char[] altLocs = MmtfCodec.chars(mmtf.get("altLocList"));
+		double[] xs = MmtfCodec.doubles(mmtf.get("xCoordList"));
+		double[] ys = MmtfCodec.doubles(mmtf.get("yCoordList"));
+		double[] zs = MmtfCodec.doubles(mmtf.get("zCoordList"));
+		double[] occupancies = MmtfCodec.doubles(mmtf.get("occupancyList"));
+		double[] bFactors = MmtfCodec.doubles(mmtf.get("bFactorList"));
+		int[] bonds = MmtfCodec.ints(mmtf.get("bondAtomList"));
+
+		GroupType[] types = groupTypes((List<Object>) mmtf.get("groupList"));
+		boolean[] polymer = polymerChains(
+				(List<Object>) mmtf.get("entityList"), chainIds.length);
+
+		// hetero flag of every atom, for the bonds between residues
+		int atomCount = xs.length;
+		boolean[] hetero = new boolean[atomCount];
+
+		int chain = 0, group = 0, atom = 0;
+		int helices = 0, strands = 0;
+
+		for (int m = 0; m < chainsPerModel.length; m++) {
+			handler.onModel(m + 1);
+
+			for (int c = 0; c < chainsPerModel[m]; c++, chain++) {
+				String chainID = chainNames[chain];
+				int first = group;
+
+				for (int g = 0; g < groupsPerChain[chain]; g++, group++) {
+					GroupType type = types[groupTypes[group]];
+					boolean het = !(polymer != null ? polymer[chain]
+							: type.polymer);
+					int start = atom;
+
+					for (int a = 0; a < type.names.length; a++, atom++) {
+						hetero[atom] = het;
+						double occupancy = occupancies != null
+								? occupancies[atom] : 1;
+						double tempFactor = bFactors != null ? bFactors[atom]
+								: 0;
+
+						handler.onAtom(het, serial(atomIds, atom),
+								type.names[a], altLoc(altLocs, atom),
+								type.name, chainID, groupIds[group],
+								altLoc(insCodes, group), xs[atom], ys[atom],
+								zs[atom], occupancy, tempFactor,
+								type.elements[a]);
+					}
+
+					// bonds within hetero residues, like CONECT records
+					if (het) {
+						for (int b = 0; b + 1 < type.bonds.length; b += 2) {
+							int a1 = start + type.bonds[b];
+							int a2 = start + type.bonds[b + 1];
+							handler.onConect(serial(atomIds, a1),
+									serial(atomIds, a2));
+						}
+					}
+				}
+
+				handler.onTer();
+
+				// secondary structure is only reported for the first model
+				if (m == 0 && secStruct != null) {
+					helices = helices(secStruct, groupIds, groupTypes, types,
+							first, group, chainID, helices);
+					strands = strands(secStruct, groupIds, groupTypes, types,
+							first, group, chainID, strands);
+				}
+			}
+
+			handler.onEndModel();
+		}
+
+		if (bonds != null) {
+			for (int b = 0; b + 1 < bonds.length; b += 2) {
+				if (hetero[bonds[b]] || hetero[bonds[b + 1]])
+					handler.onConect(serial(atomIds, bonds[b]),
+							serial(atomIds, bonds[b + 1]));
+			}
+		}
+	}
+
+	/**
+	 * Reports each run of helical residues of a chain as a helix.
+	 */
+	private int helices(int[] secStruct, int[] groupIds, int[] groupTypes,
+			GroupType[] types, int from, int to, String chainID, int serial) {
+		int g = from;
+		while (g < to) {
+			if (!isHelix(secStruct[g])) {
+				g++;
+				continue;
+			}
+
+			int start = g;
+			while (g < to && secStruct[g] == secStruct[start])
+				g++;
+
+			serial++;
+			handler.onHelix(serial, String.valueOf(serial),
+					types[groupTypes[start]].name, chainID, groupIds[start],
+					types[groupTypes[g - 1]].name, chainID, groupIds[g - 1]);
+		}
+		return serial;
+	}
+
+	/**
+	 * Reports each run of extended residues of a chain as a strand. MMTF does
+	 * not say which strands form a sheet, so each chain is taken as one.
+	 */
+	private int strands(int[] secStruct, int[] groupIds, int[] groupTypes,
+			GroupType[] types, int from, int to, String chainID, int strand) {
+		int g = from;
+		while (g < to) {
+			if (secStruct[g] != EXTENDED) {
+				g++;
+				continue;
+			}
+
+			int start = g;
+			while (g < to && secStruct[g] == EXTENDED)
+				g++;
+
+			strand++;
+			handler.onSheet(strand, chainID, types[groupTypes[start]].name,
+					chainID, groupIds[start], types[groupTypes[g - 1]].name,
+					chainID, groupIds[g - 1]);
+		}
+		return strand;
+	}
+
+	private static boolean isHelix(int code) {
+		return code == ALPHA_HELIX || code == HELIX_3_10 || code == PI_HELIX;
+	}
+
+	private static char altLoc(char[] codes, int i) {
+		if (codes == null || codes[i] == 0)
+			return ' ';
+		return codes[i];
+	}
+
+	private static int serial(int[] atomIds, int atom) {
+		return atomIds != null ? atomIds[atom] : atom + 1;
+	}
+
+	/**
+	 * A residue type of the groupList: its name, its atoms in file order and
+	 * the bonds between them as pairs of indices.
+	 */
+	private static class GroupType {
+		String name;
+		String[] names, elements;
+		int[] bonds;
+		boolean polymer;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static GroupType[] groupTypes(List<Object> groupList) {
+		GroupType[] types = new GroupType[groupList.size()];
+
+		for (int i = 0; i < types.length; i++) {
+			Map<String, Object> group = (Map<String, Object>) groupList.get(i);
+			GroupType type = new GroupType();
+
+			type.name = String.valueOf(group.get("groupName"));
+			type.names = MmtfCodec.strings(group.get("atomNameList"));
+			type.elements = MmtfCodec.strings(group.get("elementList"));
+			type.bonds = MmtfCodec.ints(group.get("bondAtomList"));
+			if (type.bonds == null)
+				type.bonds = new int[0];
+
+			// used if there is no entityList
+			String chemCompType = String.valueOf(group.get("chemCompType"))
+					.toUpperCase();
+			type.polymer = chemCompType.contains("PEPTIDE")
+					|| chemCompType.contains("DNA")
+					|| chemCompType.contains("RNA");
+
+			// names are shared between all atoms of the same kind
+			for (int a = 0; a < type.names.length; a++) {
+				type.names[a] = type.names[a].intern();
+				type.elements[a] = type.elements[a].intern();
+			}
+			types[i] = type;
+		}
+		return types;
+	}
+
+	/**
+	 * Marks the chains of polymer entities, or returns null if the file lists
+	 * no entities.
+	 */
+	@SuppressWarnings("unchecked")
+	private static boolean[] polymerChains(List<Object> entityList,
+			int chains) {
+		if (entityList == null || entityList.isEmpty())
+			return null;
+
+		boolean[] polymer = new boolean[chains];
+		for (Object e : entityList) {
+			Map<String, Object> entity = (Map<String, Object>) e;
+			if (!"polymer".equals(entity.get("type")))
+				continue;
+
+			int[] indices = MmtfCodec.ints(entity.get("chainIndexList"));
+			for (int chain : indices) {
+				if (chain < chains)
+					polymer[chain] = true;
+			}
+		}
+		return polymer;
+	}
+}
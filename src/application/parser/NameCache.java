@@ -0,0 +1,102 @@
+package application.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Hands out one shared String per distinct short name found in the file
+ * (atom names, residue names, chain IDs, elements).
+ *
+ * The non-blank characters of a column are packed into an int key, which is
+ * looked up in a small open addressing table. A String is only created the
+ * first time a name is seen, so after the first few residues ATOM records no
+ * longer allocate anything for their names. Names longer than four characters
+ * can not be packed and are created every time.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class NameCache {
+
+	private int[] keys;
+	private String[] values;
+	private int size;
+
+	public NameCache() {
+		keys = new int[256];
+		values = new String[256];
+	}
+
+	/**
+	 * Returns the name held in the given columns with all whitespace removed.
+	 */
+	public String get(ByteBuffer buf, int line, int len, int from, int to) {
+		to = Math.min(to, len);
+		int key = 0, n = 0;
+
+		for (int i = from; i < to; i++) {
+			byte c = buf.get(line + i);
+			if (PdbColumns.isSpace(c))
+				continue;
+			if (n == 4)
+				return PdbColumns.string(buf, line, len, from, to);
+
+			key = key << 8 | (c & 0xff);
+			n++;
+		}
+
+		if (key == 0)
+			return "";
+
+		int mask = keys.length - 1;
+		int slot = mix(key) & mask;
+		while (keys[slot] != 0) {
+			if (keys[slot] == key)
+				return values[slot];
+			slot = (slot + 1) & mask;
+		}
+
+		String name = decode(key, n);
+		keys[slot] = key;
+		values[slot] = name;
+
+		if (++size * 2 > keys.length)
+			grow();
+
+		return name;
+	}
+
+	private static String decode(int key, int n) {
+		byte[] chars = new byte[n];
+		for (int i = n - 1; i >= 0; i--) {
+			chars[i] = (byte) key;
+			key >>>= 8;
+		}
+		return new String(chars, StandardCharsets.ISO_8859_1);
+	}
+
+	private void grow() {
+		int[] oldKeys = keys;
+		String[] oldValues = values;
+		keys = new int[oldKeys.length * 2];
+		values = new String[oldKeys.length * 2];
+
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] == 0)
+				continue;
+
+			int slot = mix(oldKeys[i]) & mask;
+			while (keys[slot] != 0)
+				slot = (slot + 1) & mask;
+
+			keys[slot] = oldKeys[i];
+			values[slot] = oldValues[i];
+		}
+	}
+
+	private static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
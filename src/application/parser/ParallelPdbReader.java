@@ -0,0 +1,254 @@
+package application.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Decodes a PDB file on several cores.
+ *
+ * The memory-mapped file is split into byte ranges that each end right after
+ * a line terminator. Every range is decoded by its own PdbReader into its own
+ * RecordBuffer on a fork-join pool. The buffers are returned in file order, so
+ * replaying them one after the other gives a handler exactly the same records
+ * in exactly the same order as a single PdbReader would.
+ *
+ * A range never ends inside the atom records of a residue, so that the
+ * buffers can also be replayed into handlers of their own, in parallel: the
+ * alternate locations of an atom (altLoc) are told apart within their
+ * residue (see Parser), which is then always in a single buffer.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class ParallelPdbReader {
+
+	/** Largest part of a file that is mapped at once. */
+	private static final long MAP_WINDOW = 1 << 30;
+
+	/** Ranges are never made smaller than this. */
+	private static final int MIN_CHUNK = 1 << 20;
+
+	/** Number of ranges per worker thread, to even out uneven ranges. */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/** The columns of the chain ID, residue number and insertion code. */
+	private static final int RESIDUE_START = 21, RESIDUE_END = 27;
+
+	private final ForkJoinPool pool;
+	private LoadOptions options;
+	private MetaStore meta;
+
+	public ParallelPdbReader() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public ParallelPdbReader(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Sets the options every range is decoded with, null to keep everything.
+	 */
+	public void setOptions(LoadOptions options) {
+		this.options = options;
+	}
+
+	/**
+	 * Keeps the title section of the file in the given store, see
+	 * PdbReader.setMetaStore(). Every range keeps its records in a store of
+	 * its own, which are appended to this one in file order.
+	 */
+	public void setMetaStore(MetaStore meta) {
+		this.meta = meta;
+	}
+
+	/**
+	 * Decodes the file and returns one buffer per range, in file order.
+	 */
+	public List<RecordBuffer> read(File file) throws IOException {
+		List<ForkJoinTask<RecordBuffer>> tasks;
+		tasks = new ArrayList<ForkJoinTask<RecordBuffer>>();
+		List<MetaStore> parts = new ArrayList<MetaStore>();
+
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			long size = channel.size();
+			long offset = 0;
+
+			while (offset < size) {
+				long window = Math.min(size - offset, MAP_WINDOW);
+				boolean endOfFile = offset + window == size;
+				MappedByteBuffer buf = channel.map(MapMode.READ_ONLY, offset,
+						window);
+
+				int usable = endOfFile ? (int) window : residueStart(buf,
+						afterLastLine(buf, (int) window), 0, (int) window);
+				if (usable == 0)
+					throw new IOException("Line at byte " + offset
+							+ " does not fit into the mapping window");
+
+				submit(buf, usable, endOfFile, tasks, parts);
+				offset += usable;
+			}
+
+			List<RecordBuffer> buffers = new ArrayList<RecordBuffer>(
+					tasks.size());
+			for (ForkJoinTask<RecordBuffer> task : tasks)
+				buffers.add(task.join());
+			if (meta != null) {
+				for (MetaStore part : parts)
+					meta.addAll(part);
+			}
+
+			return buffers;
+		}
+	}
+
+	/**
+	 * Splits the first usable bytes of the buffer into line aligned ranges and
+	 * submits one task per range.
+	 */
+	private void submit(ByteBuffer buf, int usable, boolean endOfFile,
+			List<ForkJoinTask<RecordBuffer>> tasks, List<MetaStore> parts) {
+		int chunks = pool.getParallelism() * CHUNKS_PER_THREAD;
+		int chunk = Math.max(usable / chunks + 1, MIN_CHUNK);
+
+		int from = 0;
+		while (from < usable) {
+			int to = from + chunk >= usable ? usable : residueStart(buf,
+					lineEnd(buf, from + chunk, usable), from, usable);
+
+			final ByteBuffer range = buf.duplicate();
+			final int start = from, end = to;
+			final boolean last = endOfFile && to == usable;
+			final MetaStore part = meta == null ? null : new MetaStore();
+			parts.add(part);
+
+			tasks.add(pool.submit(() -> {
+				RecordBuffer records = new RecordBuffer();
+				PdbReader reader = new PdbReader(records, options);
+				reader.setMetaStore(part);
+				reader.decode(range, start, end, last);
+				return records;
+			}));
+
+			from = to;
+		}
+	}
+
+	/**
+	 * Returns the offset right after the first line terminator at or after the
+	 * given offset.
+	 */
+	private static int lineEnd(ByteBuffer buf, int from, int limit) {
+		while (from < limit && buf.get(from) != '\n')
+			from++;
+		return Math.min(from + 1, limit);
+	}
+
+	/**
+	 * Moves the start of a line back to the start of the residue whose atom
+	 * records it falls between, if any. A line that is cut off at the limit
+	 * before its residue columns is taken to belong to the line before it.
+	 *
+	 * @param to
+	 *            the start of a line
+	 * @param floor
+	 *            the start of the range, to is returned unchanged if the
+	 *            residue reaches back to it
+	 * @param limit
+	 *            the end of the bytes that can be read
+	 */
+	private static int residueStart(ByteBuffer buf, int to, int floor,
+			int limit) {
+		if (to >= limit)
+			return to;
+
+		int line = to, len = lineEnd(buf, to, limit) - to;
+		if (len < RESIDUE_END && buf.get(to + len - 1) != '\n') {
+			if (to == floor)
+				return to;
+			line = lineStart(buf, to - 1, floor);
+			len = to - line;
+		}
+		if (!isAtomRecord(buf, line, len))
+			return to;
+
+		int start = line;
+		while (start > floor) {
+			int previous = lineStart(buf, start - 1, floor);
+			if (!isAtomRecord(buf, previous, start - previous)
+					|| !sameResidue(buf, previous, line))
+				return start;
+			start = previous;
+		}
+		return to;
+	}
+
+	/**
+	 * Returns the start of the line the byte at offset belongs to, but not
+	 * less than floor.
+	 */
+	private static int lineStart(ByteBuffer buf, int offset, int floor) {
+		while (offset > floor && buf.get(offset - 1) != '\n')
+			offset--;
+		return offset;
+	}
+
+	/**
+	 * Whether the line is an ATOM, HETATM, ANISOU, SIGATM or SIGUIJ record
+	 * that reaches the residue columns, which all of them share.
+	 */
+	private static boolean isAtomRecord(ByteBuffer buf, int line, int len) {
+		if (len < RESIDUE_END)
+			return false;
+
+		switch (PdbColumns.recordType(buf, line, len)) {
+		case PdbColumns.ATOM:
+		case PdbColumns.HETATM:
+		case PdbColumns.ANISOU:
+		case PdbColumns.SIGATM:
+		case PdbColumns.SIGUIJ:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Whether two atom records have the same chain ID, residue number and
+	 * insertion code (columns 22 to 27).
+	 */
+	private static boolean sameResidue(ByteBuffer buf, int line, int other) {
+		for (int i = RESIDUE_START; i < RESIDUE_END; i++) {
+			if (buf.get(line + i) != buf.get(other + i))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the offset right after the last line terminator in the buffer,
+	 * or 0 if there is none.
+	 */
+	private static int afterLastLine(ByteBuffer buf, int limit) {
+		for (int i = limit - 1; i >= 0; i--) {
+			if (buf.get(i) == '\n')
+				return i + 1;
+		}
+		return 0;
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+}
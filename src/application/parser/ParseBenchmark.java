@@ -0,0 +1,131 @@
+package application.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how the parallel reader scales with the number of cores.
+ *
+ * Decodes the given file once with a single PdbReader and then with a
+ * ParallelPdbReader on pools of 1, 2, 4, ... threads up to the number of
+ * available processors, and prints the best time of a few runs and the
+ * speedup over the single threaded reader. The records are only counted, so
+ * no JavaFX classes are needed.
+ *
+ * Any further files, the same structure as mmCIF or MMTF, are then decoded
+ * with a CifReader or an MmtfReader and compared with the single PdbReader
+ * the same way.
+ *
+ * Usage: ParseBenchmark file.pdb [runs [file.cif | file.mmtf ...]]
+ *
+ * @author Slav Danchev
+ *
+ */
+public class ParseBenchmark {
+
+	/**
+	 * Counts the ATOM and HETATM records and sums their coordinates so that
+	 * the decoding can not be optimised away.
+	 */
+	private static class Counter implements PdbRecordHandler {
+		long atoms;
+		double sum;
+
+		@Override
+		public void onAtom(boolean hetero, int serial, String name,
+				char altLoc, String resName, String chainID, int resSeq,
+				char iCode, double x, double y, double z, double occupancy,
+				double tempFactor, String element) {
+			atoms++;
+			sum += x + y + z;
+		}
+	}
+
+	public static void main(String... args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage: ParseBenchmark file.pdb [runs "
+					+ "[file.cif | file.mmtf ...]]");
+			return;
+		}
+
+		File file = new File(args[0]);
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		long sequential = Long.MAX_VALUE;
+		Counter counter = null;
+		for (int i = 0; i < runs; i++) {
+			long start = System.nanoTime();
+			counter = new Counter();
+			new PdbReader(counter).read(file);
+			sequential = Math.min(sequential, System.nanoTime() - start);
+		}
+
+		System.out.printf("%s: %.1f MB, %d atoms%n", file.getName(),
+				file.length() / 1e6, counter.atoms);
+		System.out.printf("%8s %10s %8s%n", "threads", "ms", "speedup");
+		System.out.printf("%8s %10.1f %8.2f%n", "single", sequential / 1e6,
+				1.0);
+
+		for (int threads = 1; threads <= cores; threads = next(threads,
+				cores)) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			long best = Long.MAX_VALUE;
+
+			for (int i = 0; i < runs; i++) {
+				long start = System.nanoTime();
+				Counter merged = new Counter();
+				List<RecordBuffer> buffers = new ParallelPdbReader(pool)
+						.read(file);
+				for (RecordBuffer records : buffers)
+					records.replay(merged);
+				best = Math.min(best, System.nanoTime() - start);
+
+				if (merged.atoms != counter.atoms)
+					throw new IllegalStateException("Parallel read found "
+							+ merged.atoms + " atoms instead of "
+							+ counter.atoms);
+			}
+
+			pool.shutdown();
+			System.out.printf("%8d %10.1f %8.2f%n", threads, best / 1e6,
+					(double) sequential / best);
+		}
+
+		for (int f = 2; f < args.length; f++) {
+			File other = new File(args[f]);
+			boolean mmtf = other.getName().toLowerCase().contains(".mmtf");
+			long best = Long.MAX_VALUE;
+
+			for (int i = 0; i < runs; i++) {
+				long start = System.nanoTime();
+				Counter decoded = new Counter();
+				if (mmtf)
+					new MmtfReader(decoded).read(other);
+				else
+					new CifReader(decoded).read(other);
+				best = Math.min(best, System.nanoTime() - start);
+
+				if (decoded.atoms != counter.atoms)
+					throw new IllegalStateException(other.getName()
+							+ " has " + decoded.atoms + " atoms instead of "
+							+ counter.atoms);
+			}
+
+			System.out.printf("%8s %10.1f %8.2f%n", mmtf ? "mmtf" : "cif",
+					best / 1e6, (double) sequential / best);
+		}
+	}
+
+	/**
+	 * Doubles the thread count, making sure the number of cores itself is
+	 * measured too.
+	 */
+	private static int next(int threads, int cores) {
+		if (threads == cores)
+			return cores + 1;
+		return Math.min(threads * 2, cores);
+	}
+}
@@ -0,0 +1,320 @@
+package application.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes the fixed columns of a PDB record straight from the bytes of the
+ * file, without creating a String for the line.
+ *
+ * All methods take the buffer, the offset of the first byte of the line and
+ * the length of the line (without the line terminator). Column ranges are
+ * given zero based and end exclusive, exactly like the arguments of
+ * String.substring(), so that a call like parseInt(buf, line, len, 6, 11) reads
+ * the same characters as line.substring(6, 11) did in the text parser. Columns
+ * that lie beyond the end of a short line are treated as blank.
+ *
+ * Numbers are decoded by hand. Coordinates and other real valued fields are
+ * read as a fixed-point mantissa and divided by the matching power of ten,
+ * which gives the same correctly rounded double as Double.parseDouble() for
+ * every value the format can hold.
+ *
+ * @author Slav Danchev
+ *
+ */
+public final class PdbColumns {
+
+	/*
+	 * record types as packed by recordType(), e.g. for the case labels of a
+	 * switch on it
+	 */
+	public static final int HEADER = 'H' << 24 | 'E' << 16 | 'A' << 8 | 'D';
+	public static final int TITLE = 'T' << 24 | 'I' << 16 | 'T' << 8 | 'L';
+	public static final int REMARK = 'R' << 24 | 'E' << 16 | 'M' << 8 | 'A';
+	public static final int SEQRES = 'S' << 24 | 'E' << 16 | 'Q' << 8 | 'R';
+	public static final int HELIX = 'H' << 24 | 'E' << 16 | 'L' << 8 | 'I';
+	public static final int SHEET = 'S' << 24 | 'H' << 16 | 'E' << 8 | 'E';
+	public static final int LINK = 'L' << 24 | 'I' << 16 | 'N' << 8 | 'K';
+	public static final int MODEL = 'M' << 24 | 'O' << 16 | 'D' << 8 | 'E';
+	public static final int ATOM = 'A' << 24 | 'T' << 16 | 'O' << 8 | 'M';
+	public static final int HETATM = 'H' << 24 | 'E' << 16 | 'T' << 8 | 'A';
+	public static final int ANISOU = 'A' << 24 | 'N' << 16 | 'I' << 8 | 'S';
+	public static final int SIGATM = 'S' << 24 | 'I' << 16 | 'G' << 8 | 'A';
+	public static final int SIGUIJ = 'S' << 24 | 'I' << 16 | 'G' << 8 | 'U';
+	public static final int TER = 'T' << 24 | 'E' << 16 | 'R' << 8 | ' ';
+	public static final int ENDMDL = 'E' << 24 | 'N' << 16 | 'D' << 8 | 'M';
+	public static final int CONECT = 'C' << 24 | 'O' << 16 | 'N' << 8 | 'E';
+
+	private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5,
+			1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17,
+			1e18 };
+
+	/** Mantissas with more digits than this are handed to Double.parseDouble. */
+	private static final int MAX_DIGITS = 18;
+
+	private PdbColumns() {
+	}
+
+	/**
+	 * Returns the character at the given column, or a space if the line is
+	 * shorter than that.
+	 */
+	public static byte byteAt(ByteBuffer buf, int line, int len, int col) {
+		return col < len ? buf.get(line + col) : (byte) ' ';
+	}
+
+	/**
+	 * Packs the first four characters of the line into an int, so that the
+	 * record type can be used in a switch statement. Missing characters are
+	 * padded with spaces.
+	 */
+	public static int recordType(ByteBuffer buf, int line, int len) {
+		return (byteAt(buf, line, len, 0) & 0xff) << 24
+				| (byteAt(buf, line, len, 1) & 0xff) << 16
+				| (byteAt(buf, line, len, 2) & 0xff) << 8
+				| (byteAt(buf, line, len, 3) & 0xff);
+	}
+
+	/**
+	 * Returns true if the given columns contain nothing but whitespace.
+	 */
+	public static boolean isBlank(ByteBuffer buf, int line, int len, int from,
+			int to) {
+		to = Math.min(to, len);
+		for (int i = from; i < to; i++) {
+			if (!isSpace(buf.get(line + i)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Decodes a right or left justified integer field.
+	 *
+	 * @throws NumberFormatException
+	 *             if the field is blank or holds anything but an optionally
+	 *             signed run of digits
+	 */
+	public static int parseInt(ByteBuffer buf, int line, int len, int from,
+			int to) {
+		to = Math.min(to, len);
+		int i = skipSpaces(buf, line, from, to);
+		int end = trimEnd(buf, line, i, to);
+
+		if (i == end)
+			throw invalid(buf, line, len, from, to);
+
+		boolean negative = false;
+		byte c = buf.get(line + i);
+		if (c == '-' || c == '+') {
+			negative = c == '-';
+			i++;
+			if (i == end)
+				throw invalid(buf, line, len, from, to);
+		}
+
+		int value = 0;
+		for (; i < end; i++) {
+			int digit = buf.get(line + i) - '0';
+			if (digit < 0 || digit > 9)
+				throw invalid(buf, line, len, from, to);
+			value = value * 10 + digit;
+		}
+
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Decodes an atom serial or residue number field, which holds a decimal
+	 * number or, for numbers too large for the width of the field, a
+	 * hybrid-36 number: a run of base 36 digits as wide as the field that
+	 * starts with a letter. Upper case numbers follow the largest decimal one
+	 * (A0000 is 100000 in a serial field), lower case numbers follow the
+	 * upper case ones (a0000 is 100000 + 26 * 36^4). Programs that write
+	 * large assemblies and simulations in the PDB format use it.
+	 *
+	 * @throws NumberFormatException
+	 *             if the field holds neither kind of number
+	 */
+	public static int parseHybrid36(ByteBuffer buf, int line, int len,
+			int from, int to) {
+		byte first = byteAt(buf, line, len, from);
+		boolean upper = first >= 'A' && first <= 'Z';
+		if (!upper && (first < 'a' || first > 'z'))
+			return parseInt(buf, line, len, from, to);
+
+		int value = 0;
+		for (int i = from; i < to; i++) {
+			int digit = digit36(byteAt(buf, line, len, i), upper);
+			if (digit < 0)
+				throw invalid(buf, line, len, from, to);
+			value = value * 36 + digit;
+		}
+		return fromHybrid36(value, to - from, upper);
+	}
+
+	/**
+	 * Decodes an atom serial or residue number field given as a String, like
+	 * parseHybrid36(ByteBuffer, int, int, int, int), with the width of the
+	 * field.
+	 */
+	public static int parseHybrid36(String field, int width) {
+		String trimmed = field.trim();
+		if (trimmed.length() != width || trimmed.charAt(0) < 'A')
+			return Integer.parseInt(trimmed);
+
+		char first = trimmed.charAt(0);
+		boolean upper = first >= 'A' && first <= 'Z';
+		if (!upper && (first < 'a' || first > 'z'))
+			throw invalid(field);
+
+		int value = 0;
+		for (int i = 0; i < width; i++) {
+			int digit = digit36((byte) trimmed.charAt(i), upper);
+			if (digit < 0)
+				throw invalid(field);
+			value = value * 36 + digit;
+		}
+		return fromHybrid36(value, width, upper);
+	}
+
+	/**
+	 * The value of a base 36 digit of the given case, or -1.
+	 */
+	private static int digit36(byte c, boolean upper) {
+		if (c >= '0' && c <= '9')
+			return c - '0';
+		if (upper && c >= 'A' && c <= 'Z')
+			return c - 'A' + 10;
+		if (!upper && c >= 'a' && c <= 'z')
+			return c - 'a' + 10;
+		return -1;
+	}
+
+	/**
+	 * Turns the base 36 value of a hybrid-36 field into the number it stands
+	 * for: the letters start at 10 * 36^(width - 1), the first number after
+	 * the decimal ones.
+	 */
+	private static int fromHybrid36(int value, int width, boolean upper) {
+		int power = 1;
+		for (int i = 1; i < width; i++)
+			power *= 36;
+
+		value += (int) POW10[width] - 10 * power;
+		return upper ? value : value + 26 * power;
+	}
+
+	/**
+	 * Decodes a real valued field such as a coordinate, occupancy or
+	 * temperature factor.
+	 *
+	 * @throws NumberFormatException
+	 *             if the field is blank or not a number
+	 */
+	public static double parseDouble(ByteBuffer buf, int line, int len,
+			int from, int to) {
+		to = Math.min(to, len);
+		int i = skipSpaces(buf, line, from, to);
+		int end = trimEnd(buf, line, i, to);
+
+		if (i == end)
+			throw invalid(buf, line, len, from, to);
+
+		boolean negative = false;
+		byte c = buf.get(line + i);
+		if (c == '-' || c == '+') {
+			negative = c == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0, scale = -1;
+		for (; i < end; i++) {
+			c = buf.get(line + i);
+			if (c == '.' && scale < 0) {
+				scale = 0;
+				continue;
+			}
+
+			int digit = c - '0';
+			if (digit < 0 || digit > 9 || digits == MAX_DIGITS)
+				return Double.parseDouble(string(buf, line, len, from, to));
+
+			mantissa = mantissa * 10 + digit;
+			digits++;
+			if (scale >= 0)
+				scale++;
+		}
+
+		if (digits == 0)
+			throw invalid(buf, line, len, from, to);
+
+		double value = scale > 0 ? mantissa / POW10[scale] : mantissa;
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Creates a String from the given columns with all whitespace removed.
+	 * Only meant for the rare record types, ATOM and HETATM records should use
+	 * a NameCache instead.
+	 */
+	public static String string(ByteBuffer buf, int line, int len, int from,
+			int to) {
+		to = Math.min(to, len);
+		byte[] chars = new byte[Math.max(to - from, 0)];
+		int n = 0;
+
+		for (int i = from; i < to; i++) {
+			byte c = buf.get(line + i);
+			if (!isSpace(c))
+				chars[n++] = c;
+		}
+
+		return new String(chars, 0, n, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Creates a String from the given columns as they are, only cutting them
+	 * short if the line ends early.
+	 */
+	public static String text(ByteBuffer buf, int line, int len, int from,
+			int to) {
+		to = Math.min(to, len);
+		if (to <= from)
+			return "";
+
+		byte[] chars = new byte[to - from];
+		for (int i = from; i < to; i++)
+			chars[i - from] = buf.get(line + i);
+
+		return new String(chars, StandardCharsets.ISO_8859_1);
+	}
+
+	static boolean isSpace(byte c) {
+		return c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\f'
+				|| c == 0x0b;
+	}
+
+	private static int skipSpaces(ByteBuffer buf, int line, int from, int to) {
+		while (from < to && isSpace(buf.get(line + from)))
+			from++;
+		return from;
+	}
+
+	private static int trimEnd(ByteBuffer buf, int line, int from, int to) {
+		while (to > from && isSpace(buf.get(line + to - 1)))
+			to--;
+		return to;
+	}
+
+	private static NumberFormatException invalid(ByteBuffer buf, int line,
+			int len, int from, int to) {
+		return invalid(string(buf, line, len, from, to));
+	}
+
+	private static NumberFormatException invalid(String field) {
+		return new NumberFormatException("For input string: \"" + field
+				+ "\"");
+	}
+}
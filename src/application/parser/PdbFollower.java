@@ -0,0 +1,287 @@
+package application.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import application.structure.LinkGraph;
+
+/**
+ * Follows a PDB file that is still being written, e.g. by a running
+ * simulation, and decodes the models appended to it.
+ *
+ * The structure itself is read up to the end of the last complete model (see
+ * getOffset()), or up to the END record if the file is already finished, so
+ * that the records after the models (CONECT, LINK, HETATM outside a model)
+ * are read as they are for a file that is not followed. Every call to poll() then decodes the complete lines that were
+ * appended since the last call, starting where that call stopped, and returns
+ * the coordinates of the models that were finished in between. A model that
+ * is only partly written is kept and finished by a later call, so the state of
+ * the decoding (the model that is open and its coordinates) carries over from
+ * one call to the next, much like a parse that is paused at the end of the
+ * file.
+ *
+ * As with the models of an ensemble, only the coordinates of the ATOM and
+ * HETATM records of the appended models are kept, in file order, and of the
+ * first location of each atom (see AltLocFilter). The CONECT and LINK records
+ * that are appended after the models are kept as well, and handed out by
+ * pollLinks(). Atoms that are appended outside a model can not be added to
+ * the structure and are skipped.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class PdbFollower implements Closeable {
+
+	/** Size of the buffer the appended bytes are read into. */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final byte[] ENDMDL = { 'E', 'N', 'D', 'M', 'D', 'L' };
+	private static final byte[] END = { 'E', 'N', 'D' };
+
+	private final FileChannel channel;
+	private final PdbReader reader;
+	private final Frames frames = new Frames();
+	private ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+	private long offset;
+
+	/**
+	 * Collects the coordinates of the models the reader decodes, and the
+	 * bonds stated after them.
+	 */
+	private static class Frames implements PdbRecordHandler {
+		final List<float[]> finished = new ArrayList<float[]>();
+		LinkGraph links = new LinkGraph();
+		boolean linked;
+		final AltLocFilter altLocs = new AltLocFilter();
+		float[] current = new float[3 * 256];
+		int length;
+		boolean inModel;
+
+		@Override
+		public void onModel(int serial) {
+			inModel = true;
+			length = 0;
+		}
+
+		@Override
+		public void onAtom(boolean hetero, int serial, String name,
+				char altLoc, String resName, String chainID, int resSeq,
+				char iCode, double x, double y, double z, double occupancy,
+				double tempFactor, String element) {
+			if (!inModel || altLocs.isAlternate(chainID, resSeq, iCode,
+					name, altLoc))
+				return;
+
+			if (length + 3 > current.length)
+				current = Arrays.copyOf(current, 2 * current.length);
+			current[length++] = (float) x;
+			current[length++] = (float) y;
+			current[length++] = (float) z;
+		}
+
+		@Override
+		public void onEndModel() {
+			// the rest of a model that was open when following started
+			if (!inModel)
+				return;
+
+			finished.add(Arrays.copyOf(current, length));
+			inModel = false;
+		}
+
+		@Override
+		public void onLink(String name1, String resName1, String chainID1,
+				int resSeq1, String name2, String resName2, String chainID2,
+				int resSeq2) {
+			links.addLink(name1, chainID1, resSeq1, name2, chainID2, resSeq2);
+			linked = true;
+		}
+
+		@Override
+		public void onConect(int serial, int bondedSerial) {
+			links.addConect(serial, bondedSerial);
+			linked = true;
+		}
+	}
+
+	/**
+	 * Opens the file and finds the end of its END record, or of its last
+	 * complete model if there is none after it, or of its last complete line
+	 * if it has no models yet.
+	 *
+	 * @param options
+	 *            the options the structure was loaded with, or null
+	 */
+	public PdbFollower(File file, LoadOptions options) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		reader = new PdbReader(frames, options);
+
+		try {
+			long size = channel.size();
+			long models = lastRecordEnd(ENDMDL, 0, size);
+			offset = lastRecordEnd(END, Math.max(0, models), size);
+			if (offset < 0)
+				offset = models;
+			if (offset < 0)
+				offset = lastLineEnd(size);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * The number of bytes at the start of the file that hold complete models
+	 * (or lines, or the whole finished file), and should be read as the
+	 * structure.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Decodes the complete lines appended since the last call and returns the
+	 * coordinates of the models that were finished by them, in file order.
+	 */
+	public List<float[]> poll() throws IOException {
+		long size = channel.size();
+		if (size < offset)
+			throw new IOException("File was truncated");
+
+		while (offset < size) {
+			int n = read(offset,
+					(int) Math.min(size - offset, buf.capacity()));
+			int consumed = reader.decode(buf, 0, n, false);
+
+			if (consumed == 0) {
+				if (n < buf.capacity())
+					break; // the last line is still being written
+
+				// a single line does not fit, make room for it
+				buf = ByteBuffer.allocate(2 * buf.capacity());
+				continue;
+			}
+			offset += consumed;
+		}
+
+		List<float[]> result = new ArrayList<float[]>(frames.finished);
+		frames.finished.clear();
+		return result;
+	}
+
+	/**
+	 * Returns the CONECT and LINK records decoded by the calls to poll()
+	 * since the last call, not resolved, or null if there were none.
+	 */
+	public LinkGraph pollLinks() {
+		if (!frames.linked)
+			return null;
+
+		LinkGraph result = frames.links;
+		frames.links = new LinkGraph();
+		frames.linked = false;
+		return result;
+	}
+
+	/**
+	 * Looks for the last record of the given name that starts at or after
+	 * an offset, from the end of the file backwards, and returns the offset
+	 * after its line, or -1 if there is none.
+	 */
+	private long lastRecordEnd(byte[] name, long start, long size)
+			throws IOException {
+		for (long end = size; end > start; end -= BUFFER_SIZE) {
+			// one byte before the range to see whether it starts a line, and
+			// enough after it to see a record starting at its end
+			long from = Math.max(0, end - BUFFER_SIZE - 1);
+			long to = Math.min(size, end + ENDMDL.length);
+			read(from, (int) (to - from));
+
+			for (long p = end - 1; p >= Math.max(start, end - BUFFER_SIZE);
+					p--) {
+				int i = (int) (p - from);
+				boolean lineStart = p == 0 || buf.get(i - 1) == '\n';
+				if (lineStart && isRecord(i, to - from, name))
+					return lineEnd(p, size);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Whether a record of the given name starts at an index of buf, i.e. the
+	 * name is not followed by more letters of a longer name (END is not
+	 * ENDMDL).
+	 */
+	private boolean isRecord(int i, long limit, byte[] name) {
+		if (i + name.length > limit)
+			return false;
+		for (int k = 0; k < name.length; k++) {
+			if (buf.get(i + k) != name[k])
+				return false;
+		}
+		if (i + name.length == limit)
+			return true;
+		byte next = buf.get(i + name.length);
+		return next < 'A' || next > 'Z';
+	}
+
+	/**
+	 * The offset after the line that starts at the given offset, or the size
+	 * of the file if the line is not finished.
+	 */
+	private long lineEnd(long p, long size) throws IOException {
+		while (p < size) {
+			int n = read(p, (int) Math.min(size - p, BUFFER_SIZE));
+			for (int i = 0; i < n; i++) {
+				if (buf.get(i) == '\n')
+					return p + i + 1;
+			}
+			p += n;
+		}
+		return size;
+	}
+
+	/**
+	 * The offset after the last line terminator in the file, 0 if there is
+	 * none.
+	 */
+	private long lastLineEnd(long size) throws IOException {
+		for (long end = size; end > 0; end -= BUFFER_SIZE) {
+			long from = Math.max(0, end - BUFFER_SIZE);
+			int n = read(from, (int) (end - from));
+			for (int i = n - 1; i >= 0; i--) {
+				if (buf.get(i) == '\n')
+					return from + i + 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Reads bytes of the file from the given offset into the start of buf.
+	 */
+	private int read(long position, int length) throws IOException {
+		if (buf.capacity() < length)
+			buf = ByteBuffer.allocate(length);
+
+		buf.clear().limit(length);
+		while (buf.hasRemaining()) {
+			if (channel.read(buf, position + buf.position()) < 0)
+				break;
+		}
+		return buf.position();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
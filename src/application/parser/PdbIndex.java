@@ -0,0 +1,428 @@
+package application.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The byte offsets of the record blocks of a PDB file, kept next to it as
+ * &lt;ID&gt;.pdx so that a single model, a few chains or only some record
+ * types of a large file can be read without scanning all of it.
+ *
+ * A block is a run of consecutive lines of the same record type. Coordinate
+ * records (ATOM, HETATM, ANISOU and TER) count as one type and are split by
+ * model and chain instead, so each chain of each model is one block, or a few
+ * if its HETATM records come after other chains. Reading a selection maps only
+ * the blocks it needs and decodes them with a PdbReader.
+ *
+ * The index is built in one pass over the memory-mapped file, which only
+ * looks at the first bytes of each line. Like PvcCache, it holds the size and
+ * modification time of the file and is rebuilt once they change:
+ *
+ * <pre>
+ * int magic, int version, long source size, long source modification time
+ * int models, int blocks
+ * models:  int serial[]
+ * blocks:  int type[], int model[], byte chainID[], long start[], long end[]
+ * </pre>
+ *
+ * Compressed files can not be indexed, their blocks can not be reached
+ * without inflating everything before them.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class PdbIndex {
+
+	private static final int MAGIC = 0x50445831; // "PDX1"
+	private static final int VERSION = 1;
+
+	/** Largest part of a file that is mapped at once. */
+	private static final long MAP_WINDOW = 1 << 30;
+
+	/** Model of the blocks outside of any model. */
+	private static final int NO_MODEL = -1;
+
+	private int[] serials = new int[16];
+	private int modelCount;
+
+	private int[] types = new int[256], models = new int[256];
+	private byte[] chainIDs = new byte[256];
+	private long[] starts = new long[256], ends = new long[256];
+	private int blockCount;
+
+	private PdbIndex() {
+	}
+
+	/**
+	 * The index file that belongs to a source file: its name up to the first
+	 * dot with the extension .pdx, in the same directory.
+	 */
+	public static File sidecar(File source) {
+		String name = source.getName();
+		int dot = name.indexOf('.');
+		if (dot > 0)
+			name = name.substring(0, dot);
+
+		return new File(source.getAbsoluteFile().getParentFile(), name
+				+ ".pdx");
+	}
+
+	/**
+	 * Reads the index of the file, or builds and stores it if there is none
+	 * that matches the file. An index that can not be stored, e.g. next to a
+	 * file in a read only directory, is still used.
+	 */
+	public static PdbIndex open(File source) throws IOException {
+		PdbIndex index = load(source);
+		if (index != null)
+			return index;
+
+		index = build(source);
+		try {
+			index.write(source);
+		} catch (IOException e) {
+			// the index is built again the next time the file is read
+		}
+		return index;
+	}
+
+	/**
+	 * Scans the file once and records where each block starts and ends.
+	 */
+	public static PdbIndex build(File source) throws IOException {
+		if (GzipPipe.isGzip(source))
+			throw new IOException("Compressed files can not be indexed");
+
+		PdbIndex index = new PdbIndex();
+
+		try (FileChannel channel = FileChannel.open(source.toPath(),
+				StandardOpenOption.READ)) {
+			long size = channel.size();
+			long offset = 0;
+
+			while (offset < size) {
+				long window = Math.min(size - offset, MAP_WINDOW);
+				MappedByteBuffer buf = channel.map(MapMode.READ_ONLY, offset,
+						window);
+
+				int consumed = index.scan(buf, offset, (int) window,
+						offset + window == size);
+				if (consumed == 0)
+					throw new IOException("Line at byte " + offset
+							+ " does not fit into the mapping window");
+
+				offset += consumed;
+			}
+		}
+
+		return index;
+	}
+
+	/**
+	 * Adds the blocks of all complete lines of the buffer, which starts at
+	 * the given offset of the file, and returns the number of bytes consumed.
+	 */
+	private int scan(ByteBuffer buf, long offset, int to, boolean endOfInput) {
+		int line = 0;
+		int model = modelCount == 0 ? 0 : modelCount - 1;
+
+		while (line < to) {
+			int end = line;
+			while (end < to && buf.get(end) != '\n')
+				end++;
+
+			if (end == to && !endOfInput)
+				break;
+
+			int len = end - line;
+			int type = PdbColumns.recordType(buf, line, len);
+			long start = offset + line;
+			long stop = offset + Math.min(end + 1, to);
+
+			switch (type) {
+			case PdbColumns.MODEL:
+				model = addModel(PdbColumns.isBlank(buf, line, len, 10, 14) ? 0
+						: PdbColumns.parseInt(buf, line, len, 10, 14));
+				add(PdbColumns.MODEL, model, ' ', start, stop);
+				break;
+
+			case PdbColumns.ENDMDL:
+				add(PdbColumns.ENDMDL, model, ' ', start, stop);
+				break;
+
+			case PdbColumns.ATOM:
+			case PdbColumns.HETATM:
+			case PdbColumns.ANISOU:
+				add(PdbColumns.ATOM, model,
+						(char) PdbColumns.byteAt(buf, line, len, 21), start,
+						stop);
+				break;
+
+			case PdbColumns.TER:
+				// TER records often leave out the chain, they end the last one
+				add(PdbColumns.ATOM, model, blockCount > 0
+						&& types[blockCount - 1] == PdbColumns.ATOM
+						? (char) chainIDs[blockCount - 1] : ' ', start, stop);
+				break;
+
+			default:
+				add(type, NO_MODEL, ' ', start, stop);
+			}
+
+			line = end + 1;
+		}
+
+		return Math.min(line, to);
+	}
+
+	private int addModel(int serial) {
+		if (modelCount == serials.length)
+			serials = Arrays.copyOf(serials, 2 * modelCount);
+		serials[modelCount] = serial;
+		return modelCount++;
+	}
+
+	/**
+	 * Extends the last block if the line belongs to it, or starts a new one.
+	 */
+	private void add(int type, int model, char chainID, long start, long end) {
+		int last = blockCount - 1;
+		if (last >= 0 && types[last] == type && models[last] == model
+				&& chainIDs[last] == (byte) chainID && ends[last] == start) {
+			ends[last] = end;
+			return;
+		}
+
+		if (blockCount == types.length) {
+			int n = 2 * blockCount;
+			types = Arrays.copyOf(types, n);
+			models = Arrays.copyOf(models, n);
+			chainIDs = Arrays.copyOf(chainIDs, n);
+			starts = Arrays.copyOf(starts, n);
+			ends = Arrays.copyOf(ends, n);
+		}
+
+		types[blockCount] = type;
+		models[blockCount] = model;
+		chainIDs[blockCount] = (byte) chainID;
+		starts[blockCount] = start;
+		ends[blockCount] = end;
+		blockCount++;
+	}
+
+	/**
+	 * Number of models, 1 for a file without MODEL records.
+	 */
+	public int getModelCount() {
+		return Math.max(modelCount, 1);
+	}
+
+	/**
+	 * The serial number of the MODEL record of a model, 0 for a file without
+	 * MODEL records.
+	 */
+	public int getModelSerial(int model) {
+		return modelCount == 0 ? 0 : serials[model];
+	}
+
+	/**
+	 * The IDs of the chains of a model, in file order.
+	 */
+	public String getChainIDs(int model) {
+		StringBuilder ids = new StringBuilder();
+		for (int i = 0; i < blockCount; i++) {
+			char id = (char) chainIDs[i];
+			if (types[i] == PdbColumns.ATOM && models[i] == model
+					&& ids.indexOf(String.valueOf(id)) < 0)
+				ids.append(id);
+		}
+		return ids.toString();
+	}
+
+	/**
+	 * Reads the records of one model, the first one being 0, and everything
+	 * outside of the models (header, secondary structure, CONECT records).
+	 * The MODEL and ENDMDL records are left out, so the handler sees a single
+	 * model.
+	 *
+	 * @param chains
+	 *            the IDs of the chains to read, or null for all of them
+	 */
+	public void readModel(File source, PdbRecordHandler handler, int model,
+			String chains) throws IOException {
+		if (model < 0 || model >= getModelCount())
+			throw new IndexOutOfBoundsException("Model " + model + " of "
+					+ getModelCount());
+
+		boolean[] selected = new boolean[blockCount];
+		for (int i = 0; i < blockCount; i++) {
+			if (types[i] != PdbColumns.ATOM)
+				selected[i] = models[i] == NO_MODEL;
+			else if (models[i] == model)
+				selected[i] = chains == null
+						|| chains.indexOf((char) chainIDs[i]) >= 0;
+		}
+
+		read(source, handler, selected);
+	}
+
+	/**
+	 * Reads only the records of the given types, e.g. "HELIX" and "SHEET".
+	 * Coordinate records are read as "ATOM", with those of all models.
+	 */
+	public void readRecords(File source, PdbRecordHandler handler,
+			String... recordNames) throws IOException {
+		boolean[] selected = new boolean[blockCount];
+		for (String name : recordNames) {
+			ByteBuffer bytes = ByteBuffer.wrap(name.getBytes("US-ASCII"));
+			int type = PdbColumns.recordType(bytes, 0, bytes.limit());
+			for (int i = 0; i < blockCount; i++)
+				selected[i] |= types[i] == type;
+		}
+
+		read(source, handler, selected);
+	}
+
+	/**
+	 * Maps the selected blocks one after the other and decodes them, ending
+	 * with onEnd(). Adjacent blocks are mapped together.
+	 */
+	private void read(File source, PdbRecordHandler handler,
+			boolean[] selected) throws IOException {
+		PdbReader reader = new PdbReader(handler);
+
+		try (FileChannel channel = FileChannel.open(source.toPath(),
+				StandardOpenOption.READ)) {
+			int i = 0;
+			while (i < blockCount) {
+				if (!selected[i]) {
+					i++;
+					continue;
+				}
+
+				long start = starts[i], end = ends[i];
+				for (i++; i < blockCount && selected[i] && starts[i] == end; i++)
+					end = ends[i];
+
+				decode(channel, reader, start, end);
+			}
+		}
+
+		handler.onEnd();
+	}
+
+	/**
+	 * Decodes the lines between two offsets of the file, which start and end
+	 * at line boundaries.
+	 */
+	private static void decode(FileChannel channel, PdbReader reader,
+			long start, long end) throws IOException {
+		while (start < end) {
+			long window = Math.min(end - start, MAP_WINDOW);
+			MappedByteBuffer buf = channel.map(MapMode.READ_ONLY, start,
+					window);
+
+			int consumed = reader.decode(buf, 0, (int) window,
+					start + window == end);
+			if (consumed == 0)
+				throw new IOException("Line at byte " + start
+						+ " does not fit into the mapping window");
+
+			start += consumed;
+		}
+	}
+
+	/**
+	 * Reads the stored index of the file, or returns null if there is none or
+	 * it does not match the file.
+	 */
+	private static PdbIndex load(File source) {
+		File file = sidecar(source);
+		if (!file.isFile())
+			return null;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file), 1 << 16))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION
+					|| in.readLong() != source.length()
+					|| in.readLong() != source.lastModified())
+				return null;
+
+			PdbIndex index = new PdbIndex();
+			index.modelCount = in.readInt();
+			int n = in.readInt();
+			index.blockCount = n;
+
+			index.serials = new int[Math.max(index.modelCount, 1)];
+			for (int i = 0; i < index.modelCount; i++)
+				index.serials[i] = in.readInt();
+
+			index.types = new int[n];
+			index.models = new int[n];
+			index.chainIDs = new byte[n];
+			index.starts = new long[n];
+			index.ends = new long[n];
+			for (int i = 0; i < n; i++)
+				index.types[i] = in.readInt();
+			for (int i = 0; i < n; i++)
+				index.models[i] = in.readInt();
+			in.readFully(index.chainIDs);
+			for (int i = 0; i < n; i++)
+				index.starts[i] = in.readLong();
+			for (int i = 0; i < n; i++)
+				index.ends[i] = in.readLong();
+
+			return index;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the index next to the source file, through a temporary file like
+	 * PvcCache.write().
+	 */
+	private void write(File source) throws IOException {
+		File file = sidecar(source);
+		File temp = new File(file.getPath() + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(source.length());
+			out.writeLong(source.lastModified());
+			out.writeInt(modelCount);
+			out.writeInt(blockCount);
+
+			for (int i = 0; i < modelCount; i++)
+				out.writeInt(serials[i]);
+			for (int i = 0; i < blockCount; i++)
+				out.writeInt(types[i]);
+			for (int i = 0; i < blockCount; i++)
+				out.writeInt(models[i]);
+			out.write(chainIDs, 0, blockCount);
+			for (int i = 0; i < blockCount; i++)
+				out.writeLong(starts[i]);
+			for (int i = 0; i < blockCount; i++)
+				out.writeLong(ends[i]);
+		}
+
+		Files.move(temp.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+}
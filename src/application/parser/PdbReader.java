@@ -0,0 +1,363 @@
+package application.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A single pass, push style reader for the PDB flat-file format.
+ *
+ * Decodes the fixed columns of every record straight from the bytes of the
+ * input (see PdbColumns) and passes the values on to a PdbRecordHandler. Atom
+ * serials and residue numbers may be written in hybrid-36. The reader keeps
+ * no state besides a NameCache and the line count, so memory use does not
+ * depend on the size of the input.
+ *
+ * Files are memory-mapped, other input is read through a heap buffer that is
+ * refilled as the lines in it are consumed.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class PdbReader {
+
+	/** Largest part of a file that is mapped at once. */
+	private static final long MAP_WINDOW = 1 << 30;
+
+	/** Initial size of the buffer used for streams. */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final PdbRecordHandler handler;
+	private final NameCache names;
+	private long lineCount;
+
+	/** The options of a filtered load, null if everything is kept. */
+	private final LoadOptions options;
+
+	/** Where the title section is kept, null to pass it to the handler. */
+	private MetaStore meta;
+
+	public PdbReader(PdbRecordHandler handler) {
+		this(handler, null);
+	}
+
+	/**
+	 * Creates a reader that drops the records the options do not keep before
+	 * they are fully decoded.
+	 */
+	public PdbReader(PdbRecordHandler handler, LoadOptions options) {
+		this.handler = handler;
+		names = new NameCache();
+		this.options = options == null || options.keepsAll() ? null : options;
+	}
+
+	/**
+	 * Keeps the records of the title section (HEADER, TITLE, REMARK, COMPND,
+	 * ...) in the given store as they are found, instead of decoding them for
+	 * onHeader(), onTitle() and onRemark() of the handler.
+	 */
+	public void setMetaStore(MetaStore meta) {
+		this.meta = meta;
+	}
+
+	/**
+	 * Reads the file through a read-only memory mapping. Files larger than
+	 * MAP_WINDOW are mapped one window at a time, each window starting at the
+	 * first line the previous one could not finish.
+	 */
+	public void read(File file) throws IOException {
+		read(file, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Reads only the first length bytes of the file, like read(File), e.g. the
+	 * complete models of a file that is still being written.
+	 */
+	public void read(File file, long length) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			long size = Math.min(channel.size(), length);
+			long offset = 0;
+
+			while (offset < size) {
+				long window = Math.min(size - offset, MAP_WINDOW);
+				MappedByteBuffer buf = channel.map(MapMode.READ_ONLY, offset,
+						window);
+
+				int consumed = decode(buf, 0, (int) window,
+						offset + window == size);
+				if (consumed == 0)
+					throw new IOException("Line at byte " + offset
+							+ " does not fit into the mapping window");
+
+				offset += consumed;
+			}
+		}
+
+		handler.onEnd();
+	}
+
+	/**
+	 * Reads the stream to its end. The stream is not closed.
+	 */
+	public void read(InputStream in) throws IOException {
+		byte[] bytes = new byte[BUFFER_SIZE];
+		ByteBuffer buf = ByteBuffer.wrap(bytes);
+		int filled = 0;
+
+		for (;;) {
+			int n = in.read(bytes, filled, bytes.length - filled);
+			if (n < 0) {
+				decode(buf, 0, filled, true);
+				break;
+			}
+
+			filled += n;
+			int consumed = decode(buf, 0, filled, false);
+
+			if (consumed == 0 && filled == bytes.length) {
+				// a single line does not fit, make room for it
+				byte[] larger = new byte[bytes.length * 2];
+				System.arraycopy(bytes, 0, larger, 0, filled);
+				bytes = larger;
+				buf = ByteBuffer.wrap(bytes);
+			} else {
+				System.arraycopy(bytes, consumed, bytes, 0, filled - consumed);
+				filled -= consumed;
+			}
+		}
+
+		handler.onEnd();
+	}
+
+	/**
+	 * Decodes every complete line between the two offsets of the buffer and
+	 * returns the offset of the first byte that was not consumed. The last
+	 * line is only decoded without a line terminator if endOfInput is set.
+	 *
+	 * The handler's onEnd() is not called, so the same reader can be used to
+	 * decode consecutive parts of one input.
+	 */
+	public int decode(ByteBuffer buf, int from, int to, boolean endOfInput) {
+		int line = from;
+
+		while (line < to) {
+			int end = line;
+			while (end < to && buf.get(end) != '\n')
+				end++;
+
+			if (end == to && !endOfInput)
+				break;
+
+			int len = end - line;
+			if (len > 0 && buf.get(line + len - 1) == '\r')
+				len--;
+
+			lineCount++;
+			decodeRecord(buf, line, len);
+
+			line = end + 1;
+		}
+
+		return Math.min(line, to);
+	}
+
+	/**
+	 * Decodes a single line, given without its line terminator.
+	 */
+	public void decodeRecord(ByteBuffer buf, int line, int len) {
+		int type = PdbColumns.recordType(buf, line, len);
+		if (options != null && !options.keepsRecord(type))
+			return;
+
+		switch (type) {
+
+		case PdbColumns.HEADER:
+			if (meta != null)
+				meta.addLine(buf, line, len);
+			else
+				handler.onHeader(PdbColumns.text(buf, line, len, 10, 50));
+			break;
+
+		case PdbColumns.TITLE:
+			if (meta != null)
+				meta.addLine(buf, line, len);
+			else
+				handler.onTitle(PdbColumns.text(buf, line, len, 10, 80));
+			break;
+
+		case PdbColumns.REMARK:
+			if (meta != null)
+				meta.addLine(buf, line, len);
+			else
+				handler.onRemark(PdbColumns.text(buf, line, len, 11, 79));
+			break;
+
+		case PdbColumns.LINK:
+			// LINKR records use a different layout
+			if (PdbColumns.isBlank(buf, line, len, 4, 6))
+				parseLINK(buf, line, len);
+			break;
+
+		case PdbColumns.MODEL:
+			handler.onModel(PdbColumns.isBlank(buf, line, len, 10, 14) ? 0
+					: PdbColumns.parseInt(buf, line, len, 10, 14));
+			break;
+
+		case PdbColumns.SEQRES:
+			parseSEQRES(buf, line, len);
+			break;
+
+		case PdbColumns.HELIX:
+			parseHELIX(buf, line, len);
+			break;
+
+		case PdbColumns.SHEET:
+			parseSHEET(buf, line, len);
+			break;
+
+		case PdbColumns.HETATM:
+			parseAtom(true, buf, line, len);
+			break;
+
+		case PdbColumns.ATOM:
+			parseAtom(false, buf, line, len);
+			break;
+
+		case PdbColumns.TER:
+			handler.onTer();
+			break;
+
+		case PdbColumns.CONECT:
+			parseCONECT(buf, line, len);
+			break;
+
+		case PdbColumns.ENDMDL:
+			handler.onEndModel();
+			break;
+
+		default:
+			// COMPND, SOURCE, ... are only kept, no handler method takes them
+			if (meta != null && MetaStore.isMeta(type))
+				meta.addLine(buf, line, len);
+			break;
+		}
+	}
+
+	private void parseLINK(ByteBuffer buf, int line, int len) {
+		String name1 = names.get(buf, line, len, 12, 16);
+		String resName1 = names.get(buf, line, len, 17, 20);
+		String chainID1 = names.get(buf, line, len, 21, 22);
+		int resSeq1 = PdbColumns.parseHybrid36(buf, line, len, 22, 26);
+
+		String name2 = names.get(buf, line, len, 42, 46);
+		String resName2 = names.get(buf, line, len, 47, 50);
+		String chainID2 = names.get(buf, line, len, 51, 52);
+		int resSeq2 = PdbColumns.parseHybrid36(buf, line, len, 52, 56);
+
+		handler.onLink(name1, resName1, chainID1, resSeq1, name2, resName2,
+				chainID2, resSeq2);
+	}
+
+	private void parseSEQRES(ByteBuffer buf, int line, int len) {
+		String chainID = names.get(buf, line, len, 11, 12);
+		int numRes = PdbColumns.parseInt(buf, line, len, 13, 17);
+
+		// up to 13 residue names, each in a 4 column wide field
+		for (int from = 19; from < 70 && from < len; from += 4) {
+			if (!PdbColumns.isBlank(buf, line, len, from, from + 3))
+				handler.onSeqres(chainID, numRes,
+						names.get(buf, line, len, from, from + 3));
+		}
+	}
+
+	private void parseHELIX(ByteBuffer buf, int line, int len) {
+		int serial = PdbColumns.parseInt(buf, line, len, 6, 11);
+		String helixID = PdbColumns.string(buf, line, len, 11, 14);
+
+		String initResName = names.get(buf, line, len, 15, 18);
+		String initChainID = names.get(buf, line, len, 19, 20);
+		int initSeqNum = PdbColumns.parseHybrid36(buf, line, len, 21, 25);
+
+		String endResName = names.get(buf, line, len, 27, 30);
+		String endChainID = names.get(buf, line, len, 31, 32);
+		int endSeqNum = PdbColumns.parseHybrid36(buf, line, len, 33, 37);
+
+		handler.onHelix(serial, helixID, initResName, initChainID, initSeqNum,
+				endResName, endChainID, endSeqNum);
+	}
+
+	private void parseSHEET(ByteBuffer buf, int line, int len) {
+		int strand = PdbColumns.parseInt(buf, line, len, 7, 10);
+		String sheetID = PdbColumns.string(buf, line, len, 11, 14);
+
+		String initResName = names.get(buf, line, len, 17, 20);
+		String initChainID = names.get(buf, line, len, 21, 22);
+		int initSeqNum = PdbColumns.parseHybrid36(buf, line, len, 22, 26);
+
+		String endResName = names.get(buf, line, len, 28, 31);
+		String endChainID = names.get(buf, line, len, 32, 33);
+		int endSeqNum = PdbColumns.parseHybrid36(buf, line, len, 33, 37);
+
+		handler.onSheet(strand, sheetID, initResName, initChainID, initSeqNum,
+				endResName, endChainID, endSeqNum);
+	}
+
+	/**
+	 * ATOM and HETATM records share the same column layout. The columns the
+	 * load options look at are decoded first, so that dropped records cost
+	 * no more than that.
+	 */
+	private void parseAtom(boolean hetero, ByteBuffer buf, int line, int len) {
+		String chainID = names.get(buf, line, len, 21, 22);
+		int resSeq = PdbColumns.parseHybrid36(buf, line, len, 22, 26);
+		if (options != null && !options.keepsResidue(chainID, resSeq))
+			return;
+
+		String resName = names.get(buf, line, len, 17, 20);
+		if (options != null && !options.keepsResidueName(resName))
+			return;
+
+		String name = names.get(buf, line, len, 12, 16);
+		String element = names.get(buf, line, len, 76, 78);
+		if (options != null && !options.keepsAtom(name, element))
+			return;
+
+		int serial = PdbColumns.parseHybrid36(buf, line, len, 6, 11);
+		char altLoc = (char) PdbColumns.byteAt(buf, line, len, 16);
+		char iCode = (char) PdbColumns.byteAt(buf, line, len, 26);
+		double x = PdbColumns.parseDouble(buf, line, len, 30, 38);
+		double y = PdbColumns.parseDouble(buf, line, len, 38, 46);
+		double z = PdbColumns.parseDouble(buf, line, len, 46, 54);
+
+		double occupancy = PdbColumns.isBlank(buf, line, len, 54, 60) ? 1
+				: PdbColumns.parseDouble(buf, line, len, 54, 60);
+		double tempFactor = PdbColumns.isBlank(buf, line, len, 60, 66) ? 0
+				: PdbColumns.parseDouble(buf, line, len, 60, 66);
+
+		handler.onAtom(hetero, serial, name, altLoc, resName, chainID, resSeq,
+				iCode, x, y, z, occupancy, tempFactor, element);
+	}
+
+	private void parseCONECT(ByteBuffer buf, int line, int len) {
+		int serial = PdbColumns.parseHybrid36(buf, line, len, 6, 11);
+
+		for (int from = 11; from < 31; from += 5) {
+			if (!PdbColumns.isBlank(buf, line, len, from, from + 5))
+				handler.onConect(serial, PdbColumns.parseHybrid36(buf, line,
+						len, from, from + 5));
+		}
+	}
+
+	/**
+	 * Number of lines decoded so far.
+	 */
+	public long getLineCount() {
+		return lineCount;
+	}
+}
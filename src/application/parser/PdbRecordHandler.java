@@ -0,0 +1,128 @@
+package application.parser;
+
+/**
+ * Receives the records of a PDB file one at a time, in file order, as they are
+ * decoded by a PdbReader.
+ *
+ * Nothing is collected by the reader itself, so a handler that only counts or
+ * filters records runs in constant memory no matter how big the file is. All
+ * methods do nothing by default; implement only the records you need.
+ *
+ * String arguments are shared between records (see NameCache) and may be
+ * kept, but must never be relied on to be distinct objects.
+ *
+ * @author Slav Danchev
+ *
+ */
+public interface PdbRecordHandler {
+
+	/**
+	 * HEADER record, columns 11 to 50.
+	 */
+	default void onHeader(String text) {
+	}
+
+	/**
+	 * TITLE record, columns 11 to 80.
+	 */
+	default void onTitle(String text) {
+	}
+
+	/**
+	 * REMARK record, columns 12 to 79.
+	 */
+	default void onRemark(String text) {
+	}
+
+	/**
+	 * SEQRES record, called once for every residue name on the line.
+	 *
+	 * @param chainID
+	 *            the chain the sequence belongs to
+	 * @param numRes
+	 *            total number of residues in the chain
+	 * @param resName
+	 *            the residue name
+	 */
+	default void onSeqres(String chainID, int numRes, String resName) {
+	}
+
+	/**
+	 * HELIX record.
+	 */
+	default void onHelix(int serial, String helixID, String initResName,
+			String initChainID, int initSeqNum, String endResName,
+			String endChainID, int endSeqNum) {
+	}
+
+	/**
+	 * SHEET record, describing a single strand of a sheet.
+	 */
+	default void onSheet(int strand, String sheetID, String initResName,
+			String initChainID, int initSeqNum, String endResName,
+			String endChainID, int endSeqNum) {
+	}
+
+	/**
+	 * LINK record between two atoms given by name and residue.
+	 */
+	default void onLink(String name1, String resName1, String chainID1,
+			int resSeq1, String name2, String resName2, String chainID2,
+			int resSeq2) {
+	}
+
+	/**
+	 * MODEL record, opening a new model.
+	 *
+	 * @param serial
+	 *            the model serial number or 0 if the column is blank
+	 */
+	default void onModel(int serial) {
+	}
+
+	/**
+	 * ATOM or HETATM record.
+	 *
+	 * @param hetero
+	 *            true for HETATM records
+	 * @param altLoc
+	 *            alternate location indicator, ' ' if there is none
+	 * @param iCode
+	 *            residue insertion code, ' ' if there is none
+	 * @param occupancy
+	 *            occupancy, 1 if the column is blank
+	 * @param tempFactor
+	 *            temperature factor, 0 if the column is blank
+	 * @param element
+	 *            element symbol, empty if the column is blank
+	 */
+	default void onAtom(boolean hetero, int serial, String name, char altLoc,
+			String resName, String chainID, int resSeq, char iCode, double x,
+			double y, double z, double occupancy, double tempFactor,
+			String element) {
+	}
+
+	/**
+	 * TER record, closing a chain.
+	 */
+	default void onTer() {
+	}
+
+	/**
+	 * ENDMDL record, closing the current model.
+	 */
+	default void onEndModel() {
+	}
+
+	/**
+	 * CONECT record, called once for every bonded atom on the line.
+	 */
+	default void onConect(int serial, int bondedSerial) {
+	}
+
+	/**
+	 * Called once after the last record has been read.
+	 */
+	default void onEnd() {
+	}
+}
@@ -0,0 +1,331 @@
+package application.parser;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes the records it receives as a PDB file, in the fixed columns that a
+ * PdbReader decodes.
+ *
+ * Each call writes its record at once, except for SEQRES and CONECT records,
+ * which are collected into full lines (13 residue names, 4 bonded atoms) and
+ * written when the line is full or the next record starts. Serial numbers
+ * beyond 99999 and residue numbers beyond 9999 do not fit their columns, and
+ * are written in the hybrid-36 notation most programs read for structures
+ * that large. REMARK records are written without their number, which the
+ * handler does not receive.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class PdbWriter extends StructureWriter {
+
+	/** Columns of a PDB line, not counting the line terminator. */
+	private static final int WIDTH = 80;
+
+	/** Offset of the line that is written, or -1. */
+	private int lineStart = -1;
+
+	/** Kind of the record on the open SEQRES or CONECT line, else 0. */
+	private char open;
+	private int openCount;
+
+	private int titleLines;
+
+	private String seqresChain;
+	private int seqresLine;
+
+	private int conectSerial;
+
+	/* the last atom, for the TER record */
+	private int lastSerial;
+	private String lastResName = "", lastChainID = "";
+	private int lastResSeq;
+	private char lastICode = ' ';
+
+	public PdbWriter(File file) throws IOException {
+		super(file);
+	}
+
+	/**
+	 * Starts a line with the given record name, and closes the open SEQRES or
+	 * CONECT line before it.
+	 *
+	 * @return false if writing has failed
+	 */
+	private boolean begin(String record) {
+		endOpenLine();
+		if (!reserve())
+			return false;
+
+		lineStart = buf.position();
+		putLeft(record, 6);
+		return true;
+	}
+
+	/**
+	 * Pads the line with spaces to WIDTH columns and ends it.
+	 */
+	private void end() {
+		spaces(WIDTH - (buf.position() - lineStart));
+		newLine();
+		lineStart = -1;
+	}
+
+	private void endOpenLine() {
+		if (open != 0) {
+			open = 0;
+			end();
+		}
+	}
+
+	@Override
+	public void onHeader(String text) {
+		if (!begin("HEADER"))
+			return;
+		spaces(4);
+		putLeft(text, 40);
+		end();
+	}
+
+	@Override
+	public void onTitle(String text) {
+		// titles read from mmCIF come in one piece
+		for (int from = 0; from == 0 || from < text.length(); from += 70) {
+			if (!begin("TITLE"))
+				return;
+			spaces(2);
+			if (titleLines++ == 0)
+				spaces(2);
+			else
+				putInt(titleLines, 2);
+			putLeft(text.substring(from, Math.min(text.length(), from + 70)),
+					70);
+			end();
+		}
+	}
+
+	@Override
+	public void onRemark(String text) {
+		if (!begin("REMARK"))
+			return;
+		spaces(5);
+		putLeft(text, 68);
+		end();
+	}
+
+	@Override
+	public void onSeqres(String chainID, int numRes, String resName) {
+		if (open != 'S' || openCount == 13 || !chainID.equals(seqresChain)) {
+			if (!chainID.equals(seqresChain))
+				seqresLine = 0;
+			if (!begin("SEQRES"))
+				return;
+
+			seqresChain = chainID;
+			spaces(1);
+			putInt(++seqresLine, 3);
+			spaces(1);
+			putRight(chainID, 1);
+			spaces(1);
+			putInt(numRes, 4);
+			spaces(1);
+			open = 'S';
+			openCount = 0;
+		}
+		spaces(1);
+		putRight(resName, 3);
+		openCount++;
+	}
+
+	@Override
+	public void onHelix(int serial, String helixID, String initResName,
+			String initChainID, int initSeqNum, String endResName,
+			String endChainID, int endSeqNum) {
+		if (!begin("HELIX"))
+			return;
+		spaces(1);
+		putInt(serial, 3);
+		spaces(1);
+		putRight(helixID, 3);
+		spaces(1);
+		putRight(initResName, 3);
+		spaces(1);
+		putRight(initChainID, 1);
+		spaces(1);
+		putHybrid36(initSeqNum, 4);
+		spaces(2);
+		putRight(endResName, 3);
+		spaces(1);
+		putRight(endChainID, 1);
+		spaces(1);
+		putHybrid36(endSeqNum, 4);
+		spaces(1);
+		putInt(1, 2); // right-handed alpha helix
+		spaces(31);
+		putInt(endSeqNum - initSeqNum + 1, 5);
+		end();
+	}
+
+	@Override
+	public void onSheet(int strand, String sheetID, String initResName,
+			String initChainID, int initSeqNum, String endResName,
+			String endChainID, int endSeqNum) {
+		if (!begin("SHEET"))
+			return;
+		spaces(1);
+		putInt(strand, 3);
+		spaces(1);
+		putRight(sheetID, 3);
+		spaces(3); // the number of strands is not known
+		putRight(initResName, 3);
+		spaces(1);
+		putRight(initChainID, 1);
+		putHybrid36(initSeqNum, 4);
+		spaces(2);
+		putRight(endResName, 3);
+		spaces(1);
+		putRight(endChainID, 1);
+		putHybrid36(endSeqNum, 4);
+		spaces(1);
+		putInt(0, 2);
+		end();
+	}
+
+	@Override
+	public void onLink(String name1, String resName1, String chainID1,
+			int resSeq1, String name2, String resName2, String chainID2,
+			int resSeq2) {
+		if (!begin("LINK"))
+			return;
+		spaces(6);
+		putLeft(name1, 4);
+		spaces(1);
+		putRight(resName1, 3);
+		spaces(1);
+		putRight(chainID1, 1);
+		putHybrid36(resSeq1, 4);
+		spaces(16);
+		putLeft(name2, 4);
+		spaces(1);
+		putRight(resName2, 3);
+		spaces(1);
+		putRight(chainID2, 1);
+		putHybrid36(resSeq2, 4);
+		end();
+	}
+
+	@Override
+	public void onModel(int serial) {
+		if (!begin("MODEL"))
+			return;
+		spaces(4);
+		putInt(serial, 4);
+		end();
+	}
+
+	@Override
+	public void onAtom(boolean hetero, int serial, String name, char altLoc,
+			String resName, String chainID, int resSeq, char iCode, double x,
+			double y, double z, double occupancy, double tempFactor,
+			String element) {
+		if (!begin(hetero ? "HETATM" : "ATOM"))
+			return;
+		putHybrid36(serial, 5);
+		spaces(1);
+		putName(name, element);
+		putChar(altLoc);
+		putRight(resName, 3);
+		spaces(1);
+		putRight(chainID, 1);
+		putHybrid36(resSeq, 4);
+		putChar(iCode);
+		spaces(3);
+		putFixed(x, 8, 3);
+		putFixed(y, 8, 3);
+		putFixed(z, 8, 3);
+		putFixed(occupancy, 6, 2);
+		putFixed(tempFactor, 6, 2);
+		spaces(10);
+		putRight(element, 2);
+		end();
+
+		lastSerial = serial;
+		lastResName = resName;
+		lastChainID = chainID;
+		lastResSeq = resSeq;
+		lastICode = iCode;
+	}
+
+	/**
+	 * Puts an atom name into its 4 columns. Names of up to 3 characters of
+	 * atoms with a one letter element start in the second column, so that
+	 * the element lines up, e.g. " CA " for an alpha carbon and "CA  " for a
+	 * calcium ion.
+	 */
+	private void putName(String name, String element) {
+		boolean shift = name.length() < 4 && (element.length() == 1
+				|| element.isEmpty() && !name.isEmpty()
+						&& !Character.isDigit(name.charAt(0)));
+		if (shift)
+			spaces(1);
+		putLeft(name, shift ? 3 : 4);
+	}
+
+	private void putChar(char c) {
+		buf.put(c > ' ' ? (byte) c : (byte) ' ');
+	}
+
+	@Override
+	public void onTer() {
+		if (!begin("TER"))
+			return;
+		putHybrid36(lastSerial + 1, 5);
+		spaces(6);
+		putRight(lastResName, 3);
+		spaces(1);
+		putRight(lastChainID, 1);
+		putHybrid36(lastResSeq, 4);
+		putChar(lastICode);
+		end();
+	}
+
+	@Override
+	public void onEndModel() {
+		if (!begin("ENDMDL"))
+			return;
+		end();
+	}
+
+	@Override
+	public void onConect(int serial, int bondedSerial) {
+		if (open != 'C' || openCount == 4 || serial != conectSerial) {
+			if (!begin("CONECT"))
+				return;
+
+			conectSerial = serial;
+			putHybrid36(serial, 5);
+			open = 'C';
+			openCount = 0;
+		}
+		putHybrid36(bondedSerial, 5);
+		openCount++;
+	}
+
+	@Override
+	public void onEnd() {
+		if (!begin("END"))
+			return;
+		end();
+	}
+
+	/**
+	 * Ends the open SEQRES or CONECT line, writes out the buffered records
+	 * and closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		endOpenLine();
+		super.close();
+	}
+}
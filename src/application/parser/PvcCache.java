@@ -0,0 +1,609 @@
+package application.parser;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import application.structure.LinkGraph;
+
+/**
+ * A columnar binary copy of a parsed structure, kept next to its source file
+ * as &lt;ID&gt;.pvc so that opening the same entry again does not have to parse
+ * any text.
+ *
+ * The cache is filled like any other PdbRecordHandler with the records that
+ * made it into the model, plus what the model keeps beside its atoms (see
+ * addBond(), addConformer(), addFrame() and addMeta()), and written with
+ * write(). read() memory-maps it and pushes the same records into another
+ * handler. All names (atoms, residues, chains, elements, sheets) and the
+ * text of the title section are kept once in a string table and referred to
+ * by their index, every atom property is a column of its own.
+ *
+ * The header holds the format version and the size and modification time of
+ * the source file, a cache that does not match them is not used (see
+ * isFresh()). Records in the file, in order:
+ *
+ * <pre>
+ * int magic, int version, long source size, long source modification time
+ * int atoms, int strings, int helices, int sheets, int bonds, int residues,
+ * int conformers, int meta records, int frames
+ * strings:    short length + UTF-8 bytes each
+ * atoms:      byte hetero[], int serial[], int name[], char altLoc[],
+ *             int resName[], int chainID[], int resSeq[], char iCode[],
+ *             int element[], double x[], double y[], double z[],
+ *             float occupancy[], float tempFactor[]
+ * helices:    int initSeqNum, int endSeqNum, int initChainID, int endChainID
+ * sheets:     int id, int initSeqNum, int endSeqNum, int initChainID,
+ *             int endChainID
+ * bonds:      int atom, int bondedAtom
+ * residues:   int chainID, int numRes, int resName
+ * conformers: int atom[], char altLoc[], float x, y, z[], float occupancy[]
+ * meta:       int type, int number, int text
+ * frames:     int length, float coordinates[length] each
+ * </pre>
+ *
+ * Bonds and conformers refer to their atoms by index. Residues are the
+ * SEQRES sequences, one entry per residue, and the meta records those of a
+ * MetaStore, with the record type packed as by PdbColumns.recordType().
+ *
+ * Conformers are the locations of the atoms with alternates, in the order of
+ * their ConformerTable. They are passed on as further atom records of the
+ * residue of their atom, so a Parser keeps them again the same way.
+ *
+ * Frames are the coordinates of the models after the first one of an
+ * ensemble, for the atoms at the start of the atom columns. They are passed
+ * on as the ATOM and HETATM records of further models.
+ *
+ * Residue and chain boundaries are not stored, the atoms are kept in file
+ * order and the model splits them the same way it does after parsing.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class PvcCache implements PdbRecordHandler {
+
+	private static final int MAGIC = 0x50564331; // "PVC1"
+	private static final int VERSION = 3;
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 9 * 4;
+
+	private final List<String> strings = new ArrayList<String>();
+	private final Map<String, Integer> codes = new HashMap<String, Integer>();
+
+	private byte[] hetero = new byte[256];
+	private int[] serials = new int[256], names = new int[256],
+			resNames = new int[256], chainIDs = new int[256],
+			resSeqs = new int[256], elements = new int[256];
+	private char[] altLocs = new char[256], iCodes = new char[256];
+	private double[] xs = new double[256], ys = new double[256],
+			zs = new double[256];
+	private float[] occupancies = new float[256],
+			tempFactors = new float[256];
+	private int atomCount;
+
+	private int[] helices = new int[4 * 16];
+	private int helixCount;
+
+	private int[] sheets = new int[5 * 16];
+	private int sheetCount;
+
+	private int[] bonds = new int[2 * 64];
+	private int bondCount;
+
+	private int[] residues = new int[3 * 64];
+	private int residueCount;
+
+	private int[] conformerAtoms = new int[16];
+	private char[] conformerAltLocs = new char[16];
+	private float[] conformerCoords = new float[3 * 16],
+			conformerOccupancies = new float[16];
+	private int conformerCount;
+
+	private final MetaStore meta = new MetaStore();
+
+	private final List<float[]> frames = new ArrayList<float[]>();
+
+	/**
+	 * The cache file that belongs to a source file: its name up to the first
+	 * dot with the extension .pvc, in the same directory.
+	 */
+	public static File sidecar(File source) {
+		String name = source.getName();
+		int dot = name.indexOf('.');
+		if (dot > 0)
+			name = name.substring(0, dot);
+
+		return new File(source.getAbsoluteFile().getParentFile(), name
+				+ ".pvc");
+	}
+
+	/**
+	 * Checks whether there is a cache for the source file that was written by
+	 * this version and after the source was last changed.
+	 */
+	public static boolean isFresh(File source) {
+		File cache = sidecar(source);
+		if (!cache.isFile() || cache.length() < HEADER_SIZE)
+			return false;
+
+		try (DataInputStream in = new DataInputStream(new FileInputStream(
+				cache))) {
+			return in.readInt() == MAGIC && in.readInt() == VERSION
+					&& in.readLong() == source.length()
+					&& in.readLong() == source.lastModified();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Maps the cache of the source file and passes its records on to the
+	 * handler, ending with onEnd().
+	 *
+	 * @param meta
+	 *            the store the records of the title section are added to, or
+	 *            null to pass the HEADER, TITLE and REMARK records on to the
+	 *            handler instead
+	 * @param links
+	 *            the graph the bonds are added to, by the indices of their
+	 *            atoms in the order the handler receives the atoms, or null
+	 *            to pass them on as CONECT records instead
+	 */
+	public static void read(File source, PdbRecordHandler handler,
+			MetaStore meta, LinkGraph links) throws IOException {
+		PvcCache cache = new PvcCache();
+		try (FileChannel channel = FileChannel.open(sidecar(source).toPath(),
+				StandardOpenOption.READ)) {
+			cache.load(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+		}
+		cache.replay(handler, meta, links);
+		handler.onEnd();
+	}
+
+	/**
+	 * Reads the columns of a cache into this one.
+	 */
+	private void load(ByteBuffer buf) throws IOException {
+		if (buf.getInt() != MAGIC || buf.getInt() != VERSION)
+			throw new IOException("Not a cache of version " + VERSION);
+		buf.getLong();
+		buf.getLong();
+
+		atomCount = buf.getInt();
+		int stringCount = buf.getInt();
+		helixCount = buf.getInt();
+		sheetCount = buf.getInt();
+		bondCount = buf.getInt();
+		residueCount = buf.getInt();
+		conformerCount = buf.getInt();
+		int metaCount = buf.getInt();
+		int frameCount = buf.getInt();
+
+		for (int i = 0; i < stringCount; i++) {
+			byte[] bytes = new byte[buf.getShort() & 0xffff];
+			buf.get(bytes);
+			strings.add(new String(bytes, StandardCharsets.UTF_8));
+		}
+
+		hetero = new byte[atomCount];
+		buf.get(hetero);
+		serials = ints(buf, atomCount);
+		names = ints(buf, atomCount);
+		altLocs = chars(buf, atomCount);
+		resNames = ints(buf, atomCount);
+		chainIDs = ints(buf, atomCount);
+		resSeqs = ints(buf, atomCount);
+		iCodes = chars(buf, atomCount);
+		elements = ints(buf, atomCount);
+		xs = doubles(buf, atomCount);
+		ys = doubles(buf, atomCount);
+		zs = doubles(buf, atomCount);
+		occupancies = floats(buf, atomCount);
+		tempFactors = floats(buf, atomCount);
+		helices = ints(buf, 4 * helixCount);
+		sheets = ints(buf, 5 * sheetCount);
+		bonds = ints(buf, 2 * bondCount);
+		residues = ints(buf, 3 * residueCount);
+		conformerAtoms = ints(buf, conformerCount);
+		conformerAltLocs = chars(buf, conformerCount);
+		conformerCoords = floats(buf, 3 * conformerCount);
+		conformerOccupancies = floats(buf, conformerCount);
+
+		int[] records = ints(buf, 3 * metaCount);
+		for (int i = 0; i < records.length; i += 3)
+			meta.add(records[i], records[i + 1], strings.get(records[i + 2]));
+
+		for (int f = 0; f < frameCount; f++)
+			frames.add(floats(buf, buf.getInt()));
+	}
+
+	/**
+	 * Passes the records of this cache on to a handler, see read().
+	 */
+	private void replay(PdbRecordHandler handler, MetaStore meta,
+			LinkGraph links) {
+		for (int i = 0; i < this.meta.size(); i++) {
+			int type = this.meta.getType(i);
+			String text = this.meta.getText(i);
+			if (meta != null)
+				meta.add(type, this.meta.getNumber(i), text);
+			else if (type == PdbColumns.HEADER)
+				handler.onHeader(text);
+			else if (type == PdbColumns.TITLE)
+				handler.onTitle(text);
+			else if (type == PdbColumns.REMARK)
+				handler.onRemark(text);
+		}
+
+		for (int i = 0; i < 3 * residueCount; i += 3)
+			handler.onSeqres(strings.get(residues[i]), residues[i + 1],
+					strings.get(residues[i + 2]));
+
+		// each atom is passed on once its first location is reached, so the
+		// further ones follow it within its residue, in the order they were
+		// kept
+		boolean[] located = new boolean[atomCount];
+		int next = 0;
+		for (int c = 0; c < conformerCount; c++) {
+			int atom = conformerAtoms[c];
+			if (!located[atom]) {
+				located[atom] = true;
+				for (; next <= atom; next++)
+					atom(handler, next, altLocs[next], xs[next], ys[next],
+							zs[next], occupancies[next]);
+			} else {
+				atom(handler, atom, conformerAltLocs[c],
+						conformerCoords[3 * c], conformerCoords[3 * c + 1],
+						conformerCoords[3 * c + 2], conformerOccupancies[c]);
+			}
+		}
+		for (; next < atomCount; next++)
+			atom(handler, next, altLocs[next], xs[next], ys[next], zs[next],
+					occupancies[next]);
+
+		for (int i = 0; i < 4 * helixCount; i += 4)
+			handler.onHelix(i / 4 + 1, "", "", strings.get(helices[i + 2]),
+					helices[i], "", strings.get(helices[i + 3]),
+					helices[i + 1]);
+
+		for (int i = 0; i < 5 * sheetCount; i += 5)
+			handler.onSheet(i / 5 + 1, strings.get(sheets[i]), "",
+					strings.get(sheets[i + 3]), sheets[i + 1], "",
+					strings.get(sheets[i + 4]), sheets[i + 2]);
+
+		for (int i = 0; i < 2 * bondCount; i += 2) {
+			if (links != null)
+				links.addBond(bonds[i], bonds[i + 1]);
+			else
+				handler.onConect(serials[bonds[i]], serials[bonds[i + 1]]);
+		}
+
+		for (int f = 0; f < frames.size(); f++) {
+			float[] frame = frames.get(f);
+			handler.onEndModel();
+			handler.onModel(f + 2);
+			for (int i = 0; 3 * i + 2 < frame.length && i < atomCount; i++)
+				atom(handler, i, ' ', frame[3 * i], frame[3 * i + 1],
+						frame[3 * i + 2], occupancies[i]);
+		}
+	}
+
+	/**
+	 * Passes on a record of the atom at the given index, at one of its
+	 * locations.
+	 */
+	private void atom(PdbRecordHandler handler, int i, char altLoc, double x,
+			double y, double z, double occupancy) {
+		handler.onAtom(hetero[i] != 0, serials[i], strings.get(names[i]),
+				altLoc, strings.get(resNames[i]), strings.get(chainIDs[i]),
+				resSeqs[i], iCodes[i], x, y, z, occupancy, tempFactors[i],
+				strings.get(elements[i]));
+	}
+
+	private static int[] ints(ByteBuffer buf, int n) {
+		int[] ints = new int[n];
+		buf.asIntBuffer().get(ints);
+		buf.position(buf.position() + 4 * n);
+		return ints;
+	}
+
+	private static char[] chars(ByteBuffer buf, int n) {
+		char[] chars = new char[n];
+		buf.asCharBuffer().get(chars);
+		buf.position(buf.position() + 2 * n);
+		return chars;
+	}
+
+	private static float[] floats(ByteBuffer buf, int n) {
+		float[] floats = new float[n];
+		buf.asFloatBuffer().get(floats);
+		buf.position(buf.position() + 4 * n);
+		return floats;
+	}
+
+	private static double[] doubles(ByteBuffer buf, int n) {
+		double[] doubles = new double[n];
+		buf.asDoubleBuffer().get(doubles);
+		buf.position(buf.position() + 8 * n);
+		return doubles;
+	}
+
+	/**
+	 * Writes the records received so far as the cache of the source file. The
+	 * cache is written to a temporary file first, so a cache that is being
+	 * written is never read.
+	 */
+	public void write(File source) throws IOException {
+		File cache = sidecar(source);
+		File temp = new File(cache.getPath() + ".tmp");
+
+		// the text of the title section goes into the string table as well
+		int[] records = new int[3 * meta.size()];
+		for (int i = 0; i < meta.size(); i++) {
+			records[3 * i] = meta.getType(i);
+			records[3 * i + 1] = meta.getNumber(i);
+			records[3 * i + 2] = code(meta.getText(i));
+		}
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(source.length());
+			out.writeLong(source.lastModified());
+			out.writeInt(atomCount);
+			out.writeInt(strings.size());
+			out.writeInt(helixCount);
+			out.writeInt(sheetCount);
+			out.writeInt(bondCount);
+			out.writeInt(residueCount);
+			out.writeInt(conformerCount);
+			out.writeInt(meta.size());
+			out.writeInt(frames.size());
+
+			for (String s : strings) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				out.writeShort(bytes.length);
+				out.write(bytes);
+			}
+
+			out.write(hetero, 0, atomCount);
+			write(out, serials, atomCount);
+			write(out, names, atomCount);
+			write(out, altLocs, atomCount);
+			write(out, resNames, atomCount);
+			write(out, chainIDs, atomCount);
+			write(out, resSeqs, atomCount);
+			write(out, iCodes, atomCount);
+			write(out, elements, atomCount);
+			write(out, xs, atomCount);
+			write(out, ys, atomCount);
+			write(out, zs, atomCount);
+			write(out, occupancies, atomCount);
+			write(out, tempFactors, atomCount);
+			write(out, helices, 4 * helixCount);
+			write(out, sheets, 5 * sheetCount);
+			write(out, bonds, 2 * bondCount);
+			write(out, residues, 3 * residueCount);
+			write(out, conformerAtoms, conformerCount);
+			write(out, conformerAltLocs, conformerCount);
+			write(out, conformerCoords, 3 * conformerCount);
+			write(out, conformerOccupancies, conformerCount);
+			write(out, records, records.length);
+
+			for (float[] frame : frames) {
+				out.writeInt(frame.length);
+				write(out, frame, frame.length);
+			}
+		}
+
+		Files.move(temp.toPath(), cache.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void write(DataOutputStream out, int[] ints, int n)
+			throws IOException {
+		for (int i = 0; i < n; i++)
+			out.writeInt(ints[i]);
+	}
+
+	private static void write(DataOutputStream out, char[] chars, int n)
+			throws IOException {
+		for (int i = 0; i < n; i++)
+			out.writeChar(chars[i]);
+	}
+
+	private static void write(DataOutputStream out, float[] floats, int n)
+			throws IOException {
+		for (int i = 0; i < n; i++)
+			out.writeFloat(floats[i]);
+	}
+
+	private static void write(DataOutputStream out, double[] doubles, int n)
+			throws IOException {
+		for (int i = 0; i < n; i++)
+			out.writeDouble(doubles[i]);
+	}
+
+	/**
+	 * Adds the coordinates of a further model of an ensemble, x, y and z for
+	 * each of the first atom records.
+	 */
+	public void addFrame(float[] coords) {
+		frames.add(coords);
+	}
+
+	/**
+	 * Adds a bond between two atoms, given by the indices of their atom
+	 * records.
+	 */
+	public void addBond(int atom, int bondedAtom) {
+		if (2 * bondCount == bonds.length)
+			bonds = Arrays.copyOf(bonds, bonds.length * 2);
+
+		bonds[2 * bondCount] = atom;
+		bonds[2 * bondCount + 1] = bondedAtom;
+		bondCount++;
+	}
+
+	/**
+	 * Adds a location of the atom with the given index, see ConformerTable.
+	 * The first location of an atom is given too, with the coordinates of its
+	 * atom record.
+	 */
+	public void addConformer(int atom, char altLoc, float x, float y,
+			float z, float occupancy) {
+		if (conformerCount == conformerAtoms.length) {
+			int n = 2 * conformerCount;
+			conformerAtoms = Arrays.copyOf(conformerAtoms, n);
+			conformerAltLocs = Arrays.copyOf(conformerAltLocs, n);
+			conformerCoords = Arrays.copyOf(conformerCoords, 3 * n);
+			conformerOccupancies = Arrays.copyOf(conformerOccupancies, n);
+		}
+
+		int i = conformerCount++;
+		conformerAtoms[i] = atom;
+		conformerAltLocs[i] = altLoc;
+		conformerCoords[3 * i] = x;
+		conformerCoords[3 * i + 1] = y;
+		conformerCoords[3 * i + 2] = z;
+		conformerOccupancies[i] = occupancy;
+	}
+
+	/**
+	 * Adds the records of the title section kept by a store, e.g. the one a
+	 * PdbReader filled.
+	 */
+	public void addMeta(MetaStore records) {
+		meta.addAll(records);
+	}
+
+	@Override
+	public void onHeader(String text) {
+		meta.add(PdbColumns.HEADER, -1, text);
+	}
+
+	@Override
+	public void onTitle(String text) {
+		meta.add(PdbColumns.TITLE, -1, text);
+	}
+
+	@Override
+	public void onRemark(String text) {
+		meta.add(PdbColumns.REMARK, -1, text);
+	}
+
+	@Override
+	public void onSeqres(String chainID, int numRes, String resName) {
+		if (3 * residueCount == residues.length)
+			residues = Arrays.copyOf(residues, residues.length * 2);
+
+		int i = 3 * residueCount++;
+		residues[i] = code(chainID);
+		residues[i + 1] = numRes;
+		residues[i + 2] = code(resName);
+	}
+
+	@Override
+	public void onHelix(int serial, String helixID, String initResName,
+			String initChainID, int initSeqNum, String endResName,
+			String endChainID, int endSeqNum) {
+		if (4 * helixCount == helices.length)
+			helices = Arrays.copyOf(helices, helices.length * 2);
+
+		int i = 4 * helixCount++;
+		helices[i] = initSeqNum;
+		helices[i + 1] = endSeqNum;
+		helices[i + 2] = code(initChainID);
+		helices[i + 3] = code(endChainID);
+	}
+
+	@Override
+	public void onSheet(int strand, String sheetID, String initResName,
+			String initChainID, int initSeqNum, String endResName,
+			String endChainID, int endSeqNum) {
+		if (5 * sheetCount == sheets.length)
+			sheets = Arrays.copyOf(sheets, sheets.length * 2);
+
+		int i = 5 * sheetCount++;
+		sheets[i] = code(sheetID);
+		sheets[i + 1] = initSeqNum;
+		sheets[i + 2] = endSeqNum;
+		sheets[i + 3] = code(initChainID);
+		sheets[i + 4] = code(endChainID);
+	}
+
+	@Override
+	public void onAtom(boolean hetero, int serial, String name, char altLoc,
+			String resName, String chainID, int resSeq, char iCode, double x,
+			double y, double z, double occupancy, double tempFactor,
+			String element) {
+		if (atomCount == serials.length)
+			growAtoms();
+
+		int i = atomCount++;
+		this.hetero[i] = (byte) (hetero ? 1 : 0);
+		serials[i] = serial;
+		names[i] = code(name);
+		altLocs[i] = altLoc;
+		resNames[i] = code(resName);
+		chainIDs[i] = code(chainID);
+		resSeqs[i] = resSeq;
+		iCodes[i] = iCode;
+		elements[i] = code(element);
+		xs[i] = x;
+		ys[i] = y;
+		zs[i] = z;
+		occupancies[i] = (float) occupancy;
+		tempFactors[i] = (float) tempFactor;
+	}
+
+	/**
+	 * Index of a name in the string table, adding it if it is new.
+	 */
+	private int code(String s) {
+		if (s == null)
+			s = "";
+
+		Integer code = codes.get(s);
+		if (code == null) {
+			code = strings.size();
+			strings.add(s);
+			codes.put(s, code);
+		}
+		return code;
+	}
+
+	private void growAtoms() {
+		int n = serials.length * 2;
+		hetero = Arrays.copyOf(hetero, n);
+		serials = Arrays.copyOf(serials, n);
+		names = Arrays.copyOf(names, n);
+		altLocs = Arrays.copyOf(altLocs, n);
+		resNames = Arrays.copyOf(resNames, n);
+		chainIDs = Arrays.copyOf(chainIDs, n);
+		resSeqs = Arrays.copyOf(resSeqs, n);
+		iCodes = Arrays.copyOf(iCodes, n);
+		elements = Arrays.copyOf(elements, n);
+		xs = Arrays.copyOf(xs, n);
+		ys = Arrays.copyOf(ys, n);
+		zs = Arrays.copyOf(zs, n);
+		occupancies = Arrays.copyOf(occupancies, n);
+		tempFactors = Arrays.copyOf(tempFactors, n);
+	}
+}
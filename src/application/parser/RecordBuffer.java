@@ -0,0 +1,297 @@
+package application.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A PdbRecordHandler that keeps every record it receives, so that they can be
+ * replayed later into another handler in exactly the same order.
+ *
+ * ATOM and HETATM records are kept column by column in primitive arrays. The
+ * few other record types are kept as small argument arrays. The order of all
+ * records is kept in a separate array of record kinds.
+ *
+ * Used to decode parts of a file in parallel (see ParallelPdbReader), each
+ * part into its own buffer, and then merge the parts in file order.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class RecordBuffer implements PdbRecordHandler {
+
+	/*
+	 * record kinds
+	 */
+	private static final byte ATOM = 0;
+	private static final byte HETATM = 1;
+	private static final byte HEADER = 2;
+	private static final byte TITLE = 3;
+	private static final byte REMARK = 4;
+	private static final byte SEQRES = 5;
+	private static final byte HELIX = 6;
+	private static final byte SHEET = 7;
+	private static final byte LINK = 8;
+	private static final byte MODEL = 9;
+	private static final byte TER = 10;
+	private static final byte ENDMDL = 11;
+	private static final byte CONECT = 12;
+
+	private byte[] kinds = new byte[1024];
+	private int size;
+
+	/*
+	 * atom columns
+	 */
+	private int[] serials = new int[256], resSeqs = new int[256];
+	private String[] names = new String[256], resNames = new String[256],
+			chainIDs = new String[256], elements = new String[256];
+	private char[] altLocs = new char[256], iCodes = new char[256];
+	private double[] coords = new double[3 * 256];
+	private double[] occupancies = new double[256],
+			tempFactors = new double[256];
+	private int atomCount;
+
+	private int[] conects = new int[64];
+	private int conectCount;
+
+	private List<Object[]> records = new ArrayList<Object[]>();
+
+	private int endModelCount;
+
+	/** Null until a MODEL or ENDMDL record has been kept. */
+	private Boolean inModel;
+
+	@Override
+	public void onHeader(String text) {
+		add(HEADER, new Object[] { text });
+	}
+
+	@Override
+	public void onTitle(String text) {
+		add(TITLE, new Object[] { text });
+	}
+
+	@Override
+	public void onRemark(String text) {
+		add(REMARK, new Object[] { text });
+	}
+
+	@Override
+	public void onSeqres(String chainID, int numRes, String resName) {
+		add(SEQRES, new Object[] { chainID, numRes, resName });
+	}
+
+	@Override
+	public void onHelix(int serial, String helixID, String initResName,
+			String initChainID, int initSeqNum, String endResName,
+			String endChainID, int endSeqNum) {
+		add(HELIX, new Object[] { serial, helixID, initResName, initChainID,
+				initSeqNum, endResName, endChainID, endSeqNum });
+	}
+
+	@Override
+	public void onSheet(int strand, String sheetID, String initResName,
+			String initChainID, int initSeqNum, String endResName,
+			String endChainID, int endSeqNum) {
+		add(SHEET, new Object[] { strand, sheetID, initResName, initChainID,
+				initSeqNum, endResName, endChainID, endSeqNum });
+	}
+
+	@Override
+	public void onLink(String name1, String resName1, String chainID1,
+			int resSeq1, String name2, String resName2, String chainID2,
+			int resSeq2) {
+		add(LINK, new Object[] { name1, resName1, chainID1, resSeq1, name2,
+				resName2, chainID2, resSeq2 });
+	}
+
+	@Override
+	public void onModel(int serial) {
+		inModel = true;
+		add(MODEL, new Object[] { serial });
+	}
+
+	@Override
+	public void onAtom(boolean hetero, int serial, String name, char altLoc,
+			String resName, String chainID, int resSeq, char iCode, double x,
+			double y, double z, double occupancy, double tempFactor,
+			String element) {
+		if (atomCount == serials.length)
+			growAtoms();
+
+		int i = atomCount++;
+		serials[i] = serial;
+		names[i] = name;
+		altLocs[i] = altLoc;
+		resNames[i] = resName;
+		chainIDs[i] = chainID;
+		resSeqs[i] = resSeq;
+		iCodes[i] = iCode;
+		coords[3 * i] = x;
+		coords[3 * i + 1] = y;
+		coords[3 * i + 2] = z;
+		occupancies[i] = occupancy;
+		tempFactors[i] = tempFactor;
+		elements[i] = element;
+
+		addKind(hetero ? HETATM : ATOM);
+	}
+
+	@Override
+	public void onTer() {
+		addKind(TER);
+	}
+
+	@Override
+	public void onEndModel() {
+		endModelCount++;
+		inModel = false;
+		addKind(ENDMDL);
+	}
+
+	@Override
+	public void onConect(int serial, int bondedSerial) {
+		if (2 * conectCount == conects.length)
+			conects = Arrays.copyOf(conects, conects.length * 2);
+
+		conects[2 * conectCount] = serial;
+		conects[2 * conectCount + 1] = bondedSerial;
+		conectCount++;
+
+		addKind(CONECT);
+	}
+
+	/**
+	 * Passes every record kept so far on to the given handler, in the order
+	 * they were received. The handler's onEnd() is not called.
+	 */
+	public void replay(PdbRecordHandler h) {
+		int atom = 0, conect = 0, record = 0;
+
+		for (int k = 0; k < size; k++) {
+			switch (kinds[k]) {
+			case ATOM:
+			case HETATM:
+				h.onAtom(kinds[k] == HETATM, serials[atom], names[atom],
+						altLocs[atom], resNames[atom], chainIDs[atom],
+						resSeqs[atom], iCodes[atom], coords[3 * atom],
+						coords[3 * atom + 1], coords[3 * atom + 2],
+						occupancies[atom], tempFactors[atom], elements[atom]);
+				atom++;
+				break;
+
+			case TER:
+				h.onTer();
+				break;
+
+			case ENDMDL:
+				h.onEndModel();
+				break;
+
+			case CONECT:
+				h.onConect(conects[2 * conect], conects[2 * conect + 1]);
+				conect++;
+				break;
+
+			default:
+				replay(h, kinds[k], records.get(record++));
+				break;
+			}
+		}
+	}
+
+	private static void replay(PdbRecordHandler h, byte kind, Object[] a) {
+		switch (kind) {
+		case HEADER:
+			h.onHeader((String) a[0]);
+			break;
+
+		case TITLE:
+			h.onTitle((String) a[0]);
+			break;
+
+		case REMARK:
+			h.onRemark((String) a[0]);
+			break;
+
+		case SEQRES:
+			h.onSeqres((String) a[0], (Integer) a[1], (String) a[2]);
+			break;
+
+		case HELIX:
+			h.onHelix((Integer) a[0], (String) a[1], (String) a[2],
+					(String) a[3], (Integer) a[4], (String) a[5],
+					(String) a[6], (Integer) a[7]);
+			break;
+
+		case SHEET:
+			h.onSheet((Integer) a[0], (String) a[1], (String) a[2],
+					(String) a[3], (Integer) a[4], (String) a[5],
+					(String) a[6], (Integer) a[7]);
+			break;
+
+		case LINK:
+			h.onLink((String) a[0], (String) a[1], (String) a[2],
+					(Integer) a[3], (String) a[4], (String) a[5],
+					(String) a[6], (Integer) a[7]);
+			break;
+
+		case MODEL:
+			h.onModel((Integer) a[0]);
+			break;
+		}
+	}
+
+	private void add(byte kind, Object[] args) {
+		records.add(args);
+		addKind(kind);
+	}
+
+	private void addKind(byte kind) {
+		if (size == kinds.length)
+			kinds = Arrays.copyOf(kinds, kinds.length * 2);
+		kinds[size++] = kind;
+	}
+
+	private void growAtoms() {
+		int n = serials.length * 2;
+		serials = Arrays.copyOf(serials, n);
+		resSeqs = Arrays.copyOf(resSeqs, n);
+		names = Arrays.copyOf(names, n);
+		resNames = Arrays.copyOf(resNames, n);
+		chainIDs = Arrays.copyOf(chainIDs, n);
+		elements = Arrays.copyOf(elements, n);
+		altLocs = Arrays.copyOf(altLocs, n);
+		iCodes = Arrays.copyOf(iCodes, n);
+		coords = Arrays.copyOf(coords, 3 * n);
+		occupancies = Arrays.copyOf(occupancies, n);
+		tempFactors = Arrays.copyOf(tempFactors, n);
+	}
+
+	/**
+	 * Number of ATOM and HETATM records kept.
+	 */
+	public int getAtomCount() {
+		return atomCount;
+	}
+
+	/**
+	 * Number of ENDMDL records kept, used to find out which model the records
+	 * of the following buffer belong to.
+	 */
+	public int getEndModelCount() {
+		return endModelCount;
+	}
+
+	/**
+	 * Whether a model is open after the records kept, used like
+	 * getEndModelCount().
+	 *
+	 * @return true after a MODEL record, false after an ENDMDL record, or
+	 *         null if the buffer holds neither
+	 */
+	public Boolean getInModel() {
+		return inModel;
+	}
+}
@@ -0,0 +1,197 @@
+package application.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the full sequence of every chain as given by its SEQRES records,
+ * including the residues that have no coordinates, at one byte per residue.
+ *
+ * The twenty amino acids, the nucleotides and UNK have fixed codes. Any other
+ * residue name (MSE, a ligand in a cyclic peptide, ...) is given the next free
+ * code of the store the first time it is seen, so a store holds at most 256
+ * different names. The rare names that do not fit are kept as UNK.
+ *
+ * The store is filled through onSeqres(), so it can be passed to a reader
+ * like any other handler, or be fed by one that collects other records too.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class SequenceStore implements PdbRecordHandler {
+
+	/** The names of the fixed codes, in the order of the codes. */
+	private static final String[] FIXED = { "ALA", "ARG", "ASN", "ASP", "CYS",
+			"GLN", "GLU", "GLY", "HIS", "ILE", "LEU", "LYS", "MET", "PHE",
+			"PRO", "SER", "THR", "TRP", "TYR", "VAL", "UNK", "A", "C", "G", "U",
+			"I", "DA", "DC", "DG", "DT", "DI" };
+
+	/** The one letter codes of the fixed codes. */
+	private static final String LETTERS = "ARNDCQEGHILKMFPSTWYVXACGUIACGTI";
+
+	private static final byte UNK = 20;
+
+	private static final Map<String, Byte> fixed = new HashMap<String, Byte>();
+
+	static {
+		for (int i = 0; i < FIXED.length; i++)
+			fixed.put(FIXED[i], (byte) i);
+	}
+
+	/** The names of the codes of this store, the fixed ones first. */
+	private final List<String> names = new ArrayList<String>(
+			Arrays.asList(FIXED));
+	private final Map<String, Byte> codes = new HashMap<String, Byte>(fixed);
+
+	/* one entry per chain, in the order the chains first appear */
+	private final List<String> chainIDs = new ArrayList<String>();
+	private final Map<String, Integer> chainIndex = new HashMap<String, Integer>();
+	private byte[][] residues = new byte[4][];
+	private int[] lengths = new int[4];
+
+	/**
+	 * Appends a residue to the sequence of a chain.
+	 *
+	 * @param numRes
+	 *            the length of the sequence, to size it on its first residue,
+	 *            or 0 if unknown
+	 */
+	@Override
+	public void onSeqres(String chainID, int numRes, String resName) {
+		add(chainID, numRes, code(resName));
+	}
+
+	/**
+	 * Appends a residue to the sequence of a chain.
+	 */
+	public void add(String chainID, String resName) {
+		add(chainID, 0, code(resName));
+	}
+
+	private void add(String chainID, int numRes, byte code) {
+		Integer index = chainIndex.get(chainID);
+		if (index == null) {
+			index = chainIDs.size();
+			chainIDs.add(chainID);
+			chainIndex.put(chainID, index);
+
+			if (index == residues.length) {
+				residues = Arrays.copyOf(residues, 2 * index);
+				lengths = Arrays.copyOf(lengths, 2 * index);
+			}
+			residues[index] = new byte[Math.max(numRes, 16)];
+		}
+
+		byte[] sequence = residues[index];
+		int n = lengths[index];
+		if (n == sequence.length)
+			residues[index] = sequence = Arrays.copyOf(sequence, 2 * n);
+		sequence[n] = code;
+		lengths[index] = n + 1;
+	}
+
+	/**
+	 * The code of a residue name, giving it one if there is room.
+	 */
+	private byte code(String resName) {
+		String name = resName.trim().toUpperCase();
+		Byte code = codes.get(name);
+		if (code != null)
+			return code;
+
+		if (names.size() == 256)
+			return UNK;
+		code = (byte) names.size();
+		names.add(name);
+		codes.put(name, code);
+		return code;
+	}
+
+	/**
+	 * Appends the sequences of another store, e.g. of the next part of a
+	 * file.
+	 */
+	public void addAll(SequenceStore other) {
+		for (int i = 0; i < other.chainIDs.size(); i++) {
+			String chainID = other.chainIDs.get(i);
+			byte[] sequence = other.residues[i];
+			for (int j = 0; j < other.lengths[i]; j++)
+				add(chainID, 0, code(other.names.get(sequence[j] & 0xFF)));
+		}
+	}
+
+	public boolean isEmpty() {
+		return chainIDs.isEmpty();
+	}
+
+	/**
+	 * Gets the IDs of the chains that have a sequence, in file order.
+	 */
+	public List<String> getChainIDs() {
+		return new ArrayList<String>(chainIDs);
+	}
+
+	/**
+	 * Gets the number of residues in the sequence of a chain, or 0 if it has
+	 * none.
+	 */
+	public int length(String chainID) {
+		Integer index = chainIndex.get(chainID);
+		return index == null ? 0 : lengths[index];
+	}
+
+	/**
+	 * Gets the name of a residue of a chain.
+	 *
+	 * @param position
+	 *            the index of the residue in the sequence, from 0
+	 */
+	public String getResidueName(String chainID, int position) {
+		Integer index = chainIndex.get(chainID);
+		if (index == null || position < 0 || position >= lengths[index])
+			throw new IndexOutOfBoundsException(chainID + ":" + position);
+		return names.get(residues[index][position] & 0xFF);
+	}
+
+	/**
+	 * Gets the residue names of the sequence of a chain, one per residue.
+	 */
+	public String[] getResidueNames(String chainID) {
+		String[] sequence = new String[length(chainID)];
+		for (int i = 0; i < sequence.length; i++)
+			sequence[i] = getResidueName(chainID, i);
+		return sequence;
+	}
+
+	/**
+	 * Gets the sequence of a chain in one letter codes, X for residues other
+	 * than the amino acids and nucleotides.
+	 */
+	public String getSequence(String chainID) {
+		Integer index = chainIndex.get(chainID);
+		if (index == null)
+			return "";
+
+		char[] letters = new char[lengths[index]];
+		for (int i = 0; i < letters.length; i++) {
+			int code = residues[index][i] & 0xFF;
+			letters[i] = code < LETTERS.length() ? LETTERS.charAt(code) : 'X';
+		}
+		return new String(letters);
+	}
+
+	/**
+	 * Passes the sequences to a handler as SEQRES records, a chain after the
+	 * other.
+	 */
+	public void replay(PdbRecordHandler handler) {
+		for (int i = 0; i < chainIDs.size(); i++) {
+			for (int j = 0; j < lengths[i]; j++)
+				handler.onSeqres(chainIDs.get(i), lengths[i],
+						names.get(residues[i][j] & 0xFF));
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package application.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the records it receives to a structure file, the opposite of a
+ * reader: anything that drives a PdbRecordHandler (a reader, or the export of
+ * a loaded model) can be written, so a file can also be converted from one
+ * format into another without building a model.
+ *
+ * The records are formatted straight into a reusable buffer that is written
+ * through a FileChannel whenever it fills up. Numbers are formatted by hand
+ * rather than with String.format(), so that writing a record allocates
+ * nothing and a structure with millions of atoms is written at disk speed.
+ *
+ * Since the handler methods cannot throw an IOException, the first one that
+ * occurs stops the writing and is thrown by close(), the way a PrintWriter
+ * keeps its errors for checkError().
+ *
+ * @author Slav Danchev
+ *
+ */
+public abstract class StructureWriter implements PdbRecordHandler, Closeable {
+
+	/** Size of the buffer the records are formatted into. */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/** Room left in the buffer before a record is started. */
+	private static final int MAX_RECORD = 1024;
+
+	private static final long[] POW10 = { 1L, 10L, 100L, 1000L, 10000L,
+			100000L, 1000000L, 10000000L, 100000000L, 1000000000L };
+
+	private static final byte[] DIGITS = { '0', '1', '2', '3', '4', '5', '6',
+			'7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J',
+			'K', 'L', 'M', 'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W',
+			'X', 'Y', 'Z' };
+
+	private final FileChannel channel;
+	protected final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	/** Digits of the number that is formatted, last digit first. */
+	private final byte[] digits = new byte[20];
+
+	private IOException error;
+
+	protected StructureWriter(File file) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	/**
+	 * Opens a writer for the format given by the extension of the file,
+	 * mmCIF for .cif and PDB otherwise.
+	 */
+	public static StructureWriter open(File file) throws IOException {
+		if (file.getName().toLowerCase().endsWith(".cif"))
+			return new CifWriter(file);
+		return new PdbWriter(file);
+	}
+
+	/**
+	 * Makes sure a record fits into the buffer, writing out what it holds
+	 * otherwise. Called before every record.
+	 *
+	 * @return false if writing has failed, and the record should be dropped
+	 */
+	protected boolean reserve() {
+		if (error != null)
+			return false;
+		return buf.remaining() >= MAX_RECORD || drain();
+	}
+
+	/**
+	 * Writes out the buffer, and keeps the exception if that fails.
+	 */
+	private boolean drain() {
+		try {
+			flush();
+			return true;
+		} catch (IOException e) {
+			error = e;
+			return false;
+		}
+	}
+
+	private void flush() throws IOException {
+		buf.flip();
+		while (buf.hasRemaining())
+			channel.write(buf);
+		buf.clear();
+	}
+
+	/**
+	 * Puts the characters of a string, which must be ASCII. Unlike the other
+	 * methods this takes strings of any length, e.g. a long title.
+	 */
+	protected void put(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			if (!buf.hasRemaining() && !drain())
+				return;
+			buf.put((byte) s.charAt(i));
+		}
+	}
+
+	/**
+	 * Puts at most width characters of a string, padded with spaces on the
+	 * right to width.
+	 */
+	protected void putLeft(String s, int width) {
+		int n = Math.min(s.length(), width);
+		for (int i = 0; i < n; i++)
+			buf.put((byte) s.charAt(i));
+		spaces(width - n);
+	}
+
+	/**
+	 * Puts at most width characters of a string, padded with spaces on the
+	 * left to width.
+	 */
+	protected void putRight(String s, int width) {
+		int n = Math.min(s.length(), width);
+		spaces(width - n);
+		for (int i = 0; i < n; i++)
+			buf.put((byte) s.charAt(i));
+	}
+
+	protected void spaces(int n) {
+		for (int i = 0; i < n; i++)
+			buf.put((byte) ' ');
+	}
+
+	/**
+	 * Puts an integer, padded with spaces on the left to width. A number
+	 * that needs more room is put in full, like String.format() does.
+	 */
+	protected void putInt(long value, int width) {
+		int n = toDigits(Math.abs(value), 0, 1);
+		if (value < 0)
+			digits[n++] = '-';
+
+		spaces(width - n);
+		while (n > 0)
+			buf.put(digits[--n]);
+	}
+
+	protected void putInt(long value) {
+		putInt(value, 0);
+	}
+
+	/**
+	 * Puts a number rounded to the given number of decimals, padded with
+	 * spaces on the left to width, e.g. putFixed(x, 8, 3) for "%8.3f". Zero
+	 * is never given a minus sign, and a value halfway between two decimals
+	 * may round the other way than with String.format().
+	 */
+	protected void putFixed(double value, int width, int decimals) {
+		if (Double.isNaN(value) || Double.isInfinite(value)
+				|| Math.abs(value) >= 1e17 / POW10[decimals]) {
+			// never happens for coordinates, leave it to the library
+			putRight(String.format("%." + decimals + "f", value), width);
+			return;
+		}
+
+		long scaled = Math.round(Math.abs(value) * POW10[decimals]);
+		int n = 0;
+		if (decimals > 0) {
+			n = toDigits(scaled % POW10[decimals], n, decimals);
+			digits[n++] = '.';
+		}
+		n = toDigits(scaled / POW10[decimals], n, 1);
+		if (value < 0 && scaled != 0)
+			digits[n++] = '-';
+
+		spaces(width - n);
+		while (n > 0)
+			buf.put(digits[--n]);
+	}
+
+	/**
+	 * Puts a number in the hybrid-36 notation of the PDB format, which
+	 * writes numbers that do not fit into width decimal digits as base 36
+	 * numbers starting with a letter: for a width of 5, serial 99999 is
+	 * followed by A0000, and ZZZZZ is followed by a0000.
+	 */
+	protected void putHybrid36(int value, int width) {
+		int decimal = (int) POW10[width];
+		if (value < decimal) {
+			putInt(value, width);
+			return;
+		}
+
+		int letters = 26 * (int) Math.pow(36, width - 1);
+		int offset = 10 * (int) Math.pow(36, width - 1);
+		value -= decimal;
+		boolean upper = value < letters;
+		if (!upper)
+			value -= letters;
+		if (value >= letters) {
+			for (int i = 0; i < width; i++)
+				buf.put((byte) '*');
+			return;
+		}
+
+		value += offset;
+		for (int i = width - 1; i >= 0; i--) {
+			byte digit = DIGITS[value % 36];
+			digits[i] = upper ? digit : (byte) Character.toLowerCase(digit);
+			value /= 36;
+		}
+		buf.put(digits, 0, width);
+	}
+
+	protected void newLine() {
+		buf.put((byte) '\n');
+	}
+
+	/**
+	 * Writes the digits of a non-negative number into digits from index n
+	 * on, last digit first, padded with zeros to at least count digits.
+	 *
+	 * @return the index after the last digit
+	 */
+	private int toDigits(long value, int n, int count) {
+		int start = n;
+		do {
+			digits[n++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0 || n - start < count);
+		return n;
+	}
+
+	/**
+	 * Writes out the records that are still buffered and closes the file.
+	 *
+	 * @throws IOException if writing any of the records failed
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (error == null)
+				flush();
+		} finally {
+			channel.close();
+		}
+		if (error != null)
+			throw error;
+	}
+}
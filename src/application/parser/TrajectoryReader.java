@@ -0,0 +1,47 @@
+package application.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reads the frames of a molecular dynamics trajectory one after the other.
+ *
+ * Only the coordinates are read, the atoms themselves come from a structure
+ * (e.g. a PDB file) with the atoms in the same order. A reader only ever holds
+ * one frame in memory, so trajectories of any length can be streamed.
+ *
+ * @author Slav Danchev
+ *
+ */
+public interface TrajectoryReader extends Closeable {
+
+	/**
+	 * Opens a DCD or XTC file, depending on its extension.
+	 */
+	static TrajectoryReader open(File file) throws IOException {
+		String name = file.getName().toLowerCase();
+
+		if (name.endsWith(".dcd"))
+			return new DcdReader(file);
+		if (name.endsWith(".xtc"))
+			return new XtcReader(file);
+
+		throw new IOException("Unknown trajectory format: " + file.getName());
+	}
+
+	/**
+	 * Number of atoms in each frame.
+	 */
+	int getAtomCount();
+
+	/**
+	 * Reads the next frame into the given array, as x, y and z of each atom in
+	 * Angstrom.
+	 *
+	 * @param coords
+	 *            array of at least 3 * getAtomCount() floats
+	 * @return false if there are no more frames
+	 */
+	boolean next(float[] coords) throws IOException;
+}
@@ -0,0 +1,346 @@
+package application.parser;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads GROMACS XTC trajectories.
+ *
+ * Each frame is a small XDR (big-endian) header followed by the coordinates,
+ * compressed to integers of a fixed precision. The first atom of a group is
+ * stored with the full number of bits needed for the range of the frame, the
+ * atoms that follow close to it (e.g. the hydrogens of a water molecule) as
+ * small differences, with the number of bits adapted as the file goes on. The
+ * decompression follows the reference implementation of the xdrfile library.
+ *
+ * Coordinates are stored in nanometres and returned in Angstrom.
+ *
+ * Reference: https://manual.gromacs.org/current/reference-manual/file-formats.html#xtc
+ *
+ * @author Slav Danchev
+ *
+ */
+public class XtcReader implements TrajectoryReader {
+
+	private static final int MAGIC = 1995;
+
+	/** Size of the frame header up to and including the atom count. */
+	private static final int HEADER = 4 + 4 + 4 + 4 + 9 * 4 + 4;
+
+	private static final int FIRST_INDEX = 9;
+
+	private static final int[] MAGIC_INTS = { 0, 0, 0, 0, 0, 0, 0, 0, 0, 8,
+			10, 12, 16, 20, 25, 32, 40, 50, 64, 80, 101, 128, 161, 203, 256,
+			322, 406, 512, 645, 812, 1024, 1290, 1625, 2048, 2580, 3250, 4096,
+			5060, 6501, 8192, 10321, 13003, 16384, 20642, 26007, 32768, 41285,
+			52015, 65536, 82570, 104031, 131072, 165140, 208063, 262144,
+			330280, 416127, 524287, 660561, 832255, 1048576, 1321122, 1664510,
+			2097152, 2642245, 3329021, 4194304, 5284491, 6658042, 8388607,
+			10568983, 13316085, 16777216 };
+
+	private final FileChannel channel;
+	private ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+	private long offset;
+	private final int atoms;
+
+	/*
+	 * state of the bit reader over buf
+	 */
+	private int count, lastBits, lastByte;
+
+	/** Scratch bytes of receiveInts, kept to not allocate for each atom. */
+	private final int[] bytes = new int[32];
+
+	public XtcReader(File file) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		try {
+			readFully(8);
+			if (buf.getInt(0) != MAGIC)
+				throw new IOException("Not an XTC file");
+			atoms = buf.getInt(4);
+			offset = 0;
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public int getAtomCount() {
+		return atoms;
+	}
+
+	@Override
+	public boolean next(float[] coords) throws IOException {
+		long start = offset;
+		try {
+			readFrame(coords);
+			return true;
+		} catch (EOFException e) {
+			// the end of the file, or a frame that is still being written and
+			// may be read by a later call
+			offset = start;
+			return false;
+		}
+	}
+
+	private void readFrame(float[] coords) throws IOException {
+		readFully(HEADER);
+		if (buf.getInt(0) != MAGIC)
+			throw new IOException("Invalid XTC frame at byte " + offset);
+		int size = buf.getInt(HEADER - 4);
+		if (size != atoms)
+			throw new IOException("XTC frame has " + size + " atoms instead of "
+					+ atoms);
+
+		if (size <= 9) {
+			readFully(3 * 4 * size);
+			for (int i = 0; i < 3 * size; i++)
+				coords[i] = buf.getFloat(4 * i) * 10;
+			return;
+		}
+
+		readFully(4 + 3 * 4 + 3 * 4 + 4 + 4);
+		float precision = buf.getFloat(0);
+		int[] minInt = { buf.getInt(4), buf.getInt(8), buf.getInt(12) };
+		int[] maxInt = { buf.getInt(16), buf.getInt(20), buf.getInt(24) };
+		int smallIndex = buf.getInt(28);
+		int bytes = buf.getInt(32);
+
+		// opaque XDR data is padded to a multiple of 4 bytes
+		readFully((bytes + 3) & ~3);
+		decompress(coords, size, 10 / precision, minInt, maxInt, smallIndex);
+	}
+
+	/**
+	 * Decodes the compressed coordinates in buf, scaling each integer by the
+	 * given factor.
+	 */
+	private void decompress(float[] coords, int size, float scale,
+			int[] minInt, int[] maxInt, int smallIndex) throws IOException {
+		int[] sizeInt = new int[3], bitSizeInt = new int[3];
+		int bitSize = 0;
+
+		for (int k = 0; k < 3; k++)
+			sizeInt[k] = maxInt[k] - minInt[k] + 1;
+
+		if ((sizeInt[0] | sizeInt[1] | sizeInt[2]) > 0xffffff) {
+			for (int k = 0; k < 3; k++)
+				bitSizeInt[k] = sizeOfInt(sizeInt[k]);
+		} else {
+			bitSize = sizeOfInts(sizeInt);
+		}
+
+		if (smallIndex < FIRST_INDEX || smallIndex >= MAGIC_INTS.length)
+			throw new IOException("Invalid XTC precision index " + smallIndex);
+
+		int smaller = MAGIC_INTS[Math.max(FIRST_INDEX, smallIndex - 1)] / 2;
+		int smallNum = MAGIC_INTS[smallIndex] / 2;
+		int[] sizeSmall = { MAGIC_INTS[smallIndex], MAGIC_INTS[smallIndex],
+				MAGIC_INTS[smallIndex] };
+
+		count = lastBits = lastByte = 0;
+
+		int[] current = new int[3], previous = new int[3];
+		int i = 0, run = 0, out = 0;
+
+		while (i < size) {
+			if (bitSize == 0) {
+				for (int k = 0; k < 3; k++)
+					current[k] = receiveBits(bitSizeInt[k]);
+			} else {
+				receiveInts(bitSize, sizeInt, current);
+			}
+			i++;
+
+			for (int k = 0; k < 3; k++) {
+				current[k] += minInt[k];
+				previous[k] = current[k];
+			}
+
+			int isSmaller = 0;
+			if (receiveBits(1) == 1) {
+				run = receiveBits(5);
+				isSmaller = run % 3;
+				run -= isSmaller;
+				isSmaller--;
+			}
+
+			if (run > 0) {
+				for (int r = 0; r < run; r += 3) {
+					receiveInts(smallIndex, sizeSmall, current);
+					if (++i > size)
+						throw new IOException("XTC frame holds too many atoms");
+
+					for (int k = 0; k < 3; k++)
+						current[k] += previous[k] - smallNum;
+
+					if (r == 0) {
+						// the first two atoms of a run are stored swapped, which
+						// compresses water molecules better
+						for (int k = 0; k < 3; k++) {
+							int swap = current[k];
+							current[k] = previous[k];
+							previous[k] = swap;
+						}
+						out = put(coords, out, previous, scale);
+					} else {
+						System.arraycopy(current, 0, previous, 0, 3);
+					}
+					out = put(coords, out, current, scale);
+				}
+			} else {
+				out = put(coords, out, current, scale);
+			}
+
+			smallIndex += isSmaller;
+			if (isSmaller < 0) {
+				smallNum = smaller;
+				smaller = smallIndex > FIRST_INDEX ? MAGIC_INTS[smallIndex - 1] / 2
+						: 0;
+			} else if (isSmaller > 0) {
+				smaller = smallNum;
+				smallNum = MAGIC_INTS[smallIndex] / 2;
+			}
+			sizeSmall[0] = sizeSmall[1] = sizeSmall[2] = MAGIC_INTS[smallIndex];
+		}
+	}
+
+	private static int put(float[] coords, int out, int[] atom, float scale) {
+		coords[out] = atom[0] * scale;
+		coords[out + 1] = atom[1] * scale;
+		coords[out + 2] = atom[2] * scale;
+		return out + 3;
+	}
+
+	/**
+	 * Reads the next bits of the data as an unsigned number, most significant
+	 * bit first.
+	 */
+	private int receiveBits(int bits) throws IOException {
+		int mask = bits == 32 ? -1 : (1 << bits) - 1;
+		int num = 0;
+
+		while (bits >= 8) {
+			lastByte = (lastByte << 8) | nextByte();
+			num |= (lastByte >>> lastBits) << (bits - 8);
+			bits -= 8;
+		}
+		if (bits > 0) {
+			if (lastBits < bits) {
+				lastBits += 8;
+				lastByte = (lastByte << 8) | nextByte();
+			}
+			lastBits -= bits;
+			num |= (lastByte >>> lastBits) & ((1 << bits) - 1);
+		}
+		return num & mask;
+	}
+
+	private int nextByte() throws IOException {
+		if (count >= buf.limit())
+			throw new IOException("XTC frame data ends early");
+		return buf.get(count++) & 0xff;
+	}
+
+	/**
+	 * Reads three integers packed into one number of the given number of bits,
+	 * as value[0] * sizes[1] * sizes[2] + value[1] * sizes[2] + value[2].
+	 */
+	private void receiveInts(int bits, int[] sizes, int[] values)
+			throws IOException {
+		bytes[1] = bytes[2] = bytes[3] = 0;
+		int n = 0;
+
+		while (bits > 8) {
+			bytes[n++] = receiveBits(8);
+			bits -= 8;
+		}
+		if (bits > 0)
+			bytes[n++] = receiveBits(bits);
+
+		for (int i = 2; i > 0; i--) {
+			long num = 0;
+			for (int j = n - 1; j >= 0; j--) {
+				num = (num << 8) | bytes[j];
+				long p = num / sizes[i];
+				bytes[j] = (int) p;
+				num -= p * sizes[i];
+			}
+			values[i] = (int) num;
+		}
+		values[0] = bytes[0] | (bytes[1] << 8) | (bytes[2] << 16)
+				| (bytes[3] << 24);
+	}
+
+	/**
+	 * Number of bits needed for numbers up to size.
+	 */
+	private static int sizeOfInt(int size) {
+		long num = 1;
+		int bits = 0;
+		while (size >= num && bits < 32) {
+			bits++;
+			num <<= 1;
+		}
+		return bits;
+	}
+
+	/**
+	 * Number of bits needed for the product of the three sizes.
+	 */
+	private static int sizeOfInts(int[] sizes) {
+		int[] bytes = new int[32];
+		int n = 1;
+		bytes[0] = 1;
+
+		for (int size : sizes) {
+			long tmp = 0;
+			int b;
+			for (b = 0; b < n; b++) {
+				tmp = bytes[b] * (long) size + tmp;
+				bytes[b] = (int) (tmp & 0xff);
+				tmp >>= 8;
+			}
+			while (tmp != 0) {
+				bytes[b++] = (int) (tmp & 0xff);
+				tmp >>= 8;
+			}
+			n = b;
+		}
+
+		int bits = 0;
+		long num = 1;
+		n--;
+		while (bytes[n] >= num) {
+			bits++;
+			num *= 2;
+		}
+		return bits + n * 8;
+	}
+
+	/**
+	 * Reads the next bytes of the file into the start of buf.
+	 */
+	private void readFully(int length) throws IOException {
+		if (buf.capacity() < length)
+			buf = ByteBuffer.allocate(length);
+
+		buf.clear().limit(length);
+		while (buf.hasRemaining()) {
+			if (channel.read(buf, offset + buf.position()) < 0)
+				throw new EOFException();
+		}
+		offset += length;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
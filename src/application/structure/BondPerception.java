@@ -0,0 +1,353 @@
+package application.structure;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import application.structure.primary.Atom;
+
+/**
+ * Finds the bonds of atoms that have no template (see ComponentDictionary),
+ * e.g. of unknown ligands and modified residues, from their distances: two
+ * atoms are bonded if they are closer than the sum of their covalent radii
+ * and TOLERANCE, and not closer than MIN_DISTANCE.
+ *
+ * The atoms are binned into a uniform grid of cells as wide as the longest
+ * possible bond, so the partners of an atom are in its own cell or the 26
+ * around it. The cells are not kept as a 3D array, which would be mostly
+ * empty for a few ligands in a large structure, but the index of each cell in
+ * the box around the atoms is folded into as many buckets as there are atoms,
+ * and the atoms are sorted by bucket with a counting sort. Cells that share a
+ * bucket are told apart by their index. Finding the bonds is then linear in
+ * the number of atoms, the atoms of neighbouring cells mostly lie close
+ * together in memory, and the buckets are split between the threads of the
+ * common ForkJoinPool, each thread collecting the bonds of its own buckets.
+ *
+ * Covalent radii: B. Cordero et al., Covalent radii revisited, Dalton Trans.
+ * 2008, 2832-2838 (the low spin radii of Mn, Fe and Co).
+ *
+ * @author Slav Danchev
+ *
+ */
+public final class BondPerception {
+
+	/** Added to the sum of the radii of two atoms, in Angstrom. */
+	public static final float TOLERANCE = 0.45f;
+
+	/** Atoms closer than this are not bonded, but overlapping. */
+	public static final float MIN_DISTANCE = 0.4f;
+
+	/** The number of buckets searched by one task. */
+	private static final int CHUNK = 1 << 12;
+
+	private static final String[] ELEMENTS = { "H", "HE", "LI", "BE", "B",
+			"C", "N", "O", "F", "NE", "NA", "MG", "AL", "SI", "P", "S", "CL",
+			"AR", "K", "CA", "SC", "TI", "V", "CR", "MN", "FE", "CO", "NI",
+			"CU", "ZN", "GA", "GE", "AS", "SE", "BR", "KR", "RB", "SR", "Y",
+			"ZR", "NB", "MO", "TC", "RU", "RH", "PD", "AG", "CD", "IN", "SN",
+			"SB", "TE", "I", "XE", "CS", "BA", "LA", "GD", "YB", "HF", "TA",
+			"W", "RE", "OS", "IR", "PT", "AU", "HG", "TL", "PB", "BI", "U",
+			"D" };
+
+	private static final float[] RADII = { 0.31f, 0.28f, 1.28f, 0.96f,
+			0.84f, 0.76f, 0.71f, 0.66f, 0.57f, 0.58f, 1.66f, 1.41f, 1.21f,
+			1.11f, 1.07f, 1.05f, 1.02f, 1.06f, 2.03f, 1.76f, 1.70f, 1.60f,
+			1.53f, 1.39f, 1.39f, 1.32f, 1.26f, 1.24f, 1.32f, 1.22f, 1.22f,
+			1.20f, 1.19f, 1.20f, 1.20f, 1.16f, 2.20f, 1.95f, 1.90f, 1.75f,
+			1.64f, 1.54f, 1.47f, 1.46f, 1.42f, 1.39f, 1.45f, 1.44f, 1.42f,
+			1.39f, 1.39f, 1.38f, 1.39f, 1.40f, 2.44f, 2.15f, 2.07f, 1.96f,
+			1.87f, 1.75f, 1.70f, 1.62f, 1.51f, 1.44f, 1.41f, 1.36f, 1.36f,
+			1.32f, 1.45f, 1.46f, 1.48f, 1.96f, 0.31f };
+
+	private BondPerception() {
+	}
+
+	/**
+	 * Gets the covalent radius of an element.
+	 *
+	 * @param element
+	 *            the element symbol, in upper case, padded or not (the
+	 *            LINE parser keeps both columns of the PDB field)
+	 * @return the radius in Angstrom, 0 for an unknown element
+	 */
+	public static float covalentRadius(String element) {
+		element = element.trim();
+		for (int i = 0; i < ELEMENTS.length; i++) {
+			if (ELEMENTS[i].equals(element))
+				return RADII[i];
+		}
+		return 0;
+	}
+
+	/**
+	 * Finds the bonds between atoms of the same group, e.g. of the same
+	 * residue. Atoms of unknown elements are not bonded.
+	 *
+	 * @param atoms
+	 *            the atoms
+	 * @param groups
+	 *            the group of each atom
+	 * @return the indices in atoms of the two atoms of each bond, one after
+	 *         the other, the first one smaller
+	 */
+	public static int[] perceive(List<Atom> atoms, int[] groups) {
+		int n = atoms.size();
+		if (n < 2)
+			return new int[0];
+
+		float[] xyz = new float[3 * n];
+		float[] radii = new float[n];
+		float[] byElement = new float[0];
+		float maxRadius = 0;
+
+		for (int i = 0; i < n; i++) {
+			Atom a = atoms.get(i);
+			xyz[3 * i] = a.getX();
+			xyz[3 * i + 1] = a.getY();
+			xyz[3 * i + 2] = a.getZ();
+
+			// radii are looked up once per element, NaN until then
+			int element = a.getElementCode();
+			if (element >= byElement.length) {
+				int old = byElement.length;
+				byElement = Arrays.copyOf(byElement, element + 16);
+				Arrays.fill(byElement, old, byElement.length, Float.NaN);
+			}
+			if (Float.isNaN(byElement[element]))
+				byElement[element] = covalentRadius(SymbolTable.name(element));
+
+			radii[i] = byElement[element];
+			maxRadius = Math.max(maxRadius, radii[i]);
+		}
+
+		Grid grid = new Grid(xyz, radii, groups, 2 * maxRadius + TOLERANCE);
+		int chunks = (grid.buckets() + CHUNK - 1) / CHUNK;
+		int[][] found = new int[chunks][];
+
+		Search search = new Search(grid, found, 0, chunks);
+		if (chunks == 1)
+			search.compute();
+		else
+			ForkJoinPool.commonPool().invoke(search);
+
+		int count = 0;
+		for (int[] pairs : found)
+			count += pairs[0];
+
+		// back from places in the grid to indices in atoms
+		int[] bonds = new int[count];
+		int at = 0;
+		for (int[] pairs : found) {
+			for (int k = 1; k <= pairs[0]; k += 2) {
+				int i = grid.atoms[pairs[k]], j = grid.atoms[pairs[k + 1]];
+				bonds[at++] = Math.min(i, j);
+				bonds[at++] = Math.max(i, j);
+			}
+		}
+		return bonds;
+	}
+
+	/**
+	 * The atoms sorted by the bucket of their cell. The cells, coordinates,
+	 * radii and groups are copied in that order too, so that the atoms of a
+	 * bucket are read one after the other.
+	 */
+	private static final class Grid {
+		final float cell;
+		final int mask;
+
+		/**
+		 * The number of cells in a row along z and in a layer of rows, of the
+		 * box around the atoms grown by one cell on each side.
+		 */
+		final long row, layer;
+
+		/** The places of the atoms of bucket b, starts[b] to starts[b + 1]. */
+		final int[] starts;
+
+		/** The index of the atom at each place. */
+		final int[] atoms;
+
+		/** The cell of the atom at each place, its index in the box. */
+		final long[] cells;
+
+		/** The coordinates, radius and group of the atom at each place. */
+		final float[] xyz, radii;
+		final int[] groups;
+
+		Grid(float[] xyz, float[] radii, int[] groups, float cell) {
+			this.cell = cell;
+
+			int n = radii.length;
+			// four at least, so that a cell and the cells before and after
+			// it are in three different buckets
+			int buckets = Integer.highestOneBit(Math.max(n, 4) - 1) << 1;
+			mask = buckets - 1;
+
+			int x0 = Integer.MAX_VALUE, y0 = x0, z0 = x0;
+			int y1 = Integer.MIN_VALUE, z1 = y1;
+			for (int i = 0; i < n; i++) {
+				x0 = Math.min(x0, cell(xyz[3 * i]));
+				y0 = Math.min(y0, cell(xyz[3 * i + 1]));
+				z0 = Math.min(z0, cell(xyz[3 * i + 2]));
+				y1 = Math.max(y1, cell(xyz[3 * i + 1]));
+				z1 = Math.max(z1, cell(xyz[3 * i + 2]));
+			}
+			// with a free cell on each side, the cells around every atom
+			// are in the box, so no two of them have the same index
+			row = (long) z1 - z0 + 3;
+			layer = ((long) y1 - y0 + 3) * row;
+
+			long[] cellOf = new long[n];
+			starts = new int[buckets + 1];
+			for (int i = 0; i < n; i++) {
+				cellOf[i] = (cell(xyz[3 * i]) - x0 + 1L) * layer
+						+ (cell(xyz[3 * i + 1]) - y0 + 1L) * row
+						+ (cell(xyz[3 * i + 2]) - z0 + 1L);
+				starts[bucket(cellOf[i]) + 1]++;
+			}
+			for (int b = 0; b < buckets; b++)
+				starts[b + 1] += starts[b];
+
+			int[] next = Arrays.copyOf(starts, buckets);
+			atoms = new int[n];
+			cells = new long[n];
+			this.xyz = new float[3 * n];
+			this.radii = new float[n];
+			this.groups = new int[n];
+			for (int i = 0; i < n; i++) {
+				int k = next[bucket(cellOf[i])]++;
+				atoms[k] = i;
+				cells[k] = cellOf[i];
+				System.arraycopy(xyz, 3 * i, this.xyz, 3 * k, 3);
+				this.radii[k] = radii[i];
+				this.groups[k] = groups[i];
+			}
+		}
+
+		int buckets() {
+			return mask + 1;
+		}
+
+		/** The cell of a coordinate along an axis. */
+		private int cell(float coordinate) {
+			return (int) Math.floor(coordinate / cell);
+		}
+
+		/**
+		 * The bucket of a cell, its index folded into the buckets, so that
+		 * cells next to each other along z are in buckets next to each other.
+		 * Cells that share a bucket are far apart.
+		 */
+		int bucket(long cell) {
+			return (int) cell & mask;
+		}
+	}
+
+	/**
+	 * Finds the bonds of the atoms of a range of chunks of buckets, splitting
+	 * it between threads. Each bond is found from the atom of the two that is
+	 * placed first in the grid.
+	 */
+	private static final class Search extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Grid grid;
+
+		/** The bonds found in each chunk, as places, the count first. */
+		private final int[][] found;
+		private final int from, to;
+
+		Search(Grid grid, int[][] found, int from, int to) {
+			this.grid = grid;
+			this.found = found;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Search(grid, found, from, middle),
+						new Search(grid, found, middle, to));
+				return;
+			}
+
+			int[] pairs = new int[17];
+			int end = Math.min((from + 1) * CHUNK, grid.buckets());
+			int first = grid.starts[from * CHUNK], last = grid.starts[end];
+
+			for (int i = first; i < last; i++) {
+				if (grid.radii[i] == 0)
+					continue;
+
+				for (int dx = -1; dx <= 1; dx++) {
+					for (int dy = -1; dy <= 1; dy++) {
+						long cell = grid.cells[i] + dx * grid.layer + dy
+								* grid.row;
+						pairs = bonds(i, cell, pairs);
+					}
+				}
+			}
+			found[from] = pairs;
+		}
+
+		/**
+		 * Adds the bonds of the atom at place i with the atoms placed after it
+		 * to pairs, of a cell and the cells before and after it along z,
+		 * whose buckets follow each other. Atoms of other cells of the same
+		 * buckets are skipped.
+		 */
+		private int[] bonds(int i, long cell, int[] pairs) {
+			int first = grid.bucket(cell - 1), last = grid.bucket(cell + 1);
+			if (first > last) {
+				// the buckets wrap around, each cell on its own
+				for (long c = cell - 1; c <= cell + 1; c++)
+					pairs = bonds(i, c, c, pairs);
+				return pairs;
+			}
+			return bonds(i, cell - 1, cell + 1, pairs);
+		}
+
+		/**
+		 * Adds the bonds of the atom at place i with the atoms placed after it
+		 * in the cells from first to last, whose buckets follow each other.
+		 */
+		private int[] bonds(int i, long first, long last, int[] pairs) {
+			int start = Math.max(grid.starts[grid.bucket(first)], i + 1);
+			int end = grid.starts[grid.bucket(last) + 1];
+			for (int j = start; j < end; j++) {
+				long c = grid.cells[j];
+				if (c >= first && c <= last && isBond(i, j))
+					pairs = add(pairs, i, j);
+			}
+			return pairs;
+		}
+
+		private boolean isBond(int i, int j) {
+			if (grid.groups[j] != grid.groups[i] || grid.radii[j] == 0)
+				return false;
+
+			float[] xyz = grid.xyz;
+			float x = xyz[3 * i] - xyz[3 * j];
+			float y = xyz[3 * i + 1] - xyz[3 * j + 1];
+			float z = xyz[3 * i + 2] - xyz[3 * j + 2];
+			float d2 = x * x + y * y + z * z;
+			float max = grid.radii[i] + grid.radii[j] + TOLERANCE;
+			return d2 >= MIN_DISTANCE * MIN_DISTANCE && d2 <= max * max;
+		}
+
+		/**
+		 * Appends a bond to pairs, which holds their count first.
+		 */
+		private static int[] add(int[] pairs, int i, int j) {
+			if (pairs[0] + 3 > pairs.length)
+				pairs = Arrays.copyOf(pairs, 2 * pairs.length);
+			pairs[++pairs[0]] = i;
+			pairs[++pairs[0]] = j;
+			return pairs;
+		}
+	}
+}
@@ -1,18 +1,9 @@
 package application.structure;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
-import javafx.event.EventHandler;
-import javafx.geometry.Point3D;
-import javafx.scene.Cursor;
-import javafx.scene.Group;
-import javafx.scene.control.Tooltip;
-import javafx.scene.input.MouseEvent;
-import javafx.scene.paint.Color;
-import javafx.scene.text.Font;
+import application.parser.SequenceStore;
 import application.structure.primary.Aminoacid;
 import application.structure.primary.Atom;
 import application.structure.primary.Bond;
@@ -21,7 +12,7 @@ import application.structure.primary.Bond;
  * A single polypeptide chain.
  * 
  * Composed of a list of Aminoacid, Atom and Bond objects. Also has a chainID,
- * serial and a Group node.
+ * serial and the offset it was moved by, e.g. when dragged with the mouse.
  * 
  * @author Slav Danchev
  * 
@@ -32,24 +23,20 @@ public class Chain {
 	private List<Aminoacid> aminoacids;
 	private List<Atom> atoms, mainChainAtoms;
 	private List<Bond> mainChainBonds, bonds;
-	private Group node, chainNode;
-	private Map<Integer, Aminoacid> acidMap;
-	Point3D position;
-	
-	private Tooltip tooltip;
 
-	double orgSceneX, orgSceneY;
-	double orgTranslateX, orgTranslateY;
+	/** The offset the chain was moved by from where the file puts it. */
+	private float offsetX, offsetY, offsetZ;
+
+	/** The SEQRES sequences of the structure, mapped when first asked for. */
+	private SequenceStore sequences;
+	private SequenceMap sequenceMap;
 
 	public Chain(ArrayList<Aminoacid> acids) {
 		aminoacids = new ArrayList<Aminoacid>();
 		atoms = new ArrayList<Atom>();
-		node = new Group();
-		chainNode = new Group();
 		mainChainAtoms = new ArrayList<Atom>();
 		mainChainBonds = new ArrayList<Bond>();
 		bonds = new ArrayList<Bond>();
-		acidMap = new HashMap<Integer, Aminoacid>();
 
 		aminoacids.addAll(acids);
 		chainID = acids.get(0).getChainID();
@@ -57,21 +44,10 @@ public class Chain {
 		// get the list of atoms from the Aminoacid objects in the list
 		for (Aminoacid a : acids) {
 			atoms.addAll(a.getAtoms());
-			node.getChildren().add(a.getNode());
 			bonds.addAll(a.getBonds());
-			acidMap.put(a.getResID(), a);
 		}
 
 		makeMainChain();
-
-		// add main chain bonds as children to the group node
-		for (Bond b : mainChainBonds) {
-			chainNode.getChildren().add(b.getNode());
-		}
-
-		node.setCursor(Cursor.HAND);
-		node.setOnMousePressed(circleOnMousePressedEventHandler);
-		node.setOnMouseDragged(circleOnMouseDraggedEventHandler);
 	}
 
 	/**
@@ -81,69 +57,48 @@ public class Chain {
 	 * putting all the N, C Alpha and C atoms in a second list. Then iterate
 	 * over that, creating a Bond between each n and n + 1 atom in the list.
 	 * 
-	 * Each Atom is then used to create a Bond list and colour it green, to
-	 * distinguish it from the rest of the structure.
+	 * Each Atom is then used to create a Bond list, which is shown apart
+	 * from the rest of the structure.
 	 */
 	private void makeMainChain() {
 		for (Atom b : atoms) {
-			String name = b.getName();
-			if (name.equals("N") || name.equals("CA") || name.equals("C"))
+			int name = b.getNameCode();
+			if (name == SymbolTable.N || name == SymbolTable.CA
+					|| name == SymbolTable.C)
 				mainChainAtoms.add(b);
 		}
 
 		for (int i = 0; i < mainChainAtoms.size() - 1; i++) {
-			// use a different coloring for the main chain bonds
 			float dist = mainChainAtoms.get(i).distance(
 					mainChainAtoms.get(i + 1));
 			if (dist < 2f) {
 				mainChainBonds.add(new Bond(mainChainAtoms.get(i),
-						mainChainAtoms.get(i + 1), Color.WHITE));
+						mainChainAtoms.get(i + 1)));
 			}
 		}
 	}
 
 	/**
-	 * A method that translates the entire chain to a specified position.
+	 * A method that translates the entire chain by a given offset from where
+	 * the file puts it. The atoms keep their coordinates, the offset is added
+	 * where the chain is shown and written.
 	 */
-	public void moveTo(Point3D position) {
-		node.setTranslateX(position.getX());
-		node.setTranslateY(position.getY());
-		node.setTranslateZ(position.getZ());
-
-		// for (Bond b : mainChainBonds) {
-		// node.getChildren().add(b.getNode());
-		// }
-	}
-
-	public void colorMainChain(Color color) {
-		for (Bond b : mainChainBonds) {
-			b.setColor(color);
-		}
+	public void setOffset(float x, float y, float z) {
+		offsetX = x;
+		offsetY = y;
+		offsetZ = z;
 	}
 
-	public void colorBasedOnSerial() {
-		for (Aminoacid aa : aminoacids) {
-			double hue = chainID.charAt(0);
-			aa.setColor(Color.hsb(hue * 50, 1, 0.5));
-		}
+	public float getOffsetX() {
+		return offsetX;
 	}
 
-	public void resetColor() {
-		for (Atom a : atoms) {
-			a.resetColor();
-		}
-
-		for (Bond b : mainChainBonds) {
-			b.resetColor();
-		}
+	public float getOffsetY() {
+		return offsetY;
 	}
 
-	public void setVisible(boolean b) {
-		node.setVisible(b);
-	}
-	
-	public void toggleMainChain(boolean visible) {
-		chainNode.setVisible(visible);
+	public float getOffsetZ() {
+		return offsetZ;
 	}
 
 	/**
@@ -178,10 +133,6 @@ public class Chain {
 		this.chainID = chainID;
 	}
 
-	public Group getNode() {
-		return node;
-	}
-
 	public ArrayList<Atom> getAtoms() {
 		return (ArrayList<Atom>) atoms;
 	}
@@ -193,66 +144,30 @@ public class Chain {
 	public List<Bond> getMainChainBonds() {
 		return mainChainBonds;
 	}
-	
-	public Group getMainChainNode() {
-		return chainNode;
-	}
 
-	public Aminoacid getAcid(int serial) {
-		return acidMap.get(serial);
+	/**
+	 * Sets the SEQRES sequences of the structure, which the sequence of this
+	 * chain is taken from.
+	 */
+	public void setSequences(SequenceStore sequences) {
+		this.sequences = sequences;
+		sequenceMap = null;
 	}
 
-	EventHandler<MouseEvent> circleOnMousePressedEventHandler = new EventHandler<MouseEvent>() {
-
-		@Override
-		public void handle(MouseEvent t) {
-			if (t.isPrimaryButtonDown()) {
-				orgSceneX = t.getSceneX();
-				orgSceneY = t.getSceneY();
-				orgTranslateX = ((Group) (t.getSource())).getTranslateX();
-				orgTranslateY = ((Group) (t.getSource())).getTranslateY();
-			}
-		}
-	};
-	
-	
-
-	EventHandler<MouseEvent> circleOnMouseDraggedEventHandler = new EventHandler<MouseEvent>() {
-
-		@Override
-		public void handle(MouseEvent t) {
-			if (t.isPrimaryButtonDown()) {
-				double offsetX = t.getSceneX() - orgSceneX;
-				double offsetY = t.getSceneY() - orgSceneY;
-				double newTranslateX = orgTranslateX + offsetX;
-				double newTranslateY = orgTranslateY + offsetY;
-
-				((Group) (t.getSource())).setTranslateX(newTranslateX);
-				((Group) (t.getSource())).setTranslateY(newTranslateY);
-
-				position = new Point3D(node.getTranslateX(),
-						node.getTranslateY(), node.getTranslateZ());
-			}
-		}
-	};
-	
-	public void setScope(boolean selected) {
-		if (selected) {
-			node.setOnMouseMoved((event) -> {
-				tooltip = new Tooltip();
-				tooltip.setStyle("-fx-background: lightblue;");
-				tooltip.setText(toString());
-
-				Tooltip.install(node, tooltip);
-			});
-
-		} else {
-			node.setOnMouseMoved(null);
-			Tooltip.uninstall(node, tooltip);
-		}
+	/**
+	 * Gets the mapping of the SEQRES sequence of the chain to its residues,
+	 * computed the first time it is asked for.
+	 *
+	 * @return the mapping, or null if the file gave no sequence for the chain
+	 */
+	public SequenceMap getSequenceMap() {
+		if (sequenceMap == null && sequences != null
+				&& sequences.length(chainID) > 0)
+			sequenceMap = new SequenceMap(sequences.getResidueNames(chainID),
+					aminoacids);
+		return sequenceMap;
 	}
 
-	
 	@Override
 	public String toString() {
 		String text = "";
@@ -0,0 +1,110 @@
+package application.structure;
+
+import java.util.Arrays;
+
+import application.structure.primary.Atom;
+
+/**
+ * The alternate locations of the atoms of a structure, kept beside the atoms
+ * rather than as atoms of their own.
+ *
+ * Only the first location of an atom in the file becomes an Atom. Every
+ * location of an atom that has alternates, the first one included, is an
+ * entry of this table: the atom, the alternate location indicator, the
+ * coordinates as floats and the occupancy. The entries of an atom follow
+ * each other in the order of the file, but may be interleaved with those of
+ * other atoms. Atoms without alternate locations cost nothing.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class ConformerTable {
+
+	private Atom[] atoms = new Atom[16];
+	private char[] altLocs = new char[16];
+	private float[] coords = new float[48];
+	private float[] occupancies = new float[16];
+	private int size;
+
+	/**
+	 * Adds a location of an atom.
+	 */
+	public void add(Atom atom, char altLoc, double x, double y, double z,
+			double occupancy) {
+		if (size == atoms.length) {
+			atoms = Arrays.copyOf(atoms, 2 * size);
+			altLocs = Arrays.copyOf(altLocs, 2 * size);
+			coords = Arrays.copyOf(coords, 6 * size);
+			occupancies = Arrays.copyOf(occupancies, 2 * size);
+		}
+
+		atoms[size] = atom;
+		altLocs[size] = altLoc;
+		coords[3 * size] = (float) x;
+		coords[3 * size + 1] = (float) y;
+		coords[3 * size + 2] = (float) z;
+		occupancies[size] = (float) occupancy;
+		size++;
+	}
+
+	/**
+	 * Appends the entries of another table, e.g. of the next part of a file.
+	 */
+	public void addAll(ConformerTable other) {
+		for (int i = 0; i < other.size; i++)
+			add(other.atoms[i], other.altLocs[i], other.coords[3 * i],
+					other.coords[3 * i + 1], other.coords[3 * i + 2],
+					other.occupancies[i]);
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Gets the number of entries.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public Atom getAtom(int entry) {
+		return atoms[entry];
+	}
+
+	public char getAltLoc(int entry) {
+		return altLocs[entry];
+	}
+
+	public float getX(int entry) {
+		return coords[3 * entry];
+	}
+
+	public float getY(int entry) {
+		return coords[3 * entry + 1];
+	}
+
+	public float getZ(int entry) {
+		return coords[3 * entry + 2];
+	}
+
+	public float getOccupancy(int entry) {
+		return occupancies[entry];
+	}
+
+	/**
+	 * Gets the alternate location indicators used in the structure, each
+	 * once, in alphabetical order.
+	 */
+	public char[] getAltLocs() {
+		char[] found = Arrays.copyOf(altLocs, size);
+		Arrays.sort(found);
+
+		int n = 0;
+		for (int i = 0; i < found.length; i++) {
+			if (n == 0 || found[i] != found[n - 1])
+				found[n++] = found[i];
+		}
+		return Arrays.copyOf(found, n);
+	}
+}
@@ -0,0 +1,287 @@
+package application.structure;
+
+import java.util.Arrays;
+import java.util.List;
+
+import application.structure.primary.Atom;
+
+/**
+ * The bonds stated by the CONECT and LINK records of a file, as a graph over
+ * the indices of the atoms in file order.
+ *
+ * While a file is read, the records are only appended to arrays: a CONECT
+ * record as the serials of its two atoms, a LINK record as a packed key of
+ * the chain, residue number and atom name of each partner, and a bond read
+ * back from the cache as the indices of its atoms. Once all atoms are
+ * known, resolve() turns them into atom indices in one pass over the atoms,
+ * drops the bonds to atoms that were not loaded, and merges the bonds that
+ * are stated twice (CONECT records list a bond for both of its atoms, and a
+ * LINK is often repeated as CONECT). The bonds are then kept in compressed
+ * sparse row form: the neighbours of atom i are neighbors[offsets[i]] up to
+ * neighbors[offsets[i + 1]], so a bond costs two ints and no objects are made
+ * for it.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class LinkGraph {
+
+	private static final int[] NONE = new int[0];
+
+	/* the records as read, two serials per CONECT bond */
+	private int[] conects = new int[64];
+	private int conectCount;
+
+	/* two keys per LINK record, see key() */
+	private long[] links = new long[16];
+	private int linkCount;
+
+	/* two atom indices per bond that is known by its atoms already */
+	private int[] pairs = new int[16];
+	private int pairCount;
+
+	/* the resolved graph */
+	private int[] offsets, neighbors;
+	private int bondCount;
+
+	/**
+	 * Adds a bond stated by a CONECT record.
+	 */
+	public void addConect(int serial, int bondedSerial) {
+		if (conectCount + 2 > conects.length)
+			conects = Arrays.copyOf(conects, 2 * conects.length);
+		conects[conectCount++] = serial;
+		conects[conectCount++] = bondedSerial;
+	}
+
+	/**
+	 * Adds a bond between two atoms given by their indices in the list the
+	 * graph is resolved against, e.g. a bond read back from the cache.
+	 */
+	public void addBond(int atom, int bondedAtom) {
+		if (pairCount + 2 > pairs.length)
+			pairs = Arrays.copyOf(pairs, 2 * pairs.length);
+		pairs[pairCount++] = atom;
+		pairs[pairCount++] = bondedAtom;
+	}
+
+	/**
+	 * Adds a bond stated by a LINK record, between two atoms given by their
+	 * names, chains and residue numbers.
+	 */
+	public void addLink(String name1, String chainID1, int resSeq1,
+			String name2, String chainID2, int resSeq2) {
+		addLink(key(SymbolTable.code(chainID1), resSeq1,
+				SymbolTable.code(name1)), key(SymbolTable.code(chainID2),
+				resSeq2, SymbolTable.code(name2)));
+	}
+
+	private void addLink(long key1, long key2) {
+		if (linkCount + 2 > links.length)
+			links = Arrays.copyOf(links, 2 * links.length);
+		links[linkCount++] = key1;
+		links[linkCount++] = key2;
+	}
+
+	/**
+	 * Packs the chain, the residue number and the name of an atom into one
+	 * long, 16, 24 and 24 bits of their codes.
+	 */
+	private static long key(int chainCode, int resSeq, int nameCode) {
+		return (long) chainCode << 48 | (long) (resSeq & 0xFFFFFF) << 24
+				| nameCode & 0xFFFFFF;
+	}
+
+	/**
+	 * Appends the records of another graph, e.g. of the next part of a file.
+	 * Neither graph may have been resolved.
+	 */
+	public void addAll(LinkGraph other) {
+		for (int i = 0; i < other.conectCount; i += 2)
+			addConect(other.conects[i], other.conects[i + 1]);
+		for (int i = 0; i < other.linkCount; i += 2)
+			addLink(other.links[i], other.links[i + 1]);
+		for (int i = 0; i < other.pairCount; i += 2)
+			addBond(other.pairs[i], other.pairs[i + 1]);
+	}
+
+	/**
+	 * Turns the records into bonds between the given atoms, whose indices in
+	 * the list become the indices of the graph. Records naming atoms that are
+	 * not in the list are dropped. The records are released afterwards, a
+	 * graph is resolved once.
+	 */
+	public void resolve(List<Atom> atoms) {
+		if (offsets != null)
+			throw new IllegalStateException("Links already resolved");
+
+		int n = atoms.size();
+
+		// serials with the index of their atom in the low half, sorted
+		long[] serials = new long[n];
+		for (int i = 0; i < n; i++)
+			serials[i] = (long) atoms.get(i).getSerial() << 32 | i;
+		Arrays.sort(serials);
+
+		long[] edges = new long[(conectCount + linkCount + pairCount) / 2];
+		int edgeCount = 0;
+
+		for (int i = 0; i < pairCount; i += 2) {
+			int a = pairs[i], b = pairs[i + 1];
+			if (a < n && b < n && a != b)
+				edges[edgeCount++] = edge(a, b);
+		}
+
+		for (int i = 0; i < conectCount; i += 2) {
+			int a = find(serials, conects[i]);
+			int b = find(serials, conects[i + 1]);
+			if (a >= 0 && b >= 0 && a != b)
+				edges[edgeCount++] = edge(a, b);
+		}
+
+		if (linkCount > 0) {
+			// the keys of the records are few, look each atom up among them
+			long[] keys = Arrays.copyOf(links, linkCount);
+			Arrays.sort(keys);
+			int unique = 0;
+			for (int i = 0; i < keys.length; i++) {
+				if (i == 0 || keys[i] != keys[i - 1])
+					keys[unique++] = keys[i];
+			}
+			keys = Arrays.copyOf(keys, unique);
+
+			int[] found = new int[unique];
+			Arrays.fill(found, -1);
+
+			for (int i = 0; i < n; i++) {
+				Atom atom = atoms.get(i);
+				int k = Arrays.binarySearch(keys, key(atom.getChainCode(),
+						atom.getResID(), atom.getNameCode()));
+				// the first atom wins, e.g. the first alternate location
+				if (k >= 0 && found[k] < 0)
+					found[k] = i;
+			}
+
+			for (int i = 0; i < linkCount; i += 2) {
+				int a = found[Arrays.binarySearch(keys, links[i])];
+				int b = found[Arrays.binarySearch(keys, links[i + 1])];
+				if (a >= 0 && b >= 0 && a != b)
+					edges[edgeCount++] = edge(a, b);
+			}
+		}
+
+		Arrays.sort(edges, 0, edgeCount);
+
+		offsets = new int[n + 1];
+		long previous = -1;
+		for (int i = 0; i < edgeCount; i++) {
+			if (edges[i] == previous)
+				continue;
+			previous = edges[i];
+			edges[bondCount++] = edges[i];
+			offsets[(int) (edges[i] >>> 32) + 1]++;
+			offsets[(int) edges[i] + 1]++;
+		}
+		for (int i = 0; i < n; i++)
+			offsets[i + 1] += offsets[i];
+
+		neighbors = new int[2 * bondCount];
+		int[] next = Arrays.copyOf(offsets, n);
+		for (int i = 0; i < bondCount; i++) {
+			int a = (int) (edges[i] >>> 32), b = (int) edges[i];
+			neighbors[next[a]++] = b;
+			neighbors[next[b]++] = a;
+		}
+
+		conects = pairs = NONE;
+		links = new long[0];
+		conectCount = linkCount = pairCount = 0;
+	}
+
+	/**
+	 * The index of the atom with the given serial, or -1.
+	 */
+	private static int find(long[] serials, int serial) {
+		int low = 0, high = serials.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int s = (int) (serials[middle] >> 32);
+			if (s < serial)
+				low = middle + 1;
+			else if (s > serial)
+				high = middle - 1;
+			else
+				return (int) serials[middle];
+		}
+		return -1;
+	}
+
+	/**
+	 * Packs a bond with the lower index first, so that both directions of it
+	 * sort to the same value.
+	 */
+	private static long edge(int a, int b) {
+		return (long) Math.min(a, b) << 32 | Math.max(a, b);
+	}
+
+	public boolean isResolved() {
+		return offsets != null;
+	}
+
+	/**
+	 * Gets the number of atoms the graph was resolved against.
+	 */
+	public int getAtomCount() {
+		return offsets == null ? 0 : offsets.length - 1;
+	}
+
+	/**
+	 * Gets the number of distinct bonds.
+	 */
+	public int getBondCount() {
+		return bondCount;
+	}
+
+	/**
+	 * Gets the number of bonds of an atom.
+	 */
+	public int getDegree(int atom) {
+		return offsets[atom + 1] - offsets[atom];
+	}
+
+	/**
+	 * Gets the k-th neighbour of an atom, in increasing index order.
+	 */
+	public int getNeighbor(int atom, int k) {
+		if (k < 0 || k >= getDegree(atom))
+			throw new IndexOutOfBoundsException("Neighbor " + k + " of atom "
+					+ atom);
+		return neighbors[offsets[atom] + k];
+	}
+
+	/**
+	 * Gets the indices of the atoms bonded to an atom.
+	 */
+	public int[] getNeighbors(int atom) {
+		return Arrays.copyOfRange(neighbors, offsets[atom],
+				offsets[atom + 1]);
+	}
+
+	/**
+	 * Gets the bonds as pairs of atom indices, the lower index first, in
+	 * increasing order.
+	 */
+	public int[] getBonds() {
+		int[] bonds = new int[2 * bondCount];
+		int n = 0;
+		for (int a = 0; a < getAtomCount(); a++) {
+			for (int i = offsets[a]; i < offsets[a + 1]; i++) {
+				if (neighbors[i] > a) {
+					bonds[n++] = a;
+					bonds[n++] = neighbors[i];
+				}
+			}
+		}
+		return bonds;
+	}
+}
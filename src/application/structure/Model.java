@@ -2,16 +2,17 @@ package application.structure;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
-import javafx.geometry.Point3D;
-import javafx.scene.Group;
-import javafx.scene.paint.Color;
-import application.ScopeType;
+import application.parser.ComponentDictionary;
+import application.parser.MetaStore;
+import application.parser.SequenceStore;
 import application.structure.primary.Aminoacid;
 import application.structure.primary.Atom;
 import application.structure.primary.Bond;
+import application.structure.primary.BondTemplate;
 import application.structure.secondary.Helix;
 import application.structure.secondary.Sheet;
 
@@ -19,14 +20,20 @@ import application.structure.secondary.Sheet;
  * A single protein structure.
  * 
  * Defined by a list of Chain objects and a list of other atoms, external to
- * polypeptide chains. Calculates the most external atoms to the structure for
- * both sides of each axis.
+ * polypeptide chains. The model is plain data, it is shown by a ModelView,
+ * which it tells of the atoms it moves through its listeners.
  * 
  * @author Slav Danchev
  *
  */
 
 public class Model {
+
+	/**
+	 * Selects the location of highest occupancy of each atom, see
+	 * setConformer().
+	 */
+	public static final char HIGHEST_OCCUPANCY = '\0';
 	
 
 	private List<Helix> helices;
@@ -37,499 +44,729 @@ public class Model {
 
 	private List<Atom> hetatoms, atoms;
 
-	private List<Aminoacid> acids;
+	/** The data of all atoms of the model, the frame atoms in order. */
+	private AtomTable table;
 
-	private List<Bond> bonds, mainChain, explicit;
+	private List<Aminoacid> acids;
 
-	private Group node;
+	private List<Bond> explicit;
 
-	private Map<Integer, Atom> atomMap;
+	/** The bonds within the residues of the hetero atoms. */
+	private List<Bond> hetBonds;
 
-	private Map<Integer, Aminoacid> acidMap;
+	/** The residues by chain, residue number and insertion code. */
+	private ResidueIndex acidIndex;
 
 	private Map<String, Chain> chainMap;
 
 	private String metaInfo; 
 
+	/** The title section of the file, decoded when it is first shown. */
+	private MetaStore metaData;
+
+	/** The bonds of the CONECT and LINK records, over the frame atoms. */
+	private LinkGraph links;
+
+	/** The SEQRES sequences of the chains. */
+	private SequenceStore sequences;
+
+	/** Atoms in the order of the coordinates of each frame. */
+	private List<Atom> frameAtoms;
+
+	/** Coordinates of the models after the first, x, y, z per atom. */
+	private List<float[]> frames;
+
+	/** Coordinates of the atoms in the first model, x, y, z per atom. */
+	private float[] firstFrame;
+
+	private int activeFrame;
+
+	/** The alternate locations of the atoms. */
+	private ConformerTable conformers;
+
+	/** The altLoc shown, blank for the first location of each atom. */
+	private char conformer = ' ';
+
+	private List<ModelListener> listeners = new ArrayList<ModelListener>();
+
 	/**
 	 * Instantiates a new model.
 	 *
 	 * @param chains list of chains that compose the structure 
+	 * @param table the table of the atoms of the chains and the hetero atoms
 	 */
-	public Model(ArrayList<Chain> chains) {
+	public Model(ArrayList<Chain> chains, AtomTable table) {
 		this.chains = chains;
-		node = new Group();
+		this.table = table;
 
 		acids = new ArrayList<Aminoacid>();
 		atoms = new ArrayList<Atom>();
-		bonds = new ArrayList<Bond>();
-		mainChain = new ArrayList<Bond>();
 
 		chainMap = new HashMap<String, Chain>();
 
 		for (Chain c : chains) {
-			node.getChildren().addAll(c.getNode());
-			node.getChildren().addAll(c.getMainChainNode());
-
 			chainMap.put(c.getChainID(), c);
 			acids.addAll(c.getAminoacids());
 			atoms.addAll(c.getAtoms());
-			bonds.addAll(c.getBonds());
-			mainChain.addAll(c.getMainChainBonds());
 		}
 
-		// map atoms and amino acids to their serial numbers
-		atomMap = new HashMap<Integer, Atom>();
-		acidMap = new HashMap<Integer, Aminoacid>();
-
-		for (Aminoacid aa : acids) {
-			acidMap.put(aa.getResID(), aa);
+		// index the amino acids by chain, residue number and insertion code,
+		// and each atom by the index of its residue, in one pass; atoms are
+		// known by their index in the file (see getAtom())
+		acidIndex = new ResidueIndex(acids.size());
+
+		for (int i = 0; i < acids.size(); i++) {
+			Aminoacid aa = acids.get(i);
+			acidIndex.put(ResidueIndex.key(aa.getChainCode(), aa.getResID(),
+					aa.getICode()), i);
+			for (Atom a : aa.getAtoms())
+				table.setResidueIndex(a.getIndex(), i);
 		}
 
-		for (Atom a : atoms) {
-			atomMap.put(a.getSerial(), a);
+		perceiveAcidBonds();
+	}
+
+	/**
+	 * Finds the bonds of the residues the ComponentDictionary has no template
+	 * for, e.g. modified amino acids, from the distances of their atoms (see
+	 * BondPerception). The bonds of N, CA and C with each other are left to
+	 * the main chain of the Chain, as for the other residues.
+	 */
+	private void perceiveAcidBonds() {
+		List<Atom> unknown = new ArrayList<Atom>();
+		int[] groups = new int[atoms.size()];
+
+		for (int i = 0; i < acids.size(); i++) {
+			Aminoacid aa = acids.get(i);
+			if (ComponentDictionary.getTemplate(aa.getTypeCode()) != null)
+				continue;
+
+			for (Atom a : aa.getAtoms()) {
+				groups[unknown.size()] = i;
+				unknown.add(a);
+			}
 		}
 
-		// finally position structure around center
-		center();
+		int[] pairs = BondPerception.perceive(unknown, groups);
+		for (int i = 0; i < pairs.length; i += 2) {
+			Atom a = unknown.get(pairs[i]), b = unknown.get(pairs[i + 1]);
+			if (!isMainChain(a) || !isMainChain(b))
+				acids.get(groups[pairs[i]]).getBonds().add(new Bond(a, b));
+		}
+	}
 
-		// set the cursor scope setting to be ATOM by default
-		setCursorScope(ScopeType.ATOM);
+	private static boolean isMainChain(Atom a) {
+		int name = a.getNameCode();
+		return name == SymbolTable.N || name == SymbolTable.CA
+				|| name == SymbolTable.C;
 	}
 
 	/**
-	 * Calculated the distance vector between the zero vector of the 3D scene
-	 * and the atom that's the furthest away from the center. Then moves the
-	 * entire structure halfway on that vector in order to make it visible on
-	 * the screen.
+	 * Looks up the residues at the ends of each helix.
 	 */
-	private void center() {
-		Point3D furthest = null;
-		double maxDistance = 0;
+	private void resolveHelices() {
+		for (Helix h : helices)
+			h.setAcids(getAcid(h.getStartChainID(), h.getInitSeqNum()),
+					getAcid(h.getEndChainID(), h.getEndSeqNum()));
+	}
 
-		for (Atom a : atoms) {
-			double distance = a.getPosition().distance(Point3D.ZERO);
+	/**
+	 * Looks up the residues at the ends of each strand.
+	 */
+	private void resolveSheets() {
+		for (Sheet s : sheets)
+			s.setAcids(getAcid(s.getInitChainID(), s.getInitSeqNum()),
+					getAcid(s.getEndChainID(), s.getEndSeqNum()));
+	}
 
-			if (distance > maxDistance) {
-				maxDistance = distance;
-				furthest = a.getPosition();
-			}
-		}
+	/**
+	 * Makes the bonds of the explicitly stated links from LINK and CONECT
+	 * records, between the frame atoms at the ends of each bond of the link
+	 * graph.
+	 */
+	private void makeLinks() {
+		explicit = new ArrayList<Bond>(links.getBondCount());
+		int[] pairs = links.getBonds();
 
-		Point3D move = Point3D.ZERO.midpoint(furthest);
-		moveTo(move);
+		for (int i = 0; i < pairs.length; i += 2)
+			explicit.add(new Bond(frameAtoms.get(pairs[i]),
+					frameAtoms.get(pairs[i + 1])));
 	}
 
 	/**
-	 * Move to.
+	 * Adds a listener that is told when atoms move.
 	 *
-	 * @param position the position
+	 * @param listener the listener
 	 */
-	public void moveTo(Point3D position) {
-		node.setTranslateX(0 - position.getX());
-		node.setTranslateY(0 - position.getY());
-		node.setTranslateZ(0 - position.getZ());
+	public void addListener(ModelListener listener) {
+		listeners.add(listener);
 	}
 
 	/**
-	 * Render helices.
+	 * Removes a listener.
+	 *
+	 * @param listener the listener
 	 */
-	private void renderHelices() {
-		for (int i = 0; i < helices.size(); i++) {
-			Aminoacid aas = chainMap.get(helices.get(i).getStartChainID())
-					.getAcid(helices.get(i).getInitSeqNum());
-			Aminoacid aae = chainMap.get(helices.get(i).getEndChainID())
-					.getAcid(helices.get(i).getEndSeqNum());
+	public void removeListener(ModelListener listener) {
+		listeners.remove(listener);
+	}
 
-			helices.get(i).setAcids(aas, aae);
-			helices.get(i).setVisible(false);
-			node.getChildren().addAll(helices.get(i).getNode());
-		}
+	private void fireAtomsMoved(List<Atom> moved) {
+		for (ModelListener l : listeners)
+			l.atomsMoved(moved);
 	}
 
+	/*
+	 * setters and getters
+	 */
+	
 	/**
-	 * Render sheets.
+	 * Gets the meta info, the HEADER, TITLE and REMARK records of the file.
+	 * They are only decoded the first time they are asked for.
+	 *
+	 * @return the meta info
 	 */
-	private void renderSheets() {
-		for (int i = 0; i < sheets.size(); i++) {
-			Aminoacid aas = chainMap.get(sheets.get(i).getInitChainID())
-					.getAcid(sheets.get(i).getInitSeqNum());
-			Aminoacid aae = chainMap.get(sheets.get(i).getEndChainID())
-					.getAcid(sheets.get(i).getEndSeqNum());
-
-			sheets.get(i).setAcids(aas, aae);
-			sheets.get(i).setVisible(false);
-			node.getChildren().addAll(sheets.get(i).getNode());
-		}
+	public String getMetaInfo() {
+		if (metaInfo == null && metaData != null)
+			metaInfo = metaData.getText();
+		return metaInfo;
 	}
 
 	/**
-	 * Render explicitly stated links from LINK and CONNECT records.
+	 * Gets the records of the title section of the file.
+	 *
+	 * @return the meta data, or null if the model was not parsed from a file
 	 */
-	private void renderLinks() {
-		for (int i = 0; i < explicit.size(); i++) {
-			int serA = explicit.get(i).getSerialA();
-			int serB = explicit.get(i).getSerialB();
-
-			explicit.get(i).setAtomA(atomMap.get(serA));
-			explicit.get(i).setAtomB(atomMap.get(serB));
-
-			explicit.get(i).makeCylinder(Color.PURPLE);
-			explicit.get(i).setVisible(true);
-		}
+	public MetaStore getMetaData() {
+		return metaData;
 	}
 
 	/**
-	 * Sets the visualisation mode for the structure.
+	 * Sets the records of the title section of the file.
 	 *
-	 * @param mode the new vis mode
+	 * @param metaData the new meta data
 	 */
-	public void setVisMode(VisMode mode) {
-		switch (mode) {
-		case SPHERES:
-			
-			for (Helix h : helices)
-				h.setVisible(false);
-			
-			for (Sheet s : sheets)
-				s.setVisible(false);
-			
-			for (Bond b : bonds)
-				b.setVisible(false);
+	public void setMetaData(MetaStore metaData) {
+		this.metaData = metaData;
+		metaInfo = null;
+	}
 
-			for (Atom a : atoms) {
-				a.setVisible(true);
-				a.setSize(1f);
-			}
-			break;
-
-		case BALLANDSTICK:
-			
-			for (Helix h : helices)
-				h.setVisible(false);
-			
-			for (Sheet s : sheets)
-				s.setVisible(false);
-			
-			for (Bond b : bonds)
-				b.setVisible(true);
-
-			for (Atom a : atoms) {
-				a.setSize(a.getSize());
-				a.setVisible(true);
-			}
-			break;
-
-		case STICKS:
-			for (Helix h : helices)
-				h.setVisible(false);
-			
-			for (Sheet s : sheets)
-				s.setVisible(false);
-			
-			for (Bond b : bonds)
-				b.setVisible(true);
-
-			for (Atom a : atoms)
-				a.setVisible(false);
-			break;
-
-		case SECONDARY:
-			for (Bond b : bonds)
-				b.setVisible(false);
-
-			for (Atom a : atoms)
-				a.setVisible(false);
-
-			for (Helix h : helices) {
-				h.setVisible(true);
-				int start = acidMap.get(h.getInitSeqNum()).getAtom("CA")
-						.getSerial();
-				int end = acidMap.get(h.getEndSeqNum()).getAtom("CA")
-						.getSerial();
+	/**
+	 * Gets the SEQRES sequences of the chains.
+	 *
+	 * @return the sequences, or null if the model was not parsed from a file
+	 */
+	public SequenceStore getSequences() {
+		return sequences;
+	}
 
-			}
+	/**
+	 * Sets the SEQRES sequences of the chains, which each chain maps to its
+	 * residues when asked for (see Chain.getSequenceMap()).
+	 *
+	 * @param sequences the sequences
+	 */
+	public void setSequences(SequenceStore sequences) {
+		this.sequences = sequences;
+		for (Chain c : chains)
+			c.setSequences(sequences);
+	}
 
-			for (Sheet s : sheets) {
-				s.setVisible(true);
+	/**
+	 * Gets the alternate locations of the atoms.
+	 *
+	 * @return the conformers, or null if the model was not parsed from a file
+	 */
+	public ConformerTable getConformers() {
+		return conformers;
+	}
 
-			}
+	/**
+	 * Sets the alternate locations of the atoms, of which the first location
+	 * of each atom is shown.
+	 *
+	 * @param conformers the conformers
+	 */
+	public void setConformers(ConformerTable conformers) {
+		this.conformers = conformers;
+		conformer = ' ';
+	}
 
-			break;
-		case BACKBONE:
-			for (Bond b : bonds)
-				b.setVisible(false);
-
-			for (Atom a : atoms)
-				a.setVisible(false);
-			
-			for (Helix h : helices)
-				h.setVisible(false);
-			
-			for (Sheet s : sheets)
-				s.setVisible(false);
-			
-			for (Chain c : chains)
-				c.toggleMainChain(true);
-			break;
-		}
+	/**
+	 * Gets the altLocs of the structure, each once, in alphabetical order.
+	 *
+	 * @return the altLocs, empty if no atom has alternate locations
+	 */
+	public char[] getAltLocs() {
+		return conformers == null ? new char[0] : conformers.getAltLocs();
 	}
-	
+
 	/**
-	 * Sets the coloring mode for the structure.
+	 * Gets the conformer that is shown.
 	 *
-	 * @param mode the new color mode
+	 * @return its altLoc, blank for the first location of each atom, or
+	 *         HIGHEST_OCCUPANCY
 	 */
+	public char getConformer() {
+		return conformer;
+	}
 
-	public void setColorMode(ColorMode mode) {
-		switch (mode) {
-		case AMINOACIDS:
-			for (Aminoacid aa : acids) {
-				aa.colorBasedonType();
-			}
-			break;
+	/**
+	 * Shows another conformer: moves each atom with alternate locations to
+	 * its location with the given altLoc, or to its first location if it has
+	 * none with that altLoc. Only these atoms and their bonds move, the
+	 * residues are not rebuilt, and only they are passed to the listeners.
+	 * The locations belong to the first model, so while another frame is
+	 * shown they take effect on returning to it.
+	 *
+	 * @param altLoc the altLoc, e.g. 'A' or 'B', blank for the first location
+	 *            of each atom or HIGHEST_OCCUPANCY for its location of highest
+	 *            occupancy
+	 */
+	public void setConformer(char altLoc) {
+		if (conformers == null || altLoc == conformer)
+			return;
+
+		// the chosen entry of each atom, its first one unless a later fits
+		Map<Atom, Integer> chosen = new IdentityHashMap<Atom, Integer>();
+		for (int i = 0; i < conformers.size(); i++) {
+			Atom a = conformers.getAtom(i);
+			Integer entry = chosen.get(a);
+			if (entry == null || prefers(altLoc, i, entry))
+				chosen.put(a, i);
+		}
 
-		case ATOMS:
-			for (Atom a : atoms) {
-				a.resetColor();
+		List<Atom> moved = new ArrayList<Atom>();
+		for (Map.Entry<Atom, Integer> e : chosen.entrySet()) {
+			Atom a = e.getKey();
+			int i = e.getValue();
+			float x = conformers.getX(i), y = conformers.getY(i), z = conformers
+					.getZ(i);
+
+			if (firstFrame != null) {
+				firstFrame[3 * a.getIndex()] = x;
+				firstFrame[3 * a.getIndex() + 1] = y;
+				firstFrame[3 * a.getIndex() + 2] = z;
 			}
-			
-			for (Bond b : bonds) {
-				b.setColor(Color.WHITE);
+			if (activeFrame == 0) {
+				a.setPosition(x, y, z);
+				moved.add(a);
 			}
+		}
 
-			break;
-
-		case CHAINS:
-			for (Chain c : chains) {
-				c.colorBasedOnSerial();
-			}
-			break;
+		conformer = altLoc;
+		if (!moved.isEmpty())
+			fireAtomsMoved(moved);
+	}
 
-		case SECONDARY:
-			for (Atom a : atoms) {
-				a.setColor(Color.WHITE);
-			}
+	/**
+	 * Whether an entry of the conformers fits the given altLoc better than
+	 * an earlier entry of the same atom.
+	 */
+	private boolean prefers(char altLoc, int entry, int earlier) {
+		if (altLoc == ' ')
+			return false;
+		if (altLoc == HIGHEST_OCCUPANCY)
+			return conformers.getOccupancy(entry) > conformers
+					.getOccupancy(earlier);
+		return conformers.getAltLoc(entry) == altLoc
+				&& conformers.getAltLoc(earlier) != altLoc;
+	}
 
-			for (Helix h : helices) {
-				int start = h.getInitSeqNum();
-				int end = h.getEndSeqNum();
+	/**
+	 * Gets the table of the atoms.
+	 *
+	 * @return the table, whose rows are the frame atoms
+	 */
+	public AtomTable getAtomTable() {
+		return table;
+	}
 
-				for (int i = start; i < end; i++) {
-					chainMap.get(h.getStartChainID()).getAcid(i)
-							.setColor(Color.RED);
-				}
+	/**
+	 * Sets the meta info.
+	 *
+	 * @param metaInfo the new meta info
+	 */
+	public void setMetaInfo(String metaInfo) {
+		this.metaInfo = metaInfo;
+	}
 
-			}
+	/**
+	 * Sets the helices.
+	 *
+	 * @param helices the new helices
+	 */
+	public void setHelices(List<Helix> helices) {
+		this.helices = helices;
+		resolveHelices();
+	}
 
-			for (Sheet s : sheets) {
-				int start = s.getInitSeqNum();
-				int end = s.getEndSeqNum();
+	/**
+	 * Sets the sheets.
+	 *
+	 * @param sheets the new sheets
+	 */
+	public void setSheets(List<Sheet> sheets) {
+		this.sheets = sheets;
+		resolveSheets();
+	}
 
-				for (int i = start; i < end; i++) {
-					chainMap.get(s.getInitChainID()).getAcid(i)
-							.setColor(Color.BLUE);
-				}
-			}
-			break;
-		}
+	/**
+	 * Gets the acids.
+	 *
+	 * @return the acids
+	 */
+	public List<Aminoacid> getAcids() {
+		return this.acids;
 	}
-	
+
 	/**
-	 * Sets the cursor tooltip scope of the structure .
+	 * Gets the index of an amino acid among the acids of the model.
 	 *
-	 * @param type the new cursor scope
+	 * @param chainID the chain ID
+	 * @param resSeq the residue number
+	 * @param iCode the insertion code, ' ' if there is none
+	 * @return the index, or -1 if the model has no such amino acid
 	 */
+	public int getAcidIndex(String chainID, int resSeq, char iCode) {
+		// a chain ID that was never seen is in no model
+		int chainCode = SymbolTable.find(chainID);
+		return chainCode < 0 ? -1 : acidIndex.get(chainCode, resSeq, iCode);
+	}
 
-	public void setCursorScope(ScopeType type) {
-		switch (type) {
-		case ATOM:
-			for (Aminoacid a : acids)
-				a.setScope(false);
-			for (Chain c : chains)
-				c.setScope(false);
+	/**
+	 * Gets an amino acid by its chain, residue number and insertion code.
+	 *
+	 * @param chainID the chain ID
+	 * @param resSeq the residue number
+	 * @param iCode the insertion code, ' ' if there is none
+	 * @return the amino acid, or null if the model has no such amino acid
+	 */
+	public Aminoacid getAcid(String chainID, int resSeq, char iCode) {
+		int i = getAcidIndex(chainID, resSeq, iCode);
+		return i < 0 ? null : acids.get(i);
+	}
 
-			for (Atom a : atoms)
-				a.setScope(true);
-			break;
+	/**
+	 * Gets an amino acid without an insertion code by its chain and residue
+	 * number, see getAcid(String, int, char).
+	 */
+	public Aminoacid getAcid(String chainID, int resSeq) {
+		return getAcid(chainID, resSeq, ' ');
+	}
 
-		case AMINOACID:
-			for (Atom a : atoms)
-				a.setScope(false);
-			for (Chain c : chains)
-				c.setScope(false);
+	/**
+	 * Gets the atoms of the chains, without the het atoms.
+	 *
+	 * @return the atoms
+	 */
+	public List<Atom> getAtoms() {
+		return atoms;
+	}
 
-			for (Aminoacid a : acids)
-				a.setScope(true);
-			break;
+	/**
+	 * Gets the chains.
+	 *
+	 * @return the chains
+	 */
+	public List<Chain> getChains() {
+		return chains;
+	}
 
-		case CHAIN:
-			for (Atom a : atoms)
-				a.setScope(false);
-			for (Aminoacid a : acids)
-				a.setScope(false);
+	/**
+	 * Gets the chain with the given ID.
+	 *
+	 * @param chainID the chain ID
+	 * @return the chain, or null if the structure has no such chain
+	 */
+	public Chain getChain(String chainID) {
+		return chainMap.get(chainID);
+	}
 
-			for (Chain c : chains)
-				c.setScope(true);
-			break;
+	/**
+	 * Gets the het atoms.
+	 *
+	 * @return the het atoms
+	 */
+	public List<Atom> getHetAtoms() {
+		return hetatoms;
+	}
 
-		}
+	/**
+	 * Gets the bonds within the residues of the hetero atoms, e.g. of the
+	 * ligands, as given by the ComponentDictionary or found from the
+	 * distances of the atoms of residues it does not know.
+	 *
+	 * @return the bonds
+	 */
+	public List<Bond> getHetBonds() {
+		return hetBonds;
 	}
 
 	/**
-	 * Toggles whether certain amino acids within the given range 
-	 * are visible or not. 
+	 * Gets the helices.
 	 *
-	 * @param start the start
-	 * @param end the end
-	 * @param b the b
+	 * @return the helices
 	 */
-	public void toggleAcidVisibility(int start, int end, boolean b) {
-		for (int i = start; i < end; i++) {
-			acidMap.get(i).setVisible(b);
-		}
+	public List<Helix> getHelices() {
+		return helices;
 	}
-	
+
 	/**
-	 * Sets the atoms visibility.
+	 * Gets the sheets.
 	 *
+	 * @return the sheets
 	 */
-	public void setAtomsVisibility(boolean b) {
-		for (Atom a : atoms) a.setVisible(b);
+	public List<Sheet> getSheets() {
+		return sheets;
 	}
-	
+
 	/**
-	 * Sets the bonds visibility.
+	 * Gets the bonds of the explicit links.
 	 *
+	 * @return the bonds from CONECT and LINK records, one per bond
 	 */
-	public void setBondsVisibility(boolean b) {
-		for (Bond bo : bonds) bo.setVisible(b);
+	public List<Bond> getExplicitLinks() {
+		return explicit;
 	}
 
 	/**
-	 * Sets the main chain visibility.
+	 * Gets the bonds stated by the CONECT and LINK records.
 	 *
+	 * @return the link graph, over the indices of the frame atoms
 	 */
-	public void setMainChainVisibility(boolean b) {
-		for (Bond bo : mainChain) bo.setVisible(b);
+	public LinkGraph getLinks() {
+		return links;
 	}
-	
+
 	/**
-	 * Sets the hetatoms visibility.
+	 * Gets the atoms of the first model in file order, ATOM and HETATM records
+	 * alike, which the frames and the links are given over.
 	 *
+	 * @return the frame atoms
 	 */
-	public void setHetAtomVisibility(boolean b) {
-		for (Atom a : hetatoms) a.setVisible(b);
+	public List<Atom> getFrameAtoms() {
+		return frameAtoms;
 	}
-	
 
 	/**
-	 * Hide all.
+	 * Sets the het atoms.
+	 *
+	 * @param hetatoms the new het atoms
 	 */
-	public void hideAll() {
-		for (Helix h : helices)
-			h.setVisible(false);
+	public void setHetAtoms(List<Atom> hetatoms) {
+		this.hetatoms = hetatoms;
+		makeHetBonds();
+	}
 
-		for (Sheet s : sheets)
-			s.setVisible(false);
+	/**
+	 * Makes the bonds of each run of hetero atoms of the same residue from
+	 * the template of the residue type, or from the distances of the atoms
+	 * if there is none (see BondPerception).
+	 */
+	private void makeHetBonds() {
+		hetBonds = new ArrayList<Bond>();
+		List<Atom> unknown = new ArrayList<Atom>();
+		int[] groups = new int[hetatoms.size()];
+		int start = 0, residue = 0;
+
+		for (int i = 1; i <= hetatoms.size(); i++) {
+			if (i < hetatoms.size()
+					&& sameResidue(hetatoms.get(i), hetatoms.get(start)))
+				continue;
+
+			List<Atom> run = hetatoms.subList(start, i);
+			BondTemplate template = ComponentDictionary
+					.getTemplate(hetatoms.get(start).getResidueCode());
+			if (template != null) {
+				template.bind(run, hetBonds, true);
+			} else {
+				for (Atom a : run) {
+					groups[unknown.size()] = residue;
+					unknown.add(a);
+				}
+			}
+			residue++;
+			start = i;
+		}
 
-		for (Aminoacid aa : acids)
-			aa.setVisible(false);
+		int[] pairs = BondPerception.perceive(unknown, groups);
+		for (int i = 0; i < pairs.length; i += 2)
+			hetBonds.add(new Bond(unknown.get(pairs[i]),
+					unknown.get(pairs[i + 1])));
+	}
 
-		for (Chain c : chains)
-			c.toggleMainChain(false);
+	private static boolean sameResidue(Atom a, Atom b) {
+		return a.getResID() == b.getResID() && a.getICode() == b.getICode()
+				&& a.getChainCode() == b.getChainCode()
+				&& a.getResidueCode() == b.getResidueCode();
 	}
 
-	/*
-	 * setters and getters
-	 */
-	
 	/**
-	 * Gets the node.
+	 * Sets the coordinates of the other models of an ensemble (e.g. an NMR
+	 * structure). All models share the atoms, amino acids and bonds of the
+	 * first one, each further model only adds its coordinates as floats.
 	 *
-	 * @return the node
+	 * @param atoms the atoms in file order, ATOM and HETATM records alike,
+	 *            which is the order of the coordinates of each frame and of
+	 *            the rows of the table of the model
+	 * @param frames the coordinates of the models after the first one, x, y
+	 *            and z of each atom
 	 */
-	public Group getNode() {
-		return node;
+	public void setFrames(List<Atom> atoms, List<float[]> frames) {
+		if (atoms.size() != table.size())
+			throw new IllegalArgumentException("Frames of " + atoms.size()
+					+ " atoms, model has " + table.size());
+		for (int i = 0; i < atoms.size(); i++) {
+			if (atoms.get(i).getIndex() != i)
+				throw new IllegalArgumentException("Frame atom " + i
+						+ " is in row " + atoms.get(i).getIndex());
+		}
+
+		this.frameAtoms = atoms;
+		this.frames = new ArrayList<float[]>(frames);
+		activeFrame = 0;
+
+		firstFrame = table.getCoordinates();
 	}
 
 	/**
-	 * Gets the position.
+	 * Gets an atom by its index in the file, the order of the frame atoms.
+	 * Serial numbers need not be unique in files written by simulation
+	 * programs, the index is.
 	 *
-	 * @return the position
+	 * @param index the index of the atom, starting at 0
+	 * @return the atom
 	 */
-	public Point3D getPosition() {
-		return new Point3D(node.getTranslateX(), node.getTranslateY(),
-				node.getTranslateZ());
+	public Atom getAtom(int index) {
+		return frameAtoms.get(index);
 	}
 
 	/**
-	 * Gets the meta info.
+	 * Adds the coordinates of a model that was appended to the file after it
+	 * was loaded (see PdbFollower).
 	 *
-	 * @return the meta info
+	 * @param coords x, y and z of each atom
 	 */
-	public String getMetaInfo() {
-		return metaInfo;
+	public void addFrame(float[] coords) {
+		frames.add(coords);
 	}
 
 	/**
-	 * Sets the meta info.
+	 * Gets the number of frames, 1 for a structure with a single model.
 	 *
-	 * @param metaInfo the new meta info
+	 * @return the frame count
 	 */
-	public void setMetaInfo(String metaInfo) {
-		this.metaInfo = metaInfo;
+	public int getFrameCount() {
+		return frames == null ? 1 : frames.size() + 1;
 	}
 
 	/**
-	 * Sets the helices.
+	 * Gets the active frame.
 	 *
-	 * @param helices the new helices
+	 * @return the index of the model that is shown, starting at 0, or -1 if
+	 *         the coordinates come from a trajectory
 	 */
-	public void setHelices(List<Helix> helices) {
-		this.helices = helices;
-		renderHelices();
+	public int getActiveFrame() {
+		return activeFrame;
 	}
 
 	/**
-	 * Sets the sheets.
+	 * Shows another model of the ensemble. Only the positions of the atoms
+	 * change, nothing is rebuilt. Atoms that are missing from a model keep
+	 * their position from the first one.
 	 *
-	 * @param sheets the new sheets
+	 * @param frame the index of the model, starting at 0
 	 */
-	public void setSheets(List<Sheet> sheets) {
-		this.sheets = sheets;
-		renderSheets();
+	public void setActiveFrame(int frame) {
+		if (frame < 0 || frame >= getFrameCount())
+			throw new IndexOutOfBoundsException("Frame " + frame + " of "
+					+ getFrameCount());
+		if (frame == activeFrame)
+			return;
+
+		moveAtoms(frame == 0 ? null : frames.get(frame - 1));
+		activeFrame = frame;
 	}
 
 	/**
-	 * Gets the acids.
+	 * Moves the atoms to the coordinates of a trajectory frame, given in the
+	 * order of the atoms in the file. As with the models of an ensemble, only
+	 * the positions of the atoms change.
 	 *
-	 * @return the acids
+	 * @param coords x, y and z of each atom
 	 */
-	public List<Aminoacid> getAcids() {
-		return this.acids;
+	public void setCoordinates(float[] coords) {
+		if (frameAtoms == null)
+			throw new IllegalStateException("Model has no frame atoms");
+
+		moveAtoms(coords);
+		activeFrame = -1;
 	}
 
 	/**
-	 * Sets the het atoms.
+	 * Moves the frame atoms to the given coordinates, or back to the first
+	 * model if there are none. The coordinates are copied into the table as a
+	 * whole, the atoms beyond their end back to the first model, and then the
+	 * listeners are told.
+	 */
+	private void moveAtoms(float[] coords) {
+		table.setCoordinates(firstFrame);
+		if (coords != null)
+			table.setCoordinates(coords);
+
+		fireAtomsMoved(frameAtoms);
+	}
+
+	/**
+	 * Sets the bonds stated by the CONECT and LINK records, and makes a Bond
+	 * for each.
 	 *
-	 * @param hetatoms the new het atoms
+	 * @param links the link graph, resolved against the frame atoms (see
+	 *            setFrames())
 	 */
-	public void setHetAtoms(List<Atom> hetatoms) {
-		this.hetatoms = hetatoms;
-		for (Atom a : hetatoms) {
-			node.getChildren().add(a.getNode());
-			atomMap.put(a.getSerial(), a);
-		}
+	public void setLinks(LinkGraph links) {
+		if (links.getAtomCount() != frameAtoms.size())
+			throw new IllegalArgumentException("Links of "
+					+ links.getAtomCount() + " atoms, model has "
+					+ frameAtoms.size());
+
+		this.links = links;
+		makeLinks();
 	}
 
 	/**
-	 * Sets the explicit links.
+	 * Adds the bonds of further CONECT and LINK records, e.g. of those
+	 * appended to a followed file, and tells the listeners. The bonds that
+	 * are known already keep their Bond.
 	 *
-	 * @param links the new explicit links
+	 * @param records the link graph of the records, not resolved
 	 */
-	public void setExplicitLinks(List<Bond> links) {
-		this.explicit = links;
-		renderLinks();
+	public void addLinks(LinkGraph records) {
+		int[] known = links.getBonds();
+		LinkGraph merged = new LinkGraph();
+		for (int i = 0; i < known.length; i += 2)
+			merged.addBond(known[i], known[i + 1]);
+		merged.addAll(records);
+		merged.resolve(frameAtoms);
+
+		// both lists of pairs are in increasing order, the known ones first
+		List<Bond> bonds = new ArrayList<Bond>(merged.getBondCount());
+		int[] pairs = merged.getBonds();
+		int k = 0;
+		for (int i = 0; i < pairs.length; i += 2) {
+			if (k < known.length && known[k] == pairs[i]
+					&& known[k + 1] == pairs[i + 1]) {
+				bonds.add(explicit.get(k / 2));
+				k += 2;
+			} else
+				bonds.add(new Bond(frameAtoms.get(pairs[i]),
+						frameAtoms.get(pairs[i + 1])));
+		}
+
+		links = merged;
+		explicit = bonds;
+		for (ModelListener l : listeners)
+			l.linksChanged();
 	}
 }
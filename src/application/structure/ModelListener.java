@@ -0,0 +1,31 @@
+package application.structure;
+
+import java.util.List;
+
+import application.structure.primary.Atom;
+
+/**
+ * Is told when atoms of a Model move, e.g. to another frame or conformer, or
+ * when bonds are added to it, so that whatever shows them (see ModelView) can
+ * follow. A model without listeners is plain data.
+ *
+ * @author Slav Danchev
+ *
+ */
+public interface ModelListener {
+
+	/**
+	 * Called after atoms have moved, their bonds moved with them.
+	 *
+	 * @param atoms the atoms that moved, all frame atoms of the model when a
+	 *            frame or trajectory coordinates were set
+	 */
+	void atomsMoved(List<Atom> atoms);
+
+	/**
+	 * Called after bonds were added to the explicit links of the model (see
+	 * Model.addLinks()).
+	 */
+	default void linksChanged() {
+	}
+}
@@ -0,0 +1,111 @@
+package application.structure;
+
+import java.util.Arrays;
+
+/**
+ * Finds the residues of a model by chain, residue number and insertion code.
+ *
+ * The three are packed into one long (see key()): the SymbolTable code of the
+ * chain ID in the top 24 bits, the residue number in the next 32 and the
+ * insertion code in the low 8. The keys are kept in an open addressing hash
+ * table with linear probing, beside the index of each residue in its model,
+ * so there is no boxing and no entry object, a lookup allocates nothing, and
+ * residue 10 of chain B is a different key from residue 10 of chain A however
+ * many chains the structure has.
+ *
+ * The table is sized once for the number of residues it is made for, at most
+ * half full, and is filled by the model in one pass over its residues.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class ResidueIndex {
+
+	private final long[] keys;
+
+	/** The index of the residue of each slot, -1 for an empty slot. */
+	private final int[] residues;
+
+	private final int mask;
+
+	/**
+	 * @param capacity
+	 *            the number of residues to be added
+	 */
+	public ResidueIndex(int capacity) {
+		int n = Integer.highestOneBit(Math.max(2 * capacity, 8) - 1) << 1;
+		keys = new long[n];
+		residues = new int[n];
+		Arrays.fill(residues, -1);
+		mask = n - 1;
+	}
+
+	/**
+	 * Packs a chain, residue number and insertion code into a key.
+	 *
+	 * @param chainCode
+	 *            the SymbolTable code of the chain ID
+	 * @param resSeq
+	 *            the residue number
+	 * @param iCode
+	 *            the insertion code, ' ' if there is none
+	 */
+	public static long key(int chainCode, int resSeq, char iCode) {
+		return (long) chainCode << 40 | (resSeq & 0xFFFFFFFFL) << 8
+				| (iCode & 0xFF);
+	}
+
+	/**
+	 * Adds a residue, replacing the residue added before under the same key.
+	 *
+	 * @param key
+	 *            the key of the residue, see key()
+	 * @param residue
+	 *            the index of the residue in its model
+	 */
+	public void put(long key, int residue) {
+		int slot = slot(key);
+		keys[slot] = key;
+		residues[slot] = residue;
+	}
+
+	/**
+	 * Gets the index of a residue.
+	 *
+	 * @return the index of the residue in its model, or -1 if there is none
+	 *         with that key
+	 */
+	public int get(long key) {
+		return residues[slot(key)];
+	}
+
+	/**
+	 * Gets the index of a residue, see get(long).
+	 */
+	public int get(int chainCode, int resSeq, char iCode) {
+		return get(key(chainCode, resSeq, iCode));
+	}
+
+	/**
+	 * The slot of a key, or the empty slot it would go to.
+	 */
+	private int slot(long key) {
+		int slot = hash(key) & mask;
+		while (residues[slot] >= 0 && keys[slot] != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	/**
+	 * Mixes the bits of a key, the finalizer of MurmurHash3, so that keys of
+	 * consecutive residues do not fill neighbouring slots.
+	 */
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+}
@@ -0,0 +1,338 @@
+package application.structure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import application.structure.primary.Aminoacid;
+
+/**
+ * Maps each position of the SEQRES sequence of a chain to the residue with
+ * coordinates that stands for it, or to nothing if the residue was not
+ * observed, e.g. in a disordered loop or at the ends of the chain.
+ *
+ * Residues are numbered by the authors of the file, so in most files the
+ * residue number of an observed residue is its position in the sequence plus
+ * a fixed offset. The offset is tried first: it is looked for among the
+ * positions where the sequence has the name of the first observed residue,
+ * and a candidate is kept if the names of all residues match at the
+ * positions it gives them, which takes a single pass. Only if no offset
+ * fits, because of insertion codes, numbering that jumps or mutations, are
+ * the two sequences aligned, globally and with affine gap costs (Gotoh), in
+ * time and memory proportional to the product of their lengths. The numbering
+ * still counts there, to decide between alignments that pair the same names.
+ *
+ * Only the residues of the chain's ATOM records are mapped; modified residues
+ * given as HETATM records show up as unobserved.
+ *
+ * @author Slav Danchev
+ *
+ */
+public class SequenceMap {
+
+	/* alignment scores */
+	private static final int MATCH = 5, MISMATCH = -5, OPEN_UNOBSERVED = -6,
+			EXTEND_UNOBSERVED = -1, OPEN_UNLISTED = -12, EXTEND_UNLISTED = -2;
+
+	/**
+	 * Added to a pair that follows the pair of the residue numbered one
+	 * before it, and taken from one that follows the pair of a residue
+	 * numbered further away. Too small to outweigh a name, it only decides
+	 * between alignments that pair the same names, e.g. which of two alike
+	 * residues next to a gap was observed.
+	 */
+	private static final int NUMBERED = 1;
+
+	/** A score no alignment reaches, kept small enough not to overflow. */
+	private static final int NONE = Integer.MIN_VALUE / 4;
+
+	/*
+	 * alignment states: a position opposite a residue, a position that was
+	 * not observed, a residue that is not in the sequence
+	 */
+	private static final int PAIR = 0, UNOBSERVED = 1, UNLISTED = 2;
+
+	private final String[] names;
+	private final Aminoacid[] acids;
+	private final Map<Aminoacid, Integer> positions = new IdentityHashMap<Aminoacid, Integer>();
+	private boolean aligned;
+	private int observed;
+
+	/**
+	 * Maps a sequence to the residues of a chain.
+	 *
+	 * @param names
+	 *            the residue names of the SEQRES sequence
+	 * @param residues
+	 *            the observed residues, in chain order
+	 */
+	public SequenceMap(String[] names, List<Aminoacid> residues) {
+		this.names = names.clone();
+		acids = new Aminoacid[names.length];
+
+		int[] sequence = new int[names.length];
+		for (int i = 0; i < names.length; i++)
+			sequence[i] = SymbolTable.code(names[i]);
+
+		if (residues.isEmpty() || names.length == 0)
+			return;
+
+		if (!mapByNumber(sequence, residues)) {
+			aligned = true;
+			align(sequence, residues);
+		}
+
+		for (int i = 0; i < acids.length; i++) {
+			if (acids[i] != null) {
+				positions.put(acids[i], i);
+				observed++;
+			}
+		}
+	}
+
+	/**
+	 * Tries to place every residue at its residue number minus one offset.
+	 *
+	 * @return false if no offset places all residues on their names
+	 */
+	private boolean mapByNumber(int[] sequence, List<Aminoacid> residues) {
+		Aminoacid first = residues.get(0);
+		Aminoacid last = residues.get(residues.size() - 1);
+
+		// most files number the sequence from 1, try that before the rest
+		int guess = first.getResID() - 1;
+		if (guess >= 0 && guess < sequence.length
+				&& fits(sequence, residues, first.getResID() - guess))
+			return true;
+
+		for (int p = 0; p < sequence.length; p++) {
+			if (p == guess || sequence[p] != first.getTypeCode())
+				continue;
+
+			// the last residue rules out most candidates at once
+			int offset = first.getResID() - p;
+			int end = last.getResID() - offset;
+			if (end < 0 || end >= sequence.length
+					|| sequence[end] != last.getTypeCode())
+				continue;
+
+			if (fits(sequence, residues, offset))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Maps the residues if each is found at its number minus the offset, in
+	 * increasing positions.
+	 */
+	private boolean fits(int[] sequence, List<Aminoacid> residues, int offset) {
+		int previous = -1;
+		for (Aminoacid acid : residues) {
+			int p = acid.getResID() - offset;
+			if (p <= previous || p >= sequence.length
+					|| sequence[p] != acid.getTypeCode())
+				return false;
+			previous = p;
+		}
+
+		for (Aminoacid acid : residues)
+			acids[acid.getResID() - offset] = acid;
+		return true;
+	}
+
+	/**
+	 * Aligns the residues to the sequence with affine gap costs, so that the
+	 * unobserved residues end up in a few runs rather than scattered. Residues
+	 * that end up opposite a position are mapped to it even if their names
+	 * differ, residues opposite a gap in the sequence are left out.
+	 */
+	private void align(int[] sequence, List<Aminoacid> residues) {
+		int n = sequence.length, m = residues.size(), w = m + 1;
+		int[] type = new int[m];
+		int[] numbered = new int[m];
+		for (int j = 0; j < m; j++) {
+			type[j] = residues.get(j).getTypeCode();
+			if (j > 0)
+				numbered[j] = residues.get(j).getResID() == residues.get(j - 1)
+						.getResID() + 1 ? NUMBERED : -NUMBERED;
+		}
+
+		// for each cell, the state each of the three states was entered
+		// from, two bits each
+		byte[] moves = new byte[(n + 1) * w];
+
+		// the best scores ending in a pair, an unobserved position or an
+		// unlisted residue, for the previous and the current row
+		int[] pair = new int[w], unobserved = new int[w], unlisted = new int[w];
+		int[] pair0 = new int[w], unobserved0 = new int[w], unlisted0 = new int[w];
+
+		Arrays.fill(pair0, NONE);
+		Arrays.fill(unobserved0, NONE);
+		pair0[0] = 0;
+		for (int j = 1; j <= m; j++) {
+			unlisted0[j] = OPEN_UNLISTED + (j - 1) * EXTEND_UNLISTED;
+			moves[j] = (byte) (UNLISTED << 4);
+		}
+		unlisted0[0] = NONE;
+
+		for (int i = 1; i <= n; i++) {
+			pair[0] = NONE;
+			unlisted[0] = NONE;
+			unobserved[0] = OPEN_UNOBSERVED + (i - 1) * EXTEND_UNOBSERVED;
+			moves[i * w] = (byte) (UNOBSERVED << 2);
+
+			for (int j = 1; j <= m; j++) {
+				int move;
+
+				// a pair follows any state, and gains if it follows the pair
+				// of the residue numbered before it, loses if it follows that
+				// of a residue numbered further away
+				int afterPair = pair0[j - 1] + numbered[j - 1];
+				int from = best(afterPair, unobserved0[j - 1], unlisted0[j - 1]);
+				pair[j] = score(from, afterPair, unobserved0[j - 1],
+						unlisted0[j - 1])
+						+ (sequence[i - 1] == type[j - 1] ? MATCH : MISMATCH);
+				move = from;
+
+				// an unobserved position, opening or extending a run
+				int open = Math.max(pair0[j], unlisted0[j]) + OPEN_UNOBSERVED;
+				int extend = unobserved0[j] + EXTEND_UNOBSERVED;
+				if (extend >= open) {
+					unobserved[j] = extend;
+					move |= UNOBSERVED << 2;
+				} else {
+					unobserved[j] = open;
+					move |= (pair0[j] >= unlisted0[j] ? PAIR : UNLISTED) << 2;
+				}
+
+				// an unlisted residue, opening or extending a run
+				open = Math.max(pair[j - 1], unobserved[j - 1])
+						+ OPEN_UNLISTED;
+				extend = unlisted[j - 1] + EXTEND_UNLISTED;
+				if (extend >= open) {
+					unlisted[j] = extend;
+					move |= UNLISTED << 4;
+				} else {
+					unlisted[j] = open;
+					move |= (pair[j - 1] >= unobserved[j - 1] ? PAIR
+							: UNOBSERVED) << 4;
+				}
+
+				moves[i * w + j] = (byte) move;
+			}
+
+			int[] swap = pair0;
+			pair0 = pair;
+			pair = swap;
+			swap = unobserved0;
+			unobserved0 = unobserved;
+			unobserved = swap;
+			swap = unlisted0;
+			unlisted0 = unlisted;
+			unlisted = swap;
+		}
+
+		int state = best(pair0[m], unobserved0[m], unlisted0[m]);
+		int i = n, j = m;
+		while (i > 0 || j > 0) {
+			int previous = moves[i * w + j] >> 2 * state & 3;
+			if (state == PAIR) {
+				acids[--i] = residues.get(--j);
+			} else if (state == UNOBSERVED) {
+				i--;
+			} else {
+				j--;
+			}
+			state = previous;
+		}
+	}
+
+	/**
+	 * The state with the best of three scores, preferring a pair on ties.
+	 */
+	private static int best(int pair, int unobserved, int unlisted) {
+		if (pair >= unobserved && pair >= unlisted)
+			return PAIR;
+		return unobserved >= unlisted ? UNOBSERVED : UNLISTED;
+	}
+
+	private static int score(int state, int pair, int unobserved,
+			int unlisted) {
+		return state == PAIR ? pair : state == UNOBSERVED ? unobserved
+				: unlisted;
+	}
+
+	/**
+	 * Gets the number of residues in the sequence.
+	 */
+	public int length() {
+		return names.length;
+	}
+
+	/**
+	 * Gets the name of the residue at a position of the sequence, from 0.
+	 */
+	public String getResidueName(int position) {
+		return names[position];
+	}
+
+	/**
+	 * Gets the observed residue at a position of the sequence, from 0.
+	 *
+	 * @return the residue, or null if it was not observed
+	 */
+	public Aminoacid getAminoacid(int position) {
+		return acids[position];
+	}
+
+	public boolean isObserved(int position) {
+		return acids[position] != null;
+	}
+
+	/**
+	 * Gets the position of an observed residue in the sequence.
+	 *
+	 * @return the position, or -1 if the residue is not mapped
+	 */
+	public int getPosition(Aminoacid acid) {
+		Integer position = positions.get(acid);
+		return position == null ? -1 : position;
+	}
+
+	/**
+	 * Gets the number of positions that have an observed residue.
+	 */
+	public int getObservedCount() {
+		return observed;
+	}
+
+	/**
+	 * Gets the runs of positions that were not observed, each as its first
+	 * position and the one after its last.
+	 */
+	public List<int[]> getGaps() {
+		List<int[]> gaps = new ArrayList<int[]>();
+		int start = -1;
+		for (int i = 0; i <= acids.length; i++) {
+			boolean gap = i < acids.length && acids[i] == null;
+			if (gap && start < 0) {
+				start = i;
+			} else if (!gap && start >= 0) {
+				gaps.add(new int[] { start, i });
+				start = -1;
+			}
+		}
+		return gaps;
+	}
+
+	/**
+	 * Whether the residues had to be aligned to the sequence, because their
+	 * numbers do not follow it.
+	 */
+	public boolean isAligned() {
+		return aligned;
+	}
+}
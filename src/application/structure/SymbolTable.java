@@ -0,0 +1,102 @@
+package application.structure;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns the short names of a structure (atom names, residue names, chain
+ * IDs and elements) into small integer codes, so that atoms and residues keep
+ * an int for each instead of a String, and names are compared as ints.
+ *
+ * The names the code checks for are given fixed codes, which can be used as
+ * case labels, e.g. switch (acid.getTypeCode()) { case SymbolTable.GLY: }.
+ * Other names are given the next free code the first time they are seen.
+ * There is one table for all structures loaded by the program: the names
+ * found in structures are few (a few thousand at most in the whole PDB), so
+ * it stays small, and codes can be compared between structures.
+ *
+ * Codes are handed out under a lock, looking them up and turning them back
+ * into names is lock free, so structures can be parsed on several threads.
+ *
+ * @author Slav Danchev
+ *
+ */
+public final class SymbolTable {
+
+	/** The code of a blank name, e.g. a missing element. */
+	public static final int BLANK = 0;
+
+	/* atom names */
+	public static final int N = 1, CA = 2, C = 3, O = 4, H = 5, H1 = 6,
+			H2 = 7, H3 = 8, HA = 9, CB = 10, OXT = 11;
+
+	/* elements, H, C, O and N share the codes of the atom names */
+	public static final int S = 12, FE = 13, F = 14, CL = 15;
+
+	/* amino acids */
+	public static final int ALA = 16, ARG = 17, ASN = 18, ASP = 19, CYS = 20,
+			GLN = 21, GLU = 22, GLY = 23, HIS = 24, ILE = 25, LEU = 26,
+			LYS = 27, MET = 28, PHE = 29, PRO = 30, SER = 31, THR = 32,
+			TRP = 33, TYR = 34, VAL = 35;
+
+	/** The names of the fixed codes, in the order of the codes. */
+	private static final String[] FIXED = { "", "N", "CA", "C", "O", "H",
+			"H1", "H2", "H3", "HA", "CB", "OXT", "S", "FE", "F", "CL", "ALA",
+			"ARG", "ASN", "ASP", "CYS", "GLN", "GLU", "GLY", "HIS", "ILE",
+			"LEU", "LYS", "MET", "PHE", "PRO", "SER", "THR", "TRP", "TYR",
+			"VAL" };
+
+	private static final Map<String, Integer> codes = new ConcurrentHashMap<String, Integer>();
+
+	/** The name of each code, replaced by a longer copy when it fills up. */
+	private static volatile String[] names = Arrays.copyOf(FIXED, 256);
+	private static int size;
+
+	static {
+		for (int i = 0; i < FIXED.length; i++)
+			codes.put(FIXED[i], i);
+		size = FIXED.length;
+	}
+
+	private SymbolTable() {
+	}
+
+	/**
+	 * Returns the code of a name, giving it one if it has none yet.
+	 */
+	public static int code(String name) {
+		Integer code = codes.get(name);
+		if (code != null)
+			return code;
+
+		synchronized (SymbolTable.class) {
+			code = codes.get(name);
+			if (code != null)
+				return code;
+
+			if (size == names.length)
+				names = Arrays.copyOf(names, 2 * size);
+			// the name is stored before the code is published
+			names[size] = name;
+			codes.put(name, size);
+			return size++;
+		}
+	}
+
+	/**
+	 * Returns the code of a name without giving it one, e.g. to look up a name
+	 * asked for by the user, or -1 if it has none. Lock free.
+	 */
+	public static int find(String name) {
+		Integer code = codes.get(name);
+		return code == null ? -1 : code;
+	}
+
+	/**
+	 * Returns the name of a code.
+	 */
+	public static String name(int code) {
+		return names[code];
+	}
+}
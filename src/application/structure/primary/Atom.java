@@ -3,266 +3,201 @@ package application.structure.primary;
 import java.util.ArrayList;
 import java.util.List;
 
-import javafx.event.Event;
-import javafx.event.EventHandler;
-import javafx.geometry.Point3D;
-import javafx.scene.Group;
-import javafx.scene.control.Tooltip;
-import javafx.scene.paint.Color;
-import javafx.scene.paint.PhongMaterial;
-import javafx.scene.shape.Sphere;
+import application.structure.AtomTable;
+import application.structure.SymbolTable;
 
 /**
- * A single atom in the 3D structure. Each Atom has its own position,
- * represented as a 3D vector (Point3D in JavaFX), size, colour, serial number,
- * indication of amino acid or chain it belongs to.
+ * A single atom in the 3D structure, as a view of a row of an AtomTable. The
+ * position, serial number, names and the residue and chain it belongs to are
+ * read from the table, so an Atom holds no more than the table and the row.
  * 
+ * The list of bonds of the atom is made when the first bond is added. How the
+ * atom is shown is up to the renderer (see ModelView), the atom itself knows
+ * nothing of the scene.
  * 
  * @author Slav Danchev
  *
  */
-public class Atom implements EventHandler {
-	private Point3D position;
-	private Color color;
-	private String name, chainID;
-	private String element; 
-	private int serial, resID;
-	private String residue;
-	private float size;
-	private Sphere ball;
-	private PhongMaterial material;
+public class Atom {
+	private AtomTable table;
+	private int row;
 	private List<Bond> bonds;
-	private Group node;
-	private Tooltip tooltip;  
-
-	double orgSceneX, orgSceneY;
-	double orgTranslateX, orgTranslateY;
-
-	public Atom(Point3D position, String name, String element, int serial, String residue,
-			int resID, String chainID) {
-		this.position = position;
-		this.name = name;
-		this.element = element;
-		this.serial = serial;
-		this.residue = residue;
-		this.resID = resID;
-		this.chainID = chainID;
-		
-		node = new Group();
-		
-		bonds = new ArrayList<Bond>();
-
-		// Color atoms according to CPK convention
-		//sizes: http://chemwiki.ucdavis.edu/@api/deki/files/13626/PTradii.png
-		switch (element) {
-		case "H":
-			size = 0.37f / 2;
-			color = Color.WHITE;
-			break;
-
-		case "C":
-			size = 0.77f / 2;
-			color = Color.GRAY;
-			break;
-
-		case "O":
-			size = 0.73f / 2;
-			color = Color.RED;
-			break;
-
-		case "N":
-			size = 0.74f / 2;
-			color = Color.BLUE;
-			break;
-
-		case "S":
-			size = 1.03f / 2;
-			color = Color.YELLOW;
-			break;
-			
-		case "FE":
-			size = 1.32f / 2;
-			color = Color.BROWN;
-			break;
-			
-		case "F":
-			size = 0.57f / 2;
-			color = Color.GREEN;
-			break;
-			
-		case "CL":
-			size = 1.03f / 2;
-			color = Color.GREEN;
-			break;
-
-		default:
-			size = 0.37f / 2;
-			color = Color.WHITE;
-			break;
-		}
-
-		// create, set appearance and material
-		material = new PhongMaterial();
-		material.setDiffuseColor(color);
-		material.setSpecularPower(0.1);
-		material.setSpecularColor(color);
-
-		// create the ball, set size and appearance
-		// and place at set position
-		ball = new Sphere(size, 20);
-		ball.setMaterial(material);
-		ball.setTranslateX(position.getX());
-		ball.setTranslateY(position.getY());
-		ball.setTranslateZ(position.getZ());
-		
-		ball.setVisible(true);
-
-		node.getChildren().add(ball);
-		// System.out.println("Create atom: " + name + "| Serial: " + serial);
-	}
 
 	/**
-	 * Measure the distance between this Atom and the one in the argument.
+	 * Makes a view of a row of a table.
 	 */
-	public float distance(Atom a) {
-		float dist = (float) position.distance(a.getPosition());
-		return dist;
+	public Atom(AtomTable table, int row) {
+		this.table = table;
+		this.row = row;
 	}
 
 	/**
-	 * Resets the atom to its original CPK color. 
+	 * Copies the atom to the end of another table and makes it a view of the
+	 * copy, e.g. when the parts of a file parsed on several threads are
+	 * joined into the table of the model.
 	 */
-	public void resetColor() {
-		material = new PhongMaterial();
-		material.setDiffuseColor(color);
-		material.setSpecularPower(0.1);
-		material.setSpecularColor(color);
-		
-		ball.setMaterial(material);
+	public void moveTo(AtomTable table) {
+		row = table.add(this.table, row);
+		this.table = table;
 	}
-	
+
 	/**
-	 * If true sets the cursor to display 
-	 * information about Atoms. 
-	 * 
+	 * Measure the distance between this Atom and the one in the argument.
 	 */
-	public void setScope(boolean selected) {
-		if (selected) {
-			node.setOnMouseMoved((event) -> {
-				tooltip = new Tooltip();
-				tooltip.setStyle("-fx-background: lightblue;");
-				tooltip.setText(toString());
-
-				Tooltip.install(node, tooltip);
-			});
-
-		} else {
-			node.setOnMouseMoved(null);
-			Tooltip.uninstall(node, tooltip);
-		}
+	public float distance(Atom a) {
+		if (a.table == table)
+			return table.distance(row, a.row);
+
+		float dx = getX() - a.getX();
+		float dy = getY() - a.getY();
+		float dz = getZ() - a.getZ();
+		return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
 	}
 
-	
 	/**
 	 * setters and getters 
 	 */
-	
-	public void setColor(Color color) {	
-		material = new PhongMaterial();
-		material.setDiffuseColor(color);
-		material.setSpecularPower(0.1);
-		material.setSpecularColor(color);
-		
-		ball.setMaterial(material);
-		
-	}
-	
-	public void setSize(float size) {
-		ball.setRadius(size);
+
+	public float getX() {
+		return table.getX(row);
 	}
-	
-	public void setVisible(boolean b) {
-		ball.setVisible(b);
+
+	public float getY() {
+		return table.getY(row);
 	}
-	
-	public Group getNode() {
-		return node;
+
+	public float getZ() {
+		return table.getZ(row);
 	}
 
-	public Point3D getPosition() {
-		return position;
+	/**
+	 * Moves the atom to a new position, e.g. the one it has in another model
+	 * of the structure.
+	 */
+	public void setPosition(float x, float y, float z) {
+		table.setPosition(row, x, y, z);
 	}
 
 	public int getSerial() {
-		return serial;
+		return table.getSerial(row);
 	}
 
 	public void setSerial(int serial) {
-		this.serial = serial;
+		table.setSerial(row, serial);
+	}
+
+	/**
+	 * Gets the table the atom is a row of.
+	 */
+	public AtomTable getTable() {
+		return table;
+	}
+
+	/**
+	 * Gets the row of the atom in its table. The table of a model holds its
+	 * atoms in file order, so this is the index of the atom in the file,
+	 * which identifies it within its model even where serial numbers repeat.
+	 */
+	public int getIndex() {
+		return row;
 	}
 
 	public String getResidue() {
-		return residue;
+		return SymbolTable.name(table.getResNameCode(row));
+	}
+
+	public int getResidueCode() {
+		return table.getResNameCode(row);
 	}
 
-	public void setResidue(String chainID) {
-		this.residue = chainID;
+	public void setResidue(String residue) {
+		table.setResNameCode(row, SymbolTable.code(residue));
+	}
+
+	/**
+	 * Gets the index of the residue of the atom in its model, or -1 for a
+	 * hetero atom.
+	 */
+	public int getResidueIndex() {
+		return table.getResidueIndex(row);
 	}
 
 	public String getName() {
-		return name;
+		return SymbolTable.name(table.getNameCode(row));
+	}
+
+	public int getNameCode() {
+		return table.getNameCode(row);
 	}
 
 	public int getResID() {
-		return resID;
+		return table.getResSeq(row);
+	}
+
+	/**
+	 * Gets the insertion code of the residue of the atom, ' ' if it has none.
+	 */
+	public char getICode() {
+		return table.getICode(row);
+	}
+
+	public String getElement() {
+		return SymbolTable.name(table.getElementCode(row));
+	}
+
+	public int getElementCode() {
+		return table.getElementCode(row);
 	}
 
 	public String getChainID() {
-		return chainID;
+		return SymbolTable.name(table.getChainCode(row));
+	}
+
+	public int getChainCode() {
+		return table.getChainCode(row);
 	}
 
 	public void setChainID(String chainID) {
-		this.chainID = chainID;
+		table.setChainCode(row, SymbolTable.code(chainID));
+	}
+
+	public float getOccupancy() {
+		return table.getOccupancy(row);
+	}
+
+	public float getTempFactor() {
+		return table.getTempFactor(row);
 	}
 
 	public void addBond(Bond b) {
+		if (bonds == null)
+			bonds = new ArrayList<Bond>(4);
 		bonds.add(b);
 	}
 
 	public ArrayList<Bond> getBonds() {
+		if (bonds == null)
+			return new ArrayList<Bond>(0);
 		return (ArrayList<Bond>) bonds;
 	}
 	
-	public float getSize() {
-		return size;
-	}
-	
-	public Color getColor() { 
-		return this.color; 
-	}
-	
 	@Override
 	public String toString() {
 		String text = "";
 
 		text += "+++ATOM+++";
 		text += "\n";
-		text += "serial : " + serial;
+		text += "serial : " + getSerial();
 		text += "\n";
-		text += "Name : " + name;
+		text += "Name : " + getName();
 		text += "\n";
-		text += "Chain : " + chainID;
+		text += "Chain : " + getChainID();
 		text += "\n";
-		text += "Residue : " + residue;
+		text += "Residue : " + getResidue();
 		text += "\n";
-		text += "resID : " + resID;
+		text += "resID : " + getResID();
 		text += "\n";
 
 		return text;
 	}
-
-	@Override
-	public void handle(Event arg0) {
-	}
-
 }
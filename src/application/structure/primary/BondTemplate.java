@@ -0,0 +1,87 @@
+package application.structure.primary;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The bonds within one type of residue, as pairs of atom names, shared by all
+ * residues of that type (see ComponentDictionary).
+ *
+ * The names are kept as sorted SymbolTable codes and each bond as the indices
+ * of its two names, so a residue is bonded by placing each of its atoms at
+ * the index of its name and then walking the pairs. No map is built per
+ * residue, and a bond is only made when both of its atoms are there, e.g.
+ * not for the hydrogens of a structure without them. The bonds of the main
+ * chain of a peptide come first, so they can be left out for the residues of
+ * a Chain.
+ *
+ * @author Slav Danchev
+ *
+ */
+public final class BondTemplate {
+
+	/** The SymbolTable codes of the atom names, sorted. */
+	private final int[] names;
+
+	/** The indices in names of the atoms of each bond, two per bond. */
+	private final int[] bonds;
+
+	/**
+	 * The number of entries at the start of bonds that are bonds of the main
+	 * chain, which a Chain makes along the whole chain.
+	 */
+	private final int mainChain;
+
+	/**
+	 * @param pairs
+	 *            the SymbolTable codes of the names of the two atoms of each
+	 *            bond, one after the other
+	 * @param mainChain
+	 *            the number of bonds at the start of pairs that are bonds of
+	 *            the main chain of a peptide, N-CA and CA-C
+	 */
+	public BondTemplate(int[] pairs, int mainChain) {
+		int[] sorted = pairs.clone();
+		Arrays.sort(sorted);
+
+		int n = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] != sorted[i - 1])
+				sorted[n++] = sorted[i];
+		}
+		names = Arrays.copyOf(sorted, n);
+
+		bonds = new int[pairs.length];
+		for (int i = 0; i < pairs.length; i++)
+			bonds[i] = Arrays.binarySearch(names, pairs[i]);
+		this.mainChain = 2 * mainChain;
+	}
+
+	/**
+	 * Makes the bonds of a residue of this type.
+	 *
+	 * @param atoms
+	 *            the atoms of the residue, the last one of a name is bonded
+	 *            if the name repeats
+	 * @param out
+	 *            the list the bonds are added to
+	 * @param mainChain
+	 *            whether the bonds of the main chain are made too, false for
+	 *            a residue of a Chain, which makes them itself
+	 */
+	public void bind(List<Atom> atoms, List<Bond> out, boolean mainChain) {
+		Atom[] placed = new Atom[names.length];
+		for (int i = 0; i < atoms.size(); i++) {
+			int slot = Arrays.binarySearch(names, atoms.get(i).getNameCode());
+			if (slot >= 0)
+				placed[slot] = atoms.get(i);
+		}
+
+		int first = mainChain ? 0 : this.mainChain;
+		for (int i = first; i < bonds.length; i += 2) {
+			Atom a = placed[bonds[i]], b = placed[bonds[i + 1]];
+			if (a != null && b != null)
+				out.add(new Bond(a, b));
+		}
+	}
+}
@@ -1,25 +1,17 @@
 package application.structure.secondary;
 
-import javafx.geometry.Point3D;
-import javafx.scene.paint.Color;
-import javafx.scene.paint.PhongMaterial;
-import javafx.scene.shape.Box;
-import javafx.scene.transform.Rotate;
-import javafx.scene.transform.Translate;
 import application.structure.primary.Aminoacid;
 
 
 /**
- * Represents a single beta strand in the protein structure. 
+ * Represents a single beta strand in the protein structure, by the residues
+ * it starts and ends with. It is shown as a flat box between their C alpha
+ * atoms (see ModelView).
  */
 public class Sheet {
 	
 	private Aminoacid start, end;
 
-	private Point3D startP, endP;
-
-	private Box shape;
-
 	private int initSeqNum, endSeqNum;
 
 	private String id, initChainID, endChainID;
@@ -33,11 +25,6 @@ public class Sheet {
 	public Sheet(Aminoacid start, Aminoacid end) {
 		this.start = start;
 		this.end = end;
-
-		startP = start.getAtom("CA").getPosition();
-		endP = end.getAtom("CA").getPosition();
-
-		shape = makeSheet(startP, endP);
 	}
 
 	/**
@@ -59,60 +46,21 @@ public class Sheet {
 	}
 
 	/**
-	 * Make a flattened 3D box to represent the strand.
-	 *
-	 * @param start starting point
-	 * @param end terminal point 
-	 * @return 3D Box object 
-	 */
-	private Box makeSheet(Point3D start, Point3D end) {
-		Point3D diff = new Point3D(end.getX() - start.getX(), end.getY()
-				- start.getY(), end.getZ() - start.getZ());
-
-		diff = diff.normalize();
-
-		Point3D midpoint = start.midpoint(end);
-
-		final Point3D YAXIS = new Point3D(0, 1, 0);
-
-		PhongMaterial material = new PhongMaterial();
-		material.setDiffuseColor(Color.ORANGE);
-		material.setSpecularColor(Color.ORANGE);
-
-		double length = start.distance(end);
-		Box box = new Box(1.5d, length, 0.1d);
-		box.setMaterial(material);
-
-		Point3D crossVec = YAXIS.crossProduct(diff);
-
-		double ac = (double) Math.acos(YAXIS.dotProduct(diff));
-
-		box.getTransforms()
-				.add(new Translate(midpoint.getX(), midpoint.getY(), midpoint
-						.getZ()));
-		box.getTransforms().add(new Rotate(Math.toDegrees(ac), crossVec));
-
-		box.setVisible(true);
-		return box;
-	}
-
-	/**
-	 * Sets the visible.
+	 * setters and getters.
 	 *
-	 * @param b the new visible
+	 * @return the inits the seq num
 	 */
-	public void setVisible(boolean b) {
-		shape.setVisible(b);
+	public int getInitSeqNum() {
+		return initSeqNum;
 	}
 
-	
 	/**
-	 * setters and getters.
+	 * Gets the id.
 	 *
-	 * @return the inits the seq num
+	 * @return the id of the sheet the strand belongs to
 	 */
-	public int getInitSeqNum() {
-		return initSeqNum;
+	public String getId() {
+		return id;
 	}
 
 	/**
@@ -125,34 +73,33 @@ public class Sheet {
 	}
 
 	/**
-	 * Gets the node.
+	 * Sets the residues the strand starts and ends with, once the chains are
+	 * built.
 	 *
-	 * @return the node
+	 * @param start the start residue, or null if it was not loaded
+	 * @param end the end residue, or null if it was not loaded
 	 */
-	public Box getNode() {
-		return shape;
+	public void setAcids(Aminoacid start, Aminoacid end) {
+		this.start = start;
+		this.end = end;
 	}
 
 	/**
-	 * Sets the acids.
+	 * Gets the start residue.
 	 *
-	 * @param start the start
-	 * @param end the end
+	 * @return the start residue, or null if it was not loaded
 	 */
-	public void setAcids(Aminoacid start, Aminoacid end) {
-		this.start = start;
-		this.end = end;
-
-		if (start != null && end != null) {
-			startP = start.getAtom("CA").getPosition();
-			endP = end.getAtom("CA").getPosition();
-
-			shape = makeSheet(startP, endP);
-		} else {
-			shape = makeSheet(new Point3D(0, 0, 0), new Point3D(0, 0, 0));
-
-		}
+	public Aminoacid getStart() {
+		return start;
+	}
 
+	/**
+	 * Gets the end residue.
+	 *
+	 * @return the end residue, or null if it was not loaded
+	 */
+	public Aminoacid getEnd() {
+		return end;
 	}
 
 	/**
@@ -1,6 +1,7 @@
 package application.view;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.util.ResourceBundle;
 
@@ -23,10 +24,14 @@ import javafx.scene.text.Text;
 import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import application.FileFollower;
 import application.Main;
 import application.ProteinMaker;
 import application.ProteinScene;
 import application.ScopeType;
+import application.StructureExporter;
+import application.TrajectoryPlayer;
+import application.parser.TrajectoryReader;
 import application.structure.ColorMode;
 import application.structure.VisMode;
 
@@ -65,6 +70,10 @@ public class Controller implements Initializable {
 	@FXML
 	Button saveImage;
 
+	/** The save structure. */
+	@FXML
+	Button saveStructure;
+
 	/** The o k. */
 	@FXML
 	Button oK;
@@ -77,6 +86,10 @@ public class Controller implements Initializable {
 	@FXML
 	Button random;
 
+	/** The play trajectory. */
+	@FXML
+	Button playTrajectory;
+
 	/** The load bar. */
 	@FXML
 	ProgressIndicator loadBar;
@@ -116,6 +129,10 @@ public class Controller implements Initializable {
 	@FXML
 	CheckBox hetAtmBox;
 
+	/** The follow box. */
+	@FXML
+	CheckBox followBox;
+
 	/**
 	 * Static variables for view elements that need to be accessed from outside.
 	 * (e.g. loading indicators) This is done as a workaround for a not yet
@@ -135,6 +152,12 @@ public class Controller implements Initializable {
 	/** The scope radio group. */
 	private ToggleGroup scopeRadioGroup;
 
+	/** The trajectory that is playing, if any. */
+	private TrajectoryPlayer player;
+
+	/** The file that is followed, if any. */
+	private FileFollower follower;
+
 	/**
 	 * Called automatically once the controller has been loaded. Initializes all
 	 * the event handlers for the main view screen.
@@ -163,23 +186,23 @@ public class Controller implements Initializable {
 
 			switch (selection) {
 			case 0:
-				mainApp.getModel().setVisMode(VisMode.SPHERES);
+				mainApp.getView().setVisMode(VisMode.SPHERES);
 				break;
 
 			case 1:
-				mainApp.getModel().setVisMode(VisMode.BALLANDSTICK);
+				mainApp.getView().setVisMode(VisMode.BALLANDSTICK);
 				break;
 
 			case 2:
-				mainApp.getModel().setVisMode(VisMode.STICKS);
+				mainApp.getView().setVisMode(VisMode.STICKS);
 				break;
 
 			case 3:
-				mainApp.getModel().setVisMode(VisMode.SECONDARY);
+				mainApp.getView().setVisMode(VisMode.SECONDARY);
 				break;
 
 			case 4:
-				mainApp.getModel().setVisMode(VisMode.BACKBONE);
+				mainApp.getView().setVisMode(VisMode.BACKBONE);
 				break;
 			}
 
@@ -192,19 +215,19 @@ public class Controller implements Initializable {
 
 					switch (selection) {
 					case 0:
-						mainApp.getModel().setColorMode(ColorMode.ATOMS);
+						mainApp.getView().setColorMode(ColorMode.ATOMS);
 						break;
 
 					case 1:
-						mainApp.getModel().setColorMode(ColorMode.AMINOACIDS);
+						mainApp.getView().setColorMode(ColorMode.AMINOACIDS);
 						break;
 
 					case 2:
-						mainApp.getModel().setColorMode(ColorMode.SECONDARY);
+						mainApp.getView().setColorMode(ColorMode.SECONDARY);
 						break;
 
 					case 3:
-						mainApp.getModel().setColorMode(ColorMode.CHAINS);
+						mainApp.getView().setColorMode(ColorMode.CHAINS);
 						break;
 					}
 				});
@@ -217,14 +240,37 @@ public class Controller implements Initializable {
 			proteinScene.takeScreenshot(file);
 		});
 
+		saveStructure.setOnAction((event) -> {
+			if (mainApp.getModel() == null)
+				return;
+
+			FileChooser fileChooser = new FileChooser();
+			fileChooser.setTitle("Save Structure");
+			fileChooser.getExtensionFilters().addAll(
+					new FileChooser.ExtensionFilter("PDB", "*.pdb"),
+					new FileChooser.ExtensionFilter("mmCIF", "*.cif"));
+			File file = fileChooser.showSaveDialog(mainApp.getPrimaryStage());
+			if (file == null)
+				return;
+
+			try {
+				StructureExporter.save(mainApp.getModel(), file);
+			} catch (IOException e) {
+				showPopUp("Cannot write " + file.getName() + ": "
+						+ e.getMessage());
+			}
+		});
+
 		oK.setOnAction((event) -> {
 			progressStatus.setText("Loading...");
+			setFollower(null);
 
 			Platform.runLater(new ProteinMaker(pdbId.getText(), this, mainApp));
 		});
 
 		random.setOnAction((event) -> {
 			progressStatus.setText("Loading...");
+			setFollower(null);
 			Platform.runLater(new ProteinMaker(this, mainApp));
 		});
 
@@ -233,51 +279,87 @@ public class Controller implements Initializable {
 			fileChooser.setTitle("Save Image");
 			File file = fileChooser.showOpenDialog(mainApp.getPrimaryStage());
 			progressStatus.setText("Loading...");
-			Platform.runLater(new ProteinMaker(file, this, mainApp));
+			setFollower(null);
+			Platform.runLater(new ProteinMaker(file, followBox.isSelected(),
+					this, mainApp));
+		});
+
+		playTrajectory.setOnAction((event) -> {
+			if (mainApp.getModel() == null)
+				return;
+
+			FileChooser fileChooser = new FileChooser();
+			fileChooser.setTitle("Play Trajectory");
+			fileChooser.getExtensionFilters().add(
+					new FileChooser.ExtensionFilter("Trajectories", "*.dcd",
+							"*.xtc"));
+			File file = fileChooser.showOpenDialog(mainApp.getPrimaryStage());
+			if (file == null)
+				return;
+
+			if (player != null)
+				player.stop();
+			player = null;
+
+			TrajectoryReader reader = null;
+			try {
+				reader = TrajectoryReader.open(file);
+				player = new TrajectoryPlayer(mainApp.getModel(), reader);
+				player.start();
+			} catch (IOException | IllegalArgumentException e) {
+				try {
+					if (reader != null)
+						reader.close();
+				} catch (IOException ignored) {
+					// the trajectory is not played either way
+				}
+				showPopUp("Cannot read " + file.getName() + ": "
+						+ e.getMessage());
+			}
 		});
 
 		radioAtom.setOnAction((event) -> {
-			mainApp.getModel().setCursorScope(ScopeType.ATOM);
+			mainApp.getView().setCursorScope(ScopeType.ATOM);
 		});
 
 		radioAminoacid.setOnAction((event) -> {
-			mainApp.getModel().setCursorScope(ScopeType.AMINOACID);
+			mainApp.getView().setCursorScope(ScopeType.AMINOACID);
 		});
 
 		atomsBox.setOnAction((event) -> {
 			if (atomsBox.isSelected()) {
-				mainApp.getModel().setAtomsVisibility(true);
+				mainApp.getView().setAtomsVisibility(true);
 			} else {
-				mainApp.getModel().setAtomsVisibility(false);
+				mainApp.getView().setAtomsVisibility(false);
 			}
 		});
 
 		bondsBox.setOnAction((event) -> {
 			if (bondsBox.isSelected()) {
-				mainApp.getModel().setBondsVisibility(true);
+				mainApp.getView().setBondsVisibility(true);
 			} else {
-				mainApp.getModel().setBondsVisibility(false);
+				mainApp.getView().setBondsVisibility(false);
 			}
 		});
 
 		backboneBox.setOnAction((event) -> {
 			if (backboneBox.isSelected()) {
-				mainApp.getModel().setMainChainVisibility(true);
+				mainApp.getView().setMainChainVisibility(true);
 			} else {
-				mainApp.getModel().setMainChainVisibility(false);
+				mainApp.getView().setMainChainVisibility(false);
 			}
 		});
 
 		hetAtmBox.setOnAction((event) -> {
 			if (hetAtmBox.isSelected()) {
-				mainApp.getModel().setHetAtomVisibility(true);
+				mainApp.getView().setHetAtomVisibility(true);
 			} else {
-				mainApp.getModel().setHetAtomVisibility(false);
+				mainApp.getView().setHetAtomVisibility(false);
 			}
 		});
 
 		radioChain.setOnAction((event) -> {
-			mainApp.getModel().setCursorScope(ScopeType.CHAIN);
+			mainApp.getView().setCursorScope(ScopeType.CHAIN);
 		});
 	}
 
@@ -342,6 +424,26 @@ public class Controller implements Initializable {
 		myDialog.show();
 	}
 
+	/**
+	 * Starts following a file, after stopping the one that was followed so
+	 * far and the trajectory that was played, which would otherwise keep
+	 * moving the atoms of a model that is no longer shown.
+	 *
+	 * @param follower
+	 *            the new follower, or null to only stop the old one
+	 */
+	public void setFollower(FileFollower follower) {
+		if (this.follower != null)
+			this.follower.stop();
+		if (player != null)
+			player.stop();
+		player = null;
+
+		this.follower = follower;
+		if (follower != null)
+			follower.start();
+	}
+
 	/**
 	 * Binds the Main class with the Controller.
 	 *
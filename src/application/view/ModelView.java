@@ -0,0 +1,837 @@
+package application.view;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.collections.ObservableList;
+import javafx.geometry.Point3D;
+import javafx.scene.Cursor;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.Box;
+import javafx.scene.shape.Cylinder;
+import javafx.scene.shape.Shape3D;
+import javafx.scene.shape.Sphere;
+import javafx.scene.transform.Rotate;
+import javafx.scene.transform.Transform;
+import javafx.scene.transform.Translate;
+import application.ScopeType;
+import application.structure.AtomTable;
+import application.structure.Chain;
+import application.structure.ColorMode;
+import application.structure.Model;
+import application.structure.ModelListener;
+import application.structure.SymbolTable;
+import application.structure.VisMode;
+import application.structure.primary.Aminoacid;
+import application.structure.primary.Atom;
+import application.structure.primary.Bond;
+import application.structure.secondary.Helix;
+import application.structure.secondary.Sheet;
+
+/**
+ * Shows a Model in the 3D scene: atoms as spheres, bonds as cylinders,
+ * helices as cylinders and strands as flat boxes.
+ *
+ * The nodes are made on demand, the first time the part of the model they
+ * show is to be visible: the spheres are not made while only bonds are shown,
+ * the helices and strands not before the SECONDARY mode is chosen, and the
+ * residues hidden with toggleAcidVisibility() get no nodes at all. Nodes that
+ * are hidden again are kept and only made invisible. The sphere of an atom is
+ * found by the index of the atom, the cylinder of a bond by the bond, and the
+ * materials are shared by all nodes of a colour.
+ *
+ * The view listens to its model and moves the nodes of the atoms that moved,
+ * and of their bonds, when another frame or conformer is shown. A chain can
+ * be dragged with the mouse, the offset it was moved by is kept by the chain
+ * (see Chain.setOffset()).
+ *
+ * @author Slav Danchev
+ *
+ */
+public class ModelView implements ModelListener {
+
+	private static final double BOND_RADIUS = 0.05, LINK_RADIUS = 0.1;
+
+	private static final Point3D YAXIS = new Point3D(0, 1, 0);
+
+	private final Model model;
+
+	private final Group node;
+
+	/** The groups of the chains and of their main chains, in model order. */
+	private final Group[] chainNodes, mainChainNodes;
+
+	/** The group of each residue, by the index of the residue. */
+	private final Group[] acidNodes;
+
+	/** The residues hidden by toggleAcidVisibility() or hideAll(). */
+	private final boolean[] hiddenAcids;
+
+	/** The sphere of each atom, by the index of the atom. */
+	private final Sphere[] spheres;
+
+	private final Map<Bond, Cylinder> cylinders = new IdentityHashMap<Bond, Cylinder>();
+
+	private final Map<Color, PhongMaterial> materials = new HashMap<Color, PhongMaterial>();
+
+	/** The shapes of the helices and strands, null until first shown. */
+	private Shape3D[] helixShapes, sheetShapes;
+
+	private boolean atomsVisible = true, bondsVisible = true,
+			mainChainVisible = true, hetAtomsVisible = true, secondaryVisible;
+
+	/** Whether the atoms of the chains are shown as spheres of radius 1. */
+	private boolean largeAtoms;
+
+	private ColorMode colorMode = ColorMode.ATOMS;
+
+	/** The colour of each residue in the SECONDARY mode, null if neither. */
+	private Color[] secondaryColors;
+
+	private ScopeType scope = ScopeType.ATOM;
+
+	private final Tooltip tooltip;
+
+	private Node tooltipNode;
+
+	private double orgSceneX, orgSceneY;
+	private double orgTranslateX, orgTranslateY;
+
+	/**
+	 * Instantiates a new view of a model and makes the nodes shown at first:
+	 * the atoms, bonds and main chains of the chains and the het atoms and
+	 * their links.
+	 *
+	 * @param model the model
+	 */
+	public ModelView(Model model) {
+		this.model = model;
+		node = new Group();
+
+		int chains = model.getChains().size();
+		chainNodes = new Group[chains];
+		mainChainNodes = new Group[chains];
+		acidNodes = new Group[model.getAcids().size()];
+		hiddenAcids = new boolean[acidNodes.length];
+		spheres = new Sphere[model.getAtomTable().size()];
+
+		tooltip = new Tooltip();
+		tooltip.setStyle("-fx-background: lightblue;");
+		node.setOnMouseMoved(this::showTooltip);
+
+		// finally position structure around center
+		center();
+		update();
+
+		model.addListener(this);
+	}
+
+	/**
+	 * Calculated the distance vector between the zero vector of the 3D scene
+	 * and the atom that's the furthest away from the center. Then moves the
+	 * entire structure halfway on that vector in order to make it visible on
+	 * the screen. The atoms are searched in the table, hetero atoms included.
+	 */
+	private void center() {
+		AtomTable table = model.getAtomTable();
+		int furthest = table.farthestFromOrigin();
+		if (furthest < 0)
+			return;
+
+		node.setTranslateX(-table.getX(furthest) / 2);
+		node.setTranslateY(-table.getY(furthest) / 2);
+		node.setTranslateZ(-table.getZ(furthest) / 2);
+	}
+
+	/**
+	 * Makes the nodes that are to be shown and are missing, and sets the
+	 * visibility of all nodes that exist.
+	 */
+	private void update() {
+		List<Chain> chains = model.getChains();
+		int acid = 0;
+		for (int c = 0; c < chains.size(); c++) {
+			Chain chain = chains.get(c);
+			for (Aminoacid aa : chain.getAminoacids())
+				updateAcid(c, acid++, aa);
+
+			if (mainChainNodes[c] == null && mainChainVisible) {
+				mainChainNodes[c] = new Group();
+				node.getChildren().add(mainChainNodes[c]);
+			}
+			if (mainChainNodes[c] != null) {
+				for (Bond b : chain.getMainChainBonds())
+					showBond(b, mainChainNodes[c], mainChainVisible,
+							LINK_RADIUS, Color.WHITE);
+			}
+		}
+
+		if (model.getHetAtoms() != null) {
+			for (Atom a : model.getHetAtoms())
+				showAtom(a, node, hetAtomsVisible, radius(a.getElementCode()),
+						color(a.getElementCode()));
+		}
+		if (model.getHetBonds() != null) {
+			for (Bond b : model.getHetBonds())
+				showBond(b, node, hetAtomsVisible, BOND_RADIUS, Color.WHITE);
+		}
+		if (model.getExplicitLinks() != null) {
+			for (Bond b : model.getExplicitLinks())
+				showBond(b, node, hetAtomsVisible, LINK_RADIUS, Color.PURPLE);
+		}
+
+		if (secondaryVisible && helixShapes == null && model.getHelices() != null)
+			helixShapes = makeHelices();
+		if (secondaryVisible && sheetShapes == null && model.getSheets() != null)
+			sheetShapes = makeSheets();
+		setVisible(helixShapes, secondaryVisible);
+		setVisible(sheetShapes, secondaryVisible);
+	}
+
+	/**
+	 * Makes the nodes of a residue that are to be shown and are missing, and
+	 * sets the visibility of those that exist.
+	 */
+	private void updateAcid(int chain, int acid, Aminoacid aa) {
+		Group group = acidNodes[acid];
+		if (group != null)
+			group.setVisible(!hiddenAcids[acid]);
+		if (hiddenAcids[acid])
+			return;
+
+		if (group == null) {
+			if (!atomsVisible && !bondsVisible)
+				return;
+			group = new Group();
+			group.setUserData(aa);
+			chainNode(chain).getChildren().add(group);
+			acidNodes[acid] = group;
+		}
+
+		Color color = acidColor(acid, aa);
+		for (Atom a : aa.getAtoms())
+			showAtom(a, group, atomsVisible,
+					largeAtoms ? 1 : radius(a.getElementCode()),
+					color == null ? color(a.getElementCode()) : color);
+		for (Bond b : aa.getBonds())
+			showBond(b, group, bondsVisible, BOND_RADIUS,
+					color == null ? Color.WHITE : color);
+	}
+
+	/**
+	 * Shows or hides the sphere of an atom, which is made if it is to be
+	 * shown and does not exist yet.
+	 */
+	private void showAtom(Atom a, Group parent, boolean visible,
+			double radius, Color color) {
+		Sphere ball = spheres[a.getIndex()];
+		if (ball == null) {
+			if (!visible)
+				return;
+
+			ball = new Sphere(radius, 20);
+			ball.setMaterial(material(color));
+			ball.setUserData(a);
+			moveSphere(ball, a);
+			parent.getChildren().add(ball);
+			spheres[a.getIndex()] = ball;
+		}
+
+		ball.setRadius(radius);
+		ball.setVisible(visible);
+	}
+
+	/**
+	 * Shows or hides the cylinder of a bond, which is made if it is to be
+	 * shown and does not exist yet. Bonds missing an atom are not shown.
+	 */
+	private void showBond(Bond b, Group parent, boolean visible,
+			double radius, Color color) {
+		Cylinder cyl = cylinders.get(b);
+		if (cyl == null) {
+			if (!visible || !b.isComplete())
+				return;
+
+			cyl = new Cylinder(radius, 0, 10);
+			cyl.setMaterial(material(color));
+			place(cyl, b.getAtomA(), b.getAtomB());
+			parent.getChildren().add(cyl);
+			cylinders.put(b, cyl);
+		}
+
+		cyl.setVisible(visible);
+	}
+
+	/**
+	 * Makes the group of a chain, the first time it is needed. The chain can
+	 * be dragged by it.
+	 */
+	private Group chainNode(int c) {
+		if (chainNodes[c] == null) {
+			Chain chain = model.getChains().get(c);
+			Group group = new Group();
+			group.setUserData(chain);
+			group.setTranslateX(chain.getOffsetX());
+			group.setTranslateY(chain.getOffsetY());
+			group.setTranslateZ(chain.getOffsetZ());
+
+			group.setCursor(Cursor.HAND);
+			group.setOnMousePressed(event -> press(event, group));
+			group.setOnMouseDragged(event -> drag(event, group, chain));
+
+			node.getChildren().add(group);
+			chainNodes[c] = group;
+		}
+		return chainNodes[c];
+	}
+
+	/**
+	 * Makes a cylinder for each helix, between the C alpha atoms of the
+	 * residues it starts and ends with.
+	 */
+	private Shape3D[] makeHelices() {
+		List<Helix> helices = model.getHelices();
+		Shape3D[] shapes = new Shape3D[helices.size()];
+		for (int i = 0; i < shapes.length; i++) {
+			Helix h = helices.get(i);
+			Atom start = alpha(h.getStart()), end = alpha(h.getEnd());
+			if (start == null || end == null)
+				continue;
+
+			Cylinder cyl = new Cylinder(1, 0, 10);
+			cyl.setMaterial(material(Color.WHITE));
+			place(cyl, start, end);
+			node.getChildren().add(cyl);
+			shapes[i] = cyl;
+		}
+		return shapes;
+	}
+
+	/**
+	 * Makes a flattened box for each strand, between the C alpha atoms of the
+	 * residues it starts and ends with.
+	 */
+	private Shape3D[] makeSheets() {
+		List<Sheet> sheets = model.getSheets();
+		Shape3D[] shapes = new Shape3D[sheets.size()];
+		for (int i = 0; i < shapes.length; i++) {
+			Sheet s = sheets.get(i);
+			Atom start = alpha(s.getStart()), end = alpha(s.getEnd());
+			if (start == null || end == null)
+				continue;
+
+			Box box = new Box(1.5, 0, 0.1);
+			box.setMaterial(material(Color.ORANGE));
+			place(box, start, end);
+			node.getChildren().add(box);
+			shapes[i] = box;
+		}
+		return shapes;
+	}
+
+	private static Atom alpha(Aminoacid aa) {
+		return aa == null ? null : aa.getAtom("CA");
+	}
+
+	private static void setVisible(Shape3D[] shapes, boolean visible) {
+		if (shapes == null)
+			return;
+		for (Shape3D s : shapes) {
+			if (s != null)
+				s.setVisible(visible);
+		}
+	}
+
+	/**
+	 * Moves the nodes of the atoms that moved and of their bonds. When all
+	 * atoms moved, e.g. to another frame, every cylinder is moved once, and
+	 * the helices and strands follow their C alpha atoms.
+	 */
+	@Override
+	public void atomsMoved(List<Atom> atoms) {
+		for (Atom a : atoms) {
+			Sphere ball = spheres[a.getIndex()];
+			if (ball != null)
+				moveSphere(ball, a);
+		}
+
+		if (atoms.size() < spheres.length) {
+			for (Atom a : atoms) {
+				for (Bond b : a.getBonds()) {
+					Cylinder cyl = cylinders.get(b);
+					if (cyl != null)
+						place(cyl, b.getAtomA(), b.getAtomB());
+				}
+			}
+			return;
+		}
+
+		for (Map.Entry<Bond, Cylinder> e : cylinders.entrySet())
+			place(e.getValue(), e.getKey().getAtomA(), e.getKey().getAtomB());
+
+		if (helixShapes != null) {
+			for (int i = 0; i < helixShapes.length; i++) {
+				Helix h = model.getHelices().get(i);
+				if (helixShapes[i] != null)
+					place(helixShapes[i], alpha(h.getStart()), alpha(h.getEnd()));
+			}
+		}
+		if (sheetShapes != null) {
+			for (int i = 0; i < sheetShapes.length; i++) {
+				Sheet s = model.getSheets().get(i);
+				if (sheetShapes[i] != null)
+					place(sheetShapes[i], alpha(s.getStart()), alpha(s.getEnd()));
+			}
+		}
+	}
+
+	/**
+	 * Makes the cylinders of the bonds that were added, if they are shown.
+	 */
+	@Override
+	public void linksChanged() {
+		update();
+	}
+
+	private static void moveSphere(Sphere ball, Atom a) {
+		ball.setTranslateX(a.getX());
+		ball.setTranslateY(a.getY());
+		ball.setTranslateZ(a.getZ());
+	}
+
+	/**
+	 * Places a cylinder or a box between two atoms.
+	 *
+	 * Its height is the distance between the atoms. It is translated to the
+	 * midpoint between them and rotated around an axis that is the
+	 * cross-product vector between the Y axis and the difference vector of
+	 * the two atoms. The transforms of a shape that was placed before are
+	 * reused, this runs for every bond on each frame of a trajectory.
+	 */
+	private static void place(Shape3D shape, Atom a, Atom b) {
+		Point3D posA = new Point3D(a.getX(), a.getY(), a.getZ());
+		Point3D posB = new Point3D(b.getX(), b.getY(), b.getZ());
+
+		Point3D diff = posB.subtract(posA).normalize();
+		Point3D midpoint = posA.midpoint(posB);
+
+		Point3D crossVec = YAXIS.crossProduct(diff);
+		double ac = Math.acos(YAXIS.dotProduct(diff));
+
+		if (shape instanceof Cylinder)
+			((Cylinder) shape).setHeight(a.distance(b));
+		else if (shape instanceof Box)
+			((Box) shape).setHeight(a.distance(b));
+
+		ObservableList<Transform> transforms = shape.getTransforms();
+		if (transforms.size() == 2) {
+			Translate move = (Translate) transforms.get(0);
+			move.setX(midpoint.getX());
+			move.setY(midpoint.getY());
+			move.setZ(midpoint.getZ());
+
+			Rotate rotate = (Rotate) transforms.get(1);
+			rotate.setAxis(crossVec);
+			rotate.setAngle(Math.toDegrees(ac));
+		} else {
+			transforms.setAll(
+					new Translate(midpoint.getX(), midpoint.getY(),
+							midpoint.getZ()),
+					new Rotate(Math.toDegrees(ac), crossVec));
+		}
+	}
+
+	private PhongMaterial material(Color color) {
+		PhongMaterial material = materials.get(color);
+		if (material == null) {
+			material = new PhongMaterial();
+			material.setDiffuseColor(color);
+			material.setSpecularPower(0.1);
+			material.setSpecularColor(color);
+			materials.put(color, material);
+		}
+		return material;
+	}
+
+	/**
+	 * The colour of the atoms and bonds of a residue in the colour mode, or
+	 * null if its atoms are coloured by element and its bonds white.
+	 */
+	private Color acidColor(int acid, Aminoacid aa) {
+		switch (colorMode) {
+		case AMINOACIDS:
+			return typeColor(aa.getTypeCode());
+
+		case CHAINS:
+			String chainID = aa.getChainID();
+			double hue = chainID.isEmpty() ? 0 : chainID.charAt(0);
+			return Color.hsb(hue * 50, 1, 0.5);
+
+		case SECONDARY:
+			Color color = secondaryColors[acid];
+			return color == null ? Color.WHITE : color;
+
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Colours the residues of the helices red and those of the strands blue,
+	 * by the index of the residue.
+	 */
+	private Color[] secondaryColors() {
+		Color[] colors = new Color[acidNodes.length];
+		if (model.getHelices() != null) {
+			for (Helix h : model.getHelices())
+				mark(colors, h.getStartChainID(), h.getInitSeqNum(),
+						h.getEndSeqNum(), Color.RED);
+		}
+		if (model.getSheets() != null) {
+			for (Sheet s : model.getSheets())
+				mark(colors, s.getInitChainID(), s.getInitSeqNum(),
+						s.getEndSeqNum(), Color.BLUE);
+		}
+		return colors;
+	}
+
+	private void mark(Color[] colors, String chainID, int start, int end,
+			Color color) {
+		int[] span = span(chainID, start, end);
+		if (span != null)
+			Arrays.fill(colors, span[0], span[1] + 1, color);
+	}
+
+	/**
+	 * The indices of the first and the last residue of a chain from start to
+	 * end, so that residues with insertion codes in between are included, or
+	 * null if the chain has none of them.
+	 */
+	private int[] span(String chainID, int start, int end) {
+		int first = -1, last = -1;
+		for (int i = start; i <= end && first < 0; i++)
+			first = model.getAcidIndex(chainID, i, ' ');
+		for (int i = end; i >= start && last < 0; i--)
+			last = model.getAcidIndex(chainID, i, ' ');
+		return first < 0 || last < first ? null : new int[] { first, last };
+	}
+
+	/**
+	 * The radius of the sphere of an element.
+	 */
+	private static double radius(int element) {
+		//sizes: http://chemwiki.ucdavis.edu/@api/deki/files/13626/PTradii.png
+		switch (element) {
+		case SymbolTable.C:
+			return 0.77f / 2;
+		case SymbolTable.O:
+			return 0.73f / 2;
+		case SymbolTable.N:
+			return 0.74f / 2;
+		case SymbolTable.S:
+		case SymbolTable.CL:
+			return 1.03f / 2;
+		case SymbolTable.FE:
+			return 1.32f / 2;
+		case SymbolTable.F:
+			return 0.57f / 2;
+		default:
+			return 0.37f / 2;
+		}
+	}
+
+	/**
+	 * The CPK colour of an element.
+	 */
+	private static Color color(int element) {
+		switch (element) {
+		case SymbolTable.C:
+			return Color.GRAY;
+		case SymbolTable.O:
+			return Color.RED;
+		case SymbolTable.N:
+			return Color.BLUE;
+		case SymbolTable.S:
+			return Color.YELLOW;
+		case SymbolTable.FE:
+			return Color.BROWN;
+		case SymbolTable.F:
+		case SymbolTable.CL:
+			return Color.GREEN;
+		default:
+			return Color.WHITE;
+		}
+	}
+
+	/**
+	 * The colour of an amino acid type, or null for other residues.
+	 */
+	private static Color typeColor(int type) {
+		switch (type) {
+		case SymbolTable.ASN:
+			return Color.WHITE;
+		case SymbolTable.LEU:
+			return Color.BLUE;
+		case SymbolTable.TYR:
+			return Color.RED;
+		case SymbolTable.ILE:
+			return Color.ORANGE;
+		case SymbolTable.GLN:
+			return Color.PINK;
+		case SymbolTable.TRP:
+			return Color.GREEN;
+		case SymbolTable.LYS:
+			return Color.YELLOW;
+		case SymbolTable.GLY:
+			return Color.CYAN;
+		case SymbolTable.SER:
+			return Color.LIGHTGRAY;
+		case SymbolTable.ARG:
+			return Color.BLANCHEDALMOND;
+		case SymbolTable.PRO:
+			return Color.BLUEVIOLET;
+		case SymbolTable.ALA:
+			return Color.GREENYELLOW;
+		case SymbolTable.CYS:
+			return Color.BEIGE;
+		case SymbolTable.GLU:
+			return Color.ORANGE;
+		case SymbolTable.HIS:
+			return Color.PINK;
+		case SymbolTable.MET:
+			return Color.GREEN;
+		case SymbolTable.PHE:
+			return Color.YELLOWGREEN;
+		case SymbolTable.THR:
+			return Color.BURLYWOOD;
+		case SymbolTable.VAL:
+			return Color.CHOCOLATE;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Sets the visualisation mode for the structure.
+	 *
+	 * @param mode the new vis mode
+	 */
+	public void setVisMode(VisMode mode) {
+		switch (mode) {
+		case SPHERES:
+			secondaryVisible = false;
+			bondsVisible = false;
+			atomsVisible = true;
+			largeAtoms = true;
+			break;
+
+		case BALLANDSTICK:
+			secondaryVisible = false;
+			bondsVisible = true;
+			atomsVisible = true;
+			largeAtoms = false;
+			break;
+
+		case STICKS:
+			secondaryVisible = false;
+			bondsVisible = true;
+			atomsVisible = false;
+			break;
+
+		case SECONDARY:
+			bondsVisible = false;
+			atomsVisible = false;
+			secondaryVisible = true;
+			break;
+
+		case BACKBONE:
+			bondsVisible = false;
+			atomsVisible = false;
+			secondaryVisible = false;
+			mainChainVisible = true;
+			break;
+		}
+		update();
+	}
+
+	/**
+	 * Sets the coloring mode for the structure. The nodes made later are
+	 * coloured by it too.
+	 *
+	 * @param mode the new color mode
+	 */
+	public void setColorMode(ColorMode mode) {
+		colorMode = mode;
+		if (mode == ColorMode.SECONDARY && secondaryColors == null)
+			secondaryColors = secondaryColors();
+
+		List<Aminoacid> acids = model.getAcids();
+		for (int i = 0; i < acids.size(); i++) {
+			if (acidNodes[i] == null)
+				continue;
+
+			Aminoacid aa = acids.get(i);
+			Color color = acidColor(i, aa);
+			for (Atom a : aa.getAtoms()) {
+				Sphere ball = spheres[a.getIndex()];
+				if (ball != null)
+					ball.setMaterial(material(color == null ? color(a
+							.getElementCode()) : color));
+			}
+			for (Bond b : aa.getBonds()) {
+				Cylinder cyl = cylinders.get(b);
+				if (cyl != null)
+					cyl.setMaterial(material(color == null ? Color.WHITE
+							: color));
+			}
+		}
+	}
+
+	/**
+	 * Sets the cursor tooltip scope of the structure: the atom, the residue or
+	 * the chain under the cursor is described.
+	 *
+	 * @param type the new cursor scope
+	 */
+	public void setCursorScope(ScopeType type) {
+		scope = type;
+		if (tooltipNode != null) {
+			Tooltip.uninstall(tooltipNode, tooltip);
+			tooltipNode = null;
+		}
+	}
+
+	/**
+	 * Installs the tooltip on the node of the atom, residue or chain under
+	 * the cursor, found by going up from the node that was hit.
+	 */
+	private void showTooltip(MouseEvent event) {
+		Class<?> type = scope == ScopeType.ATOM ? Atom.class
+				: scope == ScopeType.AMINOACID ? Aminoacid.class : Chain.class;
+
+		Node target = event.getPickResult().getIntersectedNode();
+		while (target != null && !type.isInstance(target.getUserData()))
+			target = target.getParent();
+		if (target == tooltipNode)
+			return;
+
+		if (tooltipNode != null)
+			Tooltip.uninstall(tooltipNode, tooltip);
+		tooltipNode = target;
+		if (target != null) {
+			tooltip.setText(target.getUserData().toString());
+			Tooltip.install(target, tooltip);
+		}
+	}
+
+	private void press(MouseEvent t, Group group) {
+		if (t.isPrimaryButtonDown()) {
+			orgSceneX = t.getSceneX();
+			orgSceneY = t.getSceneY();
+			orgTranslateX = group.getTranslateX();
+			orgTranslateY = group.getTranslateY();
+		}
+	}
+
+	private void drag(MouseEvent t, Group group, Chain chain) {
+		if (t.isPrimaryButtonDown()) {
+			double offsetX = t.getSceneX() - orgSceneX;
+			double offsetY = t.getSceneY() - orgSceneY;
+			group.setTranslateX(orgTranslateX + offsetX);
+			group.setTranslateY(orgTranslateY + offsetY);
+
+			chain.setOffset((float) group.getTranslateX(),
+					(float) group.getTranslateY(),
+					(float) group.getTranslateZ());
+		}
+	}
+
+	/**
+	 * Toggles whether the amino acids of a chain within the given range
+	 * are visible or not.
+	 *
+	 * @param chainID the chain
+	 * @param start the residue number of the first residue
+	 * @param end the residue number of the last residue
+	 * @param b the b
+	 */
+	public void toggleAcidVisibility(String chainID, int start, int end,
+			boolean b) {
+		int[] span = span(chainID, start, end);
+		if (span != null)
+			Arrays.fill(hiddenAcids, span[0], span[1] + 1, !b);
+		update();
+	}
+
+	/**
+	 * Sets the atoms visibility.
+	 *
+	 */
+	public void setAtomsVisibility(boolean b) {
+		atomsVisible = b;
+		update();
+	}
+
+	/**
+	 * Sets the bonds visibility.
+	 *
+	 */
+	public void setBondsVisibility(boolean b) {
+		bondsVisible = b;
+		update();
+	}
+
+	/**
+	 * Sets the main chain visibility.
+	 *
+	 */
+	public void setMainChainVisibility(boolean b) {
+		mainChainVisible = b;
+		update();
+	}
+
+	/**
+	 * Sets the hetatoms visibility, with the explicit links.
+	 *
+	 */
+	public void setHetAtomVisibility(boolean b) {
+		hetAtomsVisible = b;
+		update();
+	}
+
+	/**
+	 * Hide all.
+	 */
+	public void hideAll() {
+		secondaryVisible = false;
+		mainChainVisible = false;
+		Arrays.fill(hiddenAcids, true);
+		update();
+	}
+
+	/**
+	 * Gets the node all nodes of the model are under.
+	 *
+	 * @return the node
+	 */
+	public Group getNode() {
+		return node;
+	}
+
+	/**
+	 * Gets the model shown.
+	 *
+	 * @return the model
+	 */
+	public Model getModel() {
+		return model;
+	}
+}